@@ -16,11 +16,8 @@
 package com.dattack.dbcopy.automator;
 
 import com.dattack.dbcopy.automator.jdbc.DataSourceProvider;
-import com.dattack.dbcopy.automator.jdbc.SinkDataSourceProvider;
-import com.dattack.dbcopy.automator.jdbc.db2.Db2DataSourceProvider;
-import com.dattack.dbcopy.automator.jdbc.oracle.OracleDataSourceProvider;
+import com.dattack.dbcopy.automator.jdbc.DataSourceProviderFactory;
 import com.dattack.jtoolbox.jdbc.JNDIDataSource;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,9 +37,7 @@ import javax.sql.DataSource;
  */
 public final class DatabaseResource {
 
-    private static final String DB2_PRODUCT_NAME = "DB2";
     private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseResource.class);
-    private static final String ORACLE_PRODUCT_NAME = "Oracle";
     private final ObjectName objectRef;
     private final String jndiName;
     private final DataSourceProvider provider;
@@ -65,25 +60,10 @@ public final class DatabaseResource {
 
     private static DataSourceProvider createProvider(String jndiName) throws SQLException {
         try (Connection connection = new JNDIDataSource(jndiName).getConnection()) {
-            return createProvider(connection);
+            return DataSourceProviderFactory.getProvider(connection);
         }
     }
 
-    private static DataSourceProvider createProvider(final Connection connection) throws SQLException {
-        DataSourceProvider result;
-        String databaseProductName = connection.getMetaData().getDatabaseProductName();
-        if (StringUtils.containsIgnoreCase(databaseProductName, ORACLE_PRODUCT_NAME)) {
-            result = new OracleDataSourceProvider();
-        } else if (StringUtils.containsIgnoreCase(databaseProductName, DB2_PRODUCT_NAME)) {
-            result = new Db2DataSourceProvider();
-        } else {
-            result = new SinkDataSourceProvider();
-        }
-        LOGGER.debug("Using provider '{}' with database '{}' (URL: {})", result.getClass(), databaseProductName,
-                     connection.getMetaData().getURL());
-        return result;
-    }
-
     public InsertStrategy createStrategy(final boolean initialLoad) {
         return getProvider().getInsertStrategy(initialLoad);
     }
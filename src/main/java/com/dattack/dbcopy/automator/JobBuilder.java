@@ -29,7 +29,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static com.dattack.dbcopy.automator.CodeHelper.EOL;
 import static com.dattack.dbcopy.automator.CodeHelper.NTAB1;
@@ -44,6 +48,7 @@ public class JobBuilder {
     private static final int DEFAULT_FETCH_SIZE = 20_000;
     private static final int DEFAULT_PARALLEL = 2;
     private static final int DEFAULT_THREADS_PER_JOB = 1;
+    private static final Pattern NUMERIC_BOUND_PATTERN = Pattern.compile("-?\\d+(\\.\\d+)?|MAXVALUE");
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JobBuilder.class);
 
@@ -147,12 +152,49 @@ public class JobBuilder {
         xml.writeCharacters(NTAB1).writeStartElement("insert") // <insert datasource=... batch-size=... parallel=...>
             .writeAttribute("datasource", target.getJndiName()) //
             .writeAttribute("batch-size", DEFAULT_BATCH_SIZE) //
-            .writeAttribute("parallel", DEFAULT_PARALLEL) //
-            .writeCharacters(NTAB2).writeCData(
+            .writeAttribute("parallel", DEFAULT_PARALLEL);
+        if (initialLoad) {
+            xml.writeAttribute("load-mode", "initial");
+        }
+        writeRoutingAttributes(xml, tableMapping);
+        xml.writeCharacters(NTAB2).writeCData(
                 NTAB3 + reformat(getInsertSql(target, initialLoad, tableMapping), TAB3)) //
             .writeCharacters(NTAB1).writeEndElement(); // </insert>
     }
 
+    /**
+     * Routes the rows to the insert workers using the partition keys of the target table, so that each worker
+     * writes to its own set of partitions. When the table is partitioned by a single column with numeric bounds,
+     * the partition bounds are used to map each row to its partition; otherwise, the rows are routed using a hash of
+     * the partition keys.
+     */
+    private void writeRoutingAttributes(FluentXmlWriter xml, TableMapping tableMapping) {
+
+        List<String> routeBy = new ArrayList<>();
+        tableMapping.getTargetTable().getPartitionKeys().stream() //
+            .sorted(Comparator.comparing(ColumnMetadata::getPartitionSeq)) //
+            .forEach(key -> tableMapping.getColumnMappingList().stream() //
+                .filter(m -> StringUtils.equalsIgnoreCase(m.getTargetColumn().getName(), key.getName())) //
+                .findFirst() //
+                .ifPresent(m -> routeBy.add(m.getSourceColumn().getName())));
+
+        if (routeBy.isEmpty() || routeBy.size() != tableMapping.getTargetTable().getPartitionKeys().size()) {
+            return;
+        }
+
+        xml.writeAttribute("route-by", String.join(",", routeBy));
+
+        List<String> bounds = tableMapping.getTargetTable().getPartitionList().stream() //
+            .sorted(Comparator.comparing(RangePartition::getPosition)) //
+            .map(p -> StringUtils.trim(p.getHighValue())) //
+            .collect(Collectors.toList());
+        if (routeBy.size() == 1 && bounds.size() > 1 && bounds.stream().allMatch(
+            b -> NUMERIC_BOUND_PATTERN.matcher(StringUtils.defaultString(b)).matches()))
+        {
+            xml.writeAttribute("route-bounds", String.join(",", bounds));
+        }
+    }
+
     private String getSelectSql(DatabaseResource source, TableMapping tableMapping) {
         return source.getProvider().generateSelectSql(tableMapping.getSourceTable());
     }
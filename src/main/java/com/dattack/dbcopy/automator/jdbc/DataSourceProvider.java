@@ -81,6 +81,19 @@ public abstract class DataSourceProvider {
     protected abstract void addTableStats(Connection connection, ObjectName objectName,
         TableMetadata.TableMetadataBuilder builder) throws SQLException;
 
+    /**
+     * Returns the statements that disable the maintenance of the indexes and constraints of a table during an
+     * initial load and restore them afterwards. The default implementation does nothing.
+     *
+     * @param connection a connection to database
+     * @param objectName the name of the table
+     * @return the statements to execute before and after the load
+     * @throws SQLException if a database error occurs
+     */
+    public InitialLoadPlan createInitialLoadPlan(Connection connection, ObjectName objectName) throws SQLException {
+        return new InitialLoadPlan();
+    }
+
     public abstract String generateSelectSql(TableMetadata tableMetadata);
 
     public abstract InsertStrategy getInsertStrategy(boolean initialLoad);
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.automator.jdbc;
+
+import com.dattack.dbcopy.automator.jdbc.db2.Db2DataSourceProvider;
+import com.dattack.dbcopy.automator.jdbc.h2.H2DataSourceProvider;
+import com.dattack.dbcopy.automator.jdbc.oracle.OracleDataSourceProvider;
+import com.dattack.dbcopy.automator.jdbc.postgresql.PostgreSqlDataSourceProvider;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Factory responsible for selecting the {@link DataSourceProvider} of a database.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public final class DataSourceProviderFactory {
+
+    private static final String DB2_PRODUCT_NAME = "DB2";
+    private static final String H2_PRODUCT_NAME = "H2";
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataSourceProviderFactory.class);
+    private static final String ORACLE_PRODUCT_NAME = "Oracle";
+    private static final String POSTGRESQL_PRODUCT_NAME = "PostgreSQL";
+
+    private DataSourceProviderFactory() {
+        // static class
+    }
+
+    /**
+     * Returns the provider to use with the database accessed by the connection.
+     *
+     * @param connection a connection to the database
+     * @return the provider of the database or a generic one if the database is unknown
+     * @throws SQLException if a database access error occurs
+     */
+    public static DataSourceProvider getProvider(final Connection connection) throws SQLException {
+        DataSourceProvider result;
+        String databaseProductName = connection.getMetaData().getDatabaseProductName();
+        if (StringUtils.containsIgnoreCase(databaseProductName, ORACLE_PRODUCT_NAME)) {
+            result = new OracleDataSourceProvider();
+        } else if (StringUtils.containsIgnoreCase(databaseProductName, DB2_PRODUCT_NAME)) {
+            result = new Db2DataSourceProvider();
+        } else if (StringUtils.containsIgnoreCase(databaseProductName, POSTGRESQL_PRODUCT_NAME)) {
+            result = new PostgreSqlDataSourceProvider();
+        } else if (StringUtils.equalsIgnoreCase(databaseProductName, H2_PRODUCT_NAME)) {
+            result = new H2DataSourceProvider();
+        } else {
+            result = new SinkDataSourceProvider();
+        }
+        LOGGER.debug("Using provider '{}' with database '{}' (URL: {})", result.getClass(), databaseProductName,
+                     connection.getMetaData().getURL());
+        return result;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.automator.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Statements executed around an initial load to avoid maintaining indexes and checking constraints row by row:
+ * the <i>before-load</i> statements disable them and the <i>rebuild</i> and <i>after-load</i> statements restore
+ * the original state of the table once all the rows have been inserted. The rebuild statements are independent
+ * of each other and can be executed in parallel. Each rebuild or after-load statement restores the change made by
+ * the last before-load statement added to the plan before it.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public final class InitialLoadPlan {
+
+    private final List<String> afterLoadList;
+    private final List<Integer> afterLoadStepList;
+    private final List<String> beforeLoadList;
+    private final List<String> rebuildList;
+    private final List<Integer> rebuildStepList;
+
+    public InitialLoadPlan() {
+        this.afterLoadList = new ArrayList<>();
+        this.afterLoadStepList = new ArrayList<>();
+        this.beforeLoadList = new ArrayList<>();
+        this.rebuildList = new ArrayList<>();
+        this.rebuildStepList = new ArrayList<>();
+    }
+
+    public InitialLoadPlan withAfterLoad(final String sql) {
+        afterLoadList.add(sql);
+        afterLoadStepList.add(beforeLoadList.size() - 1);
+        return this;
+    }
+
+    public InitialLoadPlan withBeforeLoad(final String sql) {
+        beforeLoadList.add(sql);
+        return this;
+    }
+
+    public InitialLoadPlan withRebuild(final String sql) {
+        rebuildList.add(sql);
+        rebuildStepList.add(beforeLoadList.size() - 1);
+        return this;
+    }
+
+    /**
+     * Returns the plan that restores the table when only the first before-load statements have been executed: it
+     * contains those statements and the rebuild and after-load statements restoring their changes.
+     *
+     * @param executed the number of before-load statements executed
+     * @return the plan restricted to the executed statements
+     */
+    public InitialLoadPlan restrictTo(final int executed) {
+
+        final InitialLoadPlan plan = new InitialLoadPlan();
+        plan.beforeLoadList.addAll(beforeLoadList.subList(0, Math.min(executed, beforeLoadList.size())));
+        for (int i = 0; i < rebuildList.size(); i++) {
+            if (rebuildStepList.get(i) < executed) {
+                plan.rebuildList.add(rebuildList.get(i));
+                plan.rebuildStepList.add(rebuildStepList.get(i));
+            }
+        }
+        for (int i = 0; i < afterLoadList.size(); i++) {
+            if (afterLoadStepList.get(i) < executed) {
+                plan.afterLoadList.add(afterLoadList.get(i));
+                plan.afterLoadStepList.add(afterLoadStepList.get(i));
+            }
+        }
+        return plan;
+    }
+
+    public List<String> getAfterLoadList() {
+        return Collections.unmodifiableList(afterLoadList);
+    }
+
+    public List<String> getBeforeLoadList() {
+        return Collections.unmodifiableList(beforeLoadList);
+    }
+
+    public List<String> getRebuildList() {
+        return Collections.unmodifiableList(rebuildList);
+    }
+
+    public boolean isEmpty() {
+        return beforeLoadList.isEmpty() && rebuildList.isEmpty() && afterLoadList.isEmpty();
+    }
+}
@@ -22,6 +22,7 @@ import com.dattack.dbcopy.automator.RangePartition;
 import com.dattack.dbcopy.automator.TableMetadata;
 import com.dattack.dbcopy.automator.jdbc.DataSourceProvider;
 import com.dattack.dbcopy.automator.jdbc.DefaultInsertStrategy;
+import com.dattack.dbcopy.automator.jdbc.InitialLoadPlan;
 import com.dattack.formats.xml.FluentXmlWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +42,11 @@ public class Db2DataSourceProvider extends DataSourceProvider {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Db2DataSourceProvider.class);
 
+    private static final String SELECT_CONSTRAINTS = "SELECT constName, type" //
+        + " FROM syscat.tabConst" //
+        + " WHERE tabSchema = COALESCE(?, CURRENT SCHEMA) AND tabName = ? AND type IN ('F', 'K')" //
+        + " AND enforced = 'Y' WITH UR";
+
     private static final String SELECT_PARTITIONS = "SELECT dataPartitionName, lowValue, lowInclusive, highValue, " //
         + "highInclusive, dataPartitionId, card" //
         + " FROM syscat.dataPartitions" //
@@ -96,6 +102,29 @@ public class Db2DataSourceProvider extends DataSourceProvider {
         }
     }
 
+    /**
+     * Stops enforcing the foreign key and check constraints during the load. DB2 can't disable an index, so the
+     * indexes are maintained as usual.
+     */
+    @Override
+    public InitialLoadPlan createInitialLoadPlan(Connection connection, ObjectName objectName) throws SQLException {
+
+        InitialLoadPlan plan = new InitialLoadPlan();
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_CONSTRAINTS)) {
+            ps.setString(1, objectName.getSchemaName());
+            ps.setString(2, objectName.getTableName());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String constraint = ("F".equals(rs.getString("type")) ? "FOREIGN KEY " : "CHECK ") //
+                        + rs.getString("constName");
+                    plan.withBeforeLoad("ALTER TABLE " + objectName + " ALTER " + constraint + " NOT ENFORCED") //
+                        .withAfterLoad("ALTER TABLE " + objectName + " ALTER " + constraint + " ENFORCED");
+                }
+            }
+        }
+        return plan;
+    }
+
     @Override
     public String generateSelectSql(TableMetadata tableMetadata) {
         LOGGER.trace("Generating SQL-Select for table {}", tableMetadata.getTableRef());
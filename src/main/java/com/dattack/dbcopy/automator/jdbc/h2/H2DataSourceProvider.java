@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.automator.jdbc.h2;
+
+import com.dattack.dbcopy.automator.ObjectName;
+import com.dattack.dbcopy.automator.jdbc.DataSourceProvider;
+import com.dattack.dbcopy.automator.jdbc.InitialLoadPlan;
+import com.dattack.dbcopy.automator.jdbc.SinkDataSourceProvider;
+
+import java.sql.Connection;
+
+/**
+ * {@link DataSourceProvider} implementation for H2 databases.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public class H2DataSourceProvider extends SinkDataSourceProvider {
+
+    /**
+     * Disables the referential integrity checks of the table during the load and checks the existing rows when
+     * they are enabled again. The indexes are maintained as usual: H2 can't disable them and those supporting a
+     * foreign key can't be dropped.
+     */
+    @Override
+    public InitialLoadPlan createInitialLoadPlan(Connection connection, ObjectName objectName) {
+        return new InitialLoadPlan() //
+            .withBeforeLoad("ALTER TABLE " + objectName + " SET REFERENTIAL_INTEGRITY FALSE") //
+            .withAfterLoad("ALTER TABLE " + objectName + " SET REFERENTIAL_INTEGRITY TRUE CHECK");
+    }
+}
@@ -22,6 +22,7 @@ import com.dattack.dbcopy.automator.RangePartition;
 import com.dattack.dbcopy.automator.TableMetadata;
 import com.dattack.dbcopy.automator.jdbc.DataSourceProvider;
 import com.dattack.dbcopy.automator.jdbc.DefaultInsertStrategy;
+import com.dattack.dbcopy.automator.jdbc.InitialLoadPlan;
 import com.dattack.formats.xml.FluentXmlWriter;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -42,6 +43,23 @@ public class OracleDataSourceProvider extends DataSourceProvider {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OracleDataSourceProvider.class);
 
+    private static final String CURRENT_SCHEMA = "SYS_CONTEXT('USERENV', 'CURRENT_SCHEMA')";
+
+    private static final String SELECT_CONSTRAINTS = "SELECT constraint_name" //
+        + " FROM all_constraints" //
+        + " WHERE owner = COALESCE(?, " + CURRENT_SCHEMA + ") AND table_name = ?" //
+        + " AND constraint_type IN ('C', 'R') AND status = 'ENABLED'";
+
+    private static final String SELECT_INDEXES = "SELECT owner, index_name" //
+        + " FROM all_indexes" //
+        + " WHERE table_owner = COALESCE(?, " + CURRENT_SCHEMA + ") AND table_name = ?" //
+        + " AND uniqueness = 'NONUNIQUE' AND partitioned = 'NO' AND status = 'VALID'" //
+        + " AND index_type IN ('NORMAL', 'BITMAP', 'FUNCTION-BASED NORMAL')";
+
+    private static final String SELECT_LOGGING = "SELECT logging" //
+        + " FROM all_tables" //
+        + " WHERE owner = COALESCE(?, " + CURRENT_SCHEMA + ") AND table_name = ?";
+
     private static final String SELECT_PARTITIONS = "SELECT partition_name, high_value, partition_position, num_rows" //
         + " FROM all_tab_partitions" //
         + " WHERE table_owner = ? AND table_name = ?";
@@ -87,6 +105,45 @@ public class OracleDataSourceProvider extends DataSourceProvider {
         }
     }
 
+    /**
+     * Marks the non-unique, non-partitioned indexes as unusable, disables the check and foreign key constraints and
+     * switches the table to NOLOGGING. The indexes are rebuilt and the constraints are validated after the load.
+     */
+    @Override
+    public InitialLoadPlan createInitialLoadPlan(Connection connection, ObjectName objectName) throws SQLException {
+
+        InitialLoadPlan plan = new InitialLoadPlan();
+        try (PreparedStatement ps = prepare(connection, SELECT_INDEXES, objectName); //
+             ResultSet rs = ps.executeQuery())
+        {
+            while (rs.next()) {
+                String indexName = rs.getString("OWNER") + "." + rs.getString("INDEX_NAME");
+                plan.withBeforeLoad("ALTER INDEX " + indexName + " UNUSABLE") //
+                    .withRebuild("ALTER INDEX " + indexName + " REBUILD");
+            }
+        }
+
+        try (PreparedStatement ps = prepare(connection, SELECT_CONSTRAINTS, objectName); //
+             ResultSet rs = ps.executeQuery())
+        {
+            while (rs.next()) {
+                String constraintName = rs.getString("CONSTRAINT_NAME");
+                plan.withBeforeLoad("ALTER TABLE " + objectName + " DISABLE CONSTRAINT " + constraintName) //
+                    .withAfterLoad("ALTER TABLE " + objectName + " ENABLE CONSTRAINT " + constraintName);
+            }
+        }
+
+        try (PreparedStatement ps = prepare(connection, SELECT_LOGGING, objectName); //
+             ResultSet rs = ps.executeQuery())
+        {
+            if (rs.next() && "YES".equalsIgnoreCase(rs.getString("LOGGING"))) {
+                plan.withBeforeLoad("ALTER TABLE " + objectName + " NOLOGGING") //
+                    .withAfterLoad("ALTER TABLE " + objectName + " LOGGING");
+            }
+        }
+        return plan;
+    }
+
     @Override
     public String generateSelectSql(TableMetadata tableMetadata) {
 
@@ -106,4 +163,13 @@ public class OracleDataSourceProvider extends DataSourceProvider {
     public void writeXmlPartitions(FluentXmlWriter xml, TableMetadata tableMetadata) {
         CodeHelper.appendPartitionListXml(xml, tableMetadata, getPartitionVar(tableMetadata));
     }
+
+    private static PreparedStatement prepare(Connection connection, String sql, ObjectName objectName)
+        throws SQLException
+    {
+        PreparedStatement ps = connection.prepareStatement(sql);
+        ps.setString(1, objectName.getSchemaName());
+        ps.setString(2, objectName.getTableName());
+        return ps;
+    }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.automator.jdbc.postgresql;
+
+import com.dattack.dbcopy.automator.ObjectName;
+import com.dattack.dbcopy.automator.jdbc.DataSourceProvider;
+import com.dattack.dbcopy.automator.jdbc.InitialLoadPlan;
+import com.dattack.dbcopy.automator.jdbc.SinkDataSourceProvider;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * {@link DataSourceProvider} implementation for PostgreSQL databases.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public class PostgreSqlDataSourceProvider extends SinkDataSourceProvider {
+
+    private static final String SELECT_CONSTRAINTS = "SELECT conname, pg_get_constraintdef(oid) AS condef" //
+        + " FROM pg_constraint" //
+        + " WHERE conrelid = CAST(? AS regclass) AND contype IN ('c', 'f')";
+
+    private static final String SELECT_INDEXES = "SELECT n.nspname, c.relname, pg_get_indexdef(i.indexrelid) AS def" //
+        + " FROM pg_index i" //
+        + " JOIN pg_class c ON c.oid = i.indexrelid" //
+        + " JOIN pg_namespace n ON n.oid = c.relnamespace" //
+        + " WHERE i.indrelid = CAST(? AS regclass) AND NOT i.indisunique AND NOT i.indisprimary";
+
+    private static final String SELECT_PERSISTENCE = "SELECT relpersistence" //
+        + " FROM pg_class" //
+        + " WHERE oid = CAST(? AS regclass)";
+
+    /**
+     * Drops the non-unique indexes and the check and foreign key constraints and switches the table to UNLOGGED.
+     * The indexes and constraints are created again, from their original definitions, after the load.
+     */
+    @Override
+    public InitialLoadPlan createInitialLoadPlan(Connection connection, ObjectName objectName) throws SQLException {
+
+        InitialLoadPlan plan = new InitialLoadPlan();
+        try (PreparedStatement ps = prepare(connection, SELECT_INDEXES, objectName); //
+             ResultSet rs = ps.executeQuery())
+        {
+            while (rs.next()) {
+                plan.withBeforeLoad("DROP INDEX " + rs.getString("nspname") + "." + rs.getString("relname")) //
+                    .withRebuild(rs.getString("def"));
+            }
+        }
+
+        try (PreparedStatement ps = prepare(connection, SELECT_CONSTRAINTS, objectName); //
+             ResultSet rs = ps.executeQuery())
+        {
+            while (rs.next()) {
+                String constraintName = rs.getString("conname");
+                plan.withBeforeLoad("ALTER TABLE " + objectName + " DROP CONSTRAINT " + constraintName) //
+                    .withAfterLoad("ALTER TABLE " + objectName + " ADD CONSTRAINT " + constraintName + " " //
+                                       + rs.getString("condef"));
+            }
+        }
+
+        try (PreparedStatement ps = prepare(connection, SELECT_PERSISTENCE, objectName); //
+             ResultSet rs = ps.executeQuery())
+        {
+            if (rs.next() && "p".equals(rs.getString("relpersistence"))) {
+                plan.withBeforeLoad("ALTER TABLE " + objectName + " SET UNLOGGED") //
+                    .withAfterLoad("ALTER TABLE " + objectName + " SET LOGGED");
+            }
+        }
+        return plan;
+    }
+
+    private static PreparedStatement prepare(Connection connection, String sql, ObjectName objectName)
+        throws SQLException
+    {
+        PreparedStatement ps = connection.prepareStatement(sql);
+        ps.setString(1, objectName.toString());
+        return ps;
+    }
+}
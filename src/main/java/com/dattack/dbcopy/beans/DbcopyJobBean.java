@@ -35,6 +35,9 @@ public class DbcopyJobBean implements Serializable {
     private static final int DEFAULT_THREADS = 1;
     private static final long serialVersionUID = 3640559668991529501L;
 
+    @XmlElement(name = "dedup", type = DedupBean.class)
+    private DedupBean dedupBean;
+
     @XmlElement(name = "delete", type = DeleteOperationBean.class)
     private DeleteOperationBean deleteBean;
 
@@ -47,12 +50,21 @@ public class DbcopyJobBean implements Serializable {
     @XmlElement(name = "insert", type = InsertOperationBean.class)
     private InsertOperationBean insertBean;
 
+    @XmlElement(name = "lookup", type = LookupBean.class)
+    private List<LookupBean> lookupList;
+
+    @XmlElement(name = "retry", type = RetryBean.class)
+    private RetryBean retryBean;
+
     @XmlElement(name = "select", type = SelectOperationBean.class, required = true)
     private SelectOperationBean selectBean;
 
     @XmlAttribute(name = "threads")
     private int threads = DEFAULT_THREADS;
 
+    @XmlElement(name = "transform", type = TransformBean.class)
+    private TransformBean transformBean;
+
     @XmlElements({ //
                    @XmlElement(name = "range", type = IntegerRangeBean.class), //
                    @XmlElement(name = "integer-range", type = IntegerRangeBean.class), // deprecated
@@ -62,6 +74,14 @@ public class DbcopyJobBean implements Serializable {
     })
     private List<AbstractVariableBean> variableList;
 
+    public DedupBean getDedupBean() {
+        return dedupBean;
+    }
+
+    public void setDedupBean(final DedupBean dedupBean) {
+        this.dedupBean = dedupBean;
+    }
+
     public DeleteOperationBean getDeleteBean() {
         return deleteBean;
     }
@@ -94,6 +114,22 @@ public class DbcopyJobBean implements Serializable {
         this.insertBean = insertBean;
     }
 
+    public List<LookupBean> getLookupList() {
+        return lookupList;
+    }
+
+    public void setLookupList(final List<LookupBean> lookupList) {
+        this.lookupList = lookupList;
+    }
+
+    public RetryBean getRetryBean() {
+        return retryBean;
+    }
+
+    public void setRetryBean(final RetryBean retryBean) {
+        this.retryBean = retryBean;
+    }
+
     public SelectOperationBean getSelectBean() {
         return selectBean;
     }
@@ -110,6 +146,14 @@ public class DbcopyJobBean implements Serializable {
         this.threads = threads;
     }
 
+    public TransformBean getTransformBean() {
+        return transformBean;
+    }
+
+    public void setTransformBean(final TransformBean transformBean) {
+        this.transformBean = transformBean;
+    }
+
     public List<AbstractVariableBean> getVariableList() {
         return variableList;
     }
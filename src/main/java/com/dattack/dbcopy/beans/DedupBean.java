@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.beans;
+
+import org.apache.commons.lang.StringUtils;
+import java.io.Serializable;
+import java.util.Locale;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+/**
+ * Bean representing the deduplication of the rows of each task by key before they are inserted.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class DedupBean implements Serializable {
+
+    private static final long DEFAULT_EXPECTED_KEYS = 1_000_000L;
+    private static final long serialVersionUID = -4120527419466915331L;
+
+    @XmlAttribute(name = "exact")
+    private boolean exact;
+
+    @XmlAttribute(name = "expected-keys")
+    private long expectedKeys = DEFAULT_EXPECTED_KEYS;
+
+    @XmlAttribute(name = "keep")
+    @XmlJavaTypeAdapter(KeepAdapter.class)
+    private Keep keep = Keep.FIRST;
+
+    @XmlAttribute(name = "key", required = true)
+    private String key;
+
+    /**
+     * Returns the number of keys expected per task, used to size the initial hash table and avoid rehashing.
+     *
+     * @return the number of keys expected per task
+     */
+    public long getExpectedKeys() {
+        return expectedKeys > 0 ? expectedKeys : DEFAULT_EXPECTED_KEYS;
+    }
+
+    public void setExpectedKeys(final long expectedKeys) {
+        this.expectedKeys = expectedKeys;
+    }
+
+    /**
+     * Returns which row is kept when several rows have the same key. {@link Keep#FIRST} drops the rows whose key has
+     * already been read. {@link Keep#LAST} replaces each row with the last one read with the same key, and requires
+     * the rows to be sorted by the key columns (the <code>sort-by</code> attribute of the insert must start with
+     * them).
+     *
+     * @return the row kept for each key
+     */
+    public Keep getKeep() {
+        return keep;
+    }
+
+    public void setKeep(final Keep keep) {
+        this.keep = keep;
+    }
+
+    /**
+     * Returns the comma-separated list of columns identifying a row.
+     *
+     * @return the list of key columns
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(final String key) {
+        this.key = key;
+    }
+
+    /**
+     * Indicates whether the keys are compared exactly. Otherwise, only a 64-bit hash of each key is kept, and two
+     * different keys sharing the same hash (an unlikely event, but possible with hundreds of millions of keys) are
+     * considered duplicates.
+     *
+     * @return true if the keys are compared exactly
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    public void setExact(final boolean exact) {
+        this.exact = exact;
+    }
+
+    public enum Keep {
+        FIRST, LAST
+    }
+
+    /**
+     * Adapts a {@link Keep} for custom marshaling.
+     */
+    public static class KeepAdapter extends XmlAdapter<String, Keep> {
+
+        @Override
+        public Keep unmarshal(final String keep) {
+
+            Keep result = Keep.FIRST;
+            if (StringUtils.isNotBlank(keep)) {
+                result = Keep.valueOf(keep.toUpperCase(Locale.getDefault()));
+            }
+            return result;
+        }
+
+        @Override
+        public String marshal(final Keep keep) {
+            return keep.name();
+        }
+    }
+}
@@ -17,9 +17,12 @@ package com.dattack.dbcopy.beans;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
 
 /**
- * Bean representing a deletion operation.
+ * Bean representing a deletion operation executed by each task before inserting its rows. When the
+ * <code>table</code> attribute is present the body of the element is the (optional) condition of the rows to
+ * delete; otherwise the body is the full DELETE statement.
  *
  * @author cvarela
  * @since 0.1
@@ -27,5 +30,70 @@ import javax.xml.bind.annotation.XmlAccessorType;
 @XmlAccessorType(XmlAccessType.FIELD)
 public class DeleteOperationBean extends AbstractDbOperationBean {
 
+    private static final int DEFAULT_CHUNK_SIZE = 0;
     private static final long serialVersionUID = 21303378360014146L;
+
+    @XmlAttribute(name = "chunk-size")
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    @XmlAttribute(name = "key")
+    private String key;
+
+    @XmlAttribute(name = "table")
+    private String table;
+
+    @XmlAttribute(name = "truncate-partition")
+    private String truncatePartition;
+
+    /**
+     * Returns the maximum number of rows deleted between two commits. Zero means that all the rows are deleted
+     * by a single statement. When <code>table</code> is present, a chunk size requires a <code>key</code>;
+     * otherwise the DELETE statement must limit the number of rows itself.
+     *
+     * @return the maximum number of rows deleted by each statement
+     */
+    public int getChunkSize() {
+        return chunkSize > DEFAULT_CHUNK_SIZE ? chunkSize : DEFAULT_CHUNK_SIZE;
+    }
+
+    public void setChunkSize(final int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the comma-separated list of columns used to delete the rows of the table in key order when the
+     * deletion is executed in chunks.
+     *
+     * @return the list of key columns
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(final String key) {
+        this.key = key;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(final String table) {
+        this.table = table;
+    }
+
+    /**
+     * Returns the name of the partition of <code>table</code> to truncate instead of deleting its rows. If the
+     * target database doesn't support it, the rows matching the condition are deleted; without a condition the
+     * operation fails, it never deletes the whole table.
+     *
+     * @return the name of the partition or null to delete the rows
+     */
+    public String getTruncatePartition() {
+        return truncatePartition;
+    }
+
+    public void setTruncatePartition(final String truncatePartition) {
+        this.truncatePartition = truncatePartition;
+    }
 }
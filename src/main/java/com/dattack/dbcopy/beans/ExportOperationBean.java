@@ -36,14 +36,20 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 public class ExportOperationBean implements Serializable {
 
     private static final int DEFAULT_BATCH_SIZE = 10_000;
+    private static final int DEFAULT_COMPRESSION_BLOCK_SIZE = 1_048_576; // in bytes (1 MiB)
     private static final int DEFAULT_PAGE_SIZE = 1_048_576; // in bytes (default: 1048576 = 1024 * 1024)
     private static final int DEFAULT_PARALLEL = 1;
+    private static final int DEFAULT_WRITE_QUEUE_SIZE = 4;
     private static final Logger LOGGER = LoggerFactory.getLogger(ExportOperationBean.class);
     private static final long serialVersionUID = 75388957947238367L;
 
     @XmlAttribute(name = "batch-size")
     private int batchSize = DEFAULT_BATCH_SIZE;
 
+    @XmlAttribute(name = "binary-encoding")
+    @XmlJavaTypeAdapter(BinaryEncodingAdapter.class)
+    private BinaryEncoding binaryEncoding = BinaryEncoding.TEXT;
+
     @XmlAttribute(name = "buffer-size")
     private int bufferSize = -1;
 
@@ -51,9 +57,24 @@ public class ExportOperationBean implements Serializable {
     @XmlJavaTypeAdapter(CompressionAdapter.class)
     private Compression compression = Compression.UNCOMPRESSED;
 
+    @XmlAttribute(name = "compression-block-size")
+    private int compressionBlockSize = DEFAULT_COMPRESSION_BLOCK_SIZE;
+
+    @XmlAttribute(name = "compression-level")
+    private int compressionLevel = -1;
+
+    @XmlAttribute(name = "date-format")
+    private String dateFormat;
+
+    @XmlAttribute(name = "done-marker")
+    private boolean doneMarker;
+
     @XmlAttribute(name = "format-file")
     private String formatFile;
 
+    @XmlAttribute(name = "fsync")
+    private boolean fsync;
+
     @Deprecated
     @XmlAttribute(name = "gzip")
     private Boolean gzip = Boolean.FALSE;
@@ -70,13 +91,32 @@ public class ExportOperationBean implements Serializable {
     @XmlAttribute(name = "path", required = true)
     private String path;
 
+    @XmlAttribute(name = "rotate-interval")
+    private long rotateInterval = -1;
+
+    @XmlAttribute(name = "rotate-rows")
+    private long rotateRows = -1;
+
     @XmlAttribute(name = "rotate-size")
     private long rotateSize = -1;
 
+    @XmlAttribute(name = "time-format")
+    private String timeFormat;
+
+    @XmlAttribute(name = "timestamp-format")
+    private String timestampFormat;
+
+    @XmlAttribute(name = "sharding")
+    @XmlJavaTypeAdapter(ShardingAdapter.class)
+    private Sharding sharding = Sharding.SHARED;
+
     @XmlAttribute(name = "type")
     @XmlJavaTypeAdapter(TypeAdapter.class)
     private Type type = Type.CSV;
 
+    @XmlAttribute(name = "write-queue-size")
+    private int writeQueueSize = DEFAULT_WRITE_QUEUE_SIZE;
+
     public int getBatchSize() {
         return batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
     }
@@ -85,6 +125,19 @@ public class ExportOperationBean implements Serializable {
         this.batchSize = batchSize;
     }
 
+    /**
+     * Returns the encoding used to write the binary values in text formats.
+     *
+     * @return the encoding of the binary values
+     */
+    public BinaryEncoding getBinaryEncoding() {
+        return binaryEncoding;
+    }
+
+    public void setBinaryEncoding(final BinaryEncoding binaryEncoding) {
+        this.binaryEncoding = binaryEncoding;
+    }
+
     public int getBufferSize() {
         return bufferSize;
     }
@@ -101,6 +154,41 @@ public class ExportOperationBean implements Serializable {
         this.compression = compression;
     }
 
+    public int getCompressionBlockSize() {
+        return compressionBlockSize > 0 ? compressionBlockSize : DEFAULT_COMPRESSION_BLOCK_SIZE;
+    }
+
+    public void setCompressionBlockSize(final int compressionBlockSize) {
+        this.compressionBlockSize = compressionBlockSize;
+    }
+
+    /**
+     * Returns the compression level to use, or a negative value to use the default level of the codec.
+     *
+     * @return the compression level
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(final int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Returns the pattern used to write the dates in text formats, or null to use the JDBC escape format
+     * (yyyy-mm-dd).
+     *
+     * @return the pattern of the dates
+     */
+    public String getDateFormat() {
+        return dateFormat;
+    }
+
+    public void setDateFormat(final String dateFormat) {
+        this.dateFormat = dateFormat;
+    }
+
     public String getFormatFile() {
         return formatFile;
     }
@@ -141,6 +229,40 @@ public class ExportOperationBean implements Serializable {
         this.path = path;
     }
 
+    /**
+     * Returns the maximum time a file is kept open, in milliseconds, or a value less than or equal to zero to disable
+     * this kind of rotation. The rotation happens when the first lines written after the interval arrive.
+     *
+     * @return the maximum age of a file
+     */
+    public long getRotateInterval() {
+        return rotateInterval;
+    }
+
+    public void setRotateInterval(final long rotateInterval) {
+        this.rotateInterval = rotateInterval;
+    }
+
+    /**
+     * Returns the number of rows that causes the rotation of a file, or a value less than or equal to zero to
+     * disable this kind of rotation. The rows are written in batches, so a file may contain a few more rows.
+     *
+     * @return the maximum number of rows of a file
+     */
+    public long getRotateRows() {
+        return rotateRows;
+    }
+
+    public void setRotateRows(final long rotateRows) {
+        this.rotateRows = rotateRows;
+    }
+
+    /**
+     * Returns the size on disk, after the compression, that causes the rotation of a file, or a value less than or
+     * equal to zero to disable this kind of rotation.
+     *
+     * @return the maximum size of a file in bytes
+     */
     public long getRotateSize() {
         return rotateSize;
     }
@@ -149,6 +271,50 @@ public class ExportOperationBean implements Serializable {
         this.rotateSize = rotateSize;
     }
 
+    /**
+     * Indicates whether the rotation of the files is enabled by size, rows or time.
+     *
+     * @return true when the files are rotated
+     */
+    public boolean isRotationEnabled() {
+        return rotateSize > 0 || rotateRows > 0 || rotateInterval > 0;
+    }
+
+    public Sharding getSharding() {
+        return sharding;
+    }
+
+    public void setSharding(final Sharding sharding) {
+        this.sharding = sharding;
+    }
+
+    /**
+     * Returns the pattern used to write the times in text formats, or null to use the JDBC escape format (hh:mm:ss).
+     *
+     * @return the pattern of the times
+     */
+    public String getTimeFormat() {
+        return timeFormat;
+    }
+
+    public void setTimeFormat(final String timeFormat) {
+        this.timeFormat = timeFormat;
+    }
+
+    /**
+     * Returns the pattern used to write the timestamps in text formats, or null to use the JDBC escape format
+     * (yyyy-mm-dd hh:mm:ss.fffffffff).
+     *
+     * @return the pattern of the timestamps
+     */
+    public String getTimestampFormat() {
+        return timestampFormat;
+    }
+
+    public void setTimestampFormat(final String timestampFormat) {
+        this.timestampFormat = timestampFormat;
+    }
+
     public Type getType() {
         return type;
     }
@@ -157,6 +323,47 @@ public class ExportOperationBean implements Serializable {
         this.type = type;
     }
 
+    /**
+     * Returns the number of buffers waiting to be written by the I/O thread of each file. Zero disables the
+     * write-behind and the workers write the files themselves.
+     *
+     * @return the size of the write-behind queue
+     */
+    public int getWriteQueueSize() {
+        return Math.max(writeQueueSize, 0);
+    }
+
+    public void setWriteQueueSize(final int writeQueueSize) {
+        this.writeQueueSize = writeQueueSize;
+    }
+
+    /**
+     * Indicates whether a {@code .done} marker is written next to each file once it is complete, so that the files
+     * can be loaded while the export is still running.
+     *
+     * @return true to write the markers
+     */
+    public boolean isDoneMarker() {
+        return doneMarker;
+    }
+
+    public void setDoneMarker(final boolean doneMarker) {
+        this.doneMarker = doneMarker;
+    }
+
+    /**
+     * Indicates whether the files are flushed to the storage device before being closed.
+     *
+     * @return true to force the data to disk on close
+     */
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    public void setFsync(final boolean fsync) {
+        this.fsync = fsync;
+    }
+
     public boolean isGzip() {
         return gzip;
     }
@@ -175,7 +382,39 @@ public class ExportOperationBean implements Serializable {
     }
 
     public enum Compression {
-        UNCOMPRESSED, SNAPPY, GZIP, LZO
+        UNCOMPRESSED, SNAPPY, GZIP, LZO, ZSTD, LZ4
+    }
+
+    /**
+     * How the binary values are written in text formats.
+     */
+    public enum BinaryEncoding {
+        /**
+         * The bytes are decoded as UTF-8 text, so the values that are not valid UTF-8 are not preserved.
+         */
+        TEXT,
+        /**
+         * Base64 with the standard alphabet.
+         */
+        BASE64,
+        /**
+         * Two lowercase hexadecimal digits per byte.
+         */
+        HEX
+    }
+
+    /**
+     * How the parallel workers of a task share the exported files.
+     */
+    public enum Sharding {
+        /**
+         * All the workers write to the same file.
+         */
+        SHARED,
+        /**
+         * Each worker writes its own part file and a manifest lists the parts.
+         */
+        PER_WORKER
     }
 
     /**
@@ -220,4 +459,46 @@ public class ExportOperationBean implements Serializable {
             return compression.name();
         }
     }
+
+    /**
+     * Adapts a {@link BinaryEncoding} for custom marshaling.
+     */
+    public static class BinaryEncodingAdapter extends XmlAdapter<String, BinaryEncoding> {
+
+        @Override
+        public BinaryEncoding unmarshal(final String encoding) {
+
+            BinaryEncoding result = BinaryEncoding.TEXT;
+            if (StringUtils.isNotBlank(encoding)) {
+                result = BinaryEncoding.valueOf(encoding.trim().toUpperCase(Locale.getDefault()));
+            }
+            return result;
+        }
+
+        @Override
+        public String marshal(final BinaryEncoding encoding) {
+            return encoding.name().toLowerCase(Locale.getDefault());
+        }
+    }
+
+    /**
+     * Adapts a {@link Sharding} for custom marshaling.
+     */
+    public static class ShardingAdapter extends XmlAdapter<String, Sharding> {
+
+        @Override
+        public Sharding unmarshal(final String sharding) {
+
+            Sharding result = Sharding.SHARED;
+            if (StringUtils.isNotBlank(sharding)) {
+                result = Sharding.valueOf(sharding.trim().replace('-', '_').toUpperCase(Locale.getDefault()));
+            }
+            return result;
+        }
+
+        @Override
+        public String marshal(final Sharding sharding) {
+            return sharding.name().replace('_', '-').toLowerCase(Locale.getDefault());
+        }
+    }
 }
@@ -15,9 +15,13 @@
  */
 package com.dattack.dbcopy.beans;
 
+import org.apache.commons.lang.StringUtils;
+import java.util.Locale;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 /**
  * Bean representing a insert operation.
@@ -29,15 +33,82 @@ import javax.xml.bind.annotation.XmlAttribute;
 public class InsertOperationBean extends AbstractDbOperationBean {
 
     private static final int DEFAULT_BATCH_SIZE = 0;
+    private static final long DEFAULT_COMMIT_EVERY = 0;
+    private static final long DEFAULT_MAX_REJECTS = -1;
     private static final int DEFAULT_PARALLEL = 1;
+    private static final long DEFAULT_SORT_MEMORY = 64L * 1024 * 1024;
     private static final long serialVersionUID = -1303451998596082687L;
 
     @XmlAttribute(name = "batch-size")
     private int batchSize = DEFAULT_BATCH_SIZE;
 
+    @XmlAttribute(name = "commit-at-end")
+    private boolean commitAtEnd;
+
+    @XmlAttribute(name = "commit-every-ms")
+    private long commitEveryMillis = DEFAULT_COMMIT_EVERY;
+
+    @XmlAttribute(name = "commit-every-rows")
+    private long commitEveryRows = DEFAULT_COMMIT_EVERY;
+
+    @XmlAttribute(name = "load-mode")
+    @XmlJavaTypeAdapter(LoadModeAdapter.class)
+    private LoadMode loadMode = LoadMode.NORMAL;
+
+    @XmlAttribute(name = "max-rejects")
+    private long maxRejects = DEFAULT_MAX_REJECTS;
+
+    @XmlAttribute(name = "merge-into")
+    private String mergeInto;
+
+    @XmlAttribute(name = "merge-key")
+    private String mergeKey;
+
+    @XmlAttribute(name = "mode")
+    @XmlJavaTypeAdapter(ModeAdapter.class)
+    private Mode mode = Mode.BATCH;
+
     @XmlAttribute(name = "parallel")
     private int parallel = DEFAULT_PARALLEL;
 
+    @XmlAttribute(name = "refresh")
+    @XmlJavaTypeAdapter(RefreshAdapter.class)
+    private Refresh refresh = Refresh.NONE;
+
+    @XmlAttribute(name = "reject-file")
+    private String rejectFile;
+
+    @XmlAttribute(name = "route-bounds")
+    private String routeBounds;
+
+    @XmlAttribute(name = "route-by")
+    private String routeBy;
+
+    @XmlAttribute(name = "scope")
+    @XmlJavaTypeAdapter(ScopeAdapter.class)
+    private Scope scope = Scope.TASK;
+
+    @XmlAttribute(name = "shard-bounds")
+    private String shardBounds;
+
+    @XmlAttribute(name = "shard-by")
+    private String shardBy;
+
+    @XmlAttribute(name = "shard-map")
+    private String shardMap;
+
+    @XmlAttribute(name = "shards")
+    private String shards;
+
+    @XmlAttribute(name = "sort-by")
+    private String sortBy;
+
+    @XmlAttribute(name = "sort-directory")
+    private String sortDirectory;
+
+    @XmlAttribute(name = "sort-memory")
+    private long sortMemory = DEFAULT_SORT_MEMORY;
+
     @XmlAttribute(name = "table")
     private String table;
 
@@ -49,6 +120,101 @@ public class InsertOperationBean extends AbstractDbOperationBean {
         this.batchSize = batchSize;
     }
 
+    /**
+     * Returns the minimum number of milliseconds between two commits. Zero means that the commit interval isn't
+     * limited by time.
+     *
+     * @return the minimum number of milliseconds between two commits
+     */
+    public long getCommitEveryMillis() {
+        return commitEveryMillis > DEFAULT_COMMIT_EVERY ? commitEveryMillis : DEFAULT_COMMIT_EVERY;
+    }
+
+    public void setCommitEveryMillis(final long commitEveryMillis) {
+        this.commitEveryMillis = commitEveryMillis;
+    }
+
+    /**
+     * Returns the minimum number of rows inserted between two commits. When neither this value nor
+     * <code>commit-every-ms</code> are set, a commit is executed after each batch.
+     *
+     * @return the minimum number of rows inserted between two commits
+     */
+    public long getCommitEveryRows() {
+        return commitEveryRows > DEFAULT_COMMIT_EVERY ? commitEveryRows : DEFAULT_COMMIT_EVERY;
+    }
+
+    public void setCommitEveryRows(final long commitEveryRows) {
+        this.commitEveryRows = commitEveryRows;
+    }
+
+    /**
+     * Returns the load mode. With {@link LoadMode#INITIAL} the non-unique indexes and the check and foreign key
+     * constraints of the target table are disabled before the first task of the job and restored after the last
+     * one, and the table is switched to unlogged mode where the database supports it.
+     *
+     * @return the load mode
+     */
+    public LoadMode getLoadMode() {
+        return loadMode;
+    }
+
+    public void setLoadMode(final LoadMode loadMode) {
+        this.loadMode = loadMode;
+    }
+
+    /**
+     * Returns the maximum number of rows that can be rejected by each task before aborting it. A negative value
+     * means that there is no limit.
+     *
+     * @return the maximum number of rejected rows per task
+     */
+    public long getMaxRejects() {
+        return maxRejects >= 0 ? maxRejects : DEFAULT_MAX_REJECTS;
+    }
+
+    public void setMaxRejects(final long maxRejects) {
+        this.maxRejects = maxRejects;
+    }
+
+    /**
+     * Returns the name of the table into which the rows are merged once all the rows of the task have been
+     * inserted. When present, the insert statement writes to a staging table and a single set-based MERGE (or
+     * UPSERT) moves its content into this table. The staging table is emptied before the task starts and after
+     * the merge.
+     *
+     * @return the name of the target table or null if the rows are inserted directly
+     */
+    public String getMergeInto() {
+        return mergeInto;
+    }
+
+    public void setMergeInto(final String mergeInto) {
+        this.mergeInto = mergeInto;
+    }
+
+    /**
+     * Returns the comma-separated list of columns used to match the rows of the staging table with the rows of
+     * the <code>merge-into</code> table.
+     *
+     * @return the list of key columns
+     */
+    public String getMergeKey() {
+        return mergeKey;
+    }
+
+    public void setMergeKey(final String mergeKey) {
+        this.mergeKey = mergeKey;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(final Mode mode) {
+        this.mode = mode;
+    }
+
     public int getParallel() {
         return parallel > DEFAULT_PARALLEL ? parallel : DEFAULT_PARALLEL;
     }
@@ -57,6 +223,175 @@ public class InsertOperationBean extends AbstractDbOperationBean {
         this.parallel = parallel;
     }
 
+    /**
+     * Returns the refresh strategy. With {@link Refresh#SWAP} the job loads an empty copy of the target table
+     * (named as the target table followed by <code>_SHD</code>) that replaces the target table once all the tasks
+     * have finished successfully. The name of the copy replaces the name of the target table in the insert
+     * statement, so the name of the target table can't depend on the variables of the tasks. The copy must keep the
+     * primary key, indexes and constraints of the target table, so the swap is only supported by MySQL and
+     * PostgreSQL, and by Oracle for tables with a single partition, which is exchanged with the copy.
+     *
+     * @return the refresh strategy
+     */
+    public Refresh getRefresh() {
+        return refresh;
+    }
+
+    public void setRefresh(final Refresh refresh) {
+        this.refresh = refresh;
+    }
+
+    public String getRejectFile() {
+        return rejectFile;
+    }
+
+    public void setRejectFile(final String rejectFile) {
+        this.rejectFile = rejectFile;
+    }
+
+    /**
+     * Returns the comma-separated list of upper bounds (exclusive) used to map the value of the
+     * <code>route-by</code> column to a range. Numbers are written as literals and strings between single quotes;
+     * <code>MAXVALUE</code> may be used as the last bound.
+     *
+     * @return the list of bounds or null to route the rows using a hash of the routing columns
+     */
+    public String getRouteBounds() {
+        return routeBounds;
+    }
+
+    public void setRouteBounds(final String routeBounds) {
+        this.routeBounds = routeBounds;
+    }
+
+    /**
+     * Returns the comma-separated list of columns used to assign each row to a fixed insert worker.
+     *
+     * @return the list of routing columns or null if the rows can be written by any worker
+     */
+    public String getRouteBy() {
+        return routeBy;
+    }
+
+    public void setRouteBy(final String routeBy) {
+        this.routeBy = routeBy;
+    }
+
+    /**
+     * Returns the scope of the insert workers. With {@link Scope#TASK} each task has its own workers and
+     * connections; with {@link Scope#JOB} a single pool of workers is shared by all the tasks of the job, so the
+     * batches can span task boundaries. In the latter case, the statement is interpolated using the job
+     * configuration and the task variables are not available.
+     *
+     * @return the scope of the insert workers
+     */
+    public Scope getScope() {
+        return scope;
+    }
+
+    public void setScope(final Scope scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Returns the comma-separated list of upper bounds (exclusive) used to map the value of the
+     * <code>shard-by</code> column to a shard, using the same syntax as <code>route-bounds</code>.
+     *
+     * @return the list of bounds or null to select the shard using a hash or a lookup map
+     */
+    public String getShardBounds() {
+        return shardBounds;
+    }
+
+    public void setShardBounds(final String shardBounds) {
+        this.shardBounds = shardBounds;
+    }
+
+    /**
+     * Returns the comma-separated list of columns used to select the shard of each row.
+     *
+     * @return the list of sharding columns
+     */
+    public String getShardBy() {
+        return shardBy;
+    }
+
+    public void setShardBy(final String shardBy) {
+        this.shardBy = shardBy;
+    }
+
+    /**
+     * Returns the lookup map used to select the shard from the value of the single <code>shard-by</code> column,
+     * written as a comma-separated list of <code>value=shard</code> pairs where the shard is its position (starting
+     * at zero) in the <code>shards</code> list. The values not included in the map are assigned using a hash.
+     *
+     * @return the lookup map or null to select the shard using a hash or the range bounds
+     */
+    public String getShardMap() {
+        return shardMap;
+    }
+
+    public void setShardMap(final String shardMap) {
+        this.shardMap = shardMap;
+    }
+
+    /**
+     * Returns the comma-separated list of datasources the rows are distributed to. Each shard has its own pool of
+     * <code>parallel</code> insert workers, so the rows read once from the source are written to all the shards
+     * concurrently. The <code>datasource</code> attribute isn't used to write the rows when this list is set.
+     *
+     * @return the list of datasources or null if all the rows are written to the <code>datasource</code>
+     */
+    public String getShards() {
+        return shards;
+    }
+
+    public void setShards(final String shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Returns the comma-separated list of columns used to sort the rows before inserting them, each one optionally
+     * followed by <code>ASC</code> or <code>DESC</code>. Sorting by the key of the target index avoids the random
+     * block splits caused by unordered inserts.
+     *
+     * @return the list of sort columns or null if the rows are inserted in the order they are read
+     */
+    public String getSortBy() {
+        return sortBy;
+    }
+
+    public void setSortBy(final String sortBy) {
+        this.sortBy = sortBy;
+    }
+
+    /**
+     * Returns the directory where the sorted runs exceeding the memory budget are spilled.
+     *
+     * @return the spill directory or null to use the temporary directory of the JVM
+     */
+    public String getSortDirectory() {
+        return sortDirectory;
+    }
+
+    public void setSortDirectory(final String sortDirectory) {
+        this.sortDirectory = sortDirectory;
+    }
+
+    /**
+     * Returns the estimated number of bytes of the rows kept in memory by each task before spilling a sorted run to
+     * disk.
+     *
+     * @return the memory budget of the sort, in bytes
+     */
+    public long getSortMemory() {
+        return sortMemory > 0 ? sortMemory : DEFAULT_SORT_MEMORY;
+    }
+
+    public void setSortMemory(final long sortMemory) {
+        this.sortMemory = sortMemory;
+    }
+
     public String getTable() {
         return table;
     }
@@ -64,4 +399,127 @@ public class InsertOperationBean extends AbstractDbOperationBean {
     public void setTable(final String table) {
         this.table = table;
     }
+
+    /**
+     * Indicates whether the rows are committed only when the insert worker has no more rows to write: at the end
+     * of the task or, for job-scoped inserts, when the worker becomes idle. The commit intervals are ignored.
+     *
+     * @return true if the rows are committed only at the end
+     */
+    public boolean isCommitAtEnd() {
+        return commitAtEnd;
+    }
+
+    public void setCommitAtEnd(final boolean commitAtEnd) {
+        this.commitAtEnd = commitAtEnd;
+    }
+
+    /**
+     * Indicates whether the rows are distributed to several target datasources.
+     *
+     * @return true if the <code>shards</code> attribute is set
+     */
+    public boolean isSharded() {
+        return StringUtils.isNotBlank(shards);
+    }
+
+    public enum LoadMode {
+        NORMAL, INITIAL
+    }
+
+    public enum Mode {
+        BATCH, BULK
+    }
+
+    public enum Refresh {
+        NONE, SWAP
+    }
+
+    public enum Scope {
+        TASK, JOB
+    }
+
+    /**
+     * Adapts a {@link LoadMode} for custom marshaling.
+     */
+    public static class LoadModeAdapter extends XmlAdapter<String, LoadMode> {
+
+        @Override
+        public LoadMode unmarshal(final String loadMode) {
+
+            LoadMode result = LoadMode.NORMAL;
+            if (StringUtils.isNotBlank(loadMode)) {
+                result = LoadMode.valueOf(loadMode.toUpperCase(Locale.getDefault()));
+            }
+            return result;
+        }
+
+        @Override
+        public String marshal(final LoadMode loadMode) {
+            return loadMode.name();
+        }
+    }
+
+    /**
+     * Adapts a {@link Mode} for custom marshaling.
+     */
+    public static class ModeAdapter extends XmlAdapter<String, Mode> {
+
+        @Override
+        public Mode unmarshal(final String mode) {
+
+            Mode result = Mode.BATCH;
+            if (StringUtils.isNotBlank(mode)) {
+                result = Mode.valueOf(mode.toUpperCase(Locale.getDefault()));
+            }
+            return result;
+        }
+
+        @Override
+        public String marshal(final Mode mode) {
+            return mode.name();
+        }
+    }
+
+    /**
+     * Adapts a {@link Refresh} for custom marshaling.
+     */
+    public static class RefreshAdapter extends XmlAdapter<String, Refresh> {
+
+        @Override
+        public Refresh unmarshal(final String refresh) {
+
+            Refresh result = Refresh.NONE;
+            if (StringUtils.isNotBlank(refresh)) {
+                result = Refresh.valueOf(refresh.toUpperCase(Locale.getDefault()));
+            }
+            return result;
+        }
+
+        @Override
+        public String marshal(final Refresh refresh) {
+            return refresh.name();
+        }
+    }
+
+    /**
+     * Adapts a {@link Scope} for custom marshaling.
+     */
+    public static class ScopeAdapter extends XmlAdapter<String, Scope> {
+
+        @Override
+        public Scope unmarshal(final String scope) {
+
+            Scope result = Scope.TASK;
+            if (StringUtils.isNotBlank(scope)) {
+                result = Scope.valueOf(scope.toUpperCase(Locale.getDefault()));
+            }
+            return result;
+        }
+
+        @Override
+        public String marshal(final Scope scope) {
+            return scope.name();
+        }
+    }
 }
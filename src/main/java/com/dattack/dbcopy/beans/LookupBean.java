@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.beans;
+
+import org.apache.commons.lang.StringUtils;
+import java.util.Locale;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+/**
+ * Bean representing the translation of the values of a column using a key-value query, like the replacement of a
+ * natural key by the surrogate key of a dimension. The query returns the key in its first column and the value in
+ * the second one. In lazy mode, the query must contain the <code>:keys</code> placeholder, which is replaced by the
+ * list of keys to fetch (e.g. <code>SELECT code, id FROM dim WHERE code IN (:keys)</code>).
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class LookupBean extends AbstractDbOperationBean {
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_CACHE_SIZE = 1_000_000;
+    private static final long serialVersionUID = 6011284377716095842L;
+
+    @XmlAttribute(name = "batch-size")
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    @XmlAttribute(name = "cache-size")
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+
+    @XmlAttribute(name = "column", required = true)
+    private String column;
+
+    @XmlAttribute(name = "mode")
+    @XmlJavaTypeAdapter(ModeAdapter.class)
+    private Mode mode = Mode.PRELOAD;
+
+    @XmlAttribute(name = "on-missing")
+    @XmlJavaTypeAdapter(OnMissingAdapter.class)
+    private OnMissing onMissing = OnMissing.NULL;
+
+    /**
+     * Returns the number of rows whose keys are fetched together in lazy mode.
+     *
+     * @return the number of keys fetched by each query
+     */
+    public int getBatchSize() {
+        return batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the maximum number of keys kept in memory in lazy mode. The least recently used keys are evicted when
+     * the limit is reached. A preloaded map keeps all the keys returned by the query.
+     *
+     * @return the maximum number of cached keys
+     */
+    public int getCacheSize() {
+        return cacheSize > 0 ? cacheSize : DEFAULT_CACHE_SIZE;
+    }
+
+    public void setCacheSize(final int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Returns the name of the column whose values are used as keys and replaced by the values of the lookup.
+     *
+     * @return the name of the translated column
+     */
+    public String getColumn() {
+        return column;
+    }
+
+    public void setColumn(final String column) {
+        this.column = column;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(final Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Returns the action executed when a key isn't returned by the query.
+     *
+     * @return the action executed for the missing keys
+     */
+    public OnMissing getOnMissing() {
+        return onMissing;
+    }
+
+    public void setOnMissing(final OnMissing onMissing) {
+        this.onMissing = onMissing;
+    }
+
+    public enum Mode {
+        PRELOAD, LAZY
+    }
+
+    public enum OnMissing {
+        NULL, KEEP, FAIL
+    }
+
+    /**
+     * Adapts a {@link Mode} for custom marshaling.
+     */
+    public static class ModeAdapter extends XmlAdapter<String, Mode> {
+
+        @Override
+        public Mode unmarshal(final String mode) {
+
+            Mode result = Mode.PRELOAD;
+            if (StringUtils.isNotBlank(mode)) {
+                result = Mode.valueOf(mode.toUpperCase(Locale.getDefault()));
+            }
+            return result;
+        }
+
+        @Override
+        public String marshal(final Mode mode) {
+            return mode.name();
+        }
+    }
+
+    /**
+     * Adapts a {@link OnMissing} for custom marshaling.
+     */
+    public static class OnMissingAdapter extends XmlAdapter<String, OnMissing> {
+
+        @Override
+        public OnMissing unmarshal(final String onMissing) {
+
+            OnMissing result = OnMissing.NULL;
+            if (StringUtils.isNotBlank(onMissing)) {
+                result = OnMissing.valueOf(onMissing.toUpperCase(Locale.getDefault()));
+            }
+            return result;
+        }
+
+        @Override
+        public String marshal(final OnMissing onMissing) {
+            return onMissing.name();
+        }
+    }
+}
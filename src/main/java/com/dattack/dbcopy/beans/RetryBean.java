@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.beans;
+
+import java.io.Serializable;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+
+/**
+ * Bean representing the policy used to recover from transient failures, like deadlocks, serialization failures or
+ * lost connections. A failed batch is replayed on a new connection, together with the rows written since the last
+ * commit, and a failed task is executed again from the beginning. The delay between two attempts grows
+ * exponentially, with a random jitter so that the workers that failed at the same time don't retry at the same time.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class RetryBean implements Serializable {
+
+    private static final int DEFAULT_BATCH_ATTEMPTS = 3;
+    private static final long DEFAULT_DELAY = 1_000L;
+    private static final long DEFAULT_MAX_DELAY = 60_000L;
+    private static final double DEFAULT_MULTIPLIER = 2.0;
+    private static final String DEFAULT_SQL_STATES = "08,40";
+    private static final long serialVersionUID = 2164853394317215950L;
+
+    @XmlAttribute(name = "batch-attempts")
+    private int batchAttempts = DEFAULT_BATCH_ATTEMPTS;
+
+    @XmlAttribute(name = "delay")
+    private long delay = DEFAULT_DELAY;
+
+    @XmlAttribute(name = "error-codes")
+    private String errorCodes;
+
+    @XmlAttribute(name = "max-delay")
+    private long maxDelay = DEFAULT_MAX_DELAY;
+
+    @XmlAttribute(name = "multiplier")
+    private double multiplier = DEFAULT_MULTIPLIER;
+
+    @XmlAttribute(name = "sql-states")
+    private String sqlStates = DEFAULT_SQL_STATES;
+
+    @XmlAttribute(name = "task-attempts")
+    private int taskAttempts;
+
+    /**
+     * Returns the number of times the rows of a transaction are replayed after a transient failure. The rows written
+     * since the last commit are retained in memory so they can be replayed, so this kind of retry isn't available
+     * when the insert commits at the end of the task.
+     *
+     * @return the number of retries of a failed transaction
+     */
+    public int getBatchAttempts() {
+        return Math.max(batchAttempts, 0);
+    }
+
+    public void setBatchAttempts(final int batchAttempts) {
+        this.batchAttempts = batchAttempts;
+    }
+
+    /**
+     * Returns the delay before the first retry, in milliseconds.
+     *
+     * @return the delay before the first retry
+     */
+    public long getDelay() {
+        return delay >= 0 ? delay : DEFAULT_DELAY;
+    }
+
+    public void setDelay(final long delay) {
+        this.delay = delay;
+    }
+
+    /**
+     * Returns the comma-separated list of vendor error codes identifying a transient failure, like 60 (deadlock)
+     * in Oracle or 1213 (deadlock) and 1205 (lock wait timeout) in MySQL.
+     *
+     * @return the list of error codes
+     */
+    public String getErrorCodes() {
+        return errorCodes;
+    }
+
+    public void setErrorCodes(final String errorCodes) {
+        this.errorCodes = errorCodes;
+    }
+
+    /**
+     * Returns the upper limit of the delay between two attempts, in milliseconds.
+     *
+     * @return the maximum delay
+     */
+    public long getMaxDelay() {
+        return maxDelay >= 0 ? maxDelay : DEFAULT_MAX_DELAY;
+    }
+
+    public void setMaxDelay(final long maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Returns the factor applied to the delay after each failed attempt.
+     *
+     * @return the backoff multiplier
+     */
+    public double getMultiplier() {
+        return multiplier >= 1 ? multiplier : DEFAULT_MULTIPLIER;
+    }
+
+    public void setMultiplier(final double multiplier) {
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * Returns the comma-separated list of SQLState values, or SQLState classes given by their first characters,
+     * identifying a transient failure. By default, the connection exceptions (class 08) and the transaction
+     * rollbacks (class 40, including serialization failures and deadlocks).
+     *
+     * @return the list of SQLState values
+     */
+    public String getSqlStates() {
+        return sqlStates;
+    }
+
+    public void setSqlStates(final String sqlStates) {
+        this.sqlStates = sqlStates;
+    }
+
+    /**
+     * Returns the number of times a failed task is executed again. A task is only executed again when it hasn't
+     * committed any row or when its work can be repeated safely: its rows are deleted before being inserted, or they
+     * are loaded into a staging table that is cleared at the beginning of the task.
+     *
+     * @return the number of retries of a failed task
+     */
+    public int getTaskAttempts() {
+        return Math.max(taskAttempts, 0);
+    }
+
+    public void setTaskAttempts(final int taskAttempts) {
+        this.taskAttempts = taskAttempts;
+    }
+}
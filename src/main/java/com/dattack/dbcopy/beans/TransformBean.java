@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.beans;
+
+import java.io.Serializable;
+import java.util.List;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+
+/**
+ * Bean representing the transformation of the rows of each task before they are inserted: the filters that a row
+ * must satisfy to be kept, and the columns computed from the values of the row.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class TransformBean implements Serializable {
+
+    private static final long serialVersionUID = -7789050447104153806L;
+
+    @XmlElement(name = "column", type = TransformColumnBean.class)
+    private List<TransformColumnBean> columnList;
+
+    @XmlElement(name = "filter")
+    private List<String> filterList;
+
+    public List<TransformColumnBean> getColumnList() {
+        return columnList;
+    }
+
+    public void setColumnList(final List<TransformColumnBean> columnList) {
+        this.columnList = columnList;
+    }
+
+    /**
+     * Returns the boolean expressions that a row must satisfy to be kept. Rows for which any filter evaluates to
+     * false or null are dropped.
+     *
+     * @return the list of filters
+     */
+    public List<String> getFilterList() {
+        return filterList;
+    }
+
+    public void setFilterList(final List<String> filterList) {
+        this.filterList = filterList;
+    }
+}
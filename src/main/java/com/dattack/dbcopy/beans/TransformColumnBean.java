@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.beans;
+
+import java.io.Serializable;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlValue;
+
+/**
+ * Bean representing a column computed by a transform: the name of the column and the expression used to compute
+ * its value.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class TransformColumnBean implements Serializable {
+
+    private static final long serialVersionUID = 5313766029841702218L;
+
+    @XmlValue
+    private String expression;
+
+    @XmlAttribute(name = "name", required = true)
+    private String name;
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public void setExpression(final String expression) {
+        this.expression = expression;
+    }
+
+    /**
+     * Returns the name of the column. When the row already contains a column with that name, its value is replaced
+     * in place. Otherwise, the column is appended to the row.
+     *
+     * @return the name of the column
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+}
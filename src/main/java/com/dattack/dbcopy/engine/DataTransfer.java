@@ -34,7 +34,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @author cvarela
  * @since 0.1
  */
-public class DataTransfer {
+public class DataTransfer implements RowStage {
 
     private static final int DEFAULT_FETCH_SIZE = 10_000;
     private static final Logger LOGGER = LoggerFactory.getLogger(DataTransfer.class);
@@ -60,6 +60,7 @@ public class DataTransfer {
         MBeanHelper.registerMBean("TransferQueue", taskResult.getTaskName(), new TransferQueueWrapper(transferQueue));
     }
 
+    @Override
     public RowMetadata getRowMetadata() {
         return rowMetadata;
     }
@@ -72,6 +73,7 @@ public class DataTransfer {
      * @throws InterruptedException if the current thread is interrupted
      * @throws FunctionException    if an error occurs when evaluating a function that provides data from source.
      */
+    @Override
     @SuppressWarnings("checkstyle:VariableDeclarationUsageDistance")
     public AbstractDataType<?>[] transfer() throws SQLException, InterruptedException, FunctionException {
 
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.dbcopy.engine.functions.FunctionException;
+
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * {@link RowSource} that reads the rows of a single task from its {@link DataTransfer} or, when the rows are sorted
+ * or deduplicated before being inserted, from the last {@link RowStage} of the pipeline.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class DataTransferRowSource implements RowSource {
+
+    private final transient RowStage rowStage;
+    private final transient DbCopyTaskResult taskResult;
+    private transient boolean exhausted;
+
+    /* default */ DataTransferRowSource(final RowStage rowStage, final DbCopyTaskResult taskResult) {
+        this.rowStage = rowStage;
+        this.taskResult = taskResult;
+        this.exhausted = false;
+    }
+
+    @Override
+    public void acknowledge(final DbCopyTaskResult owner, final int rows) {
+        // nothing to do: the task waits for its consumers to finish
+    }
+
+    @Override
+    public RowMetadata getRowMetadata() {
+        return rowStage.getRowMetadata();
+    }
+
+    @Override
+    public DbCopyTaskResult getTaskResult() {
+        return taskResult;
+    }
+
+    @Override
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    @Override
+    public AbstractDataType<?>[] transfer() throws SQLException, InterruptedException, FunctionException {
+
+        AbstractDataType<?>[] row = null;
+        if (!(taskResult.getException() instanceof RejectLimitExceededException)) {
+            row = rowStage.transfer();
+        }
+        exhausted = Objects.isNull(row);
+        return row;
+    }
+}
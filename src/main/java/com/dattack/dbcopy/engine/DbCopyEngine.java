@@ -18,6 +18,7 @@ package com.dattack.dbcopy.engine;
 import com.dattack.dbcopy.beans.DbcopyBean;
 import com.dattack.dbcopy.beans.DbcopyJobBean;
 import com.dattack.dbcopy.beans.DbcopyParser;
+import com.dattack.dbcopy.engine.pool.DataSourceRegistry;
 import com.dattack.jtoolbox.exceptions.DattackParserException;
 import com.dattack.jtoolbox.io.FilesystemUtils;
 import org.apache.commons.configuration.AbstractConfiguration;
@@ -44,8 +45,13 @@ public final class DbCopyEngine {
     public void execute(final String[] filenames, final Set<String> jobNames,
         final AbstractConfiguration configuration) throws DattackParserException
     {
-        for (final String filename : filenames) {
-            execute(new File(filename), jobNames, configuration); //NOPMD
+        try {
+            for (final String filename : filenames) {
+                execute(new File(filename), jobNames, configuration); //NOPMD
+            }
+        } finally {
+            ShadowRefresh.awaitDrops();
+            DataSourceRegistry.closeAll();
         }
     }
 
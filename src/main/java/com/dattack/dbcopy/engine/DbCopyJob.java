@@ -17,6 +17,7 @@ package com.dattack.dbcopy.engine;
 
 import com.dattack.dbcopy.beans.AbstractVariableBean;
 import com.dattack.dbcopy.beans.DbcopyJobBean;
+import com.dattack.dbcopy.beans.InsertOperationBean;
 import com.dattack.dbcopy.beans.IntegerRangeBean;
 import com.dattack.dbcopy.beans.LiteralListBean;
 import com.dattack.dbcopy.beans.NullVariableBean;
@@ -33,13 +34,16 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -81,14 +85,24 @@ import static java.lang.String.format;
 
         LOGGER.info("Running job '{}' at thread '{}'", dbcopyJobBean.getId(), Thread.currentThread().getName());
 
-        try (ExecutionController controller = new ExecutionController(dbcopyJobBean.getId(),
-                                                                      dbcopyJobBean.getThreads()))
-        {
-            final List<Future<?>> futureList = new ArrayList<>();
+        final ShadowRefresh shadowRefresh;
+        try {
+            shadowRefresh = createShadowRefresh();
+        } catch (final SQLException e) {
+            LOGGER.error("Unable to create the shadow table of job '{}': {}", dbcopyJobBean.getId(), e.getMessage());
+            return null;
+        }
 
-            final DbCopyJobResult jobResult = new DbCopyJobResult(dbcopyJobBean);
+        final DbCopyJobResult jobResult = new DbCopyJobResult(dbcopyJobBean);
+        boolean prepared = false;
+        try (InitialLoad initialLoad = createInitialLoad(shadowRefresh);
+             ExecutionController controller = new ExecutionController(dbcopyJobBean.getId(),
+                                                                      dbcopyJobBean.getThreads());
+             WriterPool jobWriterPool = createJobWriterPool())
+        {
+            final List<DbCopyTask> taskList = new ArrayList<>();
 
-            final VariableVisitor variableVisitor = getVariableVisitor(futureList, jobResult, controller);
+            final VariableVisitor variableVisitor = getVariableVisitor(taskList, jobResult, jobWriterPool);
 
             if (Objects.isNull(dbcopyJobBean.getVariableList()) || dbcopyJobBean.getVariableList().isEmpty()) {
                 new NullVariableBean().accept(variableVisitor);
@@ -98,10 +112,24 @@ import static java.lang.String.format;
                 }
             }
 
+            checkStagingTables(taskList);
+            prepared = true;
+
+            final List<Future<?>> futureList = new ArrayList<>();
+            for (final DbCopyTask dbcopyTask : taskList) {
+                futureList.add(controller.submit(dbcopyTask));
+            }
+
             controller.shutdown();
             showFutures(futureList);
 
             show(jobResult);
+        } catch (final SQLException e) {
+            LOGGER.error("Unable to prepare job '{}': {}", dbcopyJobBean.getId(), e.getMessage());
+        }
+
+        if (shadowRefresh != null) {
+            completeRefresh(shadowRefresh, prepared && isSuccessful(jobResult));
         }
 
         LOGGER.info("Job finished (job-name: '{}', thread: '{}')", dbcopyJobBean.getId(),
@@ -110,6 +138,128 @@ import static java.lang.String.format;
         return null;
     }
 
+    private static boolean isSuccessful(final DbCopyJobResult jobResult) {
+        return jobResult.getTaskResultList().stream().allMatch(
+            t -> t.getException() == null
+                && t.getTotalRetrievedRows() == t.getTotalProcessedRows() + t.getTotalRejectedRows());
+    }
+
+    /**
+     * Checks that the tasks running at the same time merge their rows through different staging tables. Each task
+     * empties its staging table before loading it and after merging it, so two concurrent tasks sharing the table
+     * would delete or merge the rows of each other.
+     */
+    private void checkStagingTables(final List<DbCopyTask> taskList) throws SQLException {
+
+        if (dbcopyJobBean.getThreads() <= 1) {
+            return;
+        }
+
+        final Set<String> stagingTables = new HashSet<>();
+        for (final DbCopyTask dbcopyTask : taskList) {
+            final String stagingTable = dbcopyTask.getStagingTable();
+            if (stagingTable != null && !stagingTables.add(stagingTable.toUpperCase(Locale.getDefault()))) {
+                throw new SQLException(format("The staging table %s is shared by several tasks running in parallel:"
+                                                  + " use a task variable in its name or set threads to 1",
+                                              stagingTable));
+            }
+        }
+    }
+
+    /**
+     * Replaces the target table with the shadow table loaded by the job or, if any task failed, discards the shadow
+     * table.
+     */
+    private void completeRefresh(final ShadowRefresh shadowRefresh, final boolean successful) {
+
+        if (!successful) {
+            shadowRefresh.discard();
+            return;
+        }
+
+        try {
+            shadowRefresh.swap();
+        } catch (final SQLException e) {
+            LOGGER.error("Unable to swap the shadow table of job '{}': {}", dbcopyJobBean.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Disables the indexes and constraints of the target table when the job performs an initial load. They are
+     * restored when the returned object is closed, after the last task of the job. When the target table is
+     * refreshed through a shadow table, the initial load applies to the shadow table.
+     */
+    private InitialLoad createInitialLoad(final ShadowRefresh shadowRefresh) throws SQLException {
+
+        InitialLoad initialLoad = null;
+        if (dbcopyJobBean.getInsertBean() != null
+            && dbcopyJobBean.getInsertBean().getLoadMode() == InsertOperationBean.LoadMode.INITIAL)
+        {
+            if (dbcopyJobBean.getInsertBean().isSharded()) {
+                throw new SQLException("The initial load mode can't be used with sharded inserts");
+            }
+            String tableName = DbCopyTask.getObjectName(dbcopyJobBean.getInsertBean());
+            if (tableName == null) {
+                throw new SQLException("Unable to determine the target table of the initial load");
+            }
+            if (shadowRefresh != null) {
+                tableName = shadowRefresh.getShadowTable();
+            }
+            initialLoad = new InitialLoad(dbcopyJobBean.getInsertBean(), createJobConfiguration(), tableName);
+            try {
+                initialLoad.prepare();
+            } catch (final SQLException e) {
+                // restores the changes made before the failure
+                initialLoad.close();
+                throw e;
+            }
+        }
+        return initialLoad;
+    }
+
+    private AbstractConfiguration createJobConfiguration() {
+
+        final BaseConfiguration baseConfiguration = new BaseConfiguration();
+        baseConfiguration.setDelimiterParsingDisabled(true);
+        baseConfiguration.setProperty("job.id", dbcopyJobBean.getId());
+
+        final CompositeConfiguration configuration = new CompositeConfiguration();
+        configuration.addConfiguration(externalConfiguration);
+        configuration.addConfiguration(ConfigurationUtil.createEnvSystemConfiguration());
+        configuration.addConfiguration(baseConfiguration);
+        return configuration;
+    }
+
+    /**
+     * Creates the shadow table loaded by the job when the target table is refreshed by swapping it.
+     */
+    private ShadowRefresh createShadowRefresh() throws SQLException {
+
+        ShadowRefresh shadowRefresh = null;
+        if (dbcopyJobBean.getInsertBean() != null
+            && dbcopyJobBean.getInsertBean().getRefresh() == InsertOperationBean.Refresh.SWAP)
+        {
+            if (dbcopyJobBean.getInsertBean().isSharded()) {
+                throw new SQLException("The swap refresh can't be used with sharded inserts");
+            }
+            shadowRefresh = new ShadowRefresh(dbcopyJobBean.getInsertBean(), createJobConfiguration());
+            shadowRefresh.prepare();
+        }
+        return shadowRefresh;
+    }
+
+    private WriterPool createJobWriterPool() {
+
+        WriterPool jobWriterPool = null;
+        if (dbcopyJobBean.getInsertBean() != null
+            && dbcopyJobBean.getInsertBean().getScope() == InsertOperationBean.Scope.JOB)
+        {
+            jobWriterPool = new WriterPool(dbcopyJobBean.getId(), dbcopyJobBean.getInsertBean(),
+                                           createJobConfiguration(), RetryPolicy.of(dbcopyJobBean.getRetryBean()));
+        }
+        return jobWriterPool;
+    }
+
     /* default */ DbcopyJobBean getDbcopyJobBean() {
         return dbcopyJobBean;
     }
@@ -118,8 +268,8 @@ import static java.lang.String.format;
         return externalConfiguration;
     }
 
-    private VariableVisitor getVariableVisitor(final List<Future<?>> futureList, final DbCopyJobResult jobResult,
-        final ExecutionController executionController)
+    private VariableVisitor getVariableVisitor(final List<DbCopyTask> taskList, final DbCopyJobResult jobResult,
+        final WriterPool jobWriterPool)
     {
         return new VariableVisitor() {
 
@@ -152,8 +302,9 @@ import static java.lang.String.format;
                     configuration.addConfiguration(baseConfiguration);
 
                     final DbCopyTask dbcopyTask = new DbCopyTask(getDbcopyJobBean(), configuration, //NOPMD
-                                                                 jobResult.createTaskResult(taskName.toString()));
-                    futureList.add(executionController.submit(dbcopyTask));
+                                                                 jobResult.createTaskResult(taskName.toString()),
+                                                                 jobWriterPool);
+                    taskList.add(dbcopyTask);
                     taskName.setLength(0);
                 }
             }
@@ -181,8 +332,9 @@ import static java.lang.String.format;
                     final String taskName = String.format("%s_%d_%d", getDbcopyJobBean().getId(), i, highValue);
 
                     final DbCopyTask dbcopyTask = new DbCopyTask(getDbcopyJobBean(), configuration, //NOPMD
-                                                                 jobResult.createTaskResult(taskName));
-                    futureList.add(executionController.submit(dbcopyTask));
+                                                                 jobResult.createTaskResult(taskName),
+                                                                 jobWriterPool);
+                    taskList.add(dbcopyTask);
                 }
             }
 
@@ -193,9 +345,9 @@ import static java.lang.String.format;
                 final CompositeConfiguration configuration = createCompositeConfiguration();
                 configuration.addConfiguration(createBaseConfiguration());
 
-                final DbCopyTask dbcopyTask =
-                    new DbCopyTask(getDbcopyJobBean(), configuration, jobResult.createTaskResult(taskName));
-                futureList.add(executionController.submit(dbcopyTask));
+                final DbCopyTask dbcopyTask = new DbCopyTask(getDbcopyJobBean(), configuration,
+                                                             jobResult.createTaskResult(taskName), jobWriterPool);
+                taskList.add(dbcopyTask);
             }
 
             @Override
@@ -225,8 +377,9 @@ import static java.lang.String.format;
                     final String taskName = String.format("%s#%s", getDbcopyJobBean().getId(), partition.getName());
 
                     final DbCopyTask dbcopyTask = new DbCopyTask(getDbcopyJobBean(), configuration, //NOPMD
-                                                                 jobResult.createTaskResult(taskName));
-                    futureList.add(executionController.submit(dbcopyTask));
+                                                                 jobResult.createTaskResult(taskName),
+                                                                 jobWriterPool);
+                    taskList.add(dbcopyTask);
                 }
             }
 
@@ -275,6 +428,7 @@ import static java.lang.String.format;
                 .append("\n\t\tExecution time: ").append(String.format("%,d", taskResult.getExecutionTime())) //
                 .append(" ms.\n\t\tRetrieved rows: ").append(format("%,d", taskResult.getTotalRetrievedRows())) //
                 .append("\n\t\tProcessed rows: ").append(format("%,d", taskResult.getTotalProcessedRows())) //
+                .append("\n\t\tRejected rows: ").append(format("%,d", taskResult.getTotalRejectedRows())) //
                 .append("\n\t\tRetrieved rows/s: ").append(format("%,f", taskResult.getRetrievedRowsPerSecond())) //
                 .append("\n\t\tProcessed rows/s: ").append(format("%,f", taskResult.getProcessedRowsPerSecond()));
 
@@ -282,9 +436,14 @@ import static java.lang.String.format;
                 buffer.append("\n\t\tException: ").append(taskResult.getException().getMessage());
             }
 
-            if (taskResult.getTotalRetrievedRows() != taskResult.getTotalProcessedRows()) {
+            if (taskResult.getTotalRetrievedRows() != taskResult.getTotalProcessedRows()
+                + taskResult.getTotalRejectedRows())
+            {
                 buffer.append("\n\n\t\tJOB ENDED WITH ERRORS: SOME ROWS WERE NOT PROCESSED." //
                                   + "\n\t\tPLEASE CHECK THE LOG FILE FOR MORE DETAILS");
+            } else if (taskResult.getTotalRejectedRows() > 0) {
+                buffer.append("\n\n\t\tSOME ROWS WERE REJECTED BY THE TARGET DATABASE." //
+                                  + "\n\t\tPLEASE CHECK THE REJECT FILE FOR MORE DETAILS");
             }
         }
 
@@ -120,6 +120,15 @@ public class DbCopyJobResult implements DbCopyJobResultMBean {
         return total;
     }
 
+    @Override
+    public long getTotalRejectedRows() {
+        long total = 0;
+        for (final DbCopyTaskResult item : taskResultList) {
+            total += item.getTotalRejectedRows();
+        }
+        return total;
+    }
+
     public DbcopyJobBean getJobBean() {
         return jobBean;
     }
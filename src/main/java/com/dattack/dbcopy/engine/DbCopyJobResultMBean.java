@@ -36,6 +36,8 @@ public interface DbCopyJobResultMBean {
 
     long getTotalProcessedRows();
 
+    long getTotalRejectedRows();
+
     long getTotalRetrievedRows();
 
     int getTotalTaskCounter();
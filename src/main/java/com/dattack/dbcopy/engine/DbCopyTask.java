@@ -16,16 +16,22 @@
 package com.dattack.dbcopy.engine;
 
 import com.dattack.dbcopy.beans.DbcopyJobBean;
+import com.dattack.dbcopy.beans.DedupBean;
+import com.dattack.dbcopy.beans.InsertOperationBean;
+import com.dattack.dbcopy.beans.LookupBean;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
 import com.dattack.dbcopy.engine.export.ExportOperationFactory;
 import com.dattack.dbcopy.engine.export.ExportOperationFactoryProducer;
+import com.dattack.dbcopy.engine.functions.FunctionException;
+import com.dattack.dbcopy.engine.pool.DataSourceRegistry;
 import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
-import com.dattack.jtoolbox.jdbc.JNDIDataSource;
 import com.dattack.jtoolbox.jdbc.internal.ProxyStatement;
 import org.apache.commons.configuration.AbstractConfiguration;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -60,16 +66,31 @@ class DbCopyTask implements Callable<DbCopyTaskResult> {
 
     private static final String LOG_TABLE = System.getProperty("dbcopy_log_table");
 
+    // MERGE INTO table_owner.table_name alias USING ...
+    // INSERT INTO table_owner.table_name(...)
+    /* default */ static final Pattern TARGET_TABLE_PATTERN =
+        Pattern.compile("^\\s*(MERGE|INSERT)\\s+INTO\\s+((\\w|\\.)+)(\\(|\\s).+");
+
     private final transient AbstractConfiguration configuration;
     private final transient DbcopyJobBean dbcopyJobBean;
+    private final transient WriterPool jobWriterPool;
+    private final transient RetryPolicy retryPolicy;
     private final transient DbCopyTaskResult taskResult;
 
     public DbCopyTask(final DbcopyJobBean dbcopyJobBean, final AbstractConfiguration configuration,
         final DbCopyTaskResult taskResult)
+    {
+        this(dbcopyJobBean, configuration, taskResult, null);
+    }
+
+    /* default */ DbCopyTask(final DbcopyJobBean dbcopyJobBean, final AbstractConfiguration configuration,
+        final DbCopyTaskResult taskResult, final WriterPool jobWriterPool)
     {
         this.dbcopyJobBean = dbcopyJobBean;
         this.configuration = configuration;
         this.taskResult = taskResult;
+        this.jobWriterPool = jobWriterPool;
+        this.retryPolicy = RetryPolicy.of(dbcopyJobBean.getRetryBean());
     }
 
     @Override
@@ -80,6 +101,97 @@ class DbCopyTask implements Callable<DbCopyTaskResult> {
 
         LOGGER.info("DBCopy task started {} (Thread: {})", taskResult.getTaskName(), Thread.currentThread().getName());
 
+        int attempt = 0;
+        while (true) {
+            try {
+                executeDelete();
+                executeCopy();
+                LOGGER.info("DBCopy task finished {}", taskResult.getTaskName());
+
+            } catch (final SQLException | URISyntaxException | IOException e) {
+                LOGGER.error("DBCopy task failed {}: {}", taskResult.getTaskName(), e);
+                taskResult.setException(e);
+            }
+
+            if (!isRetryable(attempt)) {
+                break;
+            }
+            attempt++;
+            final long delay = retryPolicy.getDelay(attempt);
+            LOGGER.warn("DBCopy task {} will be executed again in {} ms (attempt {}/{}) after a transient failure: {}",
+                        taskResult.getTaskName(), delay, attempt, retryPolicy.getTaskAttempts(),
+                        taskResult.getException().getMessage());
+            if (!RetryPolicy.sleep(delay)) {
+                break;
+            }
+            taskResult.retry();
+        }
+
+        taskResult.end();
+        updateLogDb();
+        return taskResult;
+    }
+
+    /**
+     * Checks if the task can be executed again after a failure: the failure is transient and the rows committed by
+     * the failed execution, if any, are removed by the next one before inserting them again.
+     */
+    private boolean isRetryable(final int attempt) {
+
+        final Exception exception = taskResult.getException();
+        if (exception == null || retryPolicy == null || attempt >= retryPolicy.getTaskAttempts()
+            || !retryPolicy.isRetryable(exception))
+        {
+            return false;
+        }
+
+        if (jobWriterPool != null) {
+            LOGGER.warn("DBCopy task {} can't be executed again: its rows are written by the workers of the job",
+                        taskResult.getTaskName());
+            return false;
+        }
+
+        if (dbcopyJobBean.getExportBean() != null) {
+            // the files written by the failed execution may have been published already
+            LOGGER.warn("DBCopy task {} can't be executed again: its rows have already been exported",
+                        taskResult.getTaskName());
+            return false;
+        }
+
+        if (getRejectFilename() != null && taskResult.getTotalRejectedRows() > 0) {
+            LOGGER.warn("DBCopy task {} can't be executed again: {} rows were already written to the reject file",
+                        taskResult.getTaskName(), taskResult.getTotalRejectedRows());
+            return false;
+        }
+
+        final InsertOperationBean insertBean = dbcopyJobBean.getInsertBean();
+        final boolean repeatable = dbcopyJobBean.getDeleteBean() != null
+            || insertBean != null && StringUtils.isNotBlank(insertBean.getMergeInto());
+        if (!repeatable && taskResult.getTotalProcessedRows() > 0) {
+            LOGGER.warn("DBCopy task {} can't be executed again: {} rows were already committed",
+                        taskResult.getTaskName(), taskResult.getTotalProcessedRows());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Deletes the rows of the target table that will be reloaded by this task, before the first row is inserted.
+     */
+    private void executeDelete() throws SQLException {
+
+        if (dbcopyJobBean.getDeleteBean() != null) {
+            new DeleteOperation(dbcopyJobBean.getDeleteBean(), configuration, taskResult.getTaskName()).execute();
+        }
+    }
+
+    private void executeCopy() throws SQLException, URISyntaxException, IOException {
+
+        final MergeOperation mergeOperation = createMergeOperation();
+        if (mergeOperation != null) {
+            mergeOperation.clearStaging();
+        }
+
         try (Connection selectConn = getDataSource().getConnection(); //
              Statement selectStmt = createStatement(selectConn); //
              ResultSet resultSet = selectStmt.executeQuery(compileSql()))
@@ -89,25 +201,54 @@ class DbCopyTask implements Callable<DbCopyTaskResult> {
 
             final List<Future<?>> futureList = new ArrayList<>();
 
-            try (ExecutionController insertController = createInsertController(); //
-                 ExecutionController exportController = createExportController())
+            try (RowStage rowStage = createRowStage(dataTransfer); //
+                 RejectWriter rejectWriter = createRejectWriter(); //
+                 ExecutionController insertController = createInsertController(); //
+                 ExecutionController exportController = createExportController(); //
+                 ExportOperationFactory exportFactory = createExportFactory())
             {
+                try {
+                    futureList.addAll(createInsertFutures(rowStage, insertController, rejectWriter));
+                    futureList.addAll(createExportFutures(dataTransfer, exportController, exportFactory));
+                    feedWriterPool(rowStage);
+                } finally {
+                    // the workers of a failed execution must end before its resources are released
+                    showFutures(futureList);
+                }
+            }
+        }
 
-                futureList.addAll(createInsertFutures(dataTransfer, insertController));
-                futureList.addAll(createExportFutures(dataTransfer, exportController));
+        if (mergeOperation != null && taskResult.getException() == null) {
+            mergeOperation.execute();
+        }
+    }
 
-                showFutures(futureList);
-            }
-            LOGGER.info("DBCopy task finished {}", taskResult.getTaskName());
+    /**
+     * Returns the operation that merges the staging table written by the insert statement into the target table,
+     * or null if the rows are inserted directly.
+     */
+    private MergeOperation createMergeOperation() throws SQLException {
 
-        } catch (final SQLException | URISyntaxException | IOException e) {
-            LOGGER.error("DBCopy task failed {}: {}", taskResult.getTaskName(), e);
-            taskResult.setException(e);
+        final InsertOperationBean insertBean = dbcopyJobBean.getInsertBean();
+        if (insertBean == null || StringUtils.isBlank(insertBean.getMergeInto())) {
+            return null;
         }
 
-        taskResult.end();
-        updateLogDb();
-        return taskResult;
+        if (jobWriterPool != null) {
+            throw new SQLException("merge-into can't be used with job-scoped inserts: the staging table is "
+                                       + "shared by all the tasks of the job");
+        }
+
+        if (insertBean.isSharded()) {
+            throw new SQLException("merge-into can't be used with sharded inserts: each shard has its own staging "
+                                       + "table");
+        }
+
+        final String stagingTable = getObjectName();
+        if (StringUtils.isBlank(stagingTable)) {
+            throw new SQLException("Unable to determine the staging table of the insert statement");
+        }
+        return new MergeOperation(insertBean, configuration, stagingTable, taskResult.getTaskName());
     }
 
     private void createLogDb() {
@@ -116,9 +257,7 @@ class DbCopyTask implements Callable<DbCopyTaskResult> {
             String sql = "INSERT INTO " + LOG_TABLE + " (task_name, execution_id, object_name, start_time)" //
                 + " VALUES (?, ?, ?, ?)";
 
-            try (Connection connection = new JNDIDataSource(
-                ConfigurationUtil.interpolate(dbcopyJobBean.getInsertBean().getDatasource(),
-                                              configuration)).getConnection();
+            try (Connection connection = getLogDataSource().getConnection();
                  PreparedStatement ps = connection.prepareStatement(sql))
             {
                 int i = 1;
@@ -139,9 +278,7 @@ class DbCopyTask implements Callable<DbCopyTaskResult> {
             String sql = "UPDATE " + LOG_TABLE + " SET end_time=?, retrieved_rows=?, processed_rows=?, err_msg=?" //
                 + " WHERE task_name = ? AND execution_id = ?";
 
-            try (Connection connection = new JNDIDataSource(
-                ConfigurationUtil.interpolate(dbcopyJobBean.getInsertBean().getDatasource(),
-                                              configuration)).getConnection();
+            try (Connection connection = getLogDataSource().getConnection();
                  PreparedStatement ps = connection.prepareStatement(sql))
             {
 
@@ -167,17 +304,40 @@ class DbCopyTask implements Callable<DbCopyTaskResult> {
     }
 
     private String getObjectName() {
+        return getObjectName(dbcopyJobBean.getInsertBean());
+    }
+
+    /**
+     * Returns the name of the staging table loaded by this task, with its variables resolved, or null if the rows
+     * are inserted directly.
+     *
+     * @return the name of the staging table
+     */
+    /* default */ String getStagingTable() {
+
+        final InsertOperationBean insertBean = dbcopyJobBean.getInsertBean();
+        final String stagingTable = getObjectName();
+        if (insertBean == null || StringUtils.isBlank(insertBean.getMergeInto()) || stagingTable == null) {
+            return null;
+        }
+        return ConfigurationUtil.interpolate(stagingTable, configuration);
+    }
+
+    /**
+     * Returns the name of the table written by an insert operation.
+     *
+     * @param insertBean the insert operation
+     * @return the name of the table or null if it can't be determined
+     */
+    /* default */ static String getObjectName(final InsertOperationBean insertBean) {
 
         String objectName = null;
-        if (dbcopyJobBean.getInsertBean() != null) {
+        if (insertBean != null) {
 
-            if (StringUtils.isNotBlank(dbcopyJobBean.getInsertBean().getTable())) {
-                objectName = dbcopyJobBean.getInsertBean().getTable();
+            if (StringUtils.isNotBlank(insertBean.getTable())) {
+                objectName = insertBean.getTable();
             } else {
-                // MERGE INTO table_owner.table_name alias USING ...
-                // INSERT INTO table_owner.table_name(...)
-                Pattern pattern = Pattern.compile("^\\s*(MERGE|INSERT)\\s+INTO\\s+((\\w|\\.)+)(\\(|\\s).+");
-                Matcher m = pattern.matcher(dbcopyJobBean.getInsertBean().getSql());
+                Matcher m = TARGET_TABLE_PATTERN.matcher(insertBean.getSql());
                 if (m.find()) {
                     objectName = m.group(2);
                 }
@@ -186,10 +346,59 @@ class DbCopyTask implements Callable<DbCopyTaskResult> {
         return objectName;
     }
 
+    /**
+     * Returns the last stage of the pipeline feeding the insert workers: the source itself or the stages that
+     * translate, deduplicate and sort its rows. The lookups go first, so the rows can be sorted by the translated
+     * keys. Keeping the first row of each key drops the duplicates before sorting them; keeping the last one
+     * requires the rows to be sorted by the key first.
+     */
+    private RowStage createRowStage(final DataTransfer dataTransfer) throws SQLException {
+
+        final InsertOperationBean insertBean = dbcopyJobBean.getInsertBean();
+        final DedupBean dedupBean = dbcopyJobBean.getDedupBean();
+        RowStage rowStage = dataTransfer;
+        if (insertBean == null) {
+            return rowStage;
+        }
+
+        if (dbcopyJobBean.getLookupList() != null) {
+            for (final LookupBean lookupBean : dbcopyJobBean.getLookupList()) {
+                rowStage = new RowLookup(rowStage, lookupBean, configuration, taskResult.getTaskName()); //NOPMD
+            }
+        }
+
+        if (dedupBean != null && dedupBean.getKeep() == DedupBean.Keep.FIRST) {
+            rowStage = new RowDeduplicator(rowStage, dedupBean, taskResult.getTaskName());
+        }
+
+        if (StringUtils.isNotBlank(insertBean.getSortBy())) {
+            String directory = System.getProperty("java.io.tmpdir");
+            if (StringUtils.isNotBlank(insertBean.getSortDirectory())) {
+                directory = ConfigurationUtil.interpolate(insertBean.getSortDirectory(), configuration);
+            }
+            rowStage = new RowSorter(rowStage, insertBean.getSortBy(), insertBean.getSortMemory(),
+                                     new File(directory), taskResult.getTaskName());
+        }
+
+        if (dedupBean != null && dedupBean.getKeep() == DedupBean.Keep.LAST) {
+            if (!RowDeduplicator.isGroupedBy(dedupBean.getKey(), insertBean.getSortBy())) {
+                throw new SQLException("dedup keep='last' requires the sort-by columns of the insert to start with "
+                                           + "the dedup key columns");
+            }
+            rowStage = new RowDeduplicator(rowStage, dedupBean, taskResult.getTaskName());
+        }
+
+        if (dbcopyJobBean.getTransformBean() != null) {
+            // last stage: the expressions are evaluated by the insert workers pulling the rows
+            rowStage = new RowTransformer(rowStage, dbcopyJobBean.getTransformBean(), taskResult.getTaskName());
+        }
+        return rowStage;
+    }
+
     private ExecutionController createInsertController() {
 
         ExecutionController controller = null;
-        if (dbcopyJobBean.getInsertBean() != null) {
+        if (dbcopyJobBean.getInsertBean() != null && jobWriterPool == null && !isRoutedInsert()) {
             controller = new ExecutionController(taskResult.getTaskName() + "-Insert",
                                                  dbcopyJobBean.getInsertBean().getParallel());
         }
@@ -207,10 +416,15 @@ class DbCopyTask implements Callable<DbCopyTaskResult> {
     }
 
     private DataSource getDataSource() {
-        return new JNDIDataSource(
+        return DataSourceRegistry.getDataSource(
             ConfigurationUtil.interpolate(dbcopyJobBean.getSelectBean().getDatasource(), configuration));
     }
 
+    private DataSource getLogDataSource() {
+        return DataSourceRegistry.getDataSource(
+            ConfigurationUtil.interpolate(dbcopyJobBean.getInsertBean().getDatasource(), configuration));
+    }
+
     private Statement createStatement(final Connection connection) throws SQLException {
         final Statement stmt = connection.createStatement();
         if (dbcopyJobBean.getSelectBean().getFetchSize() > 0) {
@@ -239,15 +453,18 @@ class DbCopyTask implements Callable<DbCopyTaskResult> {
         return compiledSql;
     }
 
-    private List<Future<?>> createInsertFutures(final DataTransfer dataTransfer, ExecutionController controller) {
-
+    private List<Future<?>> createInsertFutures(final RowStage rowStage, final ExecutionController controller,
+        final RejectWriter rejectWriter)
+    {
         final List<Future<?>> futureList = new ArrayList<>();
 
         if (controller != null) {
 
             for (int i = 0; i < dbcopyJobBean.getInsertBean().getParallel(); i++) {
                 futureList.add(controller.submit(new InsertOperation(dbcopyJobBean.getInsertBean(), //NOPMD
-                                                                     dataTransfer, configuration, taskResult)));
+                                                                     new DataTransferRowSource(rowStage,
+                                                                                               taskResult),
+                                                                     configuration, rejectWriter, retryPolicy)));
             }
 
             controller.shutdown();
@@ -256,15 +473,89 @@ class DbCopyTask implements Callable<DbCopyTaskResult> {
         return futureList;
     }
 
-    private List<Future<?>> createExportFutures(final DataTransfer dataTransfer, ExecutionController controller) {
+    private boolean isRoutedInsert() {
+        return dbcopyJobBean.getInsertBean() != null
+            && (StringUtils.isNotBlank(dbcopyJobBean.getInsertBean().getRouteBy())
+                || dbcopyJobBean.getInsertBean().isSharded());
+    }
+
+    /**
+     * Sends the rows of this task to the insert workers of the job or, when the rows are routed by key, to the
+     * workers owned by this task, and waits until all of them have been written.
+     */
+    private void feedWriterPool(final RowStage rowStage) {
+
+        if (jobWriterPool != null) {
+            feedWriterPool(jobWriterPool, new DataTransferRowSource(rowStage, taskResult));
+        } else if (isRoutedInsert()) {
+            try (WriterPool writerPool = new WriterPool(taskResult.getTaskName(), dbcopyJobBean.getInsertBean(),
+                                                        configuration, retryPolicy))
+            {
+                feedWriterPool(writerPool, new DataTransferRowSource(rowStage, taskResult));
+            }
+        }
+    }
+
+    private void feedWriterPool(final WriterPool writerPool, final RowSource rowSource) {
+
+        try {
+            final WriterPool.TaskFeed feed = writerPool.open(taskResult, rowSource.getRowMetadata());
+            try {
+                AbstractDataType<?>[] row = rowSource.transfer();
+                while (row != null && !feed.isAborted()) {
+                    feed.put(row);
+                    row = rowSource.transfer();
+                }
+            } finally {
+                feed.close();
+            }
+        } catch (final SQLException | FunctionException e) {
+            LOGGER.error("DBCopy task failed {}: {}", taskResult.getTaskName(), e);
+            taskResult.setException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            taskResult.setException(e);
+        }
+    }
 
+    /**
+     * Returns the writer of the rows rejected by an execution of this task. It is closed when the execution ends,
+     * so a new execution never shares it with the workers of a failed one.
+     */
+    private RejectWriter createRejectWriter() {
+        return new RejectWriter(getRejectFilename());
+    }
+
+    private String getRejectFilename() {
+
+        String filename = null;
+        final InsertOperationBean insertBean = dbcopyJobBean.getInsertBean();
+        if (insertBean != null && StringUtils.isNotBlank(insertBean.getRejectFile())) {
+            filename = ConfigurationUtil.interpolate(insertBean.getRejectFile(), configuration);
+        }
+        return filename;
+    }
+
+    /**
+     * Returns the factory of the export operations, or null if the task doesn't export its rows. It is closed when
+     * the execution ends, so the export fails when its files can't be completed.
+     */
+    private ExportOperationFactory createExportFactory() {
+
+        ExportOperationFactory factory = null;
+        if (dbcopyJobBean.getExportBean() != null) {
+            factory = ExportOperationFactoryProducer.getFactory(dbcopyJobBean.getExportBean(), configuration);
+        }
+        return factory;
+    }
+
+    private List<Future<?>> createExportFutures(final DataTransfer dataTransfer, final ExecutionController controller,
+        final ExportOperationFactory factory)
+    {
         final List<Future<?>> futureList = new ArrayList<>();
 
         if (controller != null) {
 
-            final ExportOperationFactory factory =
-                ExportOperationFactoryProducer.getFactory(dbcopyJobBean.getExportBean(), configuration);
-
             for (int i = 0; i < dbcopyJobBean.getExportBean().getParallel(); i++) {
                 futureList.add(controller.submit(factory.createTask(dataTransfer, taskResult)));
             }
@@ -31,10 +31,12 @@ public final class DbCopyTaskResult implements DbCopyTaskResultMBean {
 
     private final transient List<Command<?>> onEndCommandList;
     private final transient AtomicLong processedRows;
+    private final transient AtomicLong rejectedRows;
     private final transient AtomicLong retrievedRows;
     private final transient String taskName;
     private transient long endTime;
     private transient Exception exception;
+    private transient int retries;
     private transient long startTime;
     private transient String executionId;
 
@@ -42,6 +44,7 @@ public final class DbCopyTaskResult implements DbCopyTaskResultMBean {
         this.taskName = taskName;
         this.retrievedRows = new AtomicLong(0);
         this.processedRows = new AtomicLong(0);
+        this.rejectedRows = new AtomicLong(0);
         this.startTime = 0;
         this.endTime = 0;
         //this.exception = null;
@@ -57,6 +60,10 @@ public final class DbCopyTaskResult implements DbCopyTaskResultMBean {
         this.processedRows.addAndGet(value);
     }
 
+    public long addRejectedRows(final int value) {
+        return this.rejectedRows.addAndGet(value);
+    }
+
     public void end() {
         this.endTime = System.currentTimeMillis();
         onEndCommandList.forEach(Command::execute);
@@ -98,6 +105,11 @@ public final class DbCopyTaskResult implements DbCopyTaskResultMBean {
         return result;
     }
 
+    @Override
+    public int getRetries() {
+        return retries;
+    }
+
     @Override
     public long getStartTime() {
         return startTime;
@@ -113,6 +125,11 @@ public final class DbCopyTaskResult implements DbCopyTaskResultMBean {
         return processedRows.longValue();
     }
 
+    @Override
+    public long getTotalRejectedRows() {
+        return rejectedRows.longValue();
+    }
+
     @Override
     public long getTotalRetrievedRows() {
         return retrievedRows.longValue();
@@ -134,6 +151,17 @@ public final class DbCopyTaskResult implements DbCopyTaskResultMBean {
         this.retrievedRows.incrementAndGet();
     }
 
+    /**
+     * Resets the counters and the failure of the task before it's executed again.
+     */
+    public void retry() {
+        this.retries++;
+        this.retrievedRows.set(0);
+        this.processedRows.set(0);
+        this.rejectedRows.set(0);
+        this.exception = null;
+    }
+
     public void start() {
         this.startTime = System.currentTimeMillis();
         this.executionId = UUID.randomUUID().toString();
@@ -148,7 +176,8 @@ public final class DbCopyTaskResult implements DbCopyTaskResultMBean {
 
         final StringBuilder str = new StringBuilder().append("DbCopyTaskResult [taskName=").append(taskName)
                 .append(", retrievedRows=").append(retrievedRows) //
-                .append(", processedRows=").append(processedRows);
+                .append(", processedRows=").append(processedRows) //
+                .append(", rejectedRows=").append(rejectedRows);
 
         if (exception != null) {
             str.append(", exception=").append(exception);
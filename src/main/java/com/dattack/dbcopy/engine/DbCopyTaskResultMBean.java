@@ -28,6 +28,8 @@ public interface DbCopyTaskResultMBean {
 
     Exception getException();
 
+    int getRetries();
+
     float getProcessedRowsPerSecond();
 
     float getRetrievedRowsPerSecond();
@@ -38,5 +40,7 @@ public interface DbCopyTaskResultMBean {
 
     long getTotalProcessedRows();
 
+    long getTotalRejectedRows();
+
     long getTotalRetrievedRows();
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.beans.DeleteOperationBean;
+import com.dattack.dbcopy.engine.pool.DataSourceRegistry;
+import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Executes the deletion configured for a task before inserting its rows, so that a range of data can be reloaded
+ * without truncating the whole target table. The rows are deleted by a single statement or, when a chunk size is
+ * set, by successive statements committed one by one until no rows remain.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class DeleteOperation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeleteOperation.class);
+
+    private final transient DeleteOperationBean bean;
+    private final transient AbstractConfiguration configuration;
+    private final transient String taskName;
+
+    /* default */ DeleteOperation(final DeleteOperationBean bean, final AbstractConfiguration configuration,
+        final String taskName)
+    {
+        this.bean = bean;
+        this.configuration = configuration;
+        this.taskName = taskName;
+    }
+
+    /**
+     * Executes the deletion.
+     *
+     * @return the number of deleted rows, or -1 if a partition has been truncated
+     * @throws SQLException if a database access error occurs
+     */
+    /* default */ long execute() throws SQLException {
+
+        final String datasource = ConfigurationUtil.interpolate(bean.getDatasource(), configuration);
+        try (Connection connection = DataSourceRegistry.getDataSource(datasource).getConnection()) {
+
+            final Dialect dialect = Dialect.of(connection.getMetaData());
+            final String truncateSql = getTruncateSql(dialect);
+            if (truncateSql != null) {
+                execute(connection, truncateSql);
+                LOGGER.info("Task {}: partition truncated", taskName);
+                return -1;
+            }
+
+            final String sql = getDeleteSql(dialect);
+            long deletedRows;
+            if (bean.getChunkSize() > 0) {
+                deletedRows = executeInChunks(connection, sql);
+            } else {
+                deletedRows = execute(connection, sql);
+            }
+            LOGGER.info("Task {}: {} rows deleted", taskName, deletedRows);
+            return deletedRows;
+        }
+    }
+
+    private static int execute(final Connection connection, final String sql) throws SQLException {
+
+        LOGGER.info("Executing SQL: {}", sql);
+        try (Statement stmt = connection.createStatement()) {
+            final int count = stmt.executeUpdate(sql);
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            return count;
+        }
+    }
+
+    private long executeInChunks(final Connection connection, final String sql) throws SQLException {
+
+        LOGGER.info("Executing SQL in chunks of {} rows: {}", bean.getChunkSize(), sql);
+        final boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            long deletedRows = 0;
+            int count;
+            do {
+                count = stmt.executeUpdate(sql);
+                connection.commit();
+                deletedRows += count;
+                LOGGER.debug("Task {}: {} rows deleted ({} total)", taskName, count, deletedRows);
+            } while (count >= bean.getChunkSize());
+            return deletedRows;
+        } catch (final SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private String getDeleteSql(final Dialect dialect) throws SQLException {
+
+        final String body = ConfigurationUtil.interpolate(StringUtils.trimToEmpty(bean.getSql()), configuration);
+        if (StringUtils.isBlank(bean.getTable())) {
+            // the body is the whole DELETE statement
+            return body;
+        }
+
+        final String table = ConfigurationUtil.interpolate(bean.getTable(), configuration);
+        if (bean.getChunkSize() > 0) {
+            if (StringUtils.isBlank(bean.getKey())) {
+                throw new SQLException(String.format("Task %s: the deletion from %s in chunks requires a key",
+                                                     taskName, table));
+            }
+            return dialect.chunkedDeleteSql(table, bean.getKey(), body, bean.getChunkSize());
+        }
+        return StringUtils.isBlank(body) ? "DELETE FROM " + table : "DELETE FROM " + table + " WHERE " + body;
+    }
+
+    private String getTruncateSql(final Dialect dialect) throws SQLException {
+
+        if (StringUtils.isBlank(bean.getTable()) || StringUtils.isBlank(bean.getTruncatePartition())) {
+            return null;
+        }
+
+        final String sql = dialect.truncatePartitionSql(ConfigurationUtil.interpolate(bean.getTable(), configuration),
+                                                        ConfigurationUtil.interpolate(bean.getTruncatePartition(),
+                                                                                      configuration));
+        if (sql == null) {
+            // the rows of the partition can only be deleted when the condition selects them
+            if (StringUtils.isBlank(bean.getSql())) {
+                throw new SQLException(String.format("Task %s: the target database doesn't support TRUNCATE "
+                                                     + "PARTITION and no condition selects the rows of %s",
+                                                     taskName, bean.getTruncatePartition()));
+            }
+            LOGGER.warn("Task {}: the target database doesn't support TRUNCATE PARTITION, deleting the rows", taskName);
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * SQL variants of the statements generated by the engine that are not portable between databases.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ enum Dialect {
+
+    DB2("DB2"), //
+    DERBY("DERBY"), //
+    H2("H2"), //
+    MYSQL("MYSQL", "MARIADB"), //
+    ORACLE("ORACLE"), //
+    POSTGRESQL("POSTGRESQL"), //
+    SQLSERVER("SQL SERVER"), //
+    GENERIC;
+
+    private final String[] productNames;
+
+    Dialect(final String... productNames) {
+        this.productNames = productNames;
+    }
+
+    /**
+     * Returns the dialect of the database described by the given metadata.
+     *
+     * @param metaData the metadata of the database
+     * @return the dialect to use, {@link #GENERIC} if the database is unknown
+     * @throws SQLException if a database access error occurs
+     */
+    /* default */ static Dialect of(final DatabaseMetaData metaData) throws SQLException {
+        final String productName = StringUtils.trimToEmpty(metaData.getDatabaseProductName()) //
+            .toUpperCase(Locale.ENGLISH);
+        for (final Dialect dialect : values()) {
+            for (final String name : dialect.productNames) {
+                if (StringUtils.contains(productName, name)) {
+                    return dialect;
+                }
+            }
+        }
+        return GENERIC;
+    }
+
+    /**
+     * Returns the statement that creates an empty table with the same columns as another one. The indexes and
+     * constraints are only copied when {@link #isTableLikeSupported()}; the other databases copy the columns alone.
+     *
+     * @param table the name of the existing table
+     * @param copy  the name of the table to create
+     * @return the CREATE TABLE statement
+     */
+    /* default */ String createTableLikeSql(final String table, final String copy) {
+        String sql;
+        switch (this) {
+            case DB2:
+            case MYSQL:
+                sql = String.format("CREATE TABLE %s LIKE %s", copy, table);
+                break;
+            case POSTGRESQL:
+                sql = String.format("CREATE TABLE %s (LIKE %s INCLUDING ALL)", copy, table);
+                break;
+            case SQLSERVER:
+                sql = String.format("SELECT * INTO %s FROM %s WHERE 1 = 0", copy, table);
+                break;
+            default:
+                sql = String.format("CREATE TABLE %s AS SELECT * FROM %s WHERE 1 = 0", copy, table);
+                break;
+        }
+        return sql;
+    }
+
+    /**
+     * Returns a DELETE statement that removes, in key order, at most <code>chunkSize</code> rows matching a
+     * condition.
+     *
+     * @param table     the name of the table
+     * @param keys      the comma-separated list of key columns
+     * @param condition the filter condition, or null to delete all the rows of the table
+     * @param chunkSize the maximum number of rows to delete
+     * @return the DELETE statement
+     */
+    /* default */ String chunkedDeleteSql(final String table, final String keys, final String condition,
+        final int chunkSize)
+    {
+        final String where = StringUtils.isBlank(condition) ? "" : " WHERE " + condition;
+        String sql;
+        switch (this) {
+            case MYSQL:
+                sql = String.format("DELETE FROM %s%s ORDER BY %s LIMIT %d", table, where, keys, chunkSize);
+                break;
+            case SQLSERVER:
+                sql = String.format("WITH chunk AS (SELECT TOP (%d) * FROM %s%s ORDER BY %s) DELETE FROM chunk",
+                                    chunkSize, table, where, keys);
+                break;
+            case POSTGRESQL:
+                sql = String.format("DELETE FROM %s WHERE (%s) IN (SELECT %s FROM %s%s ORDER BY %s LIMIT %d)", table,
+                                    keys, keys, table, where, keys, chunkSize);
+                break;
+            default:
+                sql = String.format("DELETE FROM %s WHERE (%s) IN (SELECT %s FROM %s%s ORDER BY %s " //
+                                        + "FETCH FIRST %d ROWS ONLY)", table, keys, keys, table, where, keys,
+                                    chunkSize);
+                break;
+        }
+        return sql;
+    }
+
+    /**
+     * Returns a single set-based statement that inserts the rows of a staging table into a target table, updating
+     * the rows that already exist.
+     *
+     * @param target  the name of the target table
+     * @param staging the name of the staging table
+     * @param columns the columns of the staging table
+     * @param keys    the columns used to match the rows of both tables
+     * @return the MERGE (or UPSERT) statement
+     */
+    /* default */ String mergeSql(final String target, final String staging, final List<String> columns,
+        final List<String> keys)
+    {
+        final String columnList = String.join(", ", columns);
+        final List<String> updatable = columns.stream() //
+            .filter(c -> keys.stream().noneMatch(k -> k.equalsIgnoreCase(c))) //
+            .collect(Collectors.toList());
+
+        String sql;
+        switch (this) {
+            case H2:
+                sql = String.format("MERGE INTO %s (%s) KEY (%s) SELECT %s FROM %s", target, columnList,
+                                    String.join(", ", keys), columnList, staging);
+                break;
+            case MYSQL:
+                sql = String.format("INSERT INTO %s (%s) SELECT %s FROM %s ON DUPLICATE KEY UPDATE %s", target,
+                                    columnList, columnList, staging,
+                                    join(updatable.isEmpty() ? keys : updatable, "%1$s = VALUES(%1$s)", ", "));
+                break;
+            case POSTGRESQL:
+                sql = String.format("INSERT INTO %s (%s) SELECT %s FROM %s ON CONFLICT (%s) %s", target, columnList,
+                                    columnList, staging, String.join(", ", keys),
+                                    updatable.isEmpty() ? "DO NOTHING"
+                                        : "DO UPDATE SET " + join(updatable, "%1$s = EXCLUDED.%1$s", ", "));
+                break;
+            default:
+                sql = String.format("MERGE INTO %s t USING %s s ON (%s)", target, staging,
+                                    join(keys, "t.%1$s = s.%1$s", " AND "));
+                if (!updatable.isEmpty()) {
+                    sql += " WHEN MATCHED THEN UPDATE SET " + join(updatable, "t.%1$s = s.%1$s", ", ");
+                }
+                sql += String.format(" WHEN NOT MATCHED THEN INSERT (%s) VALUES (%s)", columnList,
+                                     join(columns, "s.%1$s", ", "));
+                if (this == SQLSERVER) {
+                    sql += ";";
+                }
+                break;
+        }
+        return sql;
+    }
+
+    private static String join(final List<String> columns, final String format, final String delimiter) {
+        return columns.stream().map(c -> String.format(format, c)).collect(Collectors.joining(delimiter));
+    }
+
+    /**
+     * Returns the statements that replace a table with another one, keeping the replaced table with a new name.
+     *
+     * @param table  the name of the table to replace
+     * @param shadow the name of the table that replaces it
+     * @param old    the new name of the replaced table
+     * @return the RENAME statements
+     */
+    /* default */ List<String> swapTablesSql(final String table, final String shadow, final String old) {
+        List<String> sqlList;
+        switch (this) {
+            case DB2:
+                sqlList = Arrays.asList(String.format("RENAME TABLE %s TO %s", table, unqualified(old)),
+                                        String.format("RENAME TABLE %s TO %s", shadow, unqualified(table)));
+                break;
+            case MYSQL:
+                sqlList = Collections.singletonList(String.format("RENAME TABLE %s TO %s, %s TO %s", table, old,
+                                                                  shadow, table));
+                break;
+            case SQLSERVER:
+                sqlList = Arrays.asList(String.format("EXEC sp_rename '%s', '%s'", table, unqualified(old)),
+                                        String.format("EXEC sp_rename '%s', '%s'", shadow, unqualified(table)));
+                break;
+            default:
+                sqlList = Arrays.asList(String.format("ALTER TABLE %s RENAME TO %s", table, unqualified(old)),
+                                        String.format("ALTER TABLE %s RENAME TO %s", shadow, unqualified(table)));
+                break;
+        }
+        return sqlList;
+    }
+
+    /**
+     * Indicates whether the tables created by {@link #createTableLikeSql(String, String)} have the primary key,
+     * indexes, check constraints and defaults of the original table, so they can replace it. The foreign keys are
+     * never copied: the tables having them can't be replaced by a copy.
+     *
+     * @return true if the copy of a table is complete
+     */
+    /* default */ boolean isTableLikeSupported() {
+        return this == MYSQL || this == POSTGRESQL;
+    }
+
+    /**
+     * Indicates whether the statements returned by {@link #swapTablesSql(String, String, String)} replace the table
+     * atomically, so that the readers never find it missing.
+     *
+     * @return true if the swap is atomic
+     */
+    /* default */ boolean isAtomicSwap() {
+        return this == MYSQL || isTransactionalDdl();
+    }
+
+    /**
+     * Indicates whether the DDL statements are part of the transaction, so that several of them can be applied
+     * atomically.
+     *
+     * @return true if the DDL statements can be rolled back
+     */
+    /* default */ boolean isTransactionalDdl() {
+        return this == DB2 || this == POSTGRESQL || this == SQLSERVER;
+    }
+
+    private static String unqualified(final String name) {
+        return StringUtils.substringAfterLast("." + name, ".");
+    }
+
+    /**
+     * Returns the statement that removes all the rows of a partition, or null if the database doesn't support it.
+     *
+     * @param table     the name of the partitioned table
+     * @param partition the name of the partition (the name of the child table in PostgreSQL, the partition number in
+     *                  SQL Server)
+     * @return the TRUNCATE statement or null if it is not supported
+     */
+    /* default */ String truncatePartitionSql(final String table, final String partition) {
+        String sql;
+        switch (this) {
+            case MYSQL:
+            case ORACLE:
+                sql = String.format("ALTER TABLE %s TRUNCATE PARTITION %s", table, partition);
+                break;
+            case POSTGRESQL:
+                sql = String.format("TRUNCATE TABLE %s", partition);
+                break;
+            case SQLSERVER:
+                sql = String.format("TRUNCATE TABLE %s WITH (PARTITIONS (%s))", table, partition);
+                break;
+            default:
+                sql = null;
+                break;
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.automator.ObjectName;
+import com.dattack.dbcopy.automator.jdbc.DataSourceProviderFactory;
+import com.dattack.dbcopy.automator.jdbc.InitialLoadPlan;
+import com.dattack.dbcopy.beans.InsertOperationBean;
+import com.dattack.dbcopy.engine.pool.DataSourceRegistry;
+import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import javax.sql.DataSource;
+
+/**
+ * Disables the maintenance of the indexes and constraints of the target table of a job before its first task and
+ * restores them once the last task has finished. The statements are provided by the automator's
+ * {@link com.dattack.dbcopy.automator.jdbc.DataSourceProvider} of the target database.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class InitialLoad implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InitialLoad.class);
+
+    private final transient DataSource dataSource;
+    private final transient int parallel;
+    private final transient String tableName;
+    private transient InitialLoadPlan plan;
+
+    /* default */ InitialLoad(final InsertOperationBean bean, final AbstractConfiguration configuration,
+        final String tableName)
+    {
+        this.dataSource =
+            DataSourceRegistry.getDataSource(ConfigurationUtil.interpolate(bean.getDatasource(), configuration));
+        this.parallel = bean.getParallel();
+        this.tableName = ConfigurationUtil.interpolate(tableName, configuration);
+    }
+
+    /**
+     * Disables the indexes and constraints of the target table. When a statement fails, the changes already made
+     * are the only ones restored by {@link #close()}.
+     *
+     * @throws SQLException if a database access error occurs
+     */
+    /* default */ void prepare() throws SQLException {
+
+        try (Connection connection = dataSource.getConnection()) {
+            final InitialLoadPlan fullPlan = DataSourceProviderFactory.getProvider(connection) //
+                .createInitialLoadPlan(connection, ObjectName.parse(tableName));
+            if (fullPlan.isEmpty()) {
+                LOGGER.info("Initial load of {}: nothing to disable", tableName);
+            }
+            int executed = 0;
+            try {
+                for (final String sql : fullPlan.getBeforeLoadList()) {
+                    execute(connection, sql);
+                    executed++;
+                }
+            } finally {
+                plan = fullPlan.restrictTo(executed);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the indexes, in parallel, and enables the constraints of the target table disabled by
+     * {@link #prepare()}. The failures are logged and don't prevent the execution of the remaining statements.
+     */
+    @Override
+    public void close() {
+
+        if (plan == null || plan.isEmpty()) {
+            return;
+        }
+
+        if (!plan.getRebuildList().isEmpty()) {
+            final int threads = Math.min(parallel, plan.getRebuildList().size());
+            try (ExecutionController controller = new ExecutionController(tableName + "-Rebuild", threads)) {
+                final List<Future<?>> futureList = new ArrayList<>();
+                for (final String sql : plan.getRebuildList()) {
+                    futureList.add(controller.submit(() -> {
+                        executeQuietly(sql);
+                        return null;
+                    }));
+                }
+                controller.shutdown();
+                waitFor(futureList);
+            }
+        }
+
+        for (final String sql : plan.getAfterLoadList()) {
+            executeQuietly(sql);
+        }
+    }
+
+    private static void execute(final Connection connection, final String sql) throws SQLException {
+
+        LOGGER.info("Executing SQL: {}", sql);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+    }
+
+    private void executeQuietly(final String sql) {
+        try (Connection connection = dataSource.getConnection()) {
+            execute(connection, sql);
+        } catch (final SQLException e) {
+            LOGGER.error("Unable to restore the state of table {} ({}): {}", tableName, sql, e.getMessage());
+        }
+    }
+
+    private static void waitFor(final List<Future<?>> futureList) {
+
+        for (final Future<?> future : futureList) {
+            try {
+                future.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.warn("Interrupted while rebuilding indexes", e);
+            } catch (final ExecutionException e) {
+                LOGGER.warn("Error rebuilding indexes", e);
+            }
+        }
+    }
+}
@@ -16,6 +16,8 @@
 package com.dattack.dbcopy.engine;
 
 import com.dattack.dbcopy.beans.InsertOperationBean;
+import com.dattack.dbcopy.engine.bulk.BulkLoader;
+import com.dattack.dbcopy.engine.bulk.BulkLoaderFactory;
 import com.dattack.dbcopy.engine.datatype.AbstractDataType;
 import com.dattack.dbcopy.engine.datatype.BigDecimalType;
 import com.dattack.dbcopy.engine.datatype.BlobType;
@@ -37,9 +39,9 @@ import com.dattack.dbcopy.engine.datatype.StringType;
 import com.dattack.dbcopy.engine.datatype.TimeType;
 import com.dattack.dbcopy.engine.datatype.TimestampType;
 import com.dattack.dbcopy.engine.datatype.XmlType;
+import com.dattack.dbcopy.engine.pool.DataSourceRegistry;
 import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
 import com.dattack.jtoolbox.jdbc.JDBCUtils;
-import com.dattack.jtoolbox.jdbc.JNDIDataSource;
 import com.dattack.jtoolbox.jdbc.internal.NamedPreparedStatement;
 import com.dattack.jtoolbox.jdbc.internal.ProxyConnection;
 import com.dattack.jtoolbox.jdbc.internal.ProxyConnectionFactory;
@@ -57,14 +59,20 @@ import java.io.Reader;
 import java.io.Writer;
 import java.sql.BatchUpdateException;
 import java.sql.Blob;
+import java.sql.Clob;
 import java.sql.Connection;
 import java.sql.NClob;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLXML;
+import java.sql.Savepoint;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Callable;
 
 /**
@@ -75,56 +83,120 @@ import java.util.concurrent.Callable;
  */
 class InsertOperation implements Callable<Integer> {
 
+    private static final String CONNECTION_EXCEPTION_CLASS = "08";
+    private static final int DEFAULT_BULK_SIZE = 10_000;
+    private static final int LOB_BUFFER_SIZE = Integer.getInteger("dbcopy_lob_buffer_size", 64 * 1024);
     private static final Logger LOGGER = LoggerFactory.getLogger(InsertOperation.class);
 
+    private final transient List<PendingRow> batchRows;
     private final transient InsertOperationBean bean;
+    private final transient List<PendingRow> bulkRows;
     private final transient AbstractConfiguration configuration;
-    private final transient DataTransfer dataTransfer;
-    private final transient DbCopyTaskResult taskResult;
+    private final transient RejectWriter rejectWriter;
+    private final transient List<PendingRow> retainedRows;
+    private final transient RetryPolicy retryPolicy;
+    private final transient RowSource rowSource;
+    private final transient List<UncommittedRun> uncommittedRuns;
+    private final transient Visitor visitor;
     private final MultiStopWatch stopWatch;
+    private transient BulkLoader bulkLoader;
     private transient volatile List<ColumnMetadata> columnsMetadata2Process;
     private transient ProxyConnection connection;
+    private transient long lastCommitTime;
+    private transient boolean lobStreamingSupported;
     private transient NamedPreparedStatement preparedStatement;
+    private transient boolean releaseSavepointSupported;
+    private transient int retryAttempts;
     private transient int rowNumber;
+    private transient long uncommittedRows;
 
-    public InsertOperation(final InsertOperationBean bean, final DataTransfer dataTransfer,
-        final AbstractConfiguration configuration, final DbCopyTaskResult taskResult)
+    public InsertOperation(final InsertOperationBean bean, final RowSource rowSource,
+        final AbstractConfiguration configuration, final RejectWriter rejectWriter)
+    {
+        this(bean, rowSource, configuration, rejectWriter, null);
+    }
+
+    /**
+     * Creates an insert worker that replays its transaction after a transient failure. The rows written since the
+     * last commit are retained until they are committed, so the retry policy is ignored when the insert commits at
+     * the end of the task.
+     */
+    /* default */ InsertOperation(final InsertOperationBean bean, final RowSource rowSource,
+        final AbstractConfiguration configuration, final RejectWriter rejectWriter, final RetryPolicy retryPolicy)
     {
         this.bean = bean;
-        this.dataTransfer = dataTransfer;
+        this.rowSource = rowSource;
         this.configuration = configuration;
-        this.taskResult = taskResult;
+        this.rejectWriter = rejectWriter;
+        this.retryPolicy = bean.isCommitAtEnd() ? null : retryPolicy;
+        this.retainedRows = new ArrayList<>();
+        this.retryAttempts = 0;
         this.rowNumber = 0;
         this.stopWatch = new MultiStopWatch();
+        this.bulkRows = new ArrayList<>();
+        this.batchRows = new ArrayList<>();
+        this.uncommittedRuns = new ArrayList<>();
+        this.visitor = new Visitor();
+        this.lastCommitTime = System.currentTimeMillis();
+        this.releaseSavepointSupported = true;
+        this.lobStreamingSupported = true;
+        this.uncommittedRows = 0;
+    }
+
+    private static int getUpdateCount(final int result) {
+        int count = 0;
+        if (result > 0) {
+            count = result;
+        } else if (result == Statement.SUCCESS_NO_INFO) {
+            count = 1;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the size of the buffer used to copy a LOB, no larger than the LOB itself.
+     */
+    private static int getLobBufferSize(final long length) {
+        return (int) Math.max(1, Math.min(length, LOB_BUFFER_SIZE));
+    }
+
+    private static boolean isConnectionError(final SQLException exception) {
+        return StringUtils.startsWith(exception.getSQLState(), CONNECTION_EXCEPTION_CLASS);
     }
 
     @Override
     public Integer call() {
 
-        final Visitor visitor = new Visitor();
         int totalInsertedRows = 0;
 
         while (true) {
+            DbCopyTaskResult taskResult = null;
             try {
                 stopWatch.start("transfer");
-                final AbstractDataType<?>[] row = dataTransfer.transfer();
+                final AbstractDataType<?>[] row = rowSource.transfer();
                 stopWatch.stop("transfer");
 
                 if (Objects.isNull(row)) {
-                    break;
-                }
-
-                stopWatch.start("populate");
-                for (final ColumnMetadata columnMetadata : getColumns(getPreparedStatement())) {
-                    visitor.set(columnMetadata, row[columnMetadata.getIndex() - 1]);
+                    if (rowSource.isExhausted()) {
+                        break;
+                    }
+                    totalInsertedRows += flushPendingRows();
+                } else {
+                    taskResult = rowSource.getTaskResult();
+                    if (isBulkMode()) {
+                        totalInsertedRows += addBulkRow(new PendingRow(row, taskResult));
+                    } else {
+                        totalInsertedRows += execute(new PendingRow(row, taskResult));
+                    }
                 }
-                stopWatch.stop("populate");
-
-                totalInsertedRows += execute();
 
+            } catch (RejectLimitExceededException e) {
+                LOGGER.error("ERROR: {}", e.getMessage());
             } catch (Exception e) {
                 LOGGER.error("ERROR: ", e);
-                taskResult.setException(e);
+                if (taskResult != null) {
+                    taskResult.setException(e);
+                }
             }
         }
 
@@ -132,7 +204,6 @@ class InsertOperation implements Callable<Integer> {
             totalInsertedRows += flush();
         } catch (Exception e) {
             LOGGER.error("ERROR: ", e);
-            taskResult.setException(e);
         }
 
         return totalInsertedRows;
@@ -140,16 +211,15 @@ class InsertOperation implements Callable<Integer> {
 
     public int flush() throws SQLException {
 
-        int insertedRows = 0;
-        if (rowNumber % bean.getBatchSize() != 0) {
-            insertedRows = executeBatch();
+        try {
+            return flushPendingRows();
+        } finally {
+            abandonUncommitted(new SQLException("The insert worker finished with uncommitted rows"));
+            JDBCUtils.closeQuietly(preparedStatement);
+            if (connection != null) {
+                JDBCUtils.closeQuietly(connection);
+            }
         }
-
-        taskResult.addProcessedRows(insertedRows);
-        JDBCUtils.closeQuietly(preparedStatement);
-        JDBCUtils.closeQuietly(getConnection());
-
-        return insertedRows;
     }
 
     /**
@@ -168,23 +238,34 @@ class InsertOperation implements Callable<Integer> {
             getPreparedStatement().setBigDecimal(columnMetadata.getName(), type.getValue());
         }
 
+        /**
+         * Binds the stream of the source locator, so the content of the LOB is read by the driver when the statement
+         * is executed and the row doesn't hold a copy of it. The stream isn't wrapped in a buffer: the drivers
+         * already read it in blocks, and a buffer per LOB of each pending row would be kept until the batch runs.
+         * Drivers that can't bind streams receive a new LOB.
+         */
         @Override
         public void visit(final BlobType type) throws SQLException {
 
+            if (lobStreamingSupported) {
+                try {
+                    getPreparedStatement().setBinaryStream(columnMetadata.getName(),
+                                                           type.getValue().getBinaryStream(),
+                                                           type.getValue().length());
+                    return;
+                } catch (final SQLFeatureNotSupportedException e) {
+                    disableLobStreaming(e);
+                }
+            }
+
             final Blob targetBlob = getPreparedStatement().getConnection().createBlob();
             try (OutputStream output = targetBlob.setBinaryStream(1);
                  InputStream input = type.getValue().getBinaryStream())
             {
-
-                final byte[] buffer = new byte[1024]; // TODO: configurable size
-                int len;
-                while ((len = input.read(buffer)) != -1) {
-                    output.write(buffer, 0, len);
-                }
-
+                IOUtils.copyLarge(input, output, new byte[getLobBufferSize(type.getValue().length())]);
                 getPreparedStatement().setBlob(columnMetadata.getName(), targetBlob);
             } catch (IOException e) {
-                throw new SQLException("Unable to create Clob object: " + e.getMessage(), e);
+                throw new SQLException("Unable to create Blob object: " + e.getMessage(), e);
             }
         }
 
@@ -205,8 +286,24 @@ class InsertOperation implements Callable<Integer> {
 
         @Override
         public void visit(final ClobType type) throws SQLException {
-            try (Reader reader = type.getValue().getCharacterStream()) {
-                getPreparedStatement().setClob(columnMetadata.getName(), IOUtils.toString(reader));
+
+            if (lobStreamingSupported) {
+                try {
+                    getPreparedStatement().setCharacterStream(columnMetadata.getName(),
+                                                              type.getValue().getCharacterStream(),
+                                                              type.getValue().length());
+                    return;
+                } catch (final SQLFeatureNotSupportedException e) {
+                    disableLobStreaming(e);
+                }
+            }
+
+            final Clob targetClob = getPreparedStatement().getConnection().createClob();
+            try (Writer clobWriter = targetClob.setCharacterStream(1);
+                 Reader reader = type.getValue().getCharacterStream())
+            {
+                IOUtils.copyLarge(reader, clobWriter, new char[getLobBufferSize(type.getValue().length())]);
+                getPreparedStatement().setClob(columnMetadata.getName(), targetClob);
             } catch (IOException e) {
                 throw new SQLException("Unable to create Clob object: " + e.getMessage(), e);
             }
@@ -240,9 +337,22 @@ class InsertOperation implements Callable<Integer> {
         @Override
         public void visit(final NClobType type) throws SQLException {
 
+            if (lobStreamingSupported) {
+                try {
+                    getPreparedStatement().setNCharacterStream(columnMetadata.getName(),
+                                                               type.getValue().getCharacterStream(),
+                                                               type.getValue().length());
+                    return;
+                } catch (final SQLFeatureNotSupportedException e) {
+                    disableLobStreaming(e);
+                }
+            }
+
             final NClob targetClob = getPreparedStatement().getConnection().createNClob();
-            try (Writer clobWriter = targetClob.setCharacterStream(1)) {
-                clobWriter.write(type.getValue().getSubString(1L, (int) type.getValue().length()));
+            try (Writer clobWriter = targetClob.setCharacterStream(1);
+                 Reader reader = type.getValue().getCharacterStream())
+            {
+                IOUtils.copyLarge(reader, clobWriter, new char[getLobBufferSize(type.getValue().length())]);
                 getPreparedStatement().setClob(columnMetadata.getName(), targetClob);
             } catch (IOException e) {
                 throw new SQLException("Unable to create Clob object: " + e.getMessage(), e);
@@ -286,6 +396,11 @@ class InsertOperation implements Callable<Integer> {
             getPreparedStatement().setSQLXML(columnMetadata.getName(), targetXml);
         }
 
+        private void disableLobStreaming(final SQLFeatureNotSupportedException cause) {
+            LOGGER.warn("The target driver can't bind LOB streams, using LOB objects: {}", cause.getMessage());
+            lobStreamingSupported = false;
+        }
+
         private void set(final ColumnMetadata columnMetadata, final AbstractDataType<?> value) throws Exception {
             this.columnMetadata = columnMetadata;
             if (Objects.isNull(value) || value.isNull()) {
@@ -309,36 +424,287 @@ class InsertOperation implements Callable<Integer> {
 
             LOGGER.trace(sql);
             preparedStatement =
-                getConnection().prepareNamedStatement(ConfigurationUtil.interpolate(sql, configuration));
+                getConnection().prepareNamedStatement(redirect(ConfigurationUtil.interpolate(sql, configuration)));
         }
         return preparedStatement;
     }
 
-    private int addBatch() throws SQLException {
-        getPreparedStatement().addBatch();
+    /**
+     * Abandons the rows that haven't been committed yet: their tasks are marked as failed and the rows are
+     * acknowledged without being counted as processed.
+     */
+    private void abandonUncommitted(final Exception cause) {
+
+        for (final UncommittedRun run : uncommittedRuns) {
+            if (run.processedRows > 0) {
+                run.taskResult.setException(cause);
+            }
+            rowSource.acknowledge(run.taskResult, run.rows);
+        }
+        uncommittedRuns.clear();
+        uncommittedRows = 0;
+        retainedRows.clear();
+    }
+
+    /**
+     * Acknowledges the rows to the row source once the transaction is committed.
+     */
+    private void acknowledge(final List<PendingRow> rows) {
+        for (final PendingRow row : rows) {
+            getUncommittedRun(row).rows++;
+        }
+    }
+
+    /**
+     * Records the number of rows inserted by each statement of a batch. When the driver doesn't return one update
+     * count per statement, each row is assumed to be inserted.
+     */
+    private int addProcessedRows(final List<PendingRow> rows, final int[] batchResult) {
+
+        int insertedRows = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            int count = 1;
+            if (batchResult.length == rows.size()) {
+                count = getUpdateCount(batchResult[i]);
+            }
+            addProcessedRows(rows.get(i), count);
+            insertedRows += count;
+        }
+        return insertedRows;
+    }
+
+    /**
+     * Records the rows inserted since the last commit. They are added to the processed rows of the task once the
+     * transaction is committed.
+     */
+    private void addProcessedRows(final PendingRow row, final int processedRows) {
+        getUncommittedRun(row).processedRows += processedRows;
+        uncommittedRows += processedRows;
+        if (retryPolicy != null) {
+            retainedRows.add(row);
+        }
+    }
+
+    private UncommittedRun getUncommittedRun(final PendingRow row) {
+
+        UncommittedRun run = uncommittedRuns.isEmpty() ? null : uncommittedRuns.get(uncommittedRuns.size() - 1);
+        if (run == null || run.taskResult != row.taskResult) {
+            run = new UncommittedRun(row.taskResult);
+            uncommittedRuns.add(run);
+        }
+        return run;
+    }
+
+    /**
+     * Commits the rows written since the last commit when the configured interval is reached. Without a commit
+     * interval, every batch is committed.
+     */
+    private void commitIfNeeded() throws SQLException {
+
+        if (bean.isCommitAtEnd()) {
+            return;
+        }
+
+        final boolean rowsReached = bean.getCommitEveryRows() > 0 && uncommittedRows >= bean.getCommitEveryRows();
+        final boolean timeReached = bean.getCommitEveryMillis() > 0
+            && System.currentTimeMillis() - lastCommitTime >= bean.getCommitEveryMillis();
+        if (!isDeferredCommit() || rowsReached || timeReached) {
+            commit();
+        }
+    }
+
+    private void commit() throws SQLException {
+
+        if (uncommittedRuns.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (!getConnection().getAutoCommit()) {
+                getConnection().commit();
+            }
+        } catch (final SQLException e) {
+            if (!isRetryable(e)) {
+                abandonUncommitted(e);
+                throw e;
+            }
+            // the transaction is replayed on a new connection and committed again
+            retry(Collections.emptyList(), e);
+            commit();
+            return;
+        }
+
+        for (final UncommittedRun run : uncommittedRuns) {
+            run.taskResult.addProcessedRows(run.processedRows);
+            rowSource.acknowledge(run.taskResult, run.rows);
+        }
+        LOGGER.debug("{}: {} rows committed", Thread.currentThread().getName(), uncommittedRows);
+        uncommittedRuns.clear();
+        uncommittedRows = 0;
+        retainedRows.clear();
+        retryAttempts = 0;
+        lastCommitTime = System.currentTimeMillis();
+    }
+
+    private boolean isDeferredCommit() {
+        return bean.isCommitAtEnd() || bean.getCommitEveryRows() > 0 || bean.getCommitEveryMillis() > 0;
+    }
+
+    /**
+     * Sets a savepoint when the transaction contains rows that must survive the failure of the next statement.
+     */
+    private Savepoint setSavepoint() throws SQLException {
+
+        Savepoint savepoint = null;
+        if (uncommittedRows > 0 && !getConnection().getAutoCommit()) {
+            savepoint = getConnection().setSavepoint();
+        }
+        return savepoint;
+    }
+
+    private void releaseSavepoint(final Savepoint savepoint) {
+
+        if (savepoint != null && releaseSavepointSupported) {
+            try {
+                getConnection().releaseSavepoint(savepoint);
+            } catch (final SQLException e) {
+                // some drivers don't release savepoints: they are released by the commit
+                LOGGER.debug("Unable to release savepoint: {}", e.getMessage());
+                releaseSavepointSupported = false;
+            }
+        }
+    }
+
+    private int addBatch(final PendingRow row) throws SQLException {
+
+        try {
+            stopWatch.start("populate");
+            populate(row.values);
+            stopWatch.stop("populate");
+            getPreparedStatement().addBatch();
+        } catch (final SQLException e) {
+            try {
+                discard(row, e);
+            } finally {
+                acknowledge(Collections.singletonList(row));
+            }
+            return 0;
+        }
+
+        batchRows.add(row);
         rowNumber++;
         int insertedRows = 0;
-        if (rowNumber % bean.getBatchSize() == 0) {
-            stopWatch.start("remote");
+        if (batchRows.size() >= bean.getBatchSize()) {
             insertedRows = executeBatch();
-            stopWatch.stop("remote");
-            if (LOGGER.isInfoEnabled()) {
-                LOGGER.info("{}: {} rows (total: {}) inserted in {}", Thread.currentThread().getName(),
-                            String.format("%,d", insertedRows), String.format("%,d", rowNumber),
-                            String.format("%s", stopWatch));
+        }
+        return insertedRows;
+    }
+
+    private int addBulkRow(final PendingRow row) throws SQLException {
+        bulkRows.add(row);
+        rowNumber++;
+        int insertedRows = 0;
+        if (bulkRows.size() >= getBulkSize()) {
+            insertedRows = executeBulkLoad();
+        }
+        return insertedRows;
+    }
+
+    private int executeBulkLoad() throws SQLException {
+
+        final List<PendingRow> rows = new ArrayList<>(bulkRows);
+        bulkRows.clear();
+
+        stopWatch.start("remote");
+        int insertedRows;
+        try {
+            insertedRows = load(rows);
+        } catch (final SQLException e) {
+            if (!isRetryable(e)) {
+                fail(rows, e);
+                throw e;
             }
-            stopWatch.reset();
+            insertedRows = retry(rows, e);
+        } finally {
+            acknowledge(rows);
+            stopWatch.stop("remote");
         }
+        commitIfNeeded();
+
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("{}: {} rows (total: {}) bulk loaded in {}", Thread.currentThread().getName(),
+                        String.format("%,d", insertedRows), String.format("%,d", rowNumber),
+                        String.format("%s", stopWatch));
+        }
+        stopWatch.reset();
         return insertedRows;
     }
 
+    /**
+     * Loads a block of rows with the bulk loader of the target database.
+     */
+    private int load(final List<PendingRow> rows) throws SQLException {
+
+        final List<AbstractDataType<?>[]> values = new ArrayList<>(rows.size());
+        for (final PendingRow row : rows) {
+            values.add(row.values);
+        }
+
+        Savepoint savepoint = null;
+        try {
+            if (Objects.isNull(bulkLoader)) {
+                bulkLoader = BulkLoaderFactory.getLoader(getConnection());
+            }
+            savepoint = setSavepoint();
+            final int insertedRows = bulkLoader.load(getConnection(), getBulkTable(),
+                                                     rowSource.getRowMetadata().getColumnsMetadata(), values);
+            releaseSavepoint(savepoint);
+            for (final PendingRow row : rows) {
+                addProcessedRows(row, 1);
+            }
+            return insertedRows;
+        } catch (final SQLException e) {
+            rollback(savepoint);
+            throw e;
+        }
+    }
+
+    private String getBulkTable() throws SQLException {
+        if (StringUtils.isBlank(bean.getTable())) {
+            throw new SQLException("Missing table name: the 'table' attribute is mandatory in bulk mode");
+        }
+        final String shadowTable = getShadowTable();
+        return shadowTable == null ? ConfigurationUtil.interpolate(bean.getTable(), configuration) : shadowTable;
+    }
+
+    private String getShadowTable() throws SQLException {
+        return bean.getRefresh() == InsertOperationBean.Refresh.SWAP
+            ? ShadowRefresh.getShadowTable(bean, configuration) : null;
+    }
+
+    /**
+     * Writes to the shadow table when the target table is refreshed by swapping it.
+     */
+    private String redirect(final String sql) throws SQLException {
+        final String shadowTable = getShadowTable();
+        return shadowTable == null ? sql : ShadowRefresh.redirect(sql, shadowTable);
+    }
+
+    private int getBulkSize() {
+        return bean.getBatchSize() > 0 ? bean.getBatchSize() : DEFAULT_BULK_SIZE;
+    }
+
+    private boolean isBulkMode() {
+        return bean.getMode() == InsertOperationBean.Mode.BULK;
+    }
+
     private String createAutomapSql() {
         final StringBuilder columns = new StringBuilder();
         final StringBuilder refs = new StringBuilder();
 
         String concat = "";
 
-        for (final ColumnMetadata columnMetadata : dataTransfer.getRowMetadata().getColumnsMetadata()) {
+        for (final ColumnMetadata columnMetadata : rowSource.getRowMetadata().getColumnsMetadata()) {
             columns.append(concat).append(columnMetadata.getName());
             refs.append(concat).append(':').append(columnMetadata.getName());
             concat = ",";
@@ -349,52 +715,338 @@ class InsertOperation implements Callable<Integer> {
         return sql;
     }
 
-    private int execute() throws SQLException {
+    /**
+     * Sends a row that can't be written to the reject file. Connection errors are propagated because they aren't
+     * caused by the row itself.
+     */
+    private void discard(final PendingRow row, final SQLException cause) throws SQLException {
+        if (isConnectionError(cause)) {
+            row.taskResult.setException(cause);
+            abandonUncommitted(cause);
+            throw cause;
+        }
+        reject(row, cause);
+    }
 
-        int insertedRows;
+    private int execute(final PendingRow row) throws SQLException {
 
         if (bean.getBatchSize() > 0) {
-            insertedRows = addBatch();
-        } else {
-            insertedRows = getPreparedStatement().executeUpdate();
+            return addBatch(row);
         }
 
-        taskResult.addProcessedRows(insertedRows);
+        int insertedRows = 0;
+        Savepoint savepoint = null;
+        try {
+            stopWatch.start("populate");
+            populate(row.values);
+            stopWatch.stop("populate");
+            savepoint = setSavepoint();
+            insertedRows = getPreparedStatement().executeUpdate();
+            releaseSavepoint(savepoint);
+            addProcessedRows(row, insertedRows);
+        } catch (final SQLException e) {
+            if (savepoint != null) {
+                rollback(savepoint);
+            }
+            if (isRetryable(e)) {
+                insertedRows = retry(Collections.singletonList(row), e);
+            } else {
+                discard(row, e);
+            }
+        } finally {
+            acknowledge(Collections.singletonList(row));
+        }
 
+        commitIfNeeded();
         return insertedRows;
     }
 
     private int executeBatch() throws SQLException {
 
-        int insertedRows = 0;
+        final List<PendingRow> rows = new ArrayList<>(batchRows);
+        batchRows.clear();
+
+        stopWatch.start("remote");
+        int insertedRows;
+        Savepoint savepoint = null;
         try {
+            savepoint = setSavepoint();
             final int[] batchResult = getPreparedStatement().executeBatch();
+            releaseSavepoint(savepoint);
+            insertedRows = addProcessedRows(rows, batchResult);
+        } catch (final BatchUpdateException e) {
+            LOGGER.warn("Batch operation failed: {} (SQLSTATE: {}, Error code: {}, Executed statements: {})",
+                        e.getMessage(), e.getSQLState(), e.getErrorCode(), e.getUpdateCounts().length);
+            rollback(savepoint);
+            insertedRows = isRetryable(e) ? retry(rows, e) : isolate(rows, e);
+        } catch (final SQLException e) {
+            rollback(savepoint);
+            if (!isRetryable(e)) {
+                fail(rows, e);
+                throw e;
+            }
+            insertedRows = retry(rows, e);
+        } finally {
+            acknowledge(rows);
+            stopWatch.stop("remote");
+        }
+        commitIfNeeded();
 
-            for (final int result : batchResult) {
-                if (result > 0) {
-                    insertedRows += result;
-                } else if (result == Statement.SUCCESS_NO_INFO) {
-                    insertedRows++;
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("{}: {} rows (total: {}) inserted in {}", Thread.currentThread().getName(),
+                        String.format("%,d", insertedRows), String.format("%,d", rowNumber),
+                        String.format("%s", stopWatch));
+        }
+        stopWatch.reset();
+        return insertedRows;
+    }
+
+    /**
+     * Splits a failed block of rows in two halves and executes each of them separately, so the rows that can be
+     * inserted are kept and the offending ones are isolated and sent to the reject file.
+     */
+    private int bisect(final List<PendingRow> rows, final SQLException cause) throws SQLException {
+
+        if (rows.size() == 1) {
+            reject(rows.get(0), cause);
+            return 0;
+        }
+
+        final int middle = rows.size() / 2;
+        return executeIsolated(rows.subList(0, middle)) + executeIsolated(rows.subList(middle, rows.size()));
+    }
+
+    private int executeIsolated(final List<PendingRow> rows) throws SQLException {
+
+        int insertedRows;
+        Savepoint savepoint = null;
+        try {
+            savepoint = setSavepoint();
+            int[] batchResult;
+            if (rows.size() == 1) {
+                populate(rows.get(0).values);
+                batchResult = new int[] {getPreparedStatement().executeUpdate()};
+            } else {
+                for (final PendingRow row : rows) {
+                    populate(row.values);
+                    getPreparedStatement().addBatch();
                 }
+                batchResult = getPreparedStatement().executeBatch();
+            }
+            releaseSavepoint(savepoint);
+            insertedRows = addProcessedRows(rows, batchResult);
+        } catch (final SQLException e) {
+            rollback(savepoint);
+            if (isRetryable(e)) {
+                throw e;
             }
+            insertedRows = bisect(rows, e);
+        }
+        return insertedRows;
+    }
 
-        } catch (final BatchUpdateException e) {
-            LOGGER.warn("Batch operation failed: {} (SQLSTATE: {}, Error code: {}, Executed statements: {})",
-                        e.getMessage(), e.getSQLState(), e.getErrorCode(), e.getUpdateCounts().length);
+    /**
+     * Isolates the offending rows of a failed batch. A transient failure while doing so replays the whole batch.
+     */
+    private int isolate(final List<PendingRow> rows, final SQLException cause) throws SQLException {
+        try {
+            return bisect(rows, cause);
+        } catch (final RejectLimitExceededException e) {
             throw e;
-        } finally {
-            getConnection().commit();
+        } catch (final SQLException e) {
+            if (!isRetryable(e)) {
+                throw e;
+            }
+            return retry(rows, e);
+        }
+    }
+
+    /**
+     * Checks if a failure breaks the transaction without being caused by the rows themselves: a connection error or
+     * a failure that the retry policy considers transient.
+     */
+    private boolean isRetryable(final SQLException exception) {
+        return isConnectionError(exception) || retryPolicy != null && retryPolicy.isRetryable(exception);
+    }
+
+    /**
+     * Recovers from a transient failure: after a delay, the rows written since the last commit and the rows of the
+     * failed statement are written again on a new connection. When the attempts are exhausted, the tasks owning the
+     * rows are marked as failed and the rows written since the last commit are abandoned.
+     *
+     * @return the number of rows of the failed statement that were inserted
+     */
+    private int retry(final List<PendingRow> rows, final SQLException cause) throws SQLException {
+
+        final Set<PendingRow> failedRows = new HashSet<>(rows);
+        final List<PendingRow> previousRows = new ArrayList<>(retainedRows.size());
+        for (final PendingRow row : retainedRows) {
+            if (!failedRows.contains(row)) {
+                previousRows.add(row);
+            }
         }
 
+        SQLException failure = cause;
+        while (retryPolicy != null && retryPolicy.isRetryable(failure)
+            && retryAttempts < retryPolicy.getBatchAttempts())
+        {
+            retryAttempts++;
+            final long delay = retryPolicy.getDelay(retryAttempts);
+            LOGGER.warn("{}: transient failure, replaying {} rows on a new connection in {} ms (attempt {}/{}): {} "
+                            + "(SQLSTATE: {}, Error code: {})", Thread.currentThread().getName(),
+                        previousRows.size() + rows.size(), delay, retryAttempts, retryPolicy.getBatchAttempts(),
+                        failure.getMessage(), failure.getSQLState(), failure.getErrorCode());
+            reconnect();
+            if (!RetryPolicy.sleep(delay)) {
+                break;
+            }
+            try {
+                return replay(previousRows, rows);
+            } catch (final RejectLimitExceededException e) {
+                throw e;
+            } catch (final SQLException e) {
+                failure = e;
+            }
+        }
+
+        fail(rows, failure);
+        fail(previousRows, failure);
+        abandonUncommitted(failure);
+        throw failure;
+    }
+
+    /**
+     * Writes again the rows of a transaction that was rolled back.
+     */
+    private int replay(final List<PendingRow> previousRows, final List<PendingRow> rows) throws SQLException {
+
+        retainedRows.clear();
+        uncommittedRows = 0;
+        for (final UncommittedRun run : uncommittedRuns) {
+            run.processedRows = 0;
+        }
+
+        write(previousRows);
+        return write(rows);
+    }
+
+    private int write(final List<PendingRow> rows) throws SQLException {
+
+        final int blockSize = isBulkMode() ? getBulkSize() : Math.max(bean.getBatchSize(), 1);
+        int insertedRows = 0;
+        for (int i = 0; i < rows.size(); i += blockSize) {
+            final List<PendingRow> block = rows.subList(i, Math.min(i + blockSize, rows.size()));
+            insertedRows += isBulkMode() ? load(block) : executeIsolated(block);
+        }
+        return insertedRows;
+    }
+
+    /**
+     * Discards the connection after a transient failure, rolling back its transaction.
+     */
+    private synchronized void reconnect() {
+
+        JDBCUtils.closeQuietly(preparedStatement);
+        preparedStatement = null;
+        if (connection != null) {
+            try {
+                if (!connection.isClosed() && !connection.getAutoCommit()) {
+                    connection.rollback();
+                }
+            } catch (final SQLException e) {
+                LOGGER.debug("Unable to rollback the failed transaction: {}", e.getMessage());
+            }
+            JDBCUtils.closeQuietly(connection);
+            connection = null;
+        }
+    }
+
+    /**
+     * Marks the tasks owning the rows as failed. After a connection error, the rows written since the last commit
+     * are lost too.
+     */
+    private void fail(final List<PendingRow> rows, final SQLException cause) {
+        DbCopyTaskResult taskResult = null;
+        for (final PendingRow row : rows) {
+            if (row.taskResult != taskResult) {
+                taskResult = row.taskResult;
+                taskResult.setException(cause);
+            }
+        }
+        if (isConnectionError(cause)) {
+            abandonUncommitted(cause);
+        }
+    }
+
+    /**
+     * Writes the pending rows and commits all the rows written since the last commit.
+     */
+    private int flushPendingRows() throws SQLException {
+
+        int insertedRows = 0;
+        if (isBulkMode()) {
+            if (!bulkRows.isEmpty()) {
+                insertedRows = executeBulkLoad();
+            }
+        } else if (!batchRows.isEmpty()) {
+            insertedRows = executeBatch();
+        }
+        commit();
         return insertedRows;
     }
 
+    private void populate(final AbstractDataType<?>[] row) throws SQLException {
+        for (final ColumnMetadata columnMetadata : getColumns(getPreparedStatement())) {
+            try {
+                visitor.set(columnMetadata, row[columnMetadata.getIndex() - 1]);
+            } catch (final SQLException e) {
+                throw e;
+            } catch (final Exception e) {
+                throw new SQLException("Unable to set the value of column " + columnMetadata.getName(), e);
+            }
+        }
+    }
+
+    private void reject(final PendingRow row, final SQLException cause) throws SQLException {
+
+        LOGGER.warn("Row rejected: {} (SQLSTATE: {}, Error code: {})", cause.getMessage(), cause.getSQLState(),
+                    cause.getErrorCode());
+        rejectWriter.reject(rowSource.getRowMetadata().getColumnsMetadata(), row.values, cause);
+
+        final long totalRejectedRows = row.taskResult.addRejectedRows(1);
+        if (bean.getMaxRejects() >= 0 && totalRejectedRows > bean.getMaxRejects()) {
+            final RejectLimitExceededException exception =
+                new RejectLimitExceededException(row.taskResult.getTaskName(), bean.getMaxRejects(), cause);
+            row.taskResult.setException(exception);
+            throw exception;
+        }
+    }
+
+    /**
+     * Rolls back the failed statement: up to the savepoint, when the transaction contains rows written by previous
+     * statements, or the whole transaction otherwise.
+     */
+    private void rollback(final Savepoint savepoint) {
+        try {
+            if (!isBulkMode()) {
+                getPreparedStatement().clearBatch();
+            }
+            if (savepoint != null) {
+                getConnection().rollback(savepoint);
+            } else if (!getConnection().getAutoCommit()) {
+                getConnection().rollback();
+            }
+        } catch (final SQLException e) {
+            LOGGER.warn("Unable to rollback the failed batch: {}", e.getMessage());
+        }
+    }
+
     private List<ColumnMetadata> getColumns(final NamedPreparedStatement preparedStatement) {
 
         if (Objects.isNull(columnsMetadata2Process)) {
-            columnsMetadata2Process = new ArrayList<>(dataTransfer.getRowMetadata().getColumnCount());
+            columnsMetadata2Process = new ArrayList<>(rowSource.getRowMetadata().getColumnCount());
 
-            for (final ColumnMetadata columnMetadata : dataTransfer.getRowMetadata().getColumnsMetadata()) {
+            for (final ColumnMetadata columnMetadata : rowSource.getRowMetadata().getColumnsMetadata()) {
                 if (preparedStatement.hasNamedParameter(columnMetadata.getName())) {
                     columnsMetadata2Process.add(columnMetadata);
                 } else {
@@ -408,13 +1060,41 @@ class InsertOperation implements Callable<Integer> {
 
     private synchronized ProxyConnection getConnection() throws SQLException {
         if (connection == null || connection.isClosed()) {
-            Connection proxyConnection =
-                new JNDIDataSource(ConfigurationUtil.interpolate(bean.getDatasource(), configuration)).getConnection();
-            if (bean.getBatchSize() > 0) {
+            Connection proxyConnection = DataSourceRegistry.getDataSource(
+                ConfigurationUtil.interpolate(bean.getDatasource(), configuration)).getConnection();
+            if (bean.getBatchSize() > 0 || isBulkMode() || isDeferredCommit()) {
                 proxyConnection.setAutoCommit(false);
             }
             connection = ProxyConnectionFactory.build(proxyConnection);
         }
         return connection;
     }
+
+    /**
+     * Consecutive rows of the same task written since the last commit.
+     */
+    private static final class UncommittedRun {
+
+        private final transient DbCopyTaskResult taskResult;
+        private transient int processedRows;
+        private transient int rows;
+
+        /* default */ UncommittedRun(final DbCopyTaskResult taskResult) {
+            this.taskResult = taskResult;
+        }
+    }
+
+    /**
+     * A row waiting to be written, together with the task that owns it.
+     */
+    private static final class PendingRow {
+
+        private final transient DbCopyTaskResult taskResult;
+        private final transient AbstractDataType<?>[] values;
+
+        /* default */ PendingRow(final AbstractDataType<?>[] values, final DbCopyTaskResult taskResult) {
+            this.values = values;
+            this.taskResult = taskResult;
+        }
+    }
 }
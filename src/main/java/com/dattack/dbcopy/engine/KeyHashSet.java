@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Open-addressing hash set of 64-bit key hashes stored outside the Java heap, so that tracking hundreds of millions
+ * of keys costs about 16-24 bytes per key instead of the key objects. The table uses linear probing and doubles its
+ * capacity when the load factor exceeds the limit. In exact mode, each slot also references the encoded key, which
+ * is kept in an append-only off-heap arena, so that two keys sharing the same hash are never mistaken for each
+ * other. Instances are not thread-safe.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ final class KeyHashSet {
+
+    private static final int ARENA_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final long EMPTY = 0L;
+    private static final double MAX_LOAD_FACTOR = 0.6;
+    private static final int MIN_CAPACITY = 1024;
+    private static final int SEGMENT_BITS = 22;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final transient List<ByteBuffer> arenaList;
+    private final transient boolean exact;
+    private final transient int slotSize;
+    private transient long capacity;
+    private transient long mask;
+    private transient ByteBuffer[] segments;
+    private transient long size;
+
+    /* default */ KeyHashSet(final long expectedKeys, final boolean exact) {
+        this.exact = exact;
+        this.slotSize = exact ? 2 * Long.BYTES : Long.BYTES;
+        this.arenaList = new ArrayList<>();
+        this.size = 0;
+        long initialCapacity = MIN_CAPACITY;
+        while (initialCapacity * MAX_LOAD_FACTOR < expectedKeys) {
+            initialCapacity <<= 1;
+        }
+        allocate(initialCapacity);
+    }
+
+    /**
+     * Adds a key to the set.
+     *
+     * @param hash the 64-bit hash of the key
+     * @param key  the encoded key, only used in exact mode
+     * @return true if the key wasn't in the set
+     */
+    /* default */ boolean add(final long hash, final byte[] key) {
+
+        final long storedHash = hash == EMPTY ? 1L : hash;
+        long index = storedHash & mask;
+        while (true) {
+            final long current = getHash(index);
+            if (current == EMPTY) {
+                putSlot(index, storedHash, exact ? store(key) : EMPTY);
+                size++;
+                if (size > capacity * MAX_LOAD_FACTOR) {
+                    resize();
+                }
+                return true;
+            }
+            if (current == storedHash && (!exact || equalsKey(getReference(index), key))) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated outside the heap.
+     *
+     * @return the number of allocated bytes
+     */
+    /* default */ long getAllocatedBytes() {
+        long bytes = capacity * slotSize;
+        for (final ByteBuffer arena : arenaList) {
+            bytes += arena.capacity();
+        }
+        return bytes;
+    }
+
+    /* default */ long size() {
+        return size;
+    }
+
+    private void allocate(final long newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        final long segmentSlots = Math.min(newCapacity, 1L << SEGMENT_BITS);
+        segments = new ByteBuffer[(int) (newCapacity / segmentSlots)];
+        for (int i = 0; i < segments.length; i++) {
+            // direct buffers are zero-filled, so every slot starts EMPTY
+            segments[i] = ByteBuffer.allocateDirect((int) (segmentSlots * slotSize));
+        }
+    }
+
+    private boolean equalsKey(final long reference, final byte[] key) {
+        final ByteBuffer arena = arenaList.get((int) (reference >>> Integer.SIZE));
+        final int position = (int) reference;
+        if (arena.getInt(position) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (arena.get(position + Integer.BYTES + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long getHash(final long index) {
+        return segments[(int) (index >>> SEGMENT_BITS)].getLong((int) (index & SEGMENT_MASK) * slotSize);
+    }
+
+    private long getReference(final long index) {
+        return segments[(int) (index >>> SEGMENT_BITS)].getLong((int) (index & SEGMENT_MASK) * slotSize + Long.BYTES);
+    }
+
+    private void putSlot(final long index, final long hash, final long reference) {
+        final ByteBuffer segment = segments[(int) (index >>> SEGMENT_BITS)];
+        final int position = (int) (index & SEGMENT_MASK) * slotSize;
+        segment.putLong(position, hash);
+        if (exact) {
+            segment.putLong(position + Long.BYTES, reference);
+        }
+    }
+
+    private void resize() {
+
+        final ByteBuffer[] oldSegments = segments;
+        final long oldCapacity = capacity;
+        allocate(oldCapacity << 1);
+        final long oldSegmentSlots = Math.min(oldCapacity, 1L << SEGMENT_BITS);
+        for (final ByteBuffer segment : oldSegments) {
+            for (int slot = 0; slot < oldSegmentSlots; slot++) {
+                final long hash = segment.getLong(slot * slotSize);
+                if (hash != EMPTY) {
+                    long index = hash & mask;
+                    while (getHash(index) != EMPTY) {
+                        index = (index + 1) & mask;
+                    }
+                    putSlot(index, hash, exact ? segment.getLong(slot * slotSize + Long.BYTES) : EMPTY);
+                }
+            }
+        }
+    }
+
+    private long store(final byte[] key) {
+
+        final int required = Integer.BYTES + key.length;
+        ByteBuffer arena = arenaList.isEmpty() ? null : arenaList.get(arenaList.size() - 1);
+        if (arena == null || arena.remaining() < required) {
+            arena = ByteBuffer.allocateDirect(Math.max(ARENA_SEGMENT_SIZE, required));
+            arenaList.add(arena);
+        }
+        final long reference = ((long) (arenaList.size() - 1) << Integer.SIZE) | arena.position();
+        arena.putInt(key.length);
+        arena.put(key);
+        return reference;
+    }
+}
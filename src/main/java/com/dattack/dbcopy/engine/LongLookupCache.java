@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+/**
+ * Open-addressing hash map from <code>long</code> keys to <code>long</code> values, stored in primitive arrays to
+ * avoid boxing. When a maximum size is set, the map evicts an entry before exceeding it using the CLOCK algorithm, an
+ * approximation of LRU that marks each entry as referenced when it's read and evicts the first unreferenced entry
+ * found by a sweeping hand. Without a maximum size, the map grows as needed. {@link Long#MIN_VALUE} can't be stored as
+ * a value because it's returned for absent keys. Instances are not thread-safe.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ final class LongLookupCache {
+
+    /* default */ static final long NO_VALUE = Long.MIN_VALUE;
+
+    private static final byte EMPTY = 0;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+    private static final int MIN_CAPACITY = 16;
+    private static final byte REFERENCED = 2;
+    private static final byte USED = 1;
+
+    private final transient int maxSize;
+    private transient int hand;
+    private transient long[] keys;
+    private transient int mask;
+    private transient int size;
+    private transient byte[] states;
+    private transient long[] values;
+
+    /* default */ LongLookupCache(final int maxSize) {
+        this.maxSize = maxSize;
+        allocate(capacityFor(maxSize > 0 ? maxSize : MIN_CAPACITY));
+    }
+
+    private static int capacityFor(final int entries) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * MAX_LOAD_FACTOR < entries) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int slot(final long key) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Returns the value of a key, marking it as recently used.
+     *
+     * @param key the key
+     * @return the value or {@link #NO_VALUE} if the key isn't in the map
+     */
+    /* default */ long get(final long key) {
+        final int index = indexOf(key);
+        if (index < 0) {
+            return NO_VALUE;
+        }
+        states[index] = REFERENCED;
+        return values[index];
+    }
+
+    /**
+     * Adds or replaces the value of a key, evicting another entry if the map is full.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    /* default */ void put(final long key, final long value) {
+
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+            states[index] = REFERENCED;
+            return;
+        }
+
+        if (maxSize > 0 && size >= maxSize) {
+            evict();
+        } else if (size + 1 > (mask + 1) * MAX_LOAD_FACTOR) {
+            resize();
+        }
+
+        index = slot(key) & mask;
+        while (states[index] != EMPTY) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        states[index] = REFERENCED;
+        size++;
+    }
+
+    /* default */ int size() {
+        return size;
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        states = new byte[capacity];
+        mask = capacity - 1;
+        size = 0;
+        hand = 0;
+    }
+
+    private void evict() {
+        while (true) {
+            hand = (hand + 1) & mask;
+            if (states[hand] == REFERENCED) {
+                states[hand] = USED;
+            } else if (states[hand] == USED) {
+                remove(hand);
+                return;
+            }
+        }
+    }
+
+    private int indexOf(final long key) {
+        int index = slot(key) & mask;
+        while (states[index] != EMPTY) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the entry of a slot, shifting back the following entries of the probe sequence so that no tombstones
+     * are needed.
+     */
+    private void remove(final int removed) {
+        int gap = removed;
+        int index = removed;
+        while (true) {
+            index = (index + 1) & mask;
+            if (states[index] == EMPTY) {
+                break;
+            }
+            final int home = slot(keys[index]) & mask;
+            final boolean inPlace = gap <= index ? gap < home && home <= index : gap < home || home <= index;
+            if (!inPlace) {
+                keys[gap] = keys[index];
+                values[gap] = values[index];
+                states[gap] = states[index];
+                gap = index;
+            }
+        }
+        states[gap] = EMPTY;
+        size--;
+    }
+
+    private void resize() {
+        final long[] oldKeys = keys;
+        final long[] oldValues = values;
+        final byte[] oldStates = states;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStates[i] != EMPTY) {
+                int index = slot(oldKeys[i]) & mask;
+                while (states[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+                states[index] = oldStates[i];
+                size++;
+            }
+        }
+    }
+}
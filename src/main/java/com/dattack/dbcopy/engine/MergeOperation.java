@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.beans.InsertOperationBean;
+import com.dattack.dbcopy.engine.pool.DataSourceRegistry;
+import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Moves the rows loaded by a task into a staging table to the target table using a single set-based MERGE, so that
+ * an incremental load costs one statement instead of one MERGE per row.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class MergeOperation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MergeOperation.class);
+
+    private final transient InsertOperationBean bean;
+    private final transient AbstractConfiguration configuration;
+    private final transient String stagingTable;
+    private final transient String taskName;
+
+    /* default */ MergeOperation(final InsertOperationBean bean, final AbstractConfiguration configuration,
+        final String stagingTable, final String taskName)
+    {
+        this.bean = bean;
+        this.configuration = configuration;
+        this.stagingTable = ConfigurationUtil.interpolate(stagingTable, configuration);
+        this.taskName = taskName;
+    }
+
+    /**
+     * Removes the rows left in the staging table by a previous execution.
+     *
+     * @throws SQLException if a database access error occurs
+     */
+    /* default */ void clearStaging() throws SQLException {
+
+        try (Connection connection = getConnection(); //
+             Statement stmt = connection.createStatement())
+        {
+            final int count = stmt.executeUpdate("DELETE FROM " + stagingTable);
+            commit(connection);
+            if (count > 0) {
+                LOGGER.warn("Task {}: {} stale rows removed from staging table {}", taskName, count, stagingTable);
+            }
+        }
+    }
+
+    /**
+     * Merges the content of the staging table into the target table and empties the staging table, both in the
+     * same transaction.
+     *
+     * @return the number of rows merged
+     * @throws SQLException if a database access error occurs
+     */
+    /* default */ int execute() throws SQLException {
+
+        final String target = ConfigurationUtil.interpolate(bean.getMergeInto(), configuration);
+        final List<String> keys = Arrays.stream(StringUtils.split(StringUtils.trimToEmpty(bean.getMergeKey()), ',')) //
+            .map(String::trim) //
+            .collect(Collectors.toList());
+        if (keys.isEmpty()) {
+            throw new SQLException(String.format("Task %s: merge-key is required to merge into %s", taskName,
+                                                 target));
+        }
+
+        try (Connection connection = getConnection()) {
+
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+
+                final String sql = Dialect.of(connection.getMetaData()) //
+                    .mergeSql(target, stagingTable, getColumns(stmt), keys);
+                LOGGER.info("Executing SQL: {}", sql);
+                final int count = stmt.executeUpdate(sql);
+                stmt.executeUpdate("DELETE FROM " + stagingTable);
+                connection.commit();
+                LOGGER.info("Task {}: {} rows merged into {}", taskName, count, target);
+                return count;
+            } catch (final SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private static void commit(final Connection connection) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    private Connection getConnection() throws SQLException {
+        return DataSourceRegistry.getDataSource(ConfigurationUtil.interpolate(bean.getDatasource(), configuration))
+            .getConnection();
+    }
+
+    private List<String> getColumns(final Statement stmt) throws SQLException {
+
+        try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + stagingTable + " WHERE 1 = 0")) {
+            final ResultSetMetaData metaData = rs.getMetaData();
+            final List<String> columns = new ArrayList<>(metaData.getColumnCount());
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columns.add(metaData.getColumnName(i));
+            }
+            return columns;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when the number of rows rejected by a task exceeds the configured limit.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+class RejectLimitExceededException extends SQLException {
+
+    private static final long serialVersionUID = 6101416224385396416L;
+
+    /* default */ RejectLimitExceededException(final String taskName, final long maxRejects, final Throwable cause) {
+        super(String.format("Task %s aborted: the number of rejected rows exceeds the limit (%,d)", taskName,
+                            maxRejects), cause);
+    }
+}
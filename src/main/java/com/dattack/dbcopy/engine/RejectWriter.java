@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2017, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.formats.csv.CSVConfiguration;
+import com.dattack.formats.csv.CSVStringBuilder;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Sink of the rows rejected by the target database. Each rejected row is written as a CSV line containing the
+ * SQLSTATE, the vendor error code and the error message followed by the values of the row. When no file is
+ * configured, the rejected rows are only logged. Instances are shared by all the insert workers of a task.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+class RejectWriter implements Closeable {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final Logger LOGGER = LoggerFactory.getLogger(RejectWriter.class);
+
+    private final transient CSVStringBuilder csvStringBuilder;
+    private final transient String filename;
+    private transient Writer writer;
+
+    /* default */ RejectWriter(final String filename) {
+        this.filename = filename;
+        this.csvStringBuilder = new CSVStringBuilder(CSVConfiguration.custom(new Properties()).build());
+    }
+
+    private static String toText(final AbstractDataType<?> value) throws SQLException {
+
+        if (Objects.isNull(value) || value.isNull()) {
+            return null;
+        }
+
+        final Object object = value.getValue();
+        String text;
+        if (object instanceof Clob) {
+            final Clob clob = (Clob) object;
+            text = clob.getSubString(1L, (int) clob.length());
+        } else if (object instanceof Blob) {
+            final Blob blob = (Blob) object;
+            text = toHex(blob.getBytes(1L, (int) blob.length()));
+        } else if (object instanceof byte[]) {
+            text = toHex((byte[]) object);
+        } else if (object instanceof SQLXML) {
+            text = ((SQLXML) object).getString();
+        } else {
+            text = object.toString();
+        }
+        return text;
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (final byte value : bytes) {
+            builder.append(HEX_DIGITS[(value >> 4) & 0x0F]).append(HEX_DIGITS[value & 0x0F]);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null; //NOPMD
+        }
+    }
+
+    /**
+     * Writes a rejected row.
+     *
+     * @param columns   the columns of the row
+     * @param row       the rejected row
+     * @param exception the error raised by the target database
+     * @throws SQLException if a value of the row can't be read
+     */
+    /* default */ synchronized void reject(final List<ColumnMetadata> columns, final AbstractDataType<?>[] row,
+        final SQLException exception) throws SQLException
+    {
+        csvStringBuilder.clear();
+        csvStringBuilder.append(exception.getSQLState()) //
+            .append(String.valueOf(exception.getErrorCode())) //
+            .append(StringUtils.trimToEmpty(exception.getMessage()));
+        for (final ColumnMetadata columnMetadata : columns) {
+            csvStringBuilder.append(toText(row[columnMetadata.getIndex() - 1]));
+        }
+        csvStringBuilder.eol();
+
+        final String line = csvStringBuilder.toString();
+        if (StringUtils.isBlank(filename)) {
+            LOGGER.warn("Rejected row: {}", line);
+            return;
+        }
+
+        try {
+            getWriter().write(line);
+            writer.flush();
+        } catch (final IOException e) {
+            LOGGER.error("Unable to write to reject file {}: {}. Rejected row: {}", filename, e.getMessage(), line);
+        }
+    }
+
+    private Writer getWriter() throws IOException {
+        if (Objects.isNull(writer)) {
+            final Path path = Paths.get(filename);
+            final Path parent = path.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, //
+                                             StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return writer;
+    }
+
+    @Override
+    public String toString() {
+        return "RejectWriter{filename=" + filename + '}';
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.beans.RetryBean;
+import org.apache.commons.lang.StringUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which failures are transient, according to their SQLState and vendor error code, and how long to wait
+ * before each new attempt.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ final class RetryPolicy {
+
+    private static final int MAX_CAUSES = 32;
+
+    private final transient RetryBean bean;
+    private final transient Set<Integer> errorCodeSet;
+    private final transient List<String> sqlStateList;
+
+    private RetryPolicy(final RetryBean bean) {
+        this.bean = bean;
+        this.sqlStateList = new ArrayList<>();
+        for (final String sqlState : StringUtils.split(StringUtils.trimToEmpty(bean.getSqlStates()), ',')) {
+            if (StringUtils.isNotBlank(sqlState)) {
+                sqlStateList.add(sqlState.trim().toUpperCase(Locale.ENGLISH));
+            }
+        }
+        this.errorCodeSet = new HashSet<>();
+        for (final String errorCode : StringUtils.split(StringUtils.trimToEmpty(bean.getErrorCodes()), ',')) {
+            if (StringUtils.isNotBlank(errorCode)) {
+                errorCodeSet.add(Integer.valueOf(errorCode.trim()));
+            }
+        }
+    }
+
+    private static void addIfAbsent(final List<Throwable> list, final Throwable throwable) {
+        if (throwable != null && list.stream().noneMatch(t -> t == throwable)) {
+            list.add(throwable);
+        }
+    }
+
+    /**
+     * Creates the policy described by a bean.
+     *
+     * @param bean the retry configuration
+     * @return the policy, or null if there is no retry configuration
+     */
+    /* default */ static RetryPolicy of(final RetryBean bean) {
+        return bean == null ? null : new RetryPolicy(bean);
+    }
+
+    /* default */ int getBatchAttempts() {
+        return bean.getBatchAttempts();
+    }
+
+    /**
+     * Returns the time to wait before an attempt: the configured delay multiplied by the backoff factor after each
+     * failed attempt, up to the maximum delay, of which a random half is used as jitter.
+     *
+     * @param attempt the number of the attempt, starting at 1
+     * @return the delay in milliseconds
+     */
+    /* default */ long getDelay(final int attempt) {
+        final double exponential = bean.getDelay() * Math.pow(bean.getMultiplier(), Math.max(attempt - 1, 0));
+        final long delay = (long) Math.min(exponential, bean.getMaxDelay());
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /* default */ int getTaskAttempts() {
+        return bean.getTaskAttempts();
+    }
+
+    /**
+     * Checks if a failure is transient: the exception, one of its causes or one of the chained SQL exceptions has
+     * one of the configured SQLStates or error codes. Exceeding the limit of rejected rows is never transient.
+     *
+     * @param throwable the failure
+     * @return true if the operation can be retried
+     */
+    /* default */ boolean isRetryable(final Throwable throwable) {
+
+        if (throwable instanceof RejectLimitExceededException) {
+            return false;
+        }
+
+        final List<Throwable> pending = new ArrayList<>();
+        pending.add(throwable);
+        for (int i = 0; i < pending.size() && i < MAX_CAUSES; i++) {
+            final Throwable current = pending.get(i);
+            if (current instanceof SQLException) {
+                final SQLException exception = (SQLException) current;
+                if (isRetryable(exception.getSQLState(), exception.getErrorCode())) {
+                    return true;
+                }
+                addIfAbsent(pending, exception.getNextException());
+            }
+            addIfAbsent(pending, current.getCause());
+        }
+        return false;
+    }
+
+    private boolean isRetryable(final String sqlState, final int errorCode) {
+        if (errorCode != 0 && errorCodeSet.contains(errorCode)) {
+            return true;
+        }
+        if (sqlState != null) {
+            for (final String prefix : sqlStateList) {
+                if (sqlState.toUpperCase(Locale.ENGLISH).startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits before an attempt.
+     *
+     * @param delay the time to wait in milliseconds
+     * @return false if the current thread was interrupted while waiting
+     */
+    /* default */ static boolean sleep(final long delay) {
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
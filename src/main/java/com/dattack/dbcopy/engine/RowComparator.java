@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import org.apache.commons.lang.StringUtils;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Orders the rows by the value of a list of key columns, each one optionally followed by <code>ASC</code> or
+ * <code>DESC</code>. Nulls are sorted after any other value, as in the indexes of most databases. Strings are compared
+ * by their UTF-16 code units, which may differ from the collation of the target database; the resulting order is
+ * still clustered enough to avoid most of the index block splits.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class RowComparator implements Comparator<AbstractDataType<?>[]> {
+
+    private static final String DESC = "DESC";
+
+    private final transient int[] columnIndexes;
+    private final transient boolean[] descending;
+
+    /* default */ RowComparator(final String sortBy, final RowMetadata rowMetadata) throws SQLException {
+
+        final String[] items = StringUtils.split(StringUtils.trimToEmpty(sortBy), ',');
+        if (items.length == 0) {
+            throw new SQLException("Missing 'sort-by' columns");
+        }
+
+        this.columnIndexes = new int[items.length];
+        this.descending = new boolean[items.length];
+        for (int i = 0; i < items.length; i++) {
+            final String[] tokens = StringUtils.split(StringUtils.trim(items[i]));
+            columnIndexes[i] = RowRouter.parseColumns("sort-by", tokens[0], rowMetadata)[0];
+            if (tokens.length > 1) {
+                final String order = tokens[1].toUpperCase(Locale.ENGLISH);
+                if (!DESC.equals(order) && !"ASC".equals(order)) {
+                    throw new SQLException(String.format("Invalid sort order: %s", StringUtils.trim(items[i])));
+                }
+                descending[i] = DESC.equals(order);
+            }
+        }
+    }
+
+    private static int compareBytes(final byte[] left, final byte[] right) {
+        final int length = Math.min(left.length, right.length);
+        for (int i = 0; i < length; i++) {
+            final int result = (left[i] & 0xFF) - (right[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return left.length - right.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(final Object left, final Object right) {
+
+        int result;
+        if (left instanceof byte[] && right instanceof byte[]) {
+            result = compareBytes((byte[]) left, (byte[]) right);
+        } else if (left instanceof Comparable && left.getClass().equals(right.getClass())) {
+            result = ((Comparable<Object>) left).compareTo(right);
+        } else if (left instanceof Number && right instanceof Number) {
+            result = new BigDecimal(left.toString()).compareTo(new BigDecimal(right.toString()));
+        } else {
+            result = left.toString().compareTo(right.toString());
+        }
+        return result;
+    }
+
+    private static Object valueOf(final AbstractDataType<?> value) {
+        return Objects.isNull(value) || value.isNull() ? null : value.getValue();
+    }
+
+    @Override
+    public int compare(final AbstractDataType<?>[] left, final AbstractDataType<?>[] right) {
+
+        for (int i = 0; i < columnIndexes.length; i++) {
+            final Object leftValue = valueOf(left[columnIndexes[i]]);
+            final Object rightValue = valueOf(right[columnIndexes[i]]);
+            int result;
+            if (leftValue == null) {
+                result = rightValue == null ? 0 : 1;
+            } else if (rightValue == null) {
+                result = -1;
+            } else {
+                result = compareValues(leftValue, rightValue);
+                if (descending[i]) {
+                    result = -result;
+                }
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.beans.DedupBean;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.dbcopy.engine.functions.FunctionException;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Stage that removes the rows with duplicate keys before they reach the insert workers, so that sources emitting
+ * repeated keys can be loaded with plain inserts instead of merges. With {@link DedupBean.Keep#FIRST}, the hash of
+ * every key read is tracked in an off-heap {@link KeyHashSet} and the rows whose key has already been seen are
+ * dropped. With {@link DedupBean.Keep#LAST}, the rows arrive sorted by the key, so only the last row of each run of
+ * equal keys is kept and no set is needed.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class RowDeduplicator implements RowStage {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RowDeduplicator.class);
+
+    private final transient int[] columnIndexes;
+    private final transient DataOutputStream keyOutput;
+    private final transient ByteArrayOutputStream keyBuffer;
+    private final transient KeyHashSet keySet;
+    private final transient String taskName;
+    private final transient RowStage upstream;
+    private transient long duplicates;
+    private transient boolean exhausted;
+    private transient AbstractDataType<?>[] pendingRow;
+    private transient byte[] pendingKey;
+
+    /* default */ RowDeduplicator(final RowStage upstream, final DedupBean bean, final String taskName)
+        throws SQLException
+    {
+        this.upstream = upstream;
+        this.taskName = taskName;
+        this.columnIndexes = RowRouter.parseColumns("key", bean.getKey(), upstream.getRowMetadata());
+        this.keyBuffer = new ByteArrayOutputStream();
+        this.keyOutput = new DataOutputStream(keyBuffer);
+        this.keySet = bean.getKeep() == DedupBean.Keep.FIRST //
+            ? new KeyHashSet(bean.getExpectedKeys(), bean.isExact()) : null;
+        this.duplicates = 0;
+        this.exhausted = false;
+    }
+
+    private static long hash(final byte[] bytes) {
+        // FNV-1a followed by the MurmurHash3 finalizer
+        long hash = 0xcbf29ce484222325L;
+        for (final byte value : bytes) {
+            hash ^= value & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Checks that the rows sorted by the given columns are also grouped by the key columns, that is, that the sort
+     * columns start with all the key columns in any order.
+     *
+     * @param key    the comma-separated list of key columns
+     * @param sortBy the comma-separated list of sort columns
+     * @return true if the rows with the same key are consecutive
+     */
+    /* default */ static boolean isGroupedBy(final String key, final String sortBy) {
+
+        final Set<String> keySet = new HashSet<>();
+        for (final String column : StringUtils.split(StringUtils.trimToEmpty(key), ',')) {
+            keySet.add(StringUtils.trim(column).toUpperCase(Locale.ENGLISH));
+        }
+
+        final Set<String> prefixSet = new HashSet<>();
+        final String[] sortColumns = StringUtils.split(StringUtils.trimToEmpty(sortBy), ',');
+        for (int i = 0; i < Math.min(keySet.size(), sortColumns.length); i++) {
+            prefixSet.add(StringUtils.split(StringUtils.trim(sortColumns[i]))[0].toUpperCase(Locale.ENGLISH));
+        }
+        return !keySet.isEmpty() && keySet.equals(prefixSet);
+    }
+
+    private static Object valueOf(final AbstractDataType<?> value) {
+        return Objects.isNull(value) || value.isNull() ? null : value.getValue();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (keySet != null) {
+            LOGGER.info("[{}] Dropped {} duplicate rows ({} distinct keys, {} off-heap bytes)", taskName, duplicates,
+                        keySet.size(), keySet.getAllocatedBytes());
+        } else {
+            LOGGER.info("[{}] Replaced {} duplicate rows", taskName, duplicates);
+        }
+        upstream.close();
+    }
+
+    @Override
+    public RowMetadata getRowMetadata() {
+        return upstream.getRowMetadata();
+    }
+
+    @Override
+    public synchronized AbstractDataType<?>[] transfer() throws SQLException, InterruptedException, FunctionException {
+        return keySet == null ? transferLast() : transferFirst();
+    }
+
+    /**
+     * Encodes the key of a row in a canonical form: numbers that compare as equal (like <code>1.0</code> and
+     * <code>1</code>) have the same encoding.
+     */
+    private byte[] encodeKey(final AbstractDataType<?>[] row) throws SQLException {
+
+        keyBuffer.reset();
+        try {
+            for (final int index : columnIndexes) {
+                final Object value = valueOf(row[index]);
+                if (value == null) {
+                    keyOutput.writeByte(0);
+                } else if (value instanceof Number) {
+                    keyOutput.writeByte(1);
+                    keyOutput.writeUTF(new BigDecimal(value.toString()).stripTrailingZeros().toPlainString());
+                } else if (value instanceof byte[]) {
+                    keyOutput.writeByte(2);
+                    keyOutput.writeInt(((byte[]) value).length);
+                    keyOutput.write((byte[]) value);
+                } else if (value instanceof Date) {
+                    keyOutput.writeByte(3);
+                    keyOutput.writeLong(((Date) value).getTime());
+                    keyOutput.writeInt(value instanceof Timestamp ? ((Timestamp) value).getNanos() : 0);
+                } else {
+                    final byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                    keyOutput.writeByte(4);
+                    keyOutput.writeInt(bytes.length);
+                    keyOutput.write(bytes);
+                }
+            }
+            keyOutput.flush();
+        } catch (final IOException e) {
+            throw new SQLException("Unable to encode the deduplication key", e);
+        }
+        return keyBuffer.toByteArray();
+    }
+
+    private AbstractDataType<?>[] transferFirst() throws SQLException, InterruptedException, FunctionException {
+
+        AbstractDataType<?>[] row = upstream.transfer();
+        while (row != null) {
+            final byte[] key = encodeKey(row);
+            if (keySet.add(hash(key), key)) {
+                break;
+            }
+            duplicates++;
+            row = upstream.transfer();
+        }
+        return row;
+    }
+
+    private AbstractDataType<?>[] transferLast() throws SQLException, InterruptedException, FunctionException {
+
+        if (exhausted) {
+            return null;
+        }
+
+        if (pendingRow == null) {
+            pendingRow = upstream.transfer();
+            if (pendingRow == null) {
+                exhausted = true;
+                return null;
+            }
+            pendingKey = encodeKey(pendingRow);
+        }
+
+        AbstractDataType<?>[] row = upstream.transfer();
+        while (row != null) {
+            final byte[] key = encodeKey(row);
+            if (!Arrays.equals(key, pendingKey)) {
+                final AbstractDataType<?>[] result = pendingRow;
+                pendingRow = row;
+                pendingKey = key;
+                return result;
+            }
+            duplicates++;
+            pendingRow = row;
+            row = upstream.transfer();
+        }
+
+        exhausted = true;
+        final AbstractDataType<?>[] result = pendingRow;
+        pendingRow = null;
+        return result;
+    }
+}
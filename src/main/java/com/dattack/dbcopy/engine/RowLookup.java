@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.beans.LookupBean;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.dbcopy.engine.datatype.LongType;
+import com.dattack.dbcopy.engine.functions.AbstractDataFunction;
+import com.dattack.dbcopy.engine.functions.FunctionException;
+import com.dattack.dbcopy.engine.pool.DataSourceRegistry;
+import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Stage that replaces the values of a column using a key-value query executed on a datasource, so that the
+ * translation of natural keys into surrogate keys doesn't need a correlated subquery per inserted row. The map is
+ * either preloaded with all the pairs returned by the query or fetched lazily: the rows are read in batches and the
+ * keys of each batch missing from the cache are fetched with a single query, and the cache evicts the least recently
+ * used keys once it's full.
+ * <p>
+ * When the column and both columns of the query are integers, the pairs are kept in a {@link LongLookupCache} of
+ * primitive values; otherwise, in a map of canonical keys (numbers are compared by value) whose value instances are
+ * shared by all the translated rows.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class RowLookup implements RowStage {
+
+    private static final String KEYS_PLACEHOLDER = ":keys";
+    private static final Logger LOGGER = LoggerFactory.getLogger(RowLookup.class);
+    private static final int MAX_LONG_PRECISION = 18;
+    private static final long MISSING = Long.MIN_VALUE + 2;
+    private static final Object MISSING_VALUE = new Object();
+    private static final long NULL_VALUE = Long.MIN_VALUE + 1;
+
+    private final transient LookupBean bean;
+    private final transient Queue<AbstractDataType<?>[]> bufferQueue;
+    private final transient int columnIndex;
+    private final transient AbstractConfiguration configuration;
+    private final transient boolean integerColumn;
+    private final transient String taskName;
+    private final transient RowStage upstream;
+    private transient Connection connection;
+    private transient boolean exhausted;
+    private transient long fetchedKeys;
+    private transient LongLookupCache longCache;
+    private transient Map<Object, Object> objectCache;
+    private transient PreparedStatement statement;
+    private transient AbstractDataFunction<?> valueFunction;
+
+    /* default */ RowLookup(final RowStage upstream, final LookupBean bean, final AbstractConfiguration configuration,
+        final String taskName) throws SQLException
+    {
+        this.upstream = upstream;
+        this.bean = bean;
+        this.configuration = configuration;
+        this.taskName = taskName;
+        this.columnIndex = RowRouter.parseColumns("column", bean.getColumn(), upstream.getRowMetadata())[0];
+        this.integerColumn = isInteger(getColumnMetadata(upstream.getRowMetadata(), columnIndex));
+        this.bufferQueue = new ArrayDeque<>();
+        this.exhausted = false;
+        this.fetchedKeys = 0;
+    }
+
+    private static Object canonical(final Object value) {
+        Object result = value;
+        if (value instanceof Number) {
+            result = new BigDecimal(value.toString()).stripTrailingZeros();
+        }
+        return result;
+    }
+
+    private static ColumnMetadata getColumnMetadata(final RowMetadata rowMetadata, final int index) {
+        ColumnMetadata result = null;
+        for (final ColumnMetadata columnMetadata : rowMetadata.getColumnsMetadata()) {
+            if (columnMetadata.getIndex() == index + 1) {
+                result = columnMetadata;
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isInteger(final ColumnMetadata columnMetadata) {
+        return columnMetadata != null
+            && isInteger(columnMetadata.getType(), columnMetadata.getPrecision(), columnMetadata.getScale());
+    }
+
+    private static boolean isInteger(final int type, final int precision, final int scale) {
+        boolean result;
+        switch (type) {
+            case Types.BIGINT:
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                result = true;
+                break;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                result = scale == 0 && precision > 0 && precision <= MAX_LONG_PRECISION;
+                break;
+            default:
+                result = false;
+                break;
+        }
+        return result;
+    }
+
+    private static Object valueOf(final AbstractDataType<?> value) {
+        return Objects.isNull(value) || value.isNull() ? null : value.getValue();
+    }
+
+    @Override
+    public synchronized void close() {
+        LOGGER.info("[{}] Lookup of column {}: {} keys fetched, {} cached", taskName, bean.getColumn(), fetchedKeys,
+                    longCache == null ? objectCache == null ? 0 : objectCache.size() : longCache.size());
+        closeQuietly(statement);
+        closeQuietly(connection);
+        upstream.close();
+    }
+
+    @Override
+    public RowMetadata getRowMetadata() {
+        return upstream.getRowMetadata();
+    }
+
+    @Override
+    public synchronized AbstractDataType<?>[] transfer() throws SQLException, InterruptedException, FunctionException {
+
+        if (bufferQueue.isEmpty() && !exhausted) {
+            if (bean.getMode() == LookupBean.Mode.PRELOAD) {
+                if (longCache == null && objectCache == null) {
+                    preload();
+                }
+                final AbstractDataType<?>[] row = upstream.transfer();
+                if (row == null) {
+                    exhausted = true;
+                } else {
+                    translate(Collections.singletonList(row));
+                    bufferQueue.add(row);
+                }
+            } else {
+                fillBuffer();
+            }
+        }
+        return bufferQueue.poll();
+    }
+
+    private void closeQuietly(final AutoCloseable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (final Exception e) { //NOPMD
+                LOGGER.warn("[{}] Unable to close the lookup resources: {}", taskName, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Creates the cache the first time the query is executed, depending on the types of its columns.
+     */
+    private void createCache(final ResultSetMetaData metaData) throws SQLException {
+
+        if (longCache != null || objectCache != null) {
+            return;
+        }
+
+        final int maxSize = bean.getMode() == LookupBean.Mode.LAZY ? bean.getCacheSize() : 0;
+        if (integerColumn
+            && isInteger(metaData.getColumnType(1), metaData.getPrecision(1), metaData.getScale(1))
+            && isInteger(metaData.getColumnType(2), metaData.getPrecision(2), metaData.getScale(2)))
+        {
+            longCache = new LongLookupCache(maxSize);
+        } else {
+            objectCache = new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Object, Object> eldest) {
+                    return maxSize > 0 && size() > maxSize;
+                }
+            };
+            valueFunction = ColumnMetadata.custom() //
+                .withName(metaData.getColumnName(2)) //
+                .withIndex(2) //
+                .withType(metaData.getColumnType(2)) //
+                .withPrecision(metaData.getPrecision(2)) //
+                .withScale(metaData.getScale(2)) //
+                .withNullable(metaData.isNullable(2)) //
+                .build().getFunction();
+        }
+    }
+
+    /**
+     * Reads a batch of rows and fetches the keys missing from the cache with a single query.
+     */
+    private void fillBuffer() throws SQLException, InterruptedException, FunctionException {
+
+        final List<AbstractDataType<?>[]> rowList = new ArrayList<>();
+        AbstractDataType<?>[] row = null;
+        while (rowList.size() < bean.getBatchSize() && (row = upstream.transfer()) != null) { //NOPMD
+            rowList.add(row);
+        }
+        if (row == null) {
+            exhausted = true;
+        }
+        translate(rowList);
+        bufferQueue.addAll(rowList);
+    }
+
+    private Map<Object, Object> fetch(final Set<Object> keySet) throws SQLException {
+
+        final Map<Object, Object> resultMap = new HashMap<>();
+        if (keySet.isEmpty()) {
+            return resultMap;
+        }
+
+        if (statement == null) {
+            final String sql = ConfigurationUtil.interpolate(StringUtils.trimToEmpty(bean.getSql()), configuration);
+            if (!sql.contains(KEYS_PLACEHOLDER)) {
+                throw new SQLException("The query of a lazy lookup must contain the " + KEYS_PLACEHOLDER
+                                           + " placeholder");
+            }
+            final String placeholders = String.join(", ", Collections.nCopies(bean.getBatchSize(), "?"));
+            connection = getConnection();
+            statement = connection.prepareStatement(sql.replace(KEYS_PLACEHOLDER, placeholders));
+            LOGGER.info("[{}] Lookup SQL: {}", taskName, sql);
+        }
+
+        final List<Object> keyList = new ArrayList<>(keySet);
+        for (int i = 0; i < keyList.size(); i += bean.getBatchSize()) {
+            for (int j = 0; j < bean.getBatchSize(); j++) {
+                // the last key is repeated to fill the fixed list of parameters
+                statement.setObject(j + 1, keyList.get(Math.min(i + j, keyList.size() - 1)));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                read(resultSet, resultMap);
+            }
+        }
+        fetchedKeys += keyList.size();
+        return resultMap;
+    }
+
+    /**
+     * Returns a connection to the datasource of the lookup.
+     */
+    /* default */ Connection getConnection() throws SQLException {
+        final String datasource = ConfigurationUtil.interpolate(bean.getDatasource(), configuration);
+        return DataSourceRegistry.getDataSource(datasource).getConnection();
+    }
+
+    /**
+     * Returns the cached value of a key, {@link #MISSING_VALUE} if the key is known not to exist, or null if the key
+     * isn't cached.
+     */
+    private Object getCached(final Object key) {
+
+        Object result = null;
+        if (longCache != null) {
+            final long value = longCache.get((Long) key);
+            if (value == MISSING) {
+                result = MISSING_VALUE;
+            } else if (value == NULL_VALUE) {
+                result = LongType.NULL;
+            } else if (value != LongLookupCache.NO_VALUE) {
+                result = new LongType(value);
+            }
+        } else if (objectCache != null) {
+            result = objectCache.get(key);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the key of a value in the form stored by the cache. The cache is created by the first query, so the
+     * keys taken before it are canonical and must be converted again once it exists.
+     */
+    private Object keyOf(final Object value) {
+        if (value == null) {
+            return null;
+        }
+        return longCache != null ? (Object) ((Number) value).longValue() : canonical(value);
+    }
+
+    private void preload() throws SQLException {
+
+        final String sql = ConfigurationUtil.interpolate(StringUtils.trimToEmpty(bean.getSql()), configuration);
+        LOGGER.info("[{}] Preloading lookup: {}", taskName, sql);
+        try (Connection conn = getConnection(); //
+             Statement stmt = conn.createStatement(); //
+             ResultSet resultSet = stmt.executeQuery(sql))
+        {
+            final Map<Object, Object> resultMap = new HashMap<>();
+            read(resultSet, resultMap);
+            fetchedKeys = resultMap.size();
+        }
+    }
+
+    private void put(final Object key, final Object value) {
+        if (longCache != null) {
+            long primitive = MISSING;
+            if (value instanceof LongType) {
+                primitive = ((LongType) value).isNull() ? NULL_VALUE : ((LongType) value).getValue();
+            }
+            longCache.put((Long) key, primitive);
+        } else {
+            objectCache.put(key, value);
+        }
+    }
+
+    /**
+     * Reads the pairs returned by the query into the cache and the given map.
+     */
+    private void read(final ResultSet resultSet, final Map<Object, Object> resultMap) throws SQLException {
+
+        createCache(resultSet.getMetaData());
+        while (resultSet.next()) {
+            final Object key;
+            final Object value;
+            if (longCache != null) {
+                key = resultSet.getLong(1);
+                final long primitive = resultSet.getLong(2);
+                value = resultSet.wasNull() ? LongType.NULL : new LongType(primitive);
+            } else {
+                key = canonical(resultSet.getObject(1));
+                try {
+                    value = valueFunction.get(resultSet);
+                } catch (final FunctionException e) {
+                    throw new SQLException("Unable to read a lookup value", e);
+                }
+            }
+            if (key != null) {
+                put(key, value);
+                resultMap.put(key, value);
+            }
+        }
+    }
+
+    /**
+     * Replaces the values of the column of a list of rows, fetching the keys that aren't cached.
+     */
+    private void translate(final List<AbstractDataType<?>[]> rowList) throws SQLException {
+
+        final Map<Object, Object> batchMap = new HashMap<>();
+        final Set<Object> missingSet = new LinkedHashSet<>();
+        for (final AbstractDataType<?>[] row : rowList) {
+            final Object key = keyOf(valueOf(row[columnIndex]));
+            if (key != null && !batchMap.containsKey(key)) {
+                final Object value = getCached(key);
+                if (value == null && bean.getMode() == LookupBean.Mode.LAZY) {
+                    missingSet.add(key);
+                } else {
+                    batchMap.put(key, value == null ? MISSING_VALUE : value);
+                }
+            }
+        }
+
+        if (!missingSet.isEmpty()) {
+            final Map<Object, Object> fetchedMap = fetch(missingSet);
+            for (final Object missingKey : missingSet) {
+                final Object key = keyOf(missingKey);
+                final Object value = fetchedMap.get(key);
+                if (value == null) {
+                    // remembers the missing key so it isn't fetched again
+                    put(key, MISSING_VALUE);
+                }
+                batchMap.put(key, value == null ? MISSING_VALUE : value);
+            }
+        }
+
+        for (final AbstractDataType<?>[] row : rowList) {
+            final Object key = keyOf(valueOf(row[columnIndex]));
+            if (key == null) {
+                continue;
+            }
+            final Object value = batchMap.get(key);
+            if (value == MISSING_VALUE) {
+                switch (bean.getOnMissing()) {
+                    case FAIL:
+                        throw new SQLException(String.format("No lookup value for %s = %s", bean.getColumn(), key));
+                    case NULL:
+                        row[columnIndex] = null;
+                        break;
+                    case KEEP:
+                    default:
+                        break;
+                }
+            } else {
+                row[columnIndex] = (AbstractDataType<?>) value;
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import org.apache.commons.lang.StringUtils;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Assigns each row to a fixed insert worker according to the value of its routing columns, so that every worker
+ * writes a disjoint key space. By default, the worker is selected using a hash of the routing values. When range
+ * bounds are provided, the value of the single routing column is mapped to the range containing it (each bound is
+ * the exclusive upper limit of a range, like the <code>VALUES LESS THAN</code> clause of a partitioned table) and
+ * consecutive ranges are assigned to consecutive workers. A lookup map may also assign explicit workers to the values
+ * of the single routing column, falling back to the hash for the values not included in the map.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class RowRouter {
+
+    private static final String MAXVALUE = "MAXVALUE";
+    private static final char QUOTE = '\'';
+
+    private final transient List<Comparable<?>> boundList;
+    private final transient int[] columnIndexes;
+    private final transient Map<String, Integer> lookupMap;
+    private final transient int workers;
+
+    /* default */ RowRouter(final String routeBy, final String routeBounds, final RowMetadata rowMetadata,
+        final int workers) throws SQLException
+    {
+        this("route-by", routeBy, routeBounds, null, rowMetadata, workers);
+    }
+
+    /* default */ RowRouter(final String attribute, final String columns, final String bounds, final String lookup,
+        final RowMetadata rowMetadata, final int workers) throws SQLException
+    {
+        this.workers = workers;
+        this.columnIndexes = parseColumns(attribute, columns, rowMetadata);
+        this.boundList = parseBounds(bounds);
+        this.lookupMap = parseLookup(lookup, workers);
+        if ((!boundList.isEmpty() || !lookupMap.isEmpty()) && columnIndexes.length != 1) {
+            throw new SQLException(String.format("Range bounds and lookup maps require a single '%s' column",
+                                                 attribute));
+        }
+        if (!boundList.isEmpty() && !lookupMap.isEmpty()) {
+            throw new SQLException("Range bounds and lookup maps can't be used together");
+        }
+    }
+
+    private static int compare(final Object value, final Comparable<?> bound) {
+        int result;
+        if (value instanceof Number && bound instanceof BigDecimal) {
+            result = toBigDecimal((Number) value).compareTo((BigDecimal) bound);
+        } else {
+            result = value.toString().compareTo(bound.toString());
+        }
+        return result;
+    }
+
+    private static int mix(final int hash) {
+        final int value = hash * 0x9E3779B9;
+        return value ^ (value >>> 16);
+    }
+
+    private static List<Comparable<?>> parseBounds(final String routeBounds) {
+
+        final List<Comparable<?>> list = new ArrayList<>();
+        for (final String item : StringUtils.split(StringUtils.trimToEmpty(routeBounds), ',')) {
+            final String bound = StringUtils.trim(item);
+            if (StringUtils.equalsIgnoreCase(MAXVALUE, bound)) {
+                break;
+            }
+            if (bound.length() > 1 && bound.charAt(0) == QUOTE && bound.charAt(bound.length() - 1) == QUOTE) {
+                list.add(bound.substring(1, bound.length() - 1));
+            } else {
+                list.add(new BigDecimal(bound));
+            }
+        }
+        return list;
+    }
+
+    /* default */ static int[] parseColumns(final String attribute, final String columns, final RowMetadata rowMetadata)
+        throws SQLException
+    {
+
+        final String[] names = StringUtils.split(StringUtils.trimToEmpty(columns), ',');
+        if (names.length == 0) {
+            throw new SQLException(String.format("Missing '%s' columns", attribute));
+        }
+
+        final int[] indexes = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            indexes[i] = -1;
+            for (final ColumnMetadata columnMetadata : rowMetadata.getColumnsMetadata()) {
+                if (StringUtils.equalsIgnoreCase(StringUtils.trim(names[i]), columnMetadata.getName())) {
+                    indexes[i] = columnMetadata.getIndex() - 1;
+                    break;
+                }
+            }
+            if (indexes[i] < 0) {
+                throw new SQLException(String.format("Unknown '%s' column: %s", attribute,
+                                                     StringUtils.trim(names[i])));
+            }
+        }
+        return indexes;
+    }
+
+    private static Map<String, Integer> parseLookup(final String lookup, final int workers) throws SQLException {
+
+        final Map<String, Integer> map = new HashMap<>();
+        for (final String item : StringUtils.split(StringUtils.trimToEmpty(lookup), ',')) {
+            final String key = StringUtils.trim(StringUtils.substringBeforeLast(item, "="));
+            final String target = StringUtils.trim(StringUtils.substringAfterLast(item, "="));
+            final int index;
+            try {
+                index = Integer.parseInt(target);
+            } catch (final NumberFormatException e) {
+                throw new SQLException(String.format("Invalid lookup entry: %s", StringUtils.trim(item)), e);
+            }
+            if (index < 0 || index >= workers) {
+                throw new SQLException(String.format("Lookup entry out of range (0-%d): %s", workers - 1,
+                                                     StringUtils.trim(item)));
+            }
+            if (key.length() > 1 && key.charAt(0) == QUOTE && key.charAt(key.length() - 1) == QUOTE) {
+                map.put(key.substring(1, key.length() - 1), index);
+            } else {
+                map.put(normalize(key), index);
+            }
+        }
+        return map;
+    }
+
+    private static String normalize(final String key) {
+        try {
+            return new BigDecimal(key).stripTrailingZeros().toPlainString();
+        } catch (final NumberFormatException e) {
+            return key;
+        }
+    }
+
+    private static String toLookupKey(final Object value) {
+        String key;
+        if (value instanceof Number) {
+            key = toBigDecimal((Number) value).stripTrailingZeros().toPlainString();
+        } else {
+            key = value.toString();
+        }
+        return key;
+    }
+
+    private static BigDecimal toBigDecimal(final Number number) {
+        BigDecimal result;
+        if (number instanceof BigDecimal) {
+            result = (BigDecimal) number;
+        } else if (number instanceof Double || number instanceof Float) {
+            result = BigDecimal.valueOf(number.doubleValue());
+        } else {
+            result = BigDecimal.valueOf(number.longValue());
+        }
+        return result;
+    }
+
+    private static Object valueOf(final AbstractDataType<?> value) {
+        return Objects.isNull(value) || value.isNull() ? null : value.getValue();
+    }
+
+    /**
+     * Returns the index of the worker that must write a row.
+     *
+     * @param row the row to route
+     * @return the index of the worker, between 0 and the number of workers (exclusive)
+     */
+    /* default */ int route(final AbstractDataType<?>[] row) {
+        return Math.floorMod(partition(row), workers);
+    }
+
+    /**
+     * Returns the partition of a row before reducing it to the number of workers: the mixed hash of the routing
+     * values, the index of the range containing them or the worker assigned by the lookup map.
+     *
+     * @param row the row to route
+     * @return the partition of the row
+     */
+    /* default */ int partition(final AbstractDataType<?>[] row) {
+        int partition;
+        if (!boundList.isEmpty()) {
+            partition = range(valueOf(row[columnIndexes[0]]));
+        } else if (lookupMap.isEmpty()) {
+            partition = mix(hash(row));
+        } else {
+            partition = lookup(row);
+        }
+        return partition;
+    }
+
+    /**
+     * Indicates whether this router and another one compute the partition of every row from the same hash, because
+     * both of them hash the same columns without range bounds nor lookup maps.
+     *
+     * @param other the other router
+     * @return true if both routers partition the rows by the same hash
+     */
+    /* default */ boolean isSameHash(final RowRouter other) {
+        return boundList.isEmpty() && lookupMap.isEmpty() && other.boundList.isEmpty() && other.lookupMap.isEmpty()
+            && Arrays.equals(columnIndexes, other.columnIndexes);
+    }
+
+    private int lookup(final AbstractDataType<?>[] row) {
+        final Object value = valueOf(row[columnIndexes[0]]);
+        final Integer index = value == null ? null : lookupMap.get(toLookupKey(value));
+        return index == null ? mix(hash(row)) : index;
+    }
+
+    private int hash(final AbstractDataType<?>[] row) {
+        int hash = 1;
+        for (final int index : columnIndexes) {
+            final Object value = valueOf(row[index]);
+            int valueHash = 0;
+            if (value instanceof BigDecimal) {
+                // 1.0 and 1.00 are the same key
+                valueHash = ((BigDecimal) value).stripTrailingZeros().hashCode();
+            } else if (value != null) {
+                valueHash = value.hashCode();
+            }
+            hash = 31 * hash + valueHash;
+        }
+        return hash;
+    }
+
+    private int range(final Object value) {
+
+        if (value == null) {
+            return 0;
+        }
+
+        int low = 0;
+        int high = boundList.size();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (compare(value, boundList.get(middle)) < 0) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+}
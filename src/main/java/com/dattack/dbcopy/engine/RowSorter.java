@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.dbcopy.engine.functions.FunctionException;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * External merge sort placed between the {@link DataTransfer} and the insert workers, so that the rows reach the
+ * target in key order and the index blocks are filled sequentially instead of being split at random. The rows are
+ * accumulated in memory until the estimated size of the run exceeds the byte budget; then the run is sorted and
+ * spilled to a temporary file. Once the source is exhausted, the spilled runs and the last in-memory run are merged
+ * on demand. The first call to {@link #transfer()} reads the whole source, so the insert workers wait for it. The sort
+ * is stable: the rows with the same key are returned in the order they were read.
+ * <p>
+ * When the rows are routed to the insert workers (<code>route-by</code> or <code>shards</code>), every worker receives
+ * its rows in key order, so each routed key range is sorted independently.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class RowSorter implements RowStage {
+
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final Logger LOGGER = LoggerFactory.getLogger(RowSorter.class);
+    private static final int MAX_FAN_IN = Math.max(Integer.getInteger("dbcopy_sort_max_fan_in", 64), 2);
+    private static final int ROW_OVERHEAD = 16;
+    private static final int VALUE_OVERHEAD = 24;
+
+    private final transient RowComparator comparator;
+    private final transient long memoryBudget;
+    private final transient PriorityQueue<Run> mergeQueue;
+    private final transient File spillDirectory;
+    private final transient List<File> spillFileList;
+    private final transient String taskName;
+    private final transient RowStage upstream;
+    private transient boolean sorted;
+
+    /* default */ RowSorter(final RowStage upstream, final String sortBy, final long memoryBudget,
+        final File spillDirectory, final String taskName) throws SQLException
+    {
+        this.upstream = upstream;
+        this.comparator = new RowComparator(sortBy, upstream.getRowMetadata());
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+        this.taskName = taskName;
+        this.mergeQueue = new PriorityQueue<>(this::compare);
+        this.spillFileList = new ArrayList<>();
+        this.sorted = false;
+    }
+
+    private static long estimateSize(final AbstractDataType<?>[] row) {
+
+        long size = ROW_OVERHEAD + 8L * row.length;
+        for (final AbstractDataType<?> item : row) {
+            final Object value = Objects.isNull(item) ? null : item.getValue();
+            size += VALUE_OVERHEAD;
+            if (value instanceof String) {
+                size += 40 + 2L * ((String) value).length();
+            } else if (value instanceof byte[]) {
+                size += 16 + ((byte[]) value).length;
+            } else if (value instanceof BigDecimal) {
+                size += 48;
+            } else if (value != null) {
+                size += 32;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Deletes the spilled runs.
+     */
+    @Override
+    public synchronized void close() {
+        for (final Run run : mergeQueue) {
+            IOUtils.closeQuietly(run);
+        }
+        mergeQueue.clear();
+        for (final File file : spillFileList) {
+            deleteQuietly(file);
+        }
+        spillFileList.clear();
+        upstream.close();
+    }
+
+    @Override
+    public RowMetadata getRowMetadata() {
+        return upstream.getRowMetadata();
+    }
+
+    /**
+     * Returns the next row in key order or null if there are no more rows.
+     *
+     * @return the next row or null if there are no more rows
+     * @throws SQLException         if a database access error occurs or a spilled run can't be written or read
+     * @throws InterruptedException if the current thread is interrupted
+     * @throws FunctionException    if an error occurs when evaluating a function that provides data from source
+     */
+    @Override
+    public synchronized AbstractDataType<?>[] transfer() throws SQLException, InterruptedException, FunctionException {
+        if (!sorted) {
+            sorted = true;
+            sort();
+        }
+
+        final Run run = mergeQueue.poll();
+        if (run == null) {
+            return null;
+        }
+
+        final AbstractDataType<?>[] row = run.current;
+        if (run.advance()) {
+            mergeQueue.add(run);
+        } else {
+            IOUtils.closeQuietly(run);
+        }
+        return row;
+    }
+
+    /**
+     * Compares the current rows of two runs, using the order of the runs to break the ties so the merge is stable.
+     */
+    private int compare(final Run left, final Run right) {
+        final int result = comparator.compare(left.current, right.current);
+        return result == 0 ? Integer.compare(left.sequence, right.sequence) : result;
+    }
+
+    private void deleteQuietly(final File file) {
+        if (!file.delete() && file.exists()) {
+            LOGGER.warn("[{}] Unable to delete the sort run {}", taskName, file);
+        }
+    }
+
+    private void sort() throws SQLException, InterruptedException, FunctionException {
+
+        final long start = System.currentTimeMillis();
+        long rows = 0;
+        long runSize = 0;
+        List<AbstractDataType<?>[]> runList = new ArrayList<>();
+        AbstractDataType<?>[] row = upstream.transfer();
+        while (row != null) {
+            runList.add(row);
+            rows++;
+            runSize += estimateSize(row);
+            if (runSize >= memoryBudget) {
+                runList.sort(comparator);
+                spill(runList);
+                runList = new ArrayList<>(); //NOPMD: releases the spilled rows
+                runSize = 0;
+            }
+            row = upstream.transfer();
+        }
+        runList.sort(comparator);
+
+        try {
+            while (spillFileList.size() > MAX_FAN_IN) {
+                compact();
+            }
+            for (int i = 0; i < spillFileList.size(); i++) {
+                addRun(new FileRun(spillFileList.get(i), i)); //NOPMD
+            }
+        } catch (final IOException e) {
+            throw new SQLException("Unable to read the spilled sort runs", e);
+        }
+        addRun(new MemoryRun(runList.iterator(), spillFileList.size()));
+
+        LOGGER.info("[{}] Sorted {} rows in {} ms ({} spilled runs)", taskName, rows,
+                    System.currentTimeMillis() - start, spillFileList.size());
+    }
+
+    private void addRun(final Run run) throws SQLException {
+        if (run.advance()) {
+            mergeQueue.add(run);
+        } else {
+            IOUtils.closeQuietly(run);
+        }
+    }
+
+    /**
+     * Merges the oldest spilled runs into a single one, so that the final merge doesn't keep too many files open.
+     */
+    private void compact() throws IOException, SQLException {
+
+        final List<File> mergedList = new ArrayList<>(spillFileList.subList(0, MAX_FAN_IN));
+        final PriorityQueue<Run> queue = new PriorityQueue<>(this::compare);
+        final File target;
+        try {
+            long count = 0;
+            for (int i = 0; i < mergedList.size(); i++) {
+                final FileRun run = new FileRun(mergedList.get(i), i); //NOPMD
+                count += run.count;
+                if (run.advance()) {
+                    queue.add(run);
+                } else {
+                    IOUtils.closeQuietly(run);
+                }
+            }
+
+            target = createSpillFile();
+            try (DataOutputStream output = createOutput(target)) {
+                final RowSpillCodec codec = new RowSpillCodec(output);
+                output.writeLong(count);
+                Run run = queue.poll();
+                while (run != null) {
+                    codec.write(run.current);
+                    if (run.advance()) {
+                        queue.add(run);
+                    } else {
+                        IOUtils.closeQuietly(run);
+                    }
+                    run = queue.poll();
+                }
+            }
+        } finally {
+            for (final Run run : queue) {
+                IOUtils.closeQuietly(run);
+            }
+        }
+
+        for (final File file : mergedList) {
+            deleteQuietly(file);
+        }
+        spillFileList.removeAll(mergedList);
+        // the merged run holds the oldest rows
+        spillFileList.remove(target);
+        spillFileList.add(0, target);
+    }
+
+    private DataOutputStream createOutput(final File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER_SIZE));
+    }
+
+    private File createSpillFile() throws IOException {
+        final File file = File.createTempFile("dbcopy-sort-", ".run", spillDirectory);
+        spillFileList.add(file);
+        return file;
+    }
+
+    private void spill(final List<AbstractDataType<?>[]> runList) throws SQLException {
+
+        try {
+            final File file = createSpillFile();
+            try (DataOutputStream output = createOutput(file)) {
+                final RowSpillCodec codec = new RowSpillCodec(output);
+                output.writeLong(runList.size());
+                for (final AbstractDataType<?>[] row : runList) {
+                    codec.write(row);
+                }
+            }
+            LOGGER.debug("[{}] Spilled {} sorted rows to {}", taskName, runList.size(), file);
+        } catch (final IOException e) {
+            throw new SQLException("Unable to spill a sorted run to " + spillDirectory, e);
+        }
+    }
+
+    /**
+     * Sorted sequence of rows taking part in the merge.
+     */
+    private abstract static class Run implements Closeable {
+
+        /* default */ final transient int sequence;
+        /* default */ transient AbstractDataType<?>[] current;
+
+        /* default */ Run(final int sequence) {
+            this.sequence = sequence;
+        }
+
+        /**
+         * Moves to the next row of the run.
+         *
+         * @return false if the run has no more rows
+         */
+        /* default */ abstract boolean advance() throws SQLException;
+
+        @Override
+        public void close() throws IOException {
+            // nothing to release
+        }
+    }
+
+    /**
+     * Run kept in memory.
+     */
+    private static final class MemoryRun extends Run {
+
+        private final transient Iterator<AbstractDataType<?>[]> iterator;
+
+        /* default */ MemoryRun(final Iterator<AbstractDataType<?>[]> iterator, final int sequence) {
+            super(sequence);
+            this.iterator = iterator;
+        }
+
+        @Override
+        /* default */ boolean advance() {
+            current = iterator.hasNext() ? iterator.next() : null;
+            return current != null;
+        }
+    }
+
+    /**
+     * Run spilled to a file.
+     */
+    private final class FileRun extends Run {
+
+        private final transient int columnCount;
+        private final transient long count;
+        private final transient DataInputStream input;
+        private transient long remaining;
+
+        /* default */ FileRun(final File file, final int sequence) throws IOException {
+            super(sequence);
+            this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), IO_BUFFER_SIZE));
+            this.columnCount = upstream.getRowMetadata().getColumnCount();
+            this.count = input.readLong();
+            this.remaining = count;
+        }
+
+        @Override
+        /* default */ boolean advance() throws SQLException {
+            current = null;
+            if (remaining > 0) {
+                remaining--;
+                try {
+                    current = RowSpillCodec.readRow(input, columnCount);
+                } catch (final IOException e) {
+                    throw new SQLException("Unable to read a spilled sort run", e);
+                }
+            }
+            return current != null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
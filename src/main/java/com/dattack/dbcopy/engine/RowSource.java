@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.dbcopy.engine.functions.FunctionException;
+
+import java.sql.SQLException;
+
+/**
+ * Source of the rows consumed by an {@link InsertOperation}. Each row belongs to a task, and the rows written or
+ * discarded by the consumer are acknowledged so that the source knows when all the rows of a task have been
+ * processed. Instances are not shared between consumers.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ interface RowSource {
+
+    /**
+     * Acknowledges a number of rows of a task that have been written, rejected or discarded.
+     *
+     * @param taskResult the task owning the rows
+     * @param rows       the number of acknowledged rows
+     */
+    void acknowledge(DbCopyTaskResult taskResult, int rows);
+
+    /**
+     * Returns the metadata of the rows returned by this source.
+     *
+     * @return the metadata of the rows
+     */
+    RowMetadata getRowMetadata();
+
+    /**
+     * Returns the task owning the last row returned by {@link #transfer()}.
+     *
+     * @return the task owning the last row
+     */
+    DbCopyTaskResult getTaskResult();
+
+    /**
+     * Checks if this source will not return more rows.
+     *
+     * @return true if there are no more rows
+     */
+    boolean isExhausted();
+
+    /**
+     * Returns the next row. A null value is returned when there are no more rows or, if the source is not exhausted,
+     * when no row has been available for a while; consumers can use that pause to flush their pending rows.
+     *
+     * @return the next row or null if there is no row available
+     * @throws SQLException         if a database access error occurs
+     * @throws InterruptedException if the current thread is interrupted
+     * @throws FunctionException    if an error occurs when evaluating a function that provides data from source
+     */
+    AbstractDataType<?>[] transfer() throws SQLException, InterruptedException, FunctionException;
+}
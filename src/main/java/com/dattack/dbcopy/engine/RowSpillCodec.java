@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.dbcopy.engine.datatype.BigDecimalType;
+import com.dattack.dbcopy.engine.datatype.BlobType;
+import com.dattack.dbcopy.engine.datatype.BooleanType;
+import com.dattack.dbcopy.engine.datatype.ByteType;
+import com.dattack.dbcopy.engine.datatype.BytesType;
+import com.dattack.dbcopy.engine.datatype.ClobType;
+import com.dattack.dbcopy.engine.datatype.DataTypeVisitor;
+import com.dattack.dbcopy.engine.datatype.DateType;
+import com.dattack.dbcopy.engine.datatype.DoubleType;
+import com.dattack.dbcopy.engine.datatype.FloatType;
+import com.dattack.dbcopy.engine.datatype.IntegerType;
+import com.dattack.dbcopy.engine.datatype.LongType;
+import com.dattack.dbcopy.engine.datatype.NClobType;
+import com.dattack.dbcopy.engine.datatype.NStringType;
+import com.dattack.dbcopy.engine.datatype.NullType;
+import com.dattack.dbcopy.engine.datatype.ShortType;
+import com.dattack.dbcopy.engine.datatype.StringType;
+import com.dattack.dbcopy.engine.datatype.TimeType;
+import com.dattack.dbcopy.engine.datatype.TimestampType;
+import com.dattack.dbcopy.engine.datatype.XmlType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Objects;
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+
+/**
+ * Binary encoding of the rows spilled to disk by the {@link RowSorter}. Each value is written as a type tag, a
+ * presence flag and its content, so typed nulls keep their type. The LOB locators can't outlive the source result set
+ * in a file, so their content is materialized: BLOBs and CLOBs are read back as serial LOBs, and NCLOBs and XML
+ * documents as strings.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ final class RowSpillCodec implements DataTypeVisitor { //NOPMD
+
+    private static final byte BIG_DECIMAL = 1;
+    private static final byte BLOB = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte BYTE = 4;
+    private static final byte BYTES = 5;
+    private static final byte CLOB = 6;
+    private static final byte DATE = 7;
+    private static final byte DOUBLE = 8;
+    private static final byte FLOAT = 9;
+    private static final byte INTEGER = 10;
+    private static final byte LONG = 11;
+    private static final byte NCLOB = 12;
+    private static final byte NSTRING = 13;
+    private static final byte NULL = 14;
+    private static final byte SHORT = 15;
+    private static final byte STRING = 16;
+    private static final byte TIME = 17;
+    private static final byte TIMESTAMP = 18;
+    private static final byte XML = 19;
+
+    private final transient DataOutputStream output;
+
+    /* default */ RowSpillCodec(final DataOutputStream output) {
+        this.output = output;
+    }
+
+    private static AbstractDataType<?> read(final DataInputStream input, final byte tag) //NOPMD
+        throws IOException, SQLException
+    {
+        switch (tag) {
+            case BIG_DECIMAL:
+                final byte[] unscaled = readBytes(input);
+                return new BigDecimalType(new BigDecimal(new BigInteger(unscaled), input.readInt()));
+            case BLOB:
+                return new BlobType(new SerialBlob(readBytes(input)));
+            case BOOLEAN:
+                return new BooleanType(input.readBoolean());
+            case BYTE:
+                return new ByteType(input.readByte());
+            case BYTES:
+                return new BytesType(readBytes(input));
+            case CLOB:
+                return new ClobType(new SerialClob(readString(input).toCharArray()));
+            case DATE:
+                return new DateType(new Date(input.readLong()));
+            case DOUBLE:
+                return new DoubleType(input.readDouble());
+            case FLOAT:
+                return new FloatType(input.readFloat());
+            case INTEGER:
+                return new IntegerType(input.readInt());
+            case LONG:
+                return new LongType(input.readLong());
+            case NCLOB:
+            case NSTRING:
+                return new NStringType(readString(input));
+            case SHORT:
+                return new ShortType(input.readShort());
+            case STRING:
+            case XML:
+                return new StringType(readString(input));
+            case TIME:
+                return new TimeType(new Time(input.readLong()));
+            case TIMESTAMP:
+                final Timestamp timestamp = new Timestamp(input.readLong());
+                timestamp.setNanos(input.readInt());
+                return new TimestampType(timestamp);
+            default:
+                throw new IOException(String.format("Unknown spilled value type: %d", tag));
+        }
+    }
+
+    private static AbstractDataType<?> readNull(final byte tag) throws IOException { //NOPMD
+        switch (tag) {
+            case BIG_DECIMAL:
+                return BigDecimalType.NULL;
+            case BLOB:
+                return BlobType.NULL;
+            case BOOLEAN:
+                return BooleanType.NULL;
+            case BYTE:
+                return ByteType.NULL;
+            case BYTES:
+                return BytesType.NULL;
+            case CLOB:
+                return ClobType.NULL;
+            case DATE:
+                return DateType.NULL;
+            case DOUBLE:
+                return DoubleType.NULL;
+            case FLOAT:
+                return FloatType.NULL;
+            case INTEGER:
+                return IntegerType.NULL;
+            case LONG:
+                return LongType.NULL;
+            case NCLOB:
+                return NClobType.NULL;
+            case NSTRING:
+                return NStringType.NULL;
+            case NULL:
+                return NullType.NULL;
+            case SHORT:
+                return ShortType.NULL;
+            case STRING:
+                return StringType.NULL;
+            case TIME:
+                return TimeType.NULL;
+            case TIMESTAMP:
+                return TimestampType.NULL;
+            case XML:
+                return XmlType.NULL;
+            default:
+                throw new IOException(String.format("Unknown spilled value type: %d", tag));
+        }
+    }
+
+    /**
+     * Reads a row written by {@link #write(AbstractDataType[])}.
+     *
+     * @param input       the stream to read from
+     * @param columnCount the number of values of the row
+     * @return the row
+     * @throws IOException  if an I/O error occurs
+     * @throws SQLException if a LOB can't be created
+     */
+    /* default */ static AbstractDataType<?>[] readRow(final DataInputStream input, final int columnCount)
+        throws IOException, SQLException
+    {
+        final AbstractDataType<?>[] row = new AbstractDataType[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            final byte tag = input.readByte();
+            if (tag == 0) {
+                row[i] = null;
+            } else if (input.readBoolean()) {
+                row[i] = read(input, tag);
+            } else {
+                row[i] = readNull(tag);
+            }
+        }
+        return row;
+    }
+
+    private static byte[] readBytes(final DataInputStream input) throws IOException {
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        return new String(readBytes(input), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a row.
+     *
+     * @param row the row to write
+     * @throws IOException  if an I/O error occurs
+     * @throws SQLException if the content of a LOB can't be read from its source locator
+     */
+    /* default */ void write(final AbstractDataType<?>[] row) throws IOException, SQLException {
+        for (final AbstractDataType<?> value : row) {
+            if (Objects.isNull(value)) {
+                output.writeByte(0);
+                continue;
+            }
+            try {
+                value.accept(this);
+            } catch (final IOException | SQLException e) {
+                throw e;
+            } catch (final Exception e) {
+                throw new SQLException("Unable to spill a value of type " + value.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    @Override
+    public void visit(final BigDecimalType type) throws IOException {
+        if (writeHeader(BIG_DECIMAL, type)) {
+            writeBytes(type.getValue().unscaledValue().toByteArray());
+            output.writeInt(type.getValue().scale());
+        }
+    }
+
+    @Override
+    public void visit(final BlobType type) throws IOException, SQLException {
+        if (writeHeader(BLOB, type)) {
+            writeBytes(type.getValue().getBytes(1L, (int) type.getValue().length()));
+        }
+    }
+
+    @Override
+    public void visit(final BooleanType type) throws IOException {
+        if (writeHeader(BOOLEAN, type)) {
+            output.writeBoolean(type.getValue());
+        }
+    }
+
+    @Override
+    public void visit(final ByteType type) throws IOException {
+        if (writeHeader(BYTE, type)) {
+            output.writeByte(type.getValue());
+        }
+    }
+
+    @Override
+    public void visit(final BytesType type) throws IOException {
+        if (writeHeader(BYTES, type)) {
+            writeBytes(type.getValue());
+        }
+    }
+
+    @Override
+    public void visit(final ClobType type) throws IOException, SQLException {
+        if (writeHeader(CLOB, type)) {
+            writeString(type.getValue().getSubString(1L, (int) type.getValue().length()));
+        }
+    }
+
+    @Override
+    public void visit(final DateType type) throws IOException {
+        if (writeHeader(DATE, type)) {
+            output.writeLong(type.getValue().getTime());
+        }
+    }
+
+    @Override
+    public void visit(final DoubleType type) throws IOException {
+        if (writeHeader(DOUBLE, type)) {
+            output.writeDouble(type.getValue());
+        }
+    }
+
+    @Override
+    public void visit(final FloatType type) throws IOException {
+        if (writeHeader(FLOAT, type)) {
+            output.writeFloat(type.getValue());
+        }
+    }
+
+    @Override
+    public void visit(final IntegerType type) throws IOException {
+        if (writeHeader(INTEGER, type)) {
+            output.writeInt(type.getValue());
+        }
+    }
+
+    @Override
+    public void visit(final LongType type) throws IOException {
+        if (writeHeader(LONG, type)) {
+            output.writeLong(type.getValue());
+        }
+    }
+
+    @Override
+    public void visit(final NClobType type) throws IOException, SQLException {
+        if (writeHeader(NCLOB, type)) {
+            writeString(type.getValue().getSubString(1L, (int) type.getValue().length()));
+        }
+    }
+
+    @Override
+    public void visit(final NStringType type) throws IOException {
+        if (writeHeader(NSTRING, type)) {
+            writeString(type.getValue());
+        }
+    }
+
+    @Override
+    public void visit(final NullType type) throws IOException {
+        writeHeader(NULL, type);
+    }
+
+    @Override
+    public void visit(final ShortType type) throws IOException {
+        if (writeHeader(SHORT, type)) {
+            output.writeShort(type.getValue());
+        }
+    }
+
+    @Override
+    public void visit(final StringType type) throws IOException {
+        if (writeHeader(STRING, type)) {
+            writeString(type.getValue());
+        }
+    }
+
+    @Override
+    public void visit(final TimeType type) throws IOException {
+        if (writeHeader(TIME, type)) {
+            output.writeLong(type.getValue().getTime());
+        }
+    }
+
+    @Override
+    public void visit(final TimestampType type) throws IOException {
+        if (writeHeader(TIMESTAMP, type)) {
+            output.writeLong(type.getValue().getTime());
+            output.writeInt(type.getValue().getNanos());
+        }
+    }
+
+    @Override
+    public void visit(final XmlType type) throws IOException, SQLException {
+        if (writeHeader(XML, type)) {
+            writeString(type.getValue().getString());
+        }
+    }
+
+    private void writeBytes(final byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private boolean writeHeader(final byte tag, final AbstractDataType<?> type) throws IOException {
+        output.writeByte(tag);
+        output.writeBoolean(type.isNotNull());
+        return type.isNotNull();
+    }
+
+    private void writeString(final String text) throws IOException {
+        writeBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
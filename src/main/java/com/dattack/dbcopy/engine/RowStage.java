@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.dbcopy.engine.functions.FunctionException;
+
+import java.sql.SQLException;
+
+/**
+ * Stage of the pipeline that delivers the rows of a task to its insert workers: the {@link DataTransfer} reading the
+ * source and the optional stages that transform the stream read from it, like the {@link RowSorter}, the
+ * {@link RowDeduplicator} and the {@link RowTransformer}. Every stage is thread-safe and closes the stage it reads
+ * from.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ interface RowStage extends AutoCloseable {
+
+    /**
+     * Releases the resources of this stage and the stages it reads from.
+     */
+    @Override
+    default void close() {
+        // nothing to release
+    }
+
+    /**
+     * Returns the metadata of the rows returned by this stage.
+     *
+     * @return the metadata of the rows
+     */
+    RowMetadata getRowMetadata();
+
+    /**
+     * Returns the next row or null if there are no more rows.
+     *
+     * @return the next row or null if there are no more rows
+     * @throws SQLException         if a database access error occurs
+     * @throws InterruptedException if the current thread is interrupted
+     * @throws FunctionException    if an error occurs when evaluating a function that provides data from source
+     */
+    AbstractDataType<?>[] transfer() throws SQLException, InterruptedException, FunctionException;
+}
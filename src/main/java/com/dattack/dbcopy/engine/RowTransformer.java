@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.beans.TransformBean;
+import com.dattack.dbcopy.beans.TransformColumnBean;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.dbcopy.engine.datatype.BigDecimalType;
+import com.dattack.dbcopy.engine.datatype.BooleanType;
+import com.dattack.dbcopy.engine.datatype.ByteType;
+import com.dattack.dbcopy.engine.datatype.BytesType;
+import com.dattack.dbcopy.engine.datatype.DateType;
+import com.dattack.dbcopy.engine.datatype.DoubleType;
+import com.dattack.dbcopy.engine.datatype.FloatType;
+import com.dattack.dbcopy.engine.datatype.IntegerType;
+import com.dattack.dbcopy.engine.datatype.LongType;
+import com.dattack.dbcopy.engine.datatype.ShortType;
+import com.dattack.dbcopy.engine.datatype.StringType;
+import com.dattack.dbcopy.engine.datatype.TimeType;
+import com.dattack.dbcopy.engine.datatype.TimestampType;
+import com.dattack.dbcopy.engine.functions.FunctionException;
+import com.dattack.dbcopy.engine.transform.CompiledExpression;
+import com.dattack.dbcopy.engine.transform.ExpressionCompiler;
+import com.dattack.dbcopy.engine.transform.ExpressionException;
+import com.dattack.dbcopy.engine.transform.ExpressionType;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stage that filters the rows and computes new values for their columns using the expressions of a
+ * {@link TransformBean}. The expressions are compiled once per task, when the stage is created, and evaluated by the
+ * insert workers as they pull the rows, so the transform runs in parallel and doesn't serialize the pipeline.
+ *
+ * <p>All the expressions see the values of the row as read from the upstream stage: a computed column can't
+ * reference another computed column. A column whose name matches a column of the row replaces its value in place;
+ * any other column is appended to the row.</p>
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class RowTransformer implements RowStage {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RowTransformer.class);
+
+    private final transient CompiledExpression[] columns;
+    private final transient AtomicLong droppedRows;
+    private final transient CompiledExpression[] filters;
+    private final transient RowMetadata rowMetadata;
+    private final transient String taskName;
+    private final transient int[] targetIndexes;
+    private final transient RowStage upstream;
+
+    /* default */ RowTransformer(final RowStage upstream, final TransformBean bean, final String taskName)
+        throws SQLException
+    {
+        this.upstream = upstream;
+        this.taskName = taskName;
+        this.droppedRows = new AtomicLong();
+
+        final RowMetadata sourceMetadata = upstream.getRowMetadata();
+        final ExpressionCompiler compiler = new ExpressionCompiler(sourceMetadata);
+        final List<String> filterList = bean.getFilterList() == null ? new ArrayList<>() : bean.getFilterList();
+        final List<TransformColumnBean> columnList = bean.getColumnList() == null ? new ArrayList<>()
+            : bean.getColumnList();
+
+        this.filters = new CompiledExpression[filterList.size()];
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = compile(compiler, "filter", filterList.get(i));
+        }
+
+        final List<ColumnMetadata> columnMetadataList = new ArrayList<>(sourceMetadata.getColumnsMetadata());
+        this.columns = new CompiledExpression[columnList.size()];
+        this.targetIndexes = new int[columnList.size()];
+        for (int i = 0; i < columns.length; i++) {
+            final TransformColumnBean columnBean = columnList.get(i);
+            if (StringUtils.isBlank(columnBean.getName())) {
+                throw new SQLException("Transform columns require a name");
+            }
+            columns[i] = compile(compiler, columnBean.getName(), columnBean.getExpression());
+            targetIndexes[i] = indexOf(columnMetadataList, columnBean.getName());
+            if (targetIndexes[i] < 0) {
+                targetIndexes[i] = columnMetadataList.size();
+                columnMetadataList.add(null);
+            }
+            columnMetadataList.set(targetIndexes[i], createColumnMetadata(columnBean.getName(), targetIndexes[i],
+                                                                          columns[i], sourceMetadata));
+        }
+
+        final RowMetadata.RowMetadataBuilder builder = RowMetadata.custom();
+        columnMetadataList.forEach(builder::add);
+        this.rowMetadata = builder.build();
+    }
+
+    private static CompiledExpression compile(final ExpressionCompiler compiler, final String name,
+        final String expression) throws SQLException
+    {
+        try {
+            return compiler.compile(expression);
+        } catch (final ExpressionException e) {
+            throw new SQLException(String.format("Invalid transform expression (%s): %s", name, e.getMessage()), e);
+        }
+    }
+
+    private static ColumnMetadata createColumnMetadata(final String name, final int index,
+        final CompiledExpression expression, final RowMetadata sourceMetadata)
+    {
+        final ColumnMetadata.ColumnMetadataBuilder builder = ColumnMetadata.custom() //
+            .withName(name) //
+            .withIndex(index + 1) //
+            .withNullable(ResultSetMetaData.columnNullableUnknown);
+
+        if (expression.isColumnReference()) {
+            final ColumnMetadata source = sourceMetadata.getColumnsMetadata().get(expression.getColumnIndex());
+            builder.withType(source.getType()).withPrecision(source.getPrecision()).withScale(source.getScale());
+        } else if (expression.getType() == ExpressionType.ANY && index < sourceMetadata.getColumnCount()) {
+            builder.withType(sourceMetadata.getColumnsMetadata().get(index).getType());
+        } else {
+            builder.withType(expression.getType().getSqlType());
+        }
+        return builder.build();
+    }
+
+    private static int indexOf(final List<ColumnMetadata> columnMetadataList, final String name) {
+        for (int i = 0; i < columnMetadataList.size(); i++) {
+            final ColumnMetadata column = columnMetadataList.get(i);
+            if (column != null && column.getName().equalsIgnoreCase(name.trim())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Wraps the result of an expression in the data type matching its runtime class.
+     */
+    private static AbstractDataType<?> toDataType(final Object value) { //NOPMD
+
+        AbstractDataType<?> result;
+        if (value == null) {
+            result = null;
+        } else if (value instanceof String) {
+            result = new StringType((String) value);
+        } else if (value instanceof Long) {
+            result = new LongType((Long) value);
+        } else if (value instanceof BigDecimal) {
+            result = new BigDecimalType((BigDecimal) value);
+        } else if (value instanceof Integer) {
+            result = new IntegerType((Integer) value);
+        } else if (value instanceof Short) {
+            result = new ShortType((Short) value);
+        } else if (value instanceof Byte) {
+            result = new ByteType((Byte) value);
+        } else if (value instanceof Double) {
+            result = new DoubleType((Double) value);
+        } else if (value instanceof Float) {
+            result = new FloatType((Float) value);
+        } else if (value instanceof Boolean) {
+            result = new BooleanType((Boolean) value);
+        } else if (value instanceof Timestamp) {
+            result = new TimestampType((Timestamp) value);
+        } else if (value instanceof Time) {
+            result = new TimeType((Time) value);
+        } else if (value instanceof java.sql.Date) {
+            result = new DateType((java.sql.Date) value);
+        } else if (value instanceof byte[]) {
+            result = new BytesType((byte[]) value);
+        } else {
+            result = new StringType(value.toString());
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        LOGGER.info("[{}] Transform dropped {} rows", taskName, droppedRows.get());
+        upstream.close();
+    }
+
+    @Override
+    public RowMetadata getRowMetadata() {
+        return rowMetadata;
+    }
+
+    @Override
+    public AbstractDataType<?>[] transfer() throws SQLException, InterruptedException, FunctionException {
+
+        AbstractDataType<?>[] row = upstream.transfer();
+        while (row != null && !accept(row)) {
+            droppedRows.incrementAndGet();
+            row = upstream.transfer();
+        }
+        return row == null ? null : transform(row);
+    }
+
+    private boolean accept(final AbstractDataType<?>[] row) throws FunctionException {
+        for (final CompiledExpression filter : filters) {
+            if (!Boolean.TRUE.equals(evaluate(filter, row))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object evaluate(final CompiledExpression expression, final AbstractDataType<?>[] row)
+        throws FunctionException
+    {
+        try {
+            return expression.getExpression().evaluate(row);
+        } catch (final RuntimeException e) {
+            throw new FunctionException(String.format("Unable to evaluate the transform expression '%s': %s",
+                                                      expression, e.getMessage()), e);
+        }
+    }
+
+    private AbstractDataType<?>[] transform(final AbstractDataType<?>[] row) throws FunctionException {
+
+        if (columns.length == 0) {
+            return row;
+        }
+
+        final AbstractDataType<?>[] result = new AbstractDataType<?>[rowMetadata.getColumnCount()];
+        System.arraycopy(row, 0, result, 0, Math.min(row.length, result.length));
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].isColumnReference()) {
+                result[targetIndexes[i]] = row[columns[i].getColumnIndex()];
+            } else {
+                result[targetIndexes[i]] = toDataType(evaluate(columns[i], row));
+            }
+        }
+        return result;
+    }
+}
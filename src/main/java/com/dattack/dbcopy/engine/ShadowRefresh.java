@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.beans.InsertOperationBean;
+import com.dattack.dbcopy.engine.pool.DataSourceRegistry;
+import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import javax.sql.DataSource;
+
+/**
+ * Full refresh of a table through a shadow table: the tasks of the job load an empty copy of the target table and,
+ * when all of them succeed, the copy replaces the target table. The readers of the target table don't see the
+ * intermediate states of the load and the replaced table is dropped in background.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class ShadowRefresh {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShadowRefresh.class);
+
+    private static final List<Thread> DROP_THREAD_LIST = new ArrayList<>();
+
+    private static final String OLD_SUFFIX = "_OLD";
+
+    private static final String SELECT_ORACLE_PARTITIONS = "SELECT partition_name FROM all_tab_partitions" //
+        + " WHERE table_owner = COALESCE(?, SYS_CONTEXT('USERENV', 'CURRENT_SCHEMA')) AND table_name = ?";
+
+    // the rules of the views and materialized views that read the table
+    private static final String SELECT_POSTGRESQL_VIEWS = "SELECT 1 FROM pg_depend d" //
+        + " JOIN pg_rewrite r ON r.oid = d.objid" //
+        + " WHERE d.classid = 'pg_rewrite'::regclass AND d.refobjid = CAST(? AS regclass)" //
+        + " AND r.ev_class <> d.refobjid";
+
+    private static final String SHADOW_SUFFIX = "_SHD";
+
+    private final transient DataSource dataSource;
+    private final transient String shadowTable;
+    private final transient String tableName;
+
+    /* default */ ShadowRefresh(final InsertOperationBean bean, final AbstractConfiguration configuration)
+        throws SQLException
+    {
+        this.dataSource =
+            DataSourceRegistry.getDataSource(ConfigurationUtil.interpolate(bean.getDatasource(), configuration));
+        this.tableName = getTargetTable(bean, configuration);
+        this.shadowTable = this.tableName + SHADOW_SUFFIX;
+    }
+
+    /**
+     * Returns the name of the shadow table written by an insert operation.
+     *
+     * @param bean          the insert operation
+     * @param configuration the configuration used to interpolate the name of the target table
+     * @return the name of the shadow table
+     * @throws SQLException if the name of the target table can't be determined
+     */
+    /* default */ static String getShadowTable(final InsertOperationBean bean,
+        final AbstractConfiguration configuration) throws SQLException
+    {
+        return getTargetTable(bean, configuration) + SHADOW_SUFFIX;
+    }
+
+    private static String getTargetTable(final InsertOperationBean bean, final AbstractConfiguration configuration)
+        throws SQLException
+    {
+        final String tableName = DbCopyTask.getObjectName(bean);
+        if (tableName == null) {
+            throw new SQLException("Unable to determine the target table of the refresh");
+        }
+        return ConfigurationUtil.interpolate(tableName, configuration);
+    }
+
+    /**
+     * Waits until the replaced tables have been dropped.
+     */
+    /* default */ static void awaitDrops() {
+
+        final List<Thread> threadList;
+        synchronized (DROP_THREAD_LIST) {
+            threadList = new ArrayList<>(DROP_THREAD_LIST);
+            DROP_THREAD_LIST.clear();
+        }
+
+        for (final Thread thread : threadList) {
+            try {
+                thread.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.warn("Interrupted while dropping table", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replaces the name of the table written by an INSERT or MERGE statement with the name of the shadow table.
+     *
+     * @param sql         the statement
+     * @param shadowTable the name of the shadow table
+     * @return the statement writing to the shadow table
+     */
+    /* default */ static String redirect(final String sql, final String shadowTable) {
+
+        final Matcher matcher = DbCopyTask.TARGET_TABLE_PATTERN.matcher(sql);
+        if (!matcher.find()) {
+            return sql;
+        }
+        return sql.substring(0, matcher.start(2)) + shadowTable + sql.substring(matcher.end(2));
+    }
+
+    /**
+     * Discards the shadow table after a failed load. The target table remains unchanged.
+     */
+    /* default */ void discard() {
+        LOGGER.warn("Refresh of {} failed, discarding table {}", tableName, shadowTable);
+        try (Connection connection = dataSource.getConnection()) {
+            execute(connection, "DROP TABLE " + shadowTable);
+        } catch (final SQLException e) {
+            LOGGER.error("Unable to drop table {}: {}", shadowTable, e.getMessage());
+        }
+    }
+
+    /* default */ String getShadowTable() {
+        return shadowTable;
+    }
+
+    /**
+     * Creates the shadow table, removing the one left by a previous execution. The refresh is refused when the
+     * shadow table can't be a complete copy of the target table: a copy without its primary key, indexes or
+     * constraints would silently replace the target table. The foreign keys are never copied and the tables renamed
+     * by the swap keep their foreign keys and, on PostgreSQL, their views, so the tables having any of them are
+     * refused too.
+     *
+     * @throws SQLException if the database doesn't support the refresh or a database access error occurs
+     */
+    /* default */ void prepare() throws SQLException {
+
+        try (Connection connection = dataSource.getConnection()) {
+            final Dialect dialect = Dialect.of(connection.getMetaData());
+            checkSupported(connection, dialect);
+            dropQuietly(connection, shadowTable);
+            execute(connection, dialect.createTableLikeSql(tableName, shadowTable));
+        }
+    }
+
+    /**
+     * Replaces the target table with the shadow table. On Oracle, a target table with a single partition is
+     * replaced by exchanging the partition, maintaining its global indexes and rebuilding the local ones; in other
+     * case the tables are renamed, in a single statement or a single transaction.
+     *
+     * @throws SQLException if a database access error occurs
+     */
+    /* default */ void swap() throws SQLException {
+
+        try (Connection connection = dataSource.getConnection()) {
+
+            final Dialect dialect = Dialect.of(connection.getMetaData());
+            final String partition = dialect == Dialect.ORACLE ? getSinglePartition(connection) : null;
+            String oldTable;
+            if (partition == null) {
+                checkSupported(connection, dialect);
+                oldTable = tableName + OLD_SUFFIX;
+                dropQuietly(connection, oldTable);
+                rename(connection, dialect, oldTable);
+            } else {
+                // after the exchange, the shadow table contains the old rows; the global indexes, the primary key
+                // among them, would be left unusable without UPDATE GLOBAL INDEXES
+                oldTable = shadowTable;
+                execute(connection, String.format("ALTER TABLE %s EXCHANGE PARTITION %s WITH TABLE %s " //
+                                                      + "WITHOUT VALIDATION UPDATE GLOBAL INDEXES",
+                                                  tableName, partition, shadowTable));
+                execute(connection, String.format("ALTER TABLE %s MODIFY PARTITION %s REBUILD UNUSABLE LOCAL INDEXES",
+                                                  tableName, partition));
+            }
+            LOGGER.info("Table {} refreshed", tableName);
+            dropInBackground(oldTable);
+        }
+    }
+
+    /**
+     * Checks that the target table can be replaced by a complete copy: the database copies the indexes and
+     * constraints of a table and renames tables atomically, or the table is an Oracle table with a single
+     * partition that is exchanged with the shadow table. A renamed table can't have foreign keys nor, on
+     * PostgreSQL, views: they would remain bound to the replaced table, whose drop would fail, and the new table
+     * would lack the referential integrity.
+     */
+    private void checkSupported(final Connection connection, final Dialect dialect) throws SQLException {
+
+        if (dialect == Dialect.ORACLE) {
+            if (getSinglePartition(connection) == null) {
+                throw new SQLException(String.format("The swap refresh of %s requires a table with a single "
+                                                         + "partition on Oracle", tableName));
+            }
+        } else if (!dialect.isTableLikeSupported() || !dialect.isAtomicSwap()) {
+            throw new SQLException(String.format("The swap refresh of %s is not supported by %s: the shadow table "
+                                                     + "wouldn't keep the indexes and constraints of the table",
+                                                 tableName, dialect));
+        } else if (hasForeignKeys(connection, dialect)) {
+            throw new SQLException(String.format("The swap refresh of %s is not supported: the table has foreign "
+                                                     + "keys, that wouldn't be copied to the shadow table",
+                                                 tableName));
+        } else if (dialect == Dialect.POSTGRESQL && hasViews(connection)) {
+            throw new SQLException(String.format("The swap refresh of %s is not supported: the table has views, "
+                                                     + "that would keep reading the replaced table", tableName));
+        }
+    }
+
+    /**
+     * Indicates whether the target table references other tables, or is referenced by them, through foreign keys.
+     */
+    private boolean hasForeignKeys(final Connection connection, final Dialect dialect) throws SQLException {
+
+        final DatabaseMetaData metaData = connection.getMetaData();
+        String name = tableName;
+        if (metaData.storesLowerCaseIdentifiers()) {
+            name = name.toLowerCase(Locale.ENGLISH);
+        } else if (metaData.storesUpperCaseIdentifiers()) {
+            name = name.toUpperCase(Locale.ENGLISH);
+        }
+
+        final String[] tokens = StringUtils.split(name, '.');
+        final String qualifier = tokens.length > 1 ? tokens[tokens.length - 2] : null;
+        final String table = tokens[tokens.length - 1];
+        // MySQL exposes its databases as catalogs
+        final String catalog = dialect == Dialect.MYSQL ? qualifier : null;
+        final String schema = dialect == Dialect.MYSQL ? null : qualifier;
+        try (ResultSet imported = metaData.getImportedKeys(catalog, schema, table);
+            ResultSet exported = metaData.getExportedKeys(catalog, schema, table)) {
+            return imported.next() || exported.next();
+        }
+    }
+
+    private boolean hasViews(final Connection connection) throws SQLException {
+
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_POSTGRESQL_VIEWS)) {
+            ps.setString(1, tableName);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static void execute(final Connection connection, final String sql) throws SQLException {
+        LOGGER.info("Executing SQL: {}", sql);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static void dropQuietly(final Connection connection, final String table) {
+        try {
+            execute(connection, "DROP TABLE " + table);
+            LOGGER.warn("Table {} left by a previous execution has been dropped", table);
+        } catch (final SQLException e) {
+            // the table doesn't exist
+            LOGGER.trace("Unable to drop table {}: {}", table, e.getMessage());
+            rollbackQuietly(connection);
+        }
+    }
+
+    private static void rollbackQuietly(final Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+        } catch (final SQLException e) {
+            LOGGER.trace("Rollback failed: {}", e.getMessage());
+        }
+    }
+
+    private void dropInBackground(final String table) {
+
+        final Thread thread = new Thread(() -> {
+            try (Connection connection = dataSource.getConnection()) {
+                execute(connection, "DROP TABLE " + table);
+                if (!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+            } catch (final SQLException e) {
+                LOGGER.error("Unable to drop table {}: {}", table, e.getMessage());
+            }
+        }, "Drop-" + table);
+
+        synchronized (DROP_THREAD_LIST) {
+            DROP_THREAD_LIST.add(thread);
+        }
+        thread.start();
+    }
+
+    private String getSinglePartition(final Connection connection) throws SQLException {
+
+        final String[] tokens = StringUtils.split(tableName.toUpperCase(Locale.ENGLISH), '.');
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_ORACLE_PARTITIONS)) {
+            ps.setString(1, tokens.length > 1 ? tokens[tokens.length - 2] : null);
+            ps.setString(2, tokens[tokens.length - 1]);
+            try (ResultSet rs = ps.executeQuery()) {
+                final String partition = rs.next() ? rs.getString(1) : null;
+                return rs.next() ? null : partition;
+            }
+        }
+    }
+
+    private void rename(final Connection connection, final Dialect dialect, final String oldTable)
+        throws SQLException
+    {
+        if (!dialect.isAtomicSwap()) {
+            throw new SQLException(String.format("The target database can't rename tables atomically: %s would be "
+                                                     + "missing for a moment", tableName));
+        }
+
+        final boolean transactional = dialect.isTransactionalDdl();
+        final boolean autoCommit = connection.getAutoCommit();
+        if (transactional) {
+            connection.setAutoCommit(false);
+        }
+
+        try {
+            for (final String sql : dialect.swapTablesSql(tableName, shadowTable, oldTable)) {
+                execute(connection, sql);
+            }
+            if (transactional) {
+                connection.commit();
+            }
+        } catch (final SQLException e) {
+            rollbackQuietly(connection);
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
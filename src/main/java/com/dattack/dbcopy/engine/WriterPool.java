@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.beans.InsertOperationBean;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.SerializationUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed pool of insert workers fed through queues. When it is owned by a job and fed by all of its tasks, the workers
+ * live as long as the job, so their connections and batches span task boundaries while the rows are still accounted
+ * to the task that read them. When the rows are routed by key (<code>route-by</code>), each worker has its own queue
+ * and the {@link RowRouter} decides the queue of each row; otherwise, all the workers share a single queue.
+ * <p>
+ * When the insert declares several datasources (<code>shards</code>), each shard has its own workers, queues and
+ * controller, so the rows of a single source scan are written to all the shards concurrently while each shard batches
+ * and commits independently. A first router selects the shard of each row (<code>shard-by</code>) and, within the
+ * shard, the <code>route-by</code> router selects the queue. A slow shard only blocks the producer when its own queues
+ * are full.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class WriterPool implements AutoCloseable {
+
+    private static final long IDLE_TIMEOUT_MILLIS = 500;
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriterPool.class);
+    private static final int QUEUE_SIZE_PER_WORKER = 2;
+
+    private final transient InsertOperationBean bean;
+    private final transient AbstractConfiguration configuration;
+    private final transient List<ExecutionController> controllerList;
+    private final transient ConcurrentMap<DbCopyTaskResult, TaskFeed> feedMap;
+    private final transient List<Future<?>> futureList;
+    private final transient String name;
+    private final transient List<BlockingQueue<QueuedRow>> queueList;
+    private final transient int queuesPerShard;
+    private final transient RejectWriter rejectWriter;
+    private final transient RetryPolicy retryPolicy;
+    private final transient List<InsertOperationBean> shardBeanList;
+    private final transient AtomicLongArray shardRows;
+    private transient RowRouter router;
+    private transient RowRouter shardRouter;
+    private transient boolean shardedByRouteHash;
+    private transient volatile boolean closed;
+    private transient volatile RowMetadata rowMetadata;
+
+    /* default */ WriterPool(final String name, final InsertOperationBean bean,
+        final AbstractConfiguration configuration, final RetryPolicy retryPolicy)
+    {
+        this.name = name;
+        this.bean = bean;
+        this.configuration = configuration;
+        this.retryPolicy = retryPolicy;
+        this.controllerList = new ArrayList<>();
+        this.feedMap = new ConcurrentHashMap<>();
+        this.futureList = new ArrayList<>();
+        this.queueList = new ArrayList<>();
+        this.shardBeanList = createShardBeans(bean);
+        this.shardRows = new AtomicLongArray(shardBeanList.size());
+        this.queuesPerShard = StringUtils.isNotBlank(bean.getRouteBy()) ? bean.getParallel() : 1;
+        final int workersPerQueue = bean.getParallel() / queuesPerShard;
+        for (int i = 0; i < shardBeanList.size() * queuesPerShard; i++) {
+            queueList.add(new LinkedBlockingQueue<>(Math.max(bean.getBatchSize(), 1) * workersPerQueue //NOPMD
+                                                        * QUEUE_SIZE_PER_WORKER));
+        }
+        String rejectFile = null;
+        if (StringUtils.isNotBlank(bean.getRejectFile())) {
+            rejectFile = ConfigurationUtil.interpolate(bean.getRejectFile(), configuration);
+        }
+        this.rejectWriter = new RejectWriter(rejectFile);
+        this.closed = false;
+    }
+
+    private static List<InsertOperationBean> createShardBeans(final InsertOperationBean bean) {
+
+        if (!bean.isSharded()) {
+            return Collections.singletonList(bean);
+        }
+
+        final List<InsertOperationBean> list = new ArrayList<>();
+        for (final String datasource : StringUtils.split(bean.getShards(), ',')) {
+            final InsertOperationBean shardBean = (InsertOperationBean) SerializationUtils.clone(bean);
+            shardBean.setDatasource(StringUtils.trim(datasource));
+            list.add(shardBean);
+        }
+        return list;
+    }
+
+    private static boolean isAborted(final DbCopyTaskResult taskResult) {
+        return taskResult.getException() instanceof RejectLimitExceededException;
+    }
+
+    /**
+     * Stops the workers once all the queued rows have been written.
+     */
+    @Override
+    public void close() {
+
+        closed = true;
+        synchronized (this) {
+            for (final ExecutionController controller : controllerList) {
+                controller.shutdown();
+            }
+            for (final Future<?> future : futureList) {
+                try {
+                    LOGGER.info("Future result: {}", future.get());
+                } catch (final InterruptedException | ExecutionException e) {
+                    LOGGER.warn("Error getting computed result from Future object", e);
+                }
+            }
+            for (final ExecutionController controller : controllerList) {
+                controller.close();
+            }
+            if (shardBeanList.size() > 1) {
+                for (int i = 0; i < shardBeanList.size(); i++) {
+                    LOGGER.info("[{}] Shard {} ({}): {} rows routed", name, i,
+                                shardBeanList.get(i).getDatasource(), shardRows.get(i));
+                }
+            }
+        }
+        IOUtils.closeQuietly(rejectWriter);
+    }
+
+    /**
+     * Registers a task as a producer of rows, starting the workers the first time.
+     *
+     * @param taskResult  the result of the task
+     * @param rowMetadata the metadata of the rows produced by the task
+     * @return the feed to be used by the task to send its rows to the workers
+     * @throws SQLException if the <code>route-by</code> or <code>shard-by</code> configuration doesn't match the rows
+     */
+    /* default */ synchronized TaskFeed open(final DbCopyTaskResult taskResult, final RowMetadata rowMetadata)
+        throws SQLException
+    {
+        if (controllerList.isEmpty()) {
+            this.rowMetadata = rowMetadata;
+            if (shardBeanList.size() > 1) {
+                shardRouter = new RowRouter("shard-by", bean.getShardBy(), bean.getShardBounds(), bean.getShardMap(),
+                                            rowMetadata, shardBeanList.size());
+            }
+            if (queuesPerShard > 1) {
+                router = new RowRouter(bean.getRouteBy(), bean.getRouteBounds(), rowMetadata, queuesPerShard);
+                shardedByRouteHash = shardRouter != null && router.isSameHash(shardRouter);
+            }
+            for (int shard = 0; shard < shardBeanList.size(); shard++) {
+                final InsertOperationBean shardBean = shardBeanList.get(shard);
+                final String controllerName = shardBeanList.size() > 1 //
+                    ? name + "-" + shardBean.getDatasource() + "-Writer" : name + "-Writer";
+                final ExecutionController controller = new ExecutionController(controllerName, //NOPMD
+                                                                               bean.getParallel());
+                controllerList.add(controller);
+                for (int i = 0; i < bean.getParallel(); i++) {
+                    final BlockingQueue<QueuedRow> queue = queueList.get(shard * queuesPerShard + i % queuesPerShard);
+                    futureList.add(controller.submit(new InsertOperation(shardBean, //NOPMD
+                                                                         new QueueRowSource(queue), configuration,
+                                                                         rejectWriter, retryPolicy)));
+                }
+            }
+        }
+
+        final TaskFeed feed = new TaskFeed(taskResult);
+        feedMap.put(taskResult, feed);
+        return feed;
+    }
+
+    /**
+     * Channel used by a task to send its rows to the workers of the job.
+     */
+    /* default */ final class TaskFeed {
+
+        private final transient AtomicLong pendingRows;
+        private final transient DbCopyTaskResult taskResult;
+
+        private TaskFeed(final DbCopyTaskResult taskResult) {
+            this.taskResult = taskResult;
+            this.pendingRows = new AtomicLong();
+        }
+
+        /**
+         * Waits until all the rows sent by the task have been written or rejected, and unregisters the feed.
+         *
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        /* default */ void close() throws InterruptedException {
+            try {
+                synchronized (this) {
+                    while (pendingRows.get() > 0) {
+                        wait(IDLE_TIMEOUT_MILLIS);
+                    }
+                }
+            } finally {
+                feedMap.remove(taskResult);
+            }
+        }
+
+        /* default */ boolean isAborted() {
+            return WriterPool.isAborted(taskResult);
+        }
+
+        /* default */ void put(final AbstractDataType<?>[] row) throws InterruptedException {
+            pendingRows.incrementAndGet();
+            final int shard = Objects.isNull(shardRouter) ? 0 : shardRouter.route(row);
+            int index = 0;
+            if (shardedByRouteHash) {
+                // the shard was selected by the same hash: it's divided out so that the workers of a shard aren't idle
+                index = Math.floorMod(Math.floorDiv(router.partition(row), shardBeanList.size()), queuesPerShard);
+            } else if (router != null) {
+                index = router.route(row);
+            }
+            shardRows.incrementAndGet(shard);
+            queueList.get(shard * queuesPerShard + index).put(new QueuedRow(row, this));
+        }
+
+        private void acknowledge(final int rows) {
+            if (pendingRows.addAndGet(-rows) <= 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * A row sent by a task.
+     */
+    private static final class QueuedRow {
+
+        private final transient TaskFeed feed;
+        private final transient AbstractDataType<?>[] values;
+
+        /* default */ QueuedRow(final AbstractDataType<?>[] values, final TaskFeed feed) {
+            this.values = values;
+            this.feed = feed;
+        }
+    }
+
+    /**
+     * {@link RowSource} used by each worker to read the rows sent by all the tasks to its queue. The rows of the tasks
+     * aborted because of the number of rejected rows are discarded.
+     */
+    private final class QueueRowSource implements RowSource {
+
+        private final transient BlockingQueue<QueuedRow> queue;
+        private transient DbCopyTaskResult taskResult;
+
+        /* default */ QueueRowSource(final BlockingQueue<QueuedRow> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void acknowledge(final DbCopyTaskResult owner, final int rows) {
+            final TaskFeed feed = feedMap.get(owner);
+            if (feed != null) {
+                feed.acknowledge(rows);
+            }
+        }
+
+        @Override
+        public RowMetadata getRowMetadata() {
+            return rowMetadata;
+        }
+
+        @Override
+        public DbCopyTaskResult getTaskResult() {
+            return taskResult;
+        }
+
+        @Override
+        public boolean isExhausted() {
+            return closed && queue.isEmpty();
+        }
+
+        @Override
+        public AbstractDataType<?>[] transfer() throws InterruptedException {
+
+            QueuedRow queuedRow = queue.poll(IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            while (queuedRow != null && queuedRow.feed.isAborted()) {
+                queuedRow.feed.acknowledge(1);
+                queuedRow = queue.poll();
+            }
+
+            if (queuedRow == null) {
+                return null;
+            }
+            taskResult = queuedRow.feed.taskResult;
+            return queuedRow.values;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.bulk;
+
+import com.dattack.dbcopy.engine.ColumnMetadata;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Base class for the {@link BulkLoader} implementations of embedded databases, whose import procedures read the data
+ * from a file accessible to the database engine. The rows are streamed to a temporary file that is removed once
+ * loaded.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public abstract class AbstractFileBulkLoader implements BulkLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractFileBulkLoader.class);
+
+    @Override
+    public int load(final Connection connection, final String table, final List<ColumnMetadata> columns,
+        final List<AbstractDataType<?>[]> rows) throws SQLException
+    {
+        Path file = null;
+        try (InputStream input = new BulkRowInputStream(new BulkRowEncoder("", "", false), columns, rows)) {
+            file = Files.createTempFile("dbcopy-bulk-", ".csv");
+            Files.copy(input, file, StandardCopyOption.REPLACE_EXISTING);
+            return loadFile(connection, table, columns, file, rows.size());
+        } catch (final IOException e) {
+            throw new SQLException("Unable to write the bulk load file: " + e.getMessage(), e);
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    /**
+     * Loads the content of a CSV file into a table.
+     *
+     * @param connection the connection to the target database
+     * @param table      the name of the target table
+     * @param columns    the columns contained in the file
+     * @param file       the CSV file
+     * @param rowCount   the number of rows contained in the file
+     * @return the number of loaded rows
+     * @throws SQLException if a database access error occurs
+     */
+    protected abstract int loadFile(Connection connection, String table, List<ColumnMetadata> columns, Path file,
+        int rowCount) throws SQLException;
+
+    private static void deleteQuietly(final Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (final IOException e) {
+                LOGGER.warn("Unable to delete temporary file {}: {}", file, e.getMessage());
+            }
+        }
+    }
+}
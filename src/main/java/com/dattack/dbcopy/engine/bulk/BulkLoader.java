@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.bulk;
+
+import com.dattack.dbcopy.engine.ColumnMetadata;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Service provider interface to be implemented by the vendor-native bulk load mechanisms. Implementations are
+ * discovered using {@link java.util.ServiceLoader}, so new loaders can be plugged in by adding a jar to the classpath.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public interface BulkLoader {
+
+    /**
+     * Checks if this loader is able to write to the database described by the given metadata.
+     *
+     * @param metaData the metadata of the target database
+     * @return true if this loader supports the target database
+     * @throws SQLException if a database access error occurs
+     */
+    boolean supports(DatabaseMetaData metaData) throws SQLException;
+
+    /**
+     * Loads a block of rows into a table. The caller is responsible for committing the transaction.
+     *
+     * @param connection the connection to the target database
+     * @param table      the name of the target table
+     * @param columns    the columns to load, in the same order in which they appear in each row
+     * @param rows       the rows to load
+     * @return the number of loaded rows
+     * @throws SQLException if a database access error occurs
+     */
+    int load(Connection connection, String table, List<ColumnMetadata> columns, List<AbstractDataType<?>[]> rows)
+        throws SQLException;
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.bulk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ServiceLoader;
+
+/**
+ * Factory responsible for selecting the {@link BulkLoader} that supports a given target database.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public final class BulkLoaderFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkLoaderFactory.class);
+
+    private BulkLoaderFactory() {
+        // static class
+    }
+
+    /**
+     * Returns the first registered {@link BulkLoader} that supports the database accessed by the connection.
+     *
+     * @param connection the connection to the target database
+     * @return the bulk loader to use
+     * @throws SQLException if a database access error occurs or there is no loader for the target database
+     */
+    public static BulkLoader getLoader(final Connection connection) throws SQLException {
+
+        final DatabaseMetaData metaData = connection.getMetaData();
+        for (final BulkLoader loader : ServiceLoader.load(BulkLoader.class)) {
+            if (loader.supports(metaData)) {
+                LOGGER.info("Using bulk loader '{}' with database '{}'", loader.getClass().getName(),
+                            metaData.getDatabaseProductName());
+                return loader;
+            }
+        }
+        throw new SQLException(String.format("There is no bulk loader available for database '%s'. " //
+                                                 + "Check your configuration or use mode='batch'",
+                                             metaData.getDatabaseProductName()));
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.bulk;
+
+import com.dattack.dbcopy.engine.ColumnMetadata;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Helper methods shared by the {@link BulkLoader} implementations.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ final class BulkLoaderHelper {
+
+    private BulkLoaderHelper() {
+        // static class
+    }
+
+    /* default */ static String getColumnList(final List<ColumnMetadata> columns) {
+        return columns.stream().map(ColumnMetadata::getName).collect(Collectors.joining(","));
+    }
+
+    /* default */ static SQLException toSQLException(final InvocationTargetException exception) {
+        final Throwable cause = exception.getCause();
+        if (cause instanceof SQLException) {
+            return (SQLException) cause;
+        }
+        return new SQLException("Bulk load failed: " + cause, cause);
+    }
+}
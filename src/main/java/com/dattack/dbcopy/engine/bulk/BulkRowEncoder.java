@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.bulk;
+
+import com.dattack.dbcopy.engine.ColumnMetadata;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.dbcopy.engine.datatype.BigDecimalType;
+import com.dattack.dbcopy.engine.datatype.BlobType;
+import com.dattack.dbcopy.engine.datatype.BooleanType;
+import com.dattack.dbcopy.engine.datatype.ByteType;
+import com.dattack.dbcopy.engine.datatype.BytesType;
+import com.dattack.dbcopy.engine.datatype.ClobType;
+import com.dattack.dbcopy.engine.datatype.DataTypeVisitor;
+import com.dattack.dbcopy.engine.datatype.DateType;
+import com.dattack.dbcopy.engine.datatype.DoubleType;
+import com.dattack.dbcopy.engine.datatype.FloatType;
+import com.dattack.dbcopy.engine.datatype.IntegerType;
+import com.dattack.dbcopy.engine.datatype.LongType;
+import com.dattack.dbcopy.engine.datatype.NClobType;
+import com.dattack.dbcopy.engine.datatype.NStringType;
+import com.dattack.dbcopy.engine.datatype.NullType;
+import com.dattack.dbcopy.engine.datatype.ShortType;
+import com.dattack.dbcopy.engine.datatype.StringType;
+import com.dattack.dbcopy.engine.datatype.TimeType;
+import com.dattack.dbcopy.engine.datatype.TimestampType;
+import com.dattack.dbcopy.engine.datatype.XmlType;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Encodes rows as CSV lines (comma separated, double-quote enclosed, LF terminated) understood by the bulk load
+ * commands of the supported databases. Null values are written unquoted using the configured token so they can be
+ * distinguished from empty strings.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class BulkRowEncoder implements DataTypeVisitor { //NOPMD
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final char QUOTE = '"';
+
+    private final transient StringBuilder buffer;
+    private final transient String binaryPrefix;
+    private final transient String nullToken;
+    private final transient boolean numericBooleans;
+
+    /* default */ BulkRowEncoder(final String nullToken, final String binaryPrefix, final boolean numericBooleans) {
+        this.nullToken = nullToken;
+        this.binaryPrefix = binaryPrefix;
+        this.numericBooleans = numericBooleans;
+        this.buffer = new StringBuilder(256);
+    }
+
+    /**
+     * Encodes a row as a single CSV line.
+     *
+     * @param columns the columns to encode
+     * @param row     the row containing the values
+     * @return the UTF-8 bytes of the encoded line
+     * @throws SQLException if a value can't be read from its source locator
+     */
+    /* default */ byte[] encode(final List<ColumnMetadata> columns, final AbstractDataType<?>[] row)
+        throws SQLException
+    {
+        buffer.setLength(0);
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            final AbstractDataType<?> value = row[columns.get(i).getIndex() - 1];
+            if (Objects.isNull(value) || value.isNull()) {
+                buffer.append(nullToken);
+            } else {
+                try {
+                    value.accept(this);
+                } catch (final SQLException e) {
+                    throw e;
+                } catch (final Exception e) {
+                    throw new SQLException("Unable to encode value of column " + columns.get(i).getName(), e);
+                }
+            }
+        }
+        buffer.append('\n');
+        return buffer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void visit(final BigDecimalType type) {
+        buffer.append(type.getValue().toPlainString());
+    }
+
+    @Override
+    public void visit(final BlobType type) throws SQLException {
+        appendHex(type.getValue().getBytes(1L, (int) type.getValue().length()));
+    }
+
+    @Override
+    public void visit(final BooleanType type) {
+        if (numericBooleans) {
+            buffer.append(type.getValue() ? '1' : '0');
+        } else {
+            buffer.append(type.getValue());
+        }
+    }
+
+    @Override
+    public void visit(final ByteType type) {
+        buffer.append(type.getValue().intValue());
+    }
+
+    @Override
+    public void visit(final BytesType type) {
+        appendHex(type.getValue());
+    }
+
+    @Override
+    public void visit(final ClobType type) throws SQLException {
+        appendQuoted(type.getValue().getSubString(1L, (int) type.getValue().length()));
+    }
+
+    @Override
+    public void visit(final DateType type) {
+        buffer.append(type.getValue());
+    }
+
+    @Override
+    public void visit(final DoubleType type) {
+        buffer.append(type.getValue().doubleValue());
+    }
+
+    @Override
+    public void visit(final FloatType type) {
+        buffer.append(type.getValue().floatValue());
+    }
+
+    @Override
+    public void visit(final IntegerType type) {
+        buffer.append(type.getValue().intValue());
+    }
+
+    @Override
+    public void visit(final LongType type) {
+        buffer.append(type.getValue().longValue());
+    }
+
+    @Override
+    public void visit(final NClobType type) throws SQLException {
+        appendQuoted(type.getValue().getSubString(1L, (int) type.getValue().length()));
+    }
+
+    @Override
+    public void visit(final NStringType type) {
+        appendQuoted(type.getValue());
+    }
+
+    @Override
+    public void visit(final NullType type) {
+        buffer.append(nullToken);
+    }
+
+    @Override
+    public void visit(final ShortType type) {
+        buffer.append(type.getValue().intValue());
+    }
+
+    @Override
+    public void visit(final StringType type) {
+        appendQuoted(type.getValue());
+    }
+
+    @Override
+    public void visit(final TimeType type) {
+        buffer.append(type.getValue());
+    }
+
+    @Override
+    public void visit(final TimestampType type) {
+        buffer.append(type.getValue());
+    }
+
+    @Override
+    public void visit(final XmlType type) throws SQLException {
+        appendQuoted(type.getValue().getString());
+    }
+
+    private void appendHex(final byte[] bytes) {
+        buffer.append(QUOTE).append(binaryPrefix);
+        for (final byte value : bytes) {
+            buffer.append(HEX_DIGITS[(value >> 4) & 0x0F]).append(HEX_DIGITS[value & 0x0F]);
+        }
+        buffer.append(QUOTE);
+    }
+
+    private void appendQuoted(final String text) {
+        buffer.append(QUOTE);
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == QUOTE) {
+                buffer.append(QUOTE);
+            }
+            buffer.append(c);
+        }
+        buffer.append(QUOTE);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.bulk;
+
+import com.dattack.dbcopy.engine.ColumnMetadata;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * InputStream that encodes the rows of a batch on demand, one row at a time, so that the bulk load protocols can
+ * consume the batch without materializing it as a single block of bytes.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class BulkRowInputStream extends InputStream {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final transient List<ColumnMetadata> columns;
+    private final transient BulkRowEncoder encoder;
+    private final transient List<AbstractDataType<?>[]> rows;
+    private transient byte[] current;
+    private transient int position;
+    private transient int rowIndex;
+
+    /* default */ BulkRowInputStream(final BulkRowEncoder encoder, final List<ColumnMetadata> columns,
+        final List<AbstractDataType<?>[]> rows)
+    {
+        this.encoder = encoder;
+        this.columns = columns;
+        this.rows = rows;
+        this.current = EMPTY;
+        this.position = 0;
+        this.rowIndex = 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+
+        if (length == 0) {
+            return 0;
+        }
+
+        int count = 0;
+        while (count < length && ensureData()) {
+            final int chunk = Math.min(length - count, current.length - position);
+            System.arraycopy(current, position, bytes, offset + count, chunk);
+            position += chunk;
+            count += chunk;
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    private boolean ensureData() throws IOException {
+        while (position >= current.length) {
+            if (rowIndex >= rows.size()) {
+                return false;
+            }
+            try {
+                current = encoder.encode(columns, rows.get(rowIndex++));
+            } catch (final SQLException e) {
+                throw new IOException(e);
+            }
+            position = 0;
+        }
+        return true;
+    }
+}
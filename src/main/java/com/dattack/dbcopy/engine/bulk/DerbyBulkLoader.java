@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.bulk;
+
+import com.dattack.dbcopy.engine.ColumnMetadata;
+import org.apache.commons.lang.StringUtils;
+
+import java.nio.file.Path;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link BulkLoader} implementation for Apache Derby databases based on the {@code SYSCS_UTIL.SYSCS_IMPORT_DATA}
+ * procedure.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public class DerbyBulkLoader extends AbstractFileBulkLoader {
+
+    private static final String PRODUCT_NAME = "Apache Derby";
+    private static final String SQL = "CALL SYSCS_UTIL.SYSCS_IMPORT_DATA(?, ?, ?, NULL, ?, ',', '\"', 'UTF-8', 0)";
+
+    private static String normalize(final String identifier) {
+        if (identifier.startsWith("\"") && identifier.endsWith("\"")) {
+            return identifier.substring(1, identifier.length() - 1);
+        }
+        return identifier.toUpperCase(Locale.ENGLISH);
+    }
+
+    @Override
+    public boolean supports(final DatabaseMetaData metaData) throws SQLException {
+        return StringUtils.equalsIgnoreCase(metaData.getDatabaseProductName(), PRODUCT_NAME);
+    }
+
+    @Override
+    protected int loadFile(final Connection connection, final String table, final List<ColumnMetadata> columns,
+        final Path file, final int rowCount) throws SQLException
+    {
+        final int dotIndex = table.lastIndexOf('.');
+        try (CallableStatement cs = connection.prepareCall(SQL)) {
+            if (dotIndex > 0) {
+                cs.setString(1, normalize(table.substring(0, dotIndex)));
+            } else {
+                cs.setNull(1, Types.VARCHAR);
+            }
+            cs.setString(2, normalize(table.substring(dotIndex + 1)));
+            cs.setString(3, BulkLoaderHelper.getColumnList(columns).toUpperCase(Locale.ENGLISH));
+            cs.setString(4, file.toAbsolutePath().toString());
+            cs.execute();
+        }
+        // the import procedure does not report the number of imported rows
+        return rowCount;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.bulk;
+
+import com.dattack.dbcopy.engine.ColumnMetadata;
+import org.apache.commons.lang.StringUtils;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * {@link BulkLoader} implementation for H2 databases based on the {@code CSVREAD} table function.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public class H2BulkLoader extends AbstractFileBulkLoader {
+
+    private static final String PRODUCT_NAME = "H2";
+
+    @Override
+    public boolean supports(final DatabaseMetaData metaData) throws SQLException {
+        return StringUtils.equalsIgnoreCase(metaData.getDatabaseProductName(), PRODUCT_NAME);
+    }
+
+    @Override
+    protected int loadFile(final Connection connection, final String table, final List<ColumnMetadata> columns,
+        final Path file, final int rowCount) throws SQLException
+    {
+        final String columnList = BulkLoaderHelper.getColumnList(columns);
+        final String sql = String.format("INSERT INTO %s (%s) SELECT * FROM CSVREAD(?, ?, 'charset=UTF-8')", table,
+                                         columnList);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, file.toAbsolutePath().toString());
+            ps.setString(2, columnList);
+            return ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.bulk;
+
+import com.dattack.dbcopy.engine.ColumnMetadata;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * {@link BulkLoader} implementation that uses the MySQL {@code LOAD DATA LOCAL INFILE} statement reading from an
+ * in-memory stream. The connection must be opened with the {@code allowLoadLocalInfile=true} property. Binary
+ * columns are sent in hexadecimal format and decoded by the server using {@code UNHEX}.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public class MySqlBulkLoader implements BulkLoader {
+
+    private static final String[] STATEMENT_CLASSES = { "com.mysql.cj.jdbc.JdbcStatement", "com.mysql.jdbc.Statement" };
+    private static final String PRODUCT_NAME = "MySQL";
+
+    private static boolean isBinary(final ColumnMetadata column) {
+        switch (column.getType()) {
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Class<?> getStatementClass(final Statement statement) throws SQLException {
+        for (final String className : STATEMENT_CLASSES) {
+            try {
+                final Class<?> clazz = Class.forName(className);
+                if (statement.isWrapperFor(clazz)) {
+                    return clazz;
+                }
+            } catch (final ClassNotFoundException e) { //NOPMD
+                // try next driver version
+            }
+        }
+        throw new SQLException("Unable to access the MySQL LOAD DATA API: unsupported JDBC driver");
+    }
+
+    @Override
+    public boolean supports(final DatabaseMetaData metaData) throws SQLException {
+        return StringUtils.containsIgnoreCase(metaData.getDatabaseProductName(), PRODUCT_NAME);
+    }
+
+    @Override
+    public int load(final Connection connection, final String table, final List<ColumnMetadata> columns,
+        final List<AbstractDataType<?>[]> rows) throws SQLException
+    {
+        final InputStream input = new BulkRowInputStream(new BulkRowEncoder("NULL", "", true), columns, rows);
+
+        try (Statement statement = connection.createStatement()) {
+            final Class<?> statementClass = getStatementClass(statement);
+            final Object mysqlStatement = statement.unwrap(statementClass);
+            statementClass.getMethod("setLocalInfileInputStream", InputStream.class).invoke(mysqlStatement, input);
+            return statement.executeUpdate(createSql(table, columns));
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            throw new SQLException("Unable to access the MySQL LOAD DATA API: " + e.getMessage(), e);
+        } catch (final InvocationTargetException e) {
+            throw BulkLoaderHelper.toSQLException(e);
+        }
+    }
+
+    private String createSql(final String table, final List<ColumnMetadata> columns) {
+
+        final StringBuilder columnList = new StringBuilder();
+        final StringBuilder setList = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            final ColumnMetadata column = columns.get(i);
+            if (columnList.length() > 0) {
+                columnList.append(',');
+            }
+            if (isBinary(column)) {
+                columnList.append("@v").append(i);
+                setList.append(setList.length() == 0 ? " SET " : ",") //
+                    .append(column.getName()).append("=UNHEX(@v").append(i).append(')');
+            } else {
+                columnList.append(column.getName());
+            }
+        }
+
+        return "LOAD DATA LOCAL INFILE 'dbcopy.csv' INTO TABLE " + table //
+            + " CHARACTER SET utf8mb4 FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY ''" //
+            + " LINES TERMINATED BY '\\n' (" + columnList + ")" + setList;
+    }
+}
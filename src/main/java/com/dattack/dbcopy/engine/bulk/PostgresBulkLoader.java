@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.bulk;
+
+import com.dattack.dbcopy.engine.ColumnMetadata;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * {@link BulkLoader} implementation that uses the PostgreSQL {@code COPY ... FROM STDIN} protocol. The driver API is
+ * accessed by reflection so that the PostgreSQL driver is only required when this loader is used.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public class PostgresBulkLoader implements BulkLoader {
+
+    private static final String PG_CONNECTION_CLASS = "org.postgresql.PGConnection";
+    private static final String PRODUCT_NAME = "PostgreSQL";
+
+    @Override
+    public boolean supports(final DatabaseMetaData metaData) throws SQLException {
+        return StringUtils.containsIgnoreCase(metaData.getDatabaseProductName(), PRODUCT_NAME);
+    }
+
+    @Override
+    public int load(final Connection connection, final String table, final List<ColumnMetadata> columns,
+        final List<AbstractDataType<?>[]> rows) throws SQLException
+    {
+        final String sql = String.format("COPY %s (%s) FROM STDIN WITH (FORMAT csv)", table,
+                                         BulkLoaderHelper.getColumnList(columns));
+
+        final InputStream input = new BulkRowInputStream(new BulkRowEncoder("", "\\x", false), columns, rows);
+        try {
+            final Class<?> pgConnectionClass = Class.forName(PG_CONNECTION_CLASS);
+            final Object pgConnection = connection.unwrap(pgConnectionClass);
+            final Object copyManager = pgConnectionClass.getMethod("getCopyAPI").invoke(pgConnection);
+            final Object count = copyManager.getClass().getMethod("copyIn", String.class, InputStream.class) //
+                .invoke(copyManager, sql, input);
+            return ((Number) count).intValue();
+        } catch (final ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            throw new SQLException("Unable to access the PostgreSQL COPY API: " + e.getMessage(), e);
+        } catch (final InvocationTargetException e) {
+            throw BulkLoaderHelper.toSQLException(e);
+        }
+    }
+}
@@ -18,13 +18,17 @@ package com.dattack.dbcopy.engine.export;
 import com.dattack.dbcopy.engine.DataTransfer;
 import com.dattack.dbcopy.engine.DbCopyTaskResult;
 
+import java.io.Closeable;
+
 /**
- * Interface to be implemented by the factories responsible for ExportOperation instantiation.
+ * Interface to be implemented by the factories responsible for ExportOperation instantiation. The factory owns the
+ * files written by its operations: it is closed once all of them have ended, and the files are completed then, so
+ * a failure to close it means that the export has failed.
  *
  * @author cvarela
  * @since 0.1
  */
-public interface ExportOperationFactory {
+public interface ExportOperationFactory extends Closeable {
 
     ExportOperation createTask(DataTransfer dataTransfer, DbCopyTaskResult taskResult);
 }
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind stage of an output file. The exporting workers hand over the items to write and go on encoding while
+ * a dedicated I/O thread drains a bounded queue and writes the items to the {@link Sink}, which also performs the
+ * slow operations like the rotation, the fsync or the move of the files. When the queue is full, the workers wait
+ * for the I/O thread. A capacity of zero disables the write-behind and the workers write to the sink themselves.
+ *
+ * <p>When an item can't be written, the sink is aborted instead of closed, so a partial output is never completed,
+ * and the items still waiting are discarded.</p>
+ *
+ * @param <T> the type of the items to write
+ * @author cvarela
+ * @since 0.3
+ */
+public final class WriteBehindWriter<T> implements Closeable {
+
+    private static final Object END = new Object();
+    private static final long POLL_TIMEOUT_MILLIS = 1_000L;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final transient String name;
+    private final transient BlockingQueue<Object> queue;
+    private final transient Sink<T> sink;
+    private final transient Thread thread;
+    private transient boolean closed;
+    private transient volatile Throwable failure;
+
+    /**
+     * Creates the write-behind stage of a file.
+     *
+     * @param name     the name of the I/O thread
+     * @param capacity the maximum number of items waiting to be written, or zero to write synchronously
+     * @param sink     the sink that writes the items
+     */
+    public WriteBehindWriter(final String name, final int capacity, final Sink<T> sink) {
+        this.name = name;
+        this.sink = sink;
+        this.closed = false;
+        if (capacity > 0) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this::drain, String.format("%s-%d", name, THREAD_COUNTER.getAndIncrement()));
+            this.thread.setDaemon(true);
+            this.thread.start();
+        } else {
+            this.queue = null; //NOPMD
+            this.thread = null; //NOPMD
+        }
+    }
+
+    /**
+     * Waits until all the pending items have been written and closes the sink. If an item could not be written, the
+     * sink has been aborted and the failure is thrown.
+     *
+     * @throws IOException if an item or the sink can't be written
+     */
+    @Override
+    public void close() throws IOException {
+
+        synchronized (this) {
+            if (closed) {
+                checkFailure();
+                return;
+            }
+            closed = true;
+        }
+
+        if (thread == null) {
+            synchronized (sink) {
+                if (failure == null) {
+                    sink.close();
+                }
+            }
+            checkFailure();
+            return;
+        }
+
+        try {
+            while (thread.isAlive() && !queue.offer(END, POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                // the I/O thread is still writing the pending items
+            }
+            thread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("Interrupted while closing " + name).initCause(e);
+        }
+        checkFailure();
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBehindWriter{name=" + name + ", sink=" + sink + '}';
+    }
+
+    /**
+     * Hands over an item to be written. The item must not be modified afterwards.
+     *
+     * @param item the item to write
+     * @throws IOException if a previous item could not be written
+     */
+    public void write(final T item) throws IOException {
+
+        checkFailure();
+        if (thread == null) {
+            synchronized (sink) {
+                checkFailure();
+                try {
+                    sink.write(item);
+                } catch (final IOException | RuntimeException e) {
+                    abort(e, Collections.singletonList(item));
+                    throw e;
+                }
+            }
+            return;
+        }
+
+        try {
+            while (!queue.offer(item, POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("Interrupted while writing to " + name).initCause(e);
+        }
+    }
+
+    private void abort(final Exception cause, final List<T> pending) {
+        failure = cause;
+        try {
+            sink.abort(pending);
+        } catch (final IOException | RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        final Throwable throwable = failure;
+        if (throwable != null) {
+            throw new IOException("Unable to write " + sink + ": " + throwable.getMessage(), throwable);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+
+        T item = null;
+        try {
+            Object next = queue.take();
+            while (next != END) {
+                item = (T) next;
+                sink.write(item);
+                item = null; //NOPMD: the item has been written
+                next = queue.take();
+            }
+        } catch (final Exception e) { //NOPMD: the failure is reported to the workers
+            failure = e;
+            abort(e, discardPending(item));
+            return;
+        }
+
+        try {
+            sink.close();
+        } catch (final IOException | RuntimeException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Takes the items waiting to be written after a failure until the writer is closed, so the workers never block
+     * on a full queue and every item is handed over to the sink to be discarded.
+     */
+    @SuppressWarnings("unchecked")
+    private List<T> discardPending(final T failedItem) {
+
+        final List<T> pending = new ArrayList<>();
+        if (failedItem != null) {
+            pending.add(failedItem);
+        }
+        try {
+            Object next = queue.take();
+            while (next != END) {
+                pending.add((T) next);
+                next = queue.take();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return pending;
+    }
+
+    /**
+     * Final destination of the items, only accessed by one thread at a time.
+     *
+     * @param <T> the type of the items to write
+     */
+    public interface Sink<T> extends Closeable {
+
+        /**
+         * Writes an item.
+         *
+         * @param item the item to write
+         * @throws IOException if an I/O error occurs
+         */
+        void write(T item) throws IOException;
+
+        /**
+         * Releases the sink after a failure. Unlike {@link #close()}, the output written so far must not be completed
+         * or published.
+         *
+         * @param pending the items that were not written, starting with the one that failed
+         * @throws IOException if an I/O error occurs
+         */
+        void abort(List<T> pending) throws IOException;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.export.csv;
+
+import java.io.IOException;
+
+/**
+ * Compresses a block of bytes as an independent member (or frame) of the compressed file. The concatenation of the
+ * members of consecutive blocks is read by the standard tools as a single compressed stream, so the blocks can be
+ * compressed in parallel.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ interface BlockCompressor {
+
+    /**
+     * Compresses the first bytes of the block.
+     *
+     * @param block  the block containing the data
+     * @param length the number of bytes to compress
+     * @return the compressed member
+     * @throws IOException if the data can't be compressed
+     */
+    byte[] compress(byte[] block, int length) throws IOException;
+}
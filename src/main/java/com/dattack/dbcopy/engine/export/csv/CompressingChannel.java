@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.export.csv;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Channel that splits the data in blocks and compresses them in parallel on a shared pool, writing the compressed
+ * members to the target channel in the same order as the blocks. The number of blocks in flight is bounded, so a
+ * slow disk slows down the producer instead of filling the memory.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class CompressingChannel implements WritableByteChannel {
+
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final ThreadPoolExecutor POOL = createPool();
+
+    private final transient int blockSize;
+    private final transient BlockCompressor compressor;
+    private final transient int maxPendingBlocks;
+    private final transient Deque<Future<byte[]>> pending;
+    private final transient WritableByteChannel target;
+    private transient byte[] block;
+    private transient int blockLength;
+    private transient boolean open;
+
+    /* default */ CompressingChannel(final WritableByteChannel target, final BlockCompressor compressor,
+        final int blockSize)
+    {
+        this.target = target;
+        this.compressor = compressor;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = POOL_SIZE * 2;
+        this.pending = new ArrayDeque<>(maxPendingBlocks + 1);
+        this.block = new byte[blockSize];
+        this.blockLength = 0;
+        this.open = true;
+    }
+
+    private static ThreadPoolExecutor createPool() {
+        final AtomicInteger threadCounter = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 1L, TimeUnit.MINUTES,
+            new LinkedBlockingQueue<>(), target -> {
+                final Thread thread = new Thread(target,
+                    String.format("csv-compression-%d", threadCounter.getAndIncrement()));
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            if (blockLength > 0) {
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                writeNext();
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(false));
+            pending.clear();
+            target.close();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public int write(final ByteBuffer buffer) throws IOException {
+
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+
+        final int count = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            final int length = Math.min(buffer.remaining(), blockSize - blockLength);
+            buffer.get(block, blockLength, length);
+            blockLength += length;
+            if (blockLength == blockSize) {
+                submit();
+            }
+        }
+        return count;
+    }
+
+    private void submit() throws IOException {
+
+        final byte[] data = block;
+        final int length = blockLength;
+        pending.addLast(POOL.submit(() -> compressor.compress(data, length)));
+        block = new byte[blockSize];
+        blockLength = 0;
+
+        // write the members already compressed and wait when there are too many blocks in flight
+        while (!pending.isEmpty() && (pending.size() > maxPendingBlocks || pending.peekFirst().isDone())) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        try {
+            final ByteBuffer member = ByteBuffer.wrap(pending.peekFirst().get());
+            while (member.hasRemaining()) {
+                target.write(member);
+            }
+            pending.removeFirst();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("Interrupted while compressing a block").initCause(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to compress a block", e.getCause());
+        }
+    }
+}
@@ -16,22 +16,28 @@
 package com.dattack.dbcopy.engine.export.csv;
 
 import com.dattack.dbcopy.beans.ExportOperationBean;
-import com.dattack.dbcopy.engine.ColumnMetadata;
+import com.dattack.dbcopy.beans.ExportOperationBean.Sharding;
 import com.dattack.dbcopy.engine.DataTransfer;
 import com.dattack.dbcopy.engine.DbCopyTaskResult;
 import com.dattack.dbcopy.engine.RowMetadata;
 import com.dattack.dbcopy.engine.export.ExportOperation;
 import com.dattack.dbcopy.engine.export.ExportOperationFactory;
+import com.dattack.dbcopy.engine.export.format.BinaryFormatter;
+import com.dattack.dbcopy.engine.export.format.TemporalFormatter;
 import com.dattack.formats.csv.CSVConfiguration;
-import com.dattack.formats.csv.CSVStringBuilder;
-import com.dattack.jtoolbox.io.IOUtils;
+import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
 import org.apache.commons.configuration.AbstractConfiguration;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.NestableRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
 
@@ -43,55 +49,150 @@ import java.util.Properties;
  */
 public class CsvExportOperationFactory implements ExportOperationFactory {
 
+    private static final int HEADER_BUFFER_SIZE = 4096;
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvExportOperationFactory.class);
+    private static final String MANIFEST_EXTENSION = ".manifest";
+
     private final transient ExportOperationBean bean;
     private final transient AbstractConfiguration configuration;
+    private final transient List<CsvExportWriteWrapper> shardWriters;
+    private transient CSVConfiguration csvConfiguration;
     private transient CsvExportWriteWrapper writer;
 
     public CsvExportOperationFactory(final ExportOperationBean bean, final AbstractConfiguration configuration) {
         this.bean = bean;
         this.configuration = configuration;
+        this.shardWriters = new ArrayList<>();
     }
 
     @Override
     public ExportOperation createTask(final DataTransfer dataTransfer, final DbCopyTaskResult taskResult) {
 
         try {
-            final CsvExportWriteWrapper outputWriter = getWriter(dataTransfer.getRowMetadata()); //NOPMD: resource
-            // can't be closed here
-
-            taskResult.addOnEndCommand(() -> {
-                IOUtils.closeQuietly(outputWriter);
-                return null;
-            });
+            final CsvExportWriteWrapper outputWriter;
+            if (bean.getSharding() == Sharding.PER_WORKER) {
+                outputWriter = createShardWriter(dataTransfer.getRowMetadata()); //NOPMD: closed by the factory
+            } else {
+                outputWriter = getWriter(dataTransfer.getRowMetadata()); //NOPMD: resource closed by the factory
+            }
 
-            return new CsvExportOperation(bean, dataTransfer, taskResult, outputWriter);
+            return new CsvExportOperation(bean, getCsvConfiguration(), dataTransfer, taskResult, outputWriter);
 
         } catch (IOException e) {
             throw new NestableRuntimeException(e);
         }
     }
 
-    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
-    private CSVStringBuilder createCSVStringBuilder() throws IOException {
+    /**
+     * Waits until the files have been written and published. When the workers write their own shards, the manifest
+     * is written once all of them have been closed, and only if none of them failed: the manifest is the signal
+     * that the export is complete.
+     *
+     * @throws IOException if a file can't be completed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+        if (!shardWriters.isEmpty()) {
+            closeShards();
+        }
+    }
+
+    /**
+     * Creates the writer of a new worker, which writes its own part file without sharing any lock with the other
+     * workers.
+     */
+    private synchronized CsvExportWriteWrapper createShardWriter(final RowMetadata rowMetadata) throws IOException {
+        final CsvExportWriteWrapper shardWriter = new CsvExportWriteWrapper(bean, configuration,
+            "w" + shardWriters.size());
+        shardWriter.setHeader(getHeader(rowMetadata));
+        shardWriters.add(shardWriter);
+        return shardWriter;
+    }
+
+    private void closeShards() throws IOException {
+
+        IOException failure = null;
+        final List<CsvExportPart> parts = new ArrayList<>();
+        for (final CsvExportWriteWrapper shardWriter : shardWriters) {
+            try {
+                shardWriter.close();
+            } catch (final IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+            parts.addAll(shardWriter.getParts());
+        }
 
-        final Properties properties = new Properties();
-        if (StringUtils.isNotBlank(bean.getFormatFile())) {
-            try (InputStream fis = Files.newInputStream(Paths.get(bean.getFormatFile()))) {
-                properties.load(fis);
+        if (failure != null) {
+            try {
+                // the manifest of a previous export must not pass for the manifest of this one
+                Files.deleteIfExists(getManifestPath());
+            } catch (final IOException e) {
+                failure.addSuppressed(e);
             }
+            LOGGER.error("The manifest of the export is not written because a shard failed: {}",
+                failure.getMessage());
+            throw failure;
         }
-        final CSVConfiguration configuration = CSVConfiguration.custom(properties).build();
-        return new CSVStringBuilder(configuration);
+        writeManifest(parts);
     }
 
-    private String getHeader(final RowMetadata rowMetadata) throws IOException {
+    /**
+     * Writes the manifest listing the files written by all the workers, one line per file with its name, the number
+     * of rows and its size in bytes. The manifest is placed next to the files and replaced atomically.
+     */
+    private void writeManifest(final List<CsvExportPart> parts) throws IOException {
 
-        final CSVStringBuilder builder = createCSVStringBuilder();
-        for (final ColumnMetadata columnMetadata : rowMetadata.getColumnsMetadata()) {
-            builder.append(columnMetadata.getName());
+        final Path manifest = getManifestPath();
+
+        final List<String> lines = new ArrayList<>(parts.size() + 1);
+        lines.add(CsvExportPart.HEADER);
+        long totalRows = 0;
+        for (final CsvExportPart part : parts) {
+            lines.add(part.toLine());
+            totalRows += part.getRows();
+        }
+        final Path parent = manifest.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
         }
-        builder.eol();
-        return builder.toString();
+        CsvExportWriteWrapper.writeAtomically(manifest, lines);
+        LOGGER.info("Manifest {} written: {} files, {} rows", manifest, parts.size(), totalRows);
+    }
+
+    private Path getManifestPath() {
+
+        Path manifest = Paths.get(ConfigurationUtil.interpolate(bean.getPath(), configuration) + MANIFEST_EXTENSION);
+        if (StringUtils.isNotBlank(bean.getMove2path())) {
+            manifest = Paths.get(bean.getMove2path()).resolve(manifest.getFileName());
+        }
+        return manifest;
+    }
+
+    private synchronized CSVConfiguration getCsvConfiguration() throws IOException {
+
+        if (Objects.isNull(csvConfiguration)) {
+            final Properties properties = new Properties();
+            if (StringUtils.isNotBlank(bean.getFormatFile())) {
+                try (InputStream fis = Files.newInputStream(Paths.get(bean.getFormatFile()))) {
+                    properties.load(fis);
+                }
+            }
+            csvConfiguration = CSVConfiguration.custom(properties).build();
+        }
+        return csvConfiguration;
+    }
+
+    private byte[] getHeader(final RowMetadata rowMetadata) throws IOException {
+        final CsvRowEncoder encoder = new CsvRowEncoder(getCsvConfiguration(),
+            new TemporalFormatter(null, null, null), BinaryFormatter.BASE64, HEADER_BUFFER_SIZE);
+        return encoder.encodeHeader(rowMetadata.getColumnsMetadata());
     }
 
     private synchronized CsvExportWriteWrapper getWriter(final RowMetadata rowMetadata) throws IOException {
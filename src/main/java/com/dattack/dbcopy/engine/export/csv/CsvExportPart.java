@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.export.csv;
+
+import java.nio.file.Path;
+
+/**
+ * A file written by an export operation: its final location, the number of rows and its size on disk.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ final class CsvExportPart {
+
+    /**
+     * Header of the lists of files, like the manifest or the done markers.
+     */
+    /* default */ static final String HEADER = "file,rows,bytes";
+
+    private final transient long bytes;
+    private final transient Path path;
+    private final transient long rows;
+
+    /* default */ CsvExportPart(final Path path, final long rows, final long bytes) {
+        this.path = path;
+        this.rows = rows;
+        this.bytes = bytes;
+    }
+
+    /* default */ long getBytes() {
+        return bytes;
+    }
+
+    /* default */ Path getPath() {
+        return path;
+    }
+
+    /* default */ long getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the line describing this file in a list of files.
+     *
+     * @return the name of the file, its rows and its size
+     */
+    /* default */ String toLine() {
+        return path.getFileName() + "," + rows + "," + bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "CsvExportPart{path=" + path + ", rows=" + rows + ", bytes=" + bytes + '}';
+    }
+}
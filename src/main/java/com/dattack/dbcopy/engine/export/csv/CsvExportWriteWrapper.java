@@ -16,56 +16,92 @@
 package com.dattack.dbcopy.engine.export.csv;
 
 import com.dattack.dbcopy.beans.ExportOperationBean;
+import com.dattack.dbcopy.beans.ExportOperationBean.Compression;
+import com.dattack.dbcopy.engine.export.WriteBehindWriter;
 import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
 import org.apache.commons.configuration.AbstractConfiguration;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.zip.GZIPOutputStream;
 
 /**
- * Wrapper of a Writer that performs data writing in CSV format.
+ * Wrapper of the channel that performs data writing in CSV format. The lines arrive already encoded as UTF-8 bytes
+ * and are written to a {@link FileChannel}, through a {@link CompressingChannel} when the file is compressed. The
+ * writes and the rotation run on the I/O thread of a {@link WriteBehindWriter}. The files are rotated by size on
+ * disk, number of rows or age, and each rotated file is finalized by a second stage, so that the flush of the last
+ * compressed blocks, the fsync and the publication of the file don't delay the writing of the next one.
+ *
+ * <p>A file is published atomically: when a {@code move-to} directory is set, the file is moved there under a
+ * hidden temporary name and then renamed. Once published, a {@code .done} marker can be written next to it, so the
+ * downstream loaders can start with the finished files while the export is still running. When the writing or the
+ * finalization of a file fails, the file is deleted instead: it is neither published nor listed in the manifest.</p>
  *
  * @author cvarela
  * @since 0.2
  */
 class CsvExportWriteWrapper implements Closeable {
 
+    private static final String DONE_EXTENSION = ".done";
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvExportWriteWrapper.class);
+    private static final String TEMP_EXTENSION = ".tmp";
 
     private final transient ExportOperationBean bean;
     private final transient AbstractConfiguration configuration;
     private final transient AtomicInteger fileNumber;
+    private final transient WriteBehindWriter<ClosedFile> finalizer;
     private final transient Object lock;
-    private transient volatile CountingOutputStream cos;
-    private transient String header;
+    private final transient List<CsvExportPart> parts;
+    private final transient String shard;
+    private final transient WriteBehindWriter<Chunk> writeBehind;
+    private transient volatile WritableByteChannel channel;
+    private transient CountingChannel counter;
+    private transient byte[] header;
+    private transient long openTime;
+    private transient long partRows;
     private transient volatile Path path;
-    private transient volatile Writer writer;
 
     public CsvExportWriteWrapper(final ExportOperationBean bean, final AbstractConfiguration configuration) {
+        this(bean, configuration, null);
+    }
+
+    /**
+     * Creates a wrapper that writes its own shard of the export, adding the shard name to the filename.
+     *
+     * @param bean          the export configuration
+     * @param configuration the configuration used to interpolate the path
+     * @param shard         the name of the shard or null when the file is shared by all the workers
+     */
+    /* default */ CsvExportWriteWrapper(final ExportOperationBean bean, final AbstractConfiguration configuration,
+        final String shard)
+    {
         this.bean = bean;
         this.configuration = configuration;
-        this.fileNumber = bean.getRotateSize() > 0 ? new AtomicInteger() : null; //NOPMD
+        this.shard = shard;
+        this.fileNumber = bean.isRotationEnabled() ? new AtomicInteger() : null; //NOPMD
         this.lock = new Object();
+        this.parts = new ArrayList<>();
+        this.writeBehind = new WriteBehindWriter<>("csv-writer", bean.getWriteQueueSize(), new FileSink());
+        this.finalizer = new WriteBehindWriter<>("csv-finalizer", bean.getWriteQueueSize(), new FinalizerSink());
     }
 
-    private static String createPartFilename(final String filename, final int fileNumber) {
+    private static String createPartFilename(final String filename, final String suffix) {
         final String baseName = FilenameUtils.getBaseName(filename);
         final String extension = FilenameUtils.getExtension(filename);
 
@@ -73,79 +109,220 @@ class CsvExportWriteWrapper implements Closeable {
 
         final int dotIndex = baseName.indexOf('.');
         if (dotIndex > 0) {
-            partFilename = FilenameUtils.getFullPath(filename) + baseName.substring(0, dotIndex) + "_" + fileNumber //
+            partFilename = FilenameUtils.getFullPath(filename) + baseName.substring(0, dotIndex) + "_" + suffix //
                     + baseName.substring(dotIndex) + "." + extension;
         } else {
-            partFilename = filename + "_" + fileNumber;
+            partFilename = filename + "_" + suffix;
         }
 
         return partFilename;
     }
 
+    /**
+     * Writes a file replacing its contents atomically: the lines are written to a temporary file that is renamed
+     * once complete, so the readers never see a partial file.
+     *
+     * @param target the file to write
+     * @param lines  the lines of the file
+     * @throws IOException if an I/O error occurs
+     */
+    /* default */ static void writeAtomically(final Path target, final List<String> lines) throws IOException {
+        final Path temp = getTempPath(target);
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path getTempPath(final Path target) {
+        return target.resolveSibling("." + target.getFileName() + TEMP_EXTENSION);
+    }
+
+    /**
+     * Waits until all the buffers have been written and all the files have been closed and published.
+     *
+     * @throws IOException if an I/O error occurs
+     */
     @Override
     public void close() throws IOException {
-        if (writer != null) {
-            synchronized (lock) {
-                if (writer != null) {
-                    writer.close();
-                    writer = null; //NOPMD
-
-                    // move part file to other directory
-                    if (StringUtils.isNotBlank(bean.getMove2path())) {
-                        final Path newDir = Paths.get(bean.getMove2path());
-                        final Path target = newDir.resolve(this.path.getFileName());
-                        LOGGER.info("Moving file {} to {}", this.path, target);
-                        Files.move(this.path, target, StandardCopyOption.REPLACE_EXISTING);
-                    }
-                }
+        try {
+            writeBehind.close();
+        } finally {
+            finalizer.close();
+        }
+    }
+
+    /**
+     * Detaches the current file and hands it over to the finalizer, so the next file can be opened straight away.
+     */
+    private void closeFile() throws IOException {
+        final ClosedFile closedFile = detachFile();
+        if (closedFile != null) {
+            try {
+                finalizer.write(closedFile);
+            } catch (final IOException e) {
+                discard(closedFile);
+                throw e;
             }
         }
     }
 
+    /**
+     * Detaches the current file after a failure and deletes it.
+     */
+    private void discardFile() {
+        final ClosedFile closedFile = detachFile();
+        if (closedFile != null) {
+            discard(closedFile);
+        }
+    }
+
+    private ClosedFile detachFile() {
+        synchronized (lock) {
+            ClosedFile closedFile = null;
+            if (channel != null) {
+                closedFile = new ClosedFile(channel, path, partRows);
+                channel = null; //NOPMD
+                counter = null; //NOPMD
+            }
+            return closedFile;
+        }
+    }
+
+    private static void discard(final ClosedFile closedFile) {
+        LOGGER.warn("Deleting the unfinished file {}", closedFile.path);
+        try {
+            closedFile.channel.close();
+        } catch (final IOException e) {
+            LOGGER.debug("Unable to close {}: {}", closedFile.path, e.getMessage());
+        }
+        try {
+            Files.deleteIfExists(closedFile.path);
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to delete the unfinished file {}: {}", closedFile.path, e.getMessage());
+        }
+    }
+
+    private void finalizeFile(final ClosedFile closedFile) throws IOException {
+
+        closedFile.channel.close();
+        final long size = Files.size(closedFile.path);
+        final Path target = publish(closedFile.path);
+        final CsvExportPart part = new CsvExportPart(target, closedFile.rows, size);
+        if (bean.isDoneMarker()) {
+            try {
+                writeAtomically(target.resolveSibling(target.getFileName() + DONE_EXTENSION),
+                    Arrays.asList(CsvExportPart.HEADER, part.toLine()));
+            } catch (final IOException e) {
+                Files.deleteIfExists(target);
+                throw e;
+            }
+        }
+        synchronized (lock) {
+            parts.add(part);
+        }
+        LOGGER.debug("File {} finished: {} rows, {} bytes", target, closedFile.rows, size);
+    }
+
+    /**
+     * Moves a finished file to the move-to directory, if any. The file is moved under a temporary name and then
+     * renamed inside the directory, because a move between file systems is a copy that can be seen half done.
+     */
+    private Path publish(final Path source) throws IOException {
+
+        if (StringUtils.isBlank(bean.getMove2path())) {
+            return source;
+        }
+
+        final Path target = Paths.get(bean.getMove2path()).resolve(source.getFileName());
+        final Path temp = getTempPath(target);
+        LOGGER.info("Moving file {} to {}", source, target);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Files.move(source, temp, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    private boolean isRotationRequired() {
+        return bean.getRotateSize() > 0 && counter.writtenBytes > bean.getRotateSize() //
+            || bean.getRotateRows() > 0 && partRows >= bean.getRotateRows() //
+            || bean.getRotateInterval() > 0 && System.currentTimeMillis() - openTime >= bean.getRotateInterval();
+    }
+
     @Override
     public String toString() {
         return "ExportWriteWrapper{path=" + path + '}';
     }
 
-    /* default */ void setHeader(final String header) {
+    /**
+     * Returns the files closed by this wrapper, in the order they were written.
+     *
+     * @return the closed files
+     */
+    /* default */ List<CsvExportPart> getParts() {
+        synchronized (lock) {
+            return new ArrayList<>(parts);
+        }
+    }
+
+    /* default */ void setHeader(final byte[] header) {
         this.header = header;
     }
 
-    /* default */ void write(final String text) throws IOException {
+    /**
+     * Writes the remaining bytes of the buffer. The buffer must contain complete lines so that the lines written by
+     * concurrent operations are never interleaved. The bytes are copied, so the buffer can be reused as soon as this
+     * method returns.
+     *
+     * @param buffer the encoded lines
+     * @param rows   the number of lines contained in the buffer
+     * @throws IOException if an I/O error occurs
+     */
+    /* default */ void write(final ByteBuffer buffer, final int rows) throws IOException {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        writeBehind.write(new Chunk(bytes, rows));
+    }
+
+    private void writeChunk(final Chunk chunk) throws IOException {
         synchronized (lock) {
-            getWriter().write(text);
+            writeFully(getChannel(), ByteBuffer.wrap(chunk.bytes));
+            partRows += chunk.rows;
         }
-        if (fileNumber != null) {
-            synchronized (lock) {
-                if (cos != null && cos.getByteCount() > bean.getRotateSize()) {
-                    LOGGER.debug("Rotate file: {}, bytes: {}, limit: {}", path, cos.getByteCount(),
-                            bean.getRotateSize());
-                    close();
-                }
-            }
+        if (fileNumber != null && isRotationRequired()) {
+            LOGGER.debug("Rotate file: {}, bytes: {}, rows: {}", path, counter.writtenBytes, partRows);
+            closeFile();
+        }
+    }
+
+    private static void writeFully(final WritableByteChannel target, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
         }
     }
 
-    private Writer getWriter() throws IOException {
-        if (Objects.isNull(writer)) {
+    private WritableByteChannel getChannel() throws IOException {
+        if (Objects.isNull(channel)) {
             synchronized (lock) {
-                if (Objects.isNull(writer)) {
+                if (Objects.isNull(channel)) {
                     init();
+                    partRows = 0;
                     // write header
-                    if (StringUtils.isNotBlank(header)) {
-                        writer.write(header);
+                    if (header != null && header.length > 0) {
+                        writeFully(channel, ByteBuffer.wrap(header));
                     }
                 }
             }
         }
-        return writer;
+        return channel;
     }
 
     private void init() throws IOException {
 
         String filename = ConfigurationUtil.interpolate(bean.getPath(), configuration);
+        if (shard != null) {
+            filename = createPartFilename(filename, shard);
+        }
         if (fileNumber != null) {
-            filename = createPartFilename(filename, fileNumber.get());
+            filename = createPartFilename(filename, String.valueOf(fileNumber.get()));
             fileNumber.incrementAndGet();
         }
 
@@ -154,23 +331,163 @@ class CsvExportWriteWrapper implements Closeable {
         if (parent != null) {
             Files.createDirectories(parent);
         }
-        OutputStream outputStream = Files.newOutputStream(path,
+        final FileChannel fileChannel = FileChannel.open(path,
                 StandardOpenOption.CREATE, //
                 StandardOpenOption.WRITE, //
                 StandardOpenOption.TRUNCATE_EXISTING);
 
-        cos = new CountingOutputStream(outputStream);
-        outputStream = cos;
-        if (bean.isGzip()) {
-            outputStream = new GZIPOutputStream(outputStream);
-        }
-
         this.path = path;
-        if (bean.getBufferSize() > 0) {
-            this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
-                    bean.getBufferSize());
+        this.openTime = System.currentTimeMillis();
+        this.counter = new CountingChannel(fileChannel);
+        final BlockCompressor compressor = createCompressor();
+        if (compressor == null) {
+            this.channel = counter;
         } else {
-            this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            this.channel = new CompressingChannel(counter, compressor, bean.getCompressionBlockSize());
+        }
+    }
+
+    private BlockCompressor createCompressor() {
+
+        BlockCompressor compressor;
+        final Compression compression = bean.getCompression();
+        switch (compression) {
+            case GZIP:
+                compressor = new GzipBlockCompressor(bean.getCompressionLevel());
+                break;
+            case ZSTD:
+                compressor = new ZstdBlockCompressor(bean.getCompressionLevel());
+                break;
+            case LZ4:
+                compressor = new Lz4BlockCompressor(bean.getCompressionLevel());
+                break;
+            case UNCOMPRESSED:
+                compressor = null; //NOPMD
+                break;
+            default:
+                LOGGER.warn("Compression {} is not supported by CSV exports, the file will be uncompressed",
+                    compression);
+                compressor = null; //NOPMD
+        }
+        return compressor;
+    }
+
+    /**
+     * Channel that keeps the number of bytes written to the file, used to rotate it. When the file is compressed, the
+     * blocks still being compressed are not counted yet.
+     */
+    private final class CountingChannel implements WritableByteChannel {
+
+        private final transient FileChannel delegate;
+        private transient volatile long writtenBytes;
+
+        /* default */ CountingChannel(final FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (bean.isFsync()) {
+                    delegate.force(true);
+                }
+            } finally {
+                delegate.close();
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public int write(final ByteBuffer buffer) throws IOException {
+            final int count = delegate.write(buffer);
+            writtenBytes += count;
+            return count;
+        }
+    }
+
+    /**
+     * A file that has been rotated or closed and is waiting to be finalized.
+     */
+    private static final class ClosedFile {
+
+        private final transient WritableByteChannel channel;
+        private final transient Path path;
+        private final transient long rows;
+
+        /* default */ ClosedFile(final WritableByteChannel channel, final Path path, final long rows) {
+            this.channel = channel;
+            this.path = path;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Encoded lines waiting to be written.
+     */
+    private static final class Chunk {
+
+        private final transient byte[] bytes;
+        private final transient int rows;
+
+        /* default */ Chunk(final byte[] bytes, final int rows) {
+            this.bytes = bytes;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Sink of the write-behind stage, writing the chunks to the current file.
+     */
+    private final class FileSink implements WriteBehindWriter.Sink<Chunk> {
+
+        @Override
+        public void abort(final List<Chunk> pending) {
+            discardFile();
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeFile();
+        }
+
+        @Override
+        public String toString() {
+            return CsvExportWriteWrapper.this.toString();
+        }
+
+        @Override
+        public void write(final Chunk chunk) throws IOException {
+            writeChunk(chunk);
+        }
+    }
+
+    /**
+     * Sink of the finalization stage, closing and publishing the rotated files in the order they were written.
+     */
+    private final class FinalizerSink implements WriteBehindWriter.Sink<ClosedFile> {
+
+        @Override
+        public void abort(final List<ClosedFile> pending) {
+            pending.forEach(CsvExportWriteWrapper::discard);
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+
+        @Override
+        public String toString() {
+            return CsvExportWriteWrapper.this.toString();
+        }
+
+        @Override
+        public void write(final ClosedFile closedFile) throws IOException {
+            finalizeFile(closedFile);
         }
     }
 }
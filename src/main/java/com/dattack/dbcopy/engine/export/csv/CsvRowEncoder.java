@@ -0,0 +1,584 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.export.csv;
+
+import com.dattack.dbcopy.engine.ColumnMetadata;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.dbcopy.engine.datatype.BigDecimalType;
+import com.dattack.dbcopy.engine.datatype.BlobType;
+import com.dattack.dbcopy.engine.datatype.BooleanType;
+import com.dattack.dbcopy.engine.datatype.ByteType;
+import com.dattack.dbcopy.engine.datatype.BytesType;
+import com.dattack.dbcopy.engine.datatype.ClobType;
+import com.dattack.dbcopy.engine.datatype.DataTypeVisitor;
+import com.dattack.dbcopy.engine.datatype.DateType;
+import com.dattack.dbcopy.engine.datatype.DoubleType;
+import com.dattack.dbcopy.engine.datatype.FloatType;
+import com.dattack.dbcopy.engine.datatype.IntegerType;
+import com.dattack.dbcopy.engine.datatype.LongType;
+import com.dattack.dbcopy.engine.datatype.NClobType;
+import com.dattack.dbcopy.engine.datatype.NStringType;
+import com.dattack.dbcopy.engine.datatype.NullType;
+import com.dattack.dbcopy.engine.datatype.ShortType;
+import com.dattack.dbcopy.engine.datatype.StringType;
+import com.dattack.dbcopy.engine.datatype.TimeType;
+import com.dattack.dbcopy.engine.datatype.TimestampType;
+import com.dattack.dbcopy.engine.datatype.XmlType;
+import com.dattack.dbcopy.engine.export.format.BinaryFormatter;
+import com.dattack.dbcopy.engine.export.format.NumberFormatter;
+import com.dattack.dbcopy.engine.export.format.TemporalFormatter;
+import com.dattack.formats.csv.CSVConfiguration;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Encodes rows in CSV format straight into a reusable buffer of UTF-8 bytes, without building intermediate strings
+ * for the lines. The separator, quote, escape, end-of-line and null value are taken from the {@link CSVConfiguration}
+ * of the export, and the numbers, temporal and binary values are written by {@link NumberFormatter},
+ * {@link TemporalFormatter} and {@link BinaryFormatter}. Without a binary formatter, the binary values are decoded
+ * as UTF-8 text. Each export worker owns its encoder, and the buffer only contains complete lines, so it can be
+ * written to a shared file without interleaving the lines of different workers.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class CsvRowEncoder implements DataTypeVisitor { //NOPMD
+
+    // multiple of the block size of all the binary formatters
+    private static final int BINARY_CHUNK_SIZE = 3 * 4096;
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long CR_PATTERN = repeat('\r');
+    private static final long LF_PATTERN = repeat('\n');
+    private static final int MAX_BYTES_PER_CHAR = 3;
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+
+    private final transient BinaryFormatter binaryFormatter;
+    private final transient boolean binaryQuoted;
+    private final transient byte[] eol;
+    private final transient char escapeChar;
+    private final transient long escapePattern;
+    private final transient int flushThreshold;
+    private final transient byte[] nullValue;
+    private final transient char quoteChar;
+    private final transient long quotePattern;
+    private final transient byte[] separator;
+    private final transient long separatorPattern;
+    private final transient String separatorText;
+    private final transient boolean swarScan;
+    private final transient TemporalFormatter temporalFormatter;
+    private transient byte[] binaryChunk;
+    private transient byte[] bytes;
+    private transient boolean firstCell;
+    private transient int position;
+    private transient ByteBuffer words;
+
+    /* default */ CsvRowEncoder(final CSVConfiguration configuration, final TemporalFormatter temporalFormatter,
+        final BinaryFormatter binaryFormatter, final int flushThreshold)
+    {
+        this.separatorText = StringUtils.defaultString(configuration.getSeparator(), ",");
+        this.separator = separatorText.getBytes(StandardCharsets.UTF_8);
+        this.eol = StringUtils.defaultString(configuration.getEol(), System.lineSeparator())
+            .getBytes(StandardCharsets.UTF_8);
+        this.nullValue = StringUtils.defaultString(configuration.getNullValue()).getBytes(StandardCharsets.UTF_8);
+        this.quoteChar = configuration.getQuoteChar();
+        this.escapeChar = configuration.getEscapeChar();
+        this.quotePattern = repeat(quoteChar);
+        this.escapePattern = repeat(escapeChar);
+        this.separatorPattern = separatorText.isEmpty() ? 0 : repeat(separatorText.charAt(0));
+        // the scan of bytes only works when the special characters are encoded as a single byte
+        this.swarScan = quoteChar < 0x80 && escapeChar < 0x80 && !separatorText.isEmpty()
+            && separatorText.charAt(0) < 0x80;
+        this.temporalFormatter = temporalFormatter;
+        this.binaryFormatter = binaryFormatter;
+        this.binaryQuoted = binaryFormatter != null && containsAlphabet(binaryFormatter, separatorText);
+        this.flushThreshold = flushThreshold;
+        this.bytes = new byte[flushThreshold * 2];
+        this.words = wrap(bytes);
+        this.position = 0;
+        this.firstCell = true;
+    }
+
+    /**
+     * Releases the encoded lines once they have been written.
+     */
+    /* default */ void clear() {
+        position = 0;
+        if (bytes.length > flushThreshold * 4) {
+            // a huge row grew the buffer: its memory is released
+            bytes = new byte[flushThreshold * 2];
+            words = wrap(bytes);
+        }
+    }
+
+    /**
+     * Encodes a row as a new line.
+     *
+     * @param columns the columns to encode
+     * @param row     the values of the row
+     * @throws Exception if a value can't be read from its source
+     */
+    /* default */ void encode(final List<ColumnMetadata> columns, final AbstractDataType<?>[] row) throws Exception {
+        for (final ColumnMetadata columnMetadata : columns) {
+            final AbstractDataType<?> value = row[columnMetadata.getIndex() - 1];
+            if (Objects.isNull(value) || value.isNull()) {
+                appendNull();
+            } else {
+                value.accept(this);
+            }
+        }
+        endLine();
+    }
+
+    /**
+     * Encodes the header line containing the names of the columns.
+     *
+     * @param columns the columns of the rows
+     * @return the UTF-8 bytes of the header
+     */
+    /* default */ byte[] encodeHeader(final List<ColumnMetadata> columns) {
+        final int start = position;
+        for (final ColumnMetadata columnMetadata : columns) {
+            appendText(columnMetadata.getName());
+        }
+        endLine();
+        final byte[] header = new byte[position - start];
+        System.arraycopy(bytes, start, header, 0, header.length);
+        position = start;
+        return header;
+    }
+
+    /**
+     * Returns the encoded lines, ready to be written.
+     *
+     * @return a buffer whose remaining bytes are the encoded lines
+     */
+    /* default */ ByteBuffer getBuffer() {
+        return ByteBuffer.wrap(bytes, 0, position);
+    }
+
+    /**
+     * Checks if the encoded lines should be written to release the buffer.
+     *
+     * @return true if the buffer has reached its flush threshold
+     */
+    /* default */ boolean isFull() {
+        return position >= flushThreshold;
+    }
+
+    /* default */ boolean isEmpty() {
+        return position == 0;
+    }
+
+    @Override
+    public void visit(final BigDecimalType type) {
+        final BigDecimal bigDecimal = type.getValue();
+        if (bigDecimal.scale() == 0) {
+            appendLong(bigDecimal.longValue());
+        } else {
+            appendDouble(bigDecimal.doubleValue());
+        }
+    }
+
+    @Override
+    public void visit(final BlobType type) throws SQLException, IOException {
+        try (InputStream input = type.getValue().getBinaryStream()) {
+            if (binaryFormatter == null) {
+                appendText(IOUtils.toString(input, StandardCharsets.UTF_8));
+            } else {
+                appendBinary(input);
+            }
+        }
+    }
+
+    @Override
+    public void visit(final BooleanType type) {
+        startCell();
+        appendBytes(type.getValue() ? TRUE : FALSE);
+    }
+
+    @Override
+    public void visit(final ByteType type) {
+        appendLong(type.getValue());
+    }
+
+    @Override
+    public void visit(final BytesType type) {
+        if (binaryFormatter == null) {
+            appendText(new String(type.getValue(), StandardCharsets.UTF_8));
+        } else {
+            startBinary();
+            appendBinaryBlock(type.getValue(), 0, type.getValue().length);
+            endBinary();
+        }
+    }
+
+    @Override
+    public void visit(final ClobType type) throws SQLException, IOException {
+        try (Reader reader = type.getValue().getCharacterStream()) {
+            appendText(IOUtils.toString(reader));
+        }
+    }
+
+    @Override
+    public void visit(final DateType type) {
+        startCell();
+        ensureCapacity(TemporalFormatter.MAX_LENGTH);
+        position = temporalFormatter.writeDate(type.getValue(), bytes, position);
+    }
+
+    @Override
+    public void visit(final DoubleType type) {
+        appendDouble(type.getValue());
+    }
+
+    @Override
+    public void visit(final FloatType type) {
+        appendAscii(type.getValue().toString());
+    }
+
+    @Override
+    public void visit(final IntegerType type) {
+        appendLong(type.getValue());
+    }
+
+    @Override
+    public void visit(final LongType type) {
+        appendLong(type.getValue());
+    }
+
+    @Override
+    public void visit(final NClobType type) throws SQLException {
+        appendText(type.getValue().getSubString(1L, (int) type.getValue().length()));
+    }
+
+    @Override
+    public void visit(final NStringType type) {
+        appendText(type.getValue());
+    }
+
+    @Override
+    public void visit(final NullType type) {
+        appendNull();
+    }
+
+    @Override
+    public void visit(final ShortType type) {
+        appendLong(type.getValue());
+    }
+
+    @Override
+    public void visit(final StringType type) {
+        appendText(type.getValue());
+    }
+
+    @Override
+    public void visit(final TimeType type) {
+        startCell();
+        ensureCapacity(TemporalFormatter.MAX_LENGTH);
+        position = temporalFormatter.writeTime(type.getValue(), bytes, position);
+    }
+
+    @Override
+    public void visit(final TimestampType type) {
+        startCell();
+        ensureCapacity(TemporalFormatter.MAX_LENGTH);
+        position = temporalFormatter.writeTimestamp(type.getValue(), bytes, position);
+    }
+
+    @Override
+    public void visit(final XmlType type) throws SQLException {
+        appendText(type.getValue().getString());
+    }
+
+    /**
+     * Appends a value that never needs quotes and only contains ASCII characters.
+     */
+    private void appendAscii(final String text) {
+        startCell();
+        ensureCapacity(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            bytes[position++] = (byte) text.charAt(i);
+        }
+    }
+
+    /**
+     * Appends a binary value read from a stream. The value is read in chunks and each chunk is written as soon as
+     * it is read, so the value is never held in memory other than as its encoded text.
+     */
+    private void appendBinary(final InputStream input) throws IOException {
+
+        if (Objects.isNull(binaryChunk)) {
+            binaryChunk = new byte[BINARY_CHUNK_SIZE];
+        }
+
+        startBinary();
+        final int blockSize = binaryFormatter.getBlockSize();
+        int pending = 0;
+        int read = input.read(binaryChunk, 0, binaryChunk.length);
+        while (read >= 0) {
+            final int available = pending + read;
+            final int complete = available - available % blockSize;
+            appendBinaryBlock(binaryChunk, 0, complete);
+            // the bytes of an incomplete block are kept for the next read
+            pending = available - complete;
+            System.arraycopy(binaryChunk, complete, binaryChunk, 0, pending);
+            read = input.read(binaryChunk, pending, binaryChunk.length - pending);
+        }
+        appendBinaryBlock(binaryChunk, 0, pending);
+        endBinary();
+    }
+
+    private void appendBinaryBlock(final byte[] source, final int offset, final int length) {
+        ensureCapacity(binaryFormatter.getMaxLength(length));
+        position = binaryFormatter.write(source, offset, length, bytes, position);
+    }
+
+    private void appendDouble(final double value) {
+        startCell();
+        ensureCapacity(NumberFormatter.MAX_DOUBLE_LENGTH);
+        position = NumberFormatter.writeDouble(value, bytes, position);
+    }
+
+    private void appendLong(final long value) {
+        startCell();
+        ensureCapacity(NumberFormatter.MAX_LONG_LENGTH);
+        position = NumberFormatter.writeLong(value, bytes, position);
+    }
+
+    private void appendBytes(final byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, position, value.length);
+        position += value.length;
+    }
+
+    private void appendNull() {
+        startCell();
+        appendBytes(nullValue);
+    }
+
+    /**
+     * Appends a text value, enclosed in quotes when it contains the separator, a quote or a line break. The text is
+     * encoded first and the bytes are scanned eight at a time looking for the characters that require quotes, so
+     * the text is written only once when it needs no quotes, which is the common case.
+     */
+    private void appendText(final String text) {
+
+        startCell();
+        ensureCapacity(text.length() * MAX_BYTES_PER_CHAR);
+        final int start = position;
+        appendUtf8(text);
+        if ((!swarScan || containsSpecialByte(start, position)) && needsQuotes(text)) {
+            position = start;
+            appendQuoted(text);
+        }
+    }
+
+    private void appendQuoted(final String text) {
+
+        int escapes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == quoteChar || c == escapeChar) {
+                escapes++;
+            }
+        }
+
+        ensureCapacity((text.length() + escapes + 2) * MAX_BYTES_PER_CHAR);
+        appendUtf8(quoteChar);
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == quoteChar || c == escapeChar) {
+                appendUtf8(escapeChar);
+            }
+            if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                appendCodePoint(Character.toCodePoint(c, text.charAt(++i)));
+            } else {
+                appendUtf8(c);
+            }
+        }
+        appendUtf8(quoteChar);
+    }
+
+    private void appendCodePoint(final int codePoint) {
+        bytes[position++] = (byte) (0xF0 | codePoint >> 18);
+        bytes[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+        bytes[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+        bytes[position++] = (byte) (0x80 | codePoint & 0x3F);
+    }
+
+    /**
+     * Appends a text encoded as UTF-8, with a tight loop for the leading ASCII characters.
+     */
+    private void appendUtf8(final String text) {
+
+        final int length = text.length();
+        int i = 0;
+        int index = position;
+        while (i < length) {
+            final char c = text.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            bytes[index++] = (byte) c;
+            i++;
+        }
+        position = index;
+
+        for (; i < length; i++) {
+            final char c = text.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                appendCodePoint(Character.toCodePoint(c, text.charAt(++i)));
+            } else {
+                appendUtf8(c);
+            }
+        }
+    }
+
+    /**
+     * Appends a character from the Basic Multilingual Plane. Unpaired surrogates are replaced by '?', like the
+     * UTF-8 encoder of the JDK does.
+     */
+    private void appendUtf8(final char c) {
+        if (c < 0x80) {
+            bytes[position++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[position++] = (byte) (0xC0 | c >> 6);
+            bytes[position++] = (byte) (0x80 | c & 0x3F);
+        } else if (Character.isSurrogate(c)) {
+            bytes[position++] = '?';
+        } else {
+            bytes[position++] = (byte) (0xE0 | c >> 12);
+            bytes[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+            bytes[position++] = (byte) (0x80 | c & 0x3F);
+        }
+    }
+
+    /**
+     * Checks if the encoded bytes contain the first byte of the separator, a quote, an escape or a line break. The
+     * bytes are read in words of eight and compared all at once (SWAR); UTF-8 never uses ASCII values inside multibyte
+     * sequences, so a match is always a real character. A match of the separator only means that the text may
+     * contain it.
+     */
+    private boolean containsSpecialByte(final int from, final int to) {
+
+        int index = from;
+        for (; index + Long.BYTES <= to; index += Long.BYTES) {
+            final long word = words.getLong(index);
+            if ((hasByte(word, LF_PATTERN) | hasByte(word, CR_PATTERN) | hasByte(word, quotePattern)
+                | hasByte(word, escapePattern) | hasByte(word, separatorPattern)) != 0)
+            {
+                return true;
+            }
+        }
+        for (; index < to; index++) {
+            final byte value = bytes[index];
+            if (value == '\n' || value == '\r' || value == (byte) quoteChar || value == (byte) escapeChar
+                || value == (byte) separatorText.charAt(0))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a non-zero value when any byte of the word is equal to the byte repeated in the pattern.
+     */
+    private static long hasByte(final long word, final long pattern) {
+        final long value = word ^ pattern;
+        return (value - ONES) & ~value & HIGH_BITS;
+    }
+
+    private static ByteBuffer wrap(final byte[] array) {
+        return ByteBuffer.wrap(array).order(ByteOrder.nativeOrder());
+    }
+
+    private static long repeat(final char value) {
+        return (value & 0xFFL) * ONES;
+    }
+
+    private boolean needsQuotes(final String text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == quoteChar || c == escapeChar || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return text.contains(separatorText);
+    }
+
+    private static boolean containsAlphabet(final BinaryFormatter formatter, final String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (formatter.isAlphabet(text.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void endBinary() {
+        if (binaryQuoted) {
+            ensureCapacity(MAX_BYTES_PER_CHAR);
+            appendUtf8(quoteChar);
+        }
+    }
+
+    private void endLine() {
+        appendBytes(eol);
+        firstCell = true;
+    }
+
+    private void ensureCapacity(final int length) {
+        if (position + length > bytes.length) {
+            final byte[] newBytes = new byte[Math.max(bytes.length * 2, position + length)];
+            System.arraycopy(bytes, 0, newBytes, 0, position);
+            bytes = newBytes;
+            words = wrap(bytes);
+        }
+    }
+
+    /**
+     * Starts a binary value, enclosed in quotes only when the separator contains characters of the encoding.
+     */
+    private void startBinary() {
+        startCell();
+        if (binaryQuoted) {
+            ensureCapacity(MAX_BYTES_PER_CHAR);
+            appendUtf8(quoteChar);
+        }
+    }
+
+    private void startCell() {
+        if (firstCell) {
+            firstCell = false;
+        } else {
+            appendBytes(separator);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.export.csv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses each block as a complete gzip member, like pigz does.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class GzipBlockCompressor implements BlockCompressor {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final transient int level;
+
+    /* default */ GzipBlockCompressor(final int level) {
+        this.level = level < 0 ? Deflater.DEFAULT_COMPRESSION : Math.min(level, Deflater.BEST_COMPRESSION);
+    }
+
+    @Override
+    public byte[] compress(final byte[] block, final int length) throws IOException {
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(length / 2 + 64);
+        try (GZIPOutputStream gzip = new LevelGzipOutputStream(output, level)) {
+            gzip.write(block, 0, length);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * GZIPOutputStream using a custom compression level.
+     */
+    private static final class LevelGzipOutputStream extends GZIPOutputStream {
+
+        /* default */ LevelGzipOutputStream(final ByteArrayOutputStream output, final int level) throws IOException {
+            super(output, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+}
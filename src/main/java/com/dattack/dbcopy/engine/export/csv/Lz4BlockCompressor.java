@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.export.csv;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Compresses each block as a complete LZ4 frame. Levels greater than zero use the high compression mode of LZ4.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class Lz4BlockCompressor implements BlockCompressor {
+
+    private static final int MAX_LEVEL = 17;
+
+    private final transient LZ4Compressor compressor;
+
+    /* default */ Lz4BlockCompressor(final int level) {
+        final LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = level > 0 ? factory.highCompressor(Math.min(level, MAX_LEVEL)) : factory.fastCompressor();
+    }
+
+    @Override
+    public byte[] compress(final byte[] block, final int length) throws IOException {
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(length / 2 + 64);
+        try (LZ4FrameOutputStream lz4 = new LZ4FrameOutputStream(output, LZ4FrameOutputStream.BLOCKSIZE.SIZE_4MB,
+            length, compressor, XXHashFactory.fastestInstance().hash32(),
+            LZ4FrameOutputStream.FLG.Bits.BLOCK_INDEPENDENCE, LZ4FrameOutputStream.FLG.Bits.CONTENT_SIZE))
+        {
+            lz4.write(block, 0, length);
+        }
+        return output.toByteArray();
+    }
+}
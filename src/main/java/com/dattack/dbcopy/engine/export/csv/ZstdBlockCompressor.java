@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.export.csv;
+
+import com.github.luben.zstd.Zstd;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compresses each block as a complete zstd frame.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class ZstdBlockCompressor implements BlockCompressor {
+
+    private static final int DEFAULT_LEVEL = 3;
+    private static final int MAX_LEVEL = 22;
+
+    private final transient int level;
+
+    /* default */ ZstdBlockCompressor(final int level) {
+        this.level = level < 0 ? DEFAULT_LEVEL : Math.min(level, MAX_LEVEL);
+    }
+
+    @Override
+    public byte[] compress(final byte[] block, final int length) throws IOException {
+
+        final byte[] frame = new byte[(int) Zstd.compressBound(length)];
+        final long size = Zstd.compressByteArray(frame, 0, frame.length, block, 0, length, level);
+        if (Zstd.isError(size)) {
+            throw new IOException("Unable to compress block: " + Zstd.getErrorName(size));
+        }
+        return Arrays.copyOf(frame, (int) size);
+    }
+}
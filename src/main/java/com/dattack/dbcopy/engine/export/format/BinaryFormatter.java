@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.export.format;
+
+/**
+ * Writes binary values as ASCII text straight into a byte array, so that they can be exported to text formats
+ * without being corrupted by a character decoding. The values can be written in blocks: every block but the last
+ * must have a length multiple of {@link #getBlockSize()}, so the text of a large value can be produced while it is
+ * read from its stream.
+ *
+ * <p>The caller must ensure that the array has room for {@link #getMaxLength(int)} bytes from the given
+ * position.</p>
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public enum BinaryFormatter {
+
+    /**
+     * Base64 with the standard alphabet of RFC 4648, padded and without line breaks.
+     */
+    BASE64 {
+
+        private final byte[] alphabet = ascii("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/");
+
+        @Override
+        public int getBlockSize() {
+            return 3;
+        }
+
+        @Override
+        public int getMaxLength(final int length) {
+            return (length + 2) / 3 * 4;
+        }
+
+        @Override
+        public boolean isAlphabet(final char value) {
+            return value < 0x80 && (Character.isLetterOrDigit(value) || value == '+' || value == '/' || value == '=');
+        }
+
+        @Override
+        public int write(final byte[] source, final int offset, final int length, final byte[] bytes,
+            final int position)
+        {
+            int index = position;
+            final int end = offset + length - length % 3;
+            for (int i = offset; i < end; i += 3) {
+                final int bits = (source[i] & 0xFF) << 16 | (source[i + 1] & 0xFF) << 8 | source[i + 2] & 0xFF;
+                bytes[index++] = alphabet[bits >>> 18];
+                bytes[index++] = alphabet[bits >>> 12 & 0x3F];
+                bytes[index++] = alphabet[bits >>> 6 & 0x3F];
+                bytes[index++] = alphabet[bits & 0x3F];
+            }
+
+            if (end < offset + length) {
+                final boolean pair = end + 1 < offset + length;
+                final int bits = (source[end] & 0xFF) << 16 | (pair ? (source[end + 1] & 0xFF) << 8 : 0);
+                bytes[index++] = alphabet[bits >>> 18];
+                bytes[index++] = alphabet[bits >>> 12 & 0x3F];
+                bytes[index++] = pair ? alphabet[bits >>> 6 & 0x3F] : PADDING;
+                bytes[index++] = PADDING;
+            }
+            return index;
+        }
+    },
+
+    /**
+     * Two lowercase hexadecimal digits per byte.
+     */
+    HEX {
+
+        private final byte[] digits = ascii("0123456789abcdef");
+
+        @Override
+        public int getBlockSize() {
+            return 1;
+        }
+
+        @Override
+        public int getMaxLength(final int length) {
+            return length * 2;
+        }
+
+        @Override
+        public boolean isAlphabet(final char value) {
+            return value >= '0' && value <= '9' || value >= 'a' && value <= 'f';
+        }
+
+        @Override
+        public int write(final byte[] source, final int offset, final int length, final byte[] bytes,
+            final int position)
+        {
+            int index = position;
+            for (int i = offset; i < offset + length; i++) {
+                bytes[index++] = digits[source[i] >> 4 & 0x0F];
+                bytes[index++] = digits[source[i] & 0x0F];
+            }
+            return index;
+        }
+    };
+
+    private static final byte PADDING = '=';
+
+    /**
+     * Returns the number of bytes that the length of every block but the last must be multiple of.
+     *
+     * @return the size of the block
+     */
+    public abstract int getBlockSize();
+
+    /**
+     * Returns the maximum number of bytes written for a block of the given length.
+     *
+     * @param length the length of the block
+     * @return the maximum number of bytes written
+     */
+    public abstract int getMaxLength(int length);
+
+    /**
+     * Checks if a character may be written by this formatter.
+     *
+     * @param value the character to check
+     * @return true when the character belongs to the alphabet of the encoding
+     */
+    public abstract boolean isAlphabet(char value);
+
+    /**
+     * Writes a block of a binary value.
+     *
+     * @param source   the array containing the value
+     * @param offset   the position of the block in the source array
+     * @param length   the length of the block
+     * @param bytes    the destination array
+     * @param position the position to write at
+     * @return the position after the last byte written
+     */
+    public abstract int write(byte[] source, int offset, int length, byte[] bytes, int position);
+
+    private static byte[] ascii(final String text) {
+        final byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.export.format;
+
+import java.math.BigInteger;
+
+/**
+ * Writes numbers as ASCII digits straight into a byte array, without creating intermediate strings. Integers use a
+ * table of digit pairs and doubles are written with the shortest decimal that rounds to the same value (Schubfach
+ * algorithm by Raffaello Giulietti), using the same layout as {@link Double#toString(double)}.
+ *
+ * <p>The caller must ensure that the array has room for {@link #MAX_LONG_LENGTH} or {@link #MAX_DOUBLE_LENGTH}
+ * bytes from the given position.</p>
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public final class NumberFormatter {
+
+    /**
+     * Maximum number of bytes written by {@link #writeDouble(double, byte[], int)}.
+     */
+    public static final int MAX_DOUBLE_LENGTH = 24;
+
+    /**
+     * Maximum number of bytes written by {@link #writeLong(long, byte[], int)}.
+     */
+    public static final int MAX_LONG_LENGTH = 20;
+
+    // number of significand bits of a double, including the hidden bit
+    private static final int P = 53;
+    private static final long C_MIN = 1L << (P - 1);
+    private static final long T_MASK = C_MIN - 1;
+    private static final int BQ_MASK = 0x7FF;
+    private static final int Q_MIN = -1074;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    private static final long C_TINY = 3;
+    private static final long MASK_63 = Long.MAX_VALUE;
+
+    // Double.toString writes the values in [10^-3, 10^7) without exponent
+    private static final int MIN_PLAIN_EXPONENT = -3;
+    private static final int MAX_PLAIN_EXPONENT = 7;
+
+    private static final byte[] DIGIT_ONES = new byte[100];
+    private static final byte[] DIGIT_TENS = new byte[100];
+    private static final long[] G = createTable();
+    private static final byte[] INFINITY = ascii("Infinity");
+    private static final byte[] LONG_MIN_VALUE = ascii(Long.toString(Long.MIN_VALUE));
+    private static final byte[] NAN = ascii("NaN");
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_TENS[i] = (byte) ('0' + i / 10);
+            DIGIT_ONES[i] = (byte) ('0' + i % 10);
+        }
+    }
+
+    private NumberFormatter() {
+        // static class
+    }
+
+    /**
+     * Writes a double with the shortest decimal representation that reads back as the same value.
+     *
+     * @param value    the value to write
+     * @param bytes    the destination array
+     * @param position the position of the first byte to write
+     * @return the position after the last byte written
+     */
+    public static int writeDouble(final double value, final byte[] bytes, final int position) {
+
+        final long bits = Double.doubleToRawLongBits(value);
+        final long t = bits & T_MASK;
+        final int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+
+        if (bq == BQ_MASK) {
+            if (t != 0) {
+                return copy(NAN, bytes, position);
+            }
+            int index = position;
+            if (bits < 0) {
+                bytes[index++] = '-';
+            }
+            return copy(INFINITY, bytes, index);
+        }
+
+        int index = position;
+        if (bits < 0) {
+            bytes[index++] = '-';
+        }
+
+        if (bq != 0) {
+            // normal value
+            final int mq = -Q_MIN + 1 - bq;
+            final long c = C_MIN | t;
+            if (0 < mq && mq < P) {
+                // fast path for integer values
+                final long f = c >> mq;
+                if (f << mq == c) {
+                    return writeDecimal(f, 0, bytes, index);
+                }
+            }
+            return toDecimal(-mq, c, 0, bytes, index);
+        }
+
+        if (t != 0) {
+            // subnormal value
+            return t < C_TINY ? toDecimal(Q_MIN, 10 * t, -1, bytes, index) : toDecimal(Q_MIN, t, 0, bytes, index);
+        }
+
+        // zero
+        bytes[index++] = '0';
+        bytes[index++] = '.';
+        bytes[index++] = '0';
+        return index;
+    }
+
+    /**
+     * Writes a long in base 10.
+     *
+     * @param value    the value to write
+     * @param bytes    the destination array
+     * @param position the position of the first byte to write
+     * @return the position after the last byte written
+     */
+    public static int writeLong(final long value, final byte[] bytes, final int position) {
+
+        if (value == Long.MIN_VALUE) {
+            return copy(LONG_MIN_VALUE, bytes, position);
+        }
+
+        int index = position;
+        long number = value;
+        if (number < 0) {
+            bytes[index++] = '-';
+            number = -number;
+        }
+        final int end = index + stringSize(number);
+        writeDigits(number, bytes, end);
+        return end;
+    }
+
+    private static byte[] ascii(final String text) {
+        final byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+
+    private static int copy(final byte[] source, final byte[] bytes, final int position) {
+        System.arraycopy(source, 0, bytes, position, source.length);
+        return position + source.length;
+    }
+
+    /**
+     * Computes the table of 126-bit approximations g of the powers of ten used by Schubfach: for each k,
+     * g = floor(10^-k 2^-r) + 1 where r is chosen so that 2^125 &lt;= 10^-k 2^-r &lt; 2^126. The higher and lower 63
+     * bits of g are stored at consecutive positions.
+     */
+    private static long[] createTable() {
+
+        final long[] table = new long[(K_MAX - K_MIN + 1) * 2];
+        final BigInteger mask = BigInteger.valueOf(MASK_63);
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            final int shift = 125 - flog2pow10(-k);
+            BigInteger numerator = k <= 0 ? BigInteger.TEN.pow(-k) : BigInteger.ONE;
+            BigInteger denominator = k > 0 ? BigInteger.TEN.pow(k) : BigInteger.ONE;
+            if (shift >= 0) {
+                numerator = numerator.shiftLeft(shift);
+            } else {
+                denominator = denominator.shiftLeft(-shift);
+            }
+            final BigInteger g = numerator.divide(denominator).add(BigInteger.ONE);
+            table[(k - K_MIN) << 1] = g.shiftRight(63).longValue();
+            table[(k - K_MIN) << 1 | 1] = g.and(mask).longValue();
+        }
+        return table;
+    }
+
+    private static int flog10pow2(final int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    private static int flog10threeQuartersPow2(final int e) {
+        return (int) (e * 661_971_961_083L - 274_743_187_321L >> 41);
+    }
+
+    private static int flog2pow10(final int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    /**
+     * High 64 bits of the 128-bit product of two longs (Math.multiplyHigh is not available in Java 8).
+     */
+    private static long multiplyHigh(final long x, final long y) {
+        final long x1 = x >> 32;
+        final long x2 = x & 0xFFFFFFFFL;
+        final long y1 = y >> 32;
+        final long y2 = y & 0xFFFFFFFFL;
+        final long z2 = x2 * y2;
+        final long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        final long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    /**
+     * Rounds to odd the product of g and cp, keeping the higher 64 bits.
+     */
+    private static long rop(final long g1, final long g0, final long cp) {
+        final long x1 = multiplyHigh(g0, cp);
+        final long y0 = g1 * cp;
+        final long y1 = multiplyHigh(g1, cp);
+        final long z = (y0 >>> 1) + x1;
+        final long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    private static int stringSize(final long value) {
+        long limit = 10;
+        for (int i = 1; i < 19; i++) {
+            if (value < limit) {
+                return i;
+            }
+            limit *= 10;
+        }
+        return 19;
+    }
+
+    /**
+     * Computes the shortest decimal f 10^e in the rounding interval of c 2^q and writes it.
+     */
+    private static int toDecimal(final int q, final long c, final int dk, final byte[] bytes, final int position) {
+
+        final int out = (int) c & 0x1;
+        final long cb = c << 2;
+        final long cbr = cb + 2;
+        final long cbl;
+        final int k;
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        final int h = q + flog2pow10(-k) + 2;
+
+        final long g1 = G[(k - K_MIN) << 1];
+        final long g0 = G[(k - K_MIN) << 1 | 1];
+
+        final long vb = rop(g1, g0, cb << h);
+        final long vbl = rop(g1, g0, cbl << h);
+        final long vbr = rop(g1, g0, cbr << h);
+
+        final long s = vb >> 2;
+        if (s >= 100) {
+            // try a decimal with one digit less: s / 10 * 10
+            final long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            final long tp10 = sp10 + 10;
+            final boolean upin = vbl + out <= sp10 << 2;
+            final boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return writeDecimal(upin ? sp10 : tp10, k, bytes, position);
+            }
+        }
+        final long t = s + 1;
+        final boolean uin = vbl + out <= s << 2;
+        final boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return writeDecimal(uin ? s : t, k + dk, bytes, position);
+        }
+        final long cmp = vb - (s + t << 1);
+        return writeDecimal(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, bytes, position);
+    }
+
+    /**
+     * Writes the decimal f 10^e using the layout of Double.toString.
+     */
+    private static int writeDecimal(final long significand, final int exponent, final byte[] bytes,
+        final int position)
+    {
+        long f = significand;
+        int e = exponent;
+        while (f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+
+        final int length = stringSize(f);
+        // exponent of the first digit
+        final int scientificExponent = e + length - 1;
+        int index = position;
+
+        if (scientificExponent >= 0 && scientificExponent < MAX_PLAIN_EXPONENT) {
+            final int integerDigits = scientificExponent + 1;
+            if (length <= integerDigits) {
+                index += length;
+                writeDigits(f, bytes, index);
+                for (int i = length; i < integerDigits; i++) {
+                    bytes[index++] = '0';
+                }
+                bytes[index++] = '.';
+                bytes[index++] = '0';
+                return index;
+            }
+            return writeDigitsWithPoint(f, length, integerDigits, bytes, index);
+        }
+
+        if (scientificExponent < 0 && scientificExponent >= MIN_PLAIN_EXPONENT) {
+            bytes[index++] = '0';
+            bytes[index++] = '.';
+            for (int i = -1; i > scientificExponent; i--) {
+                bytes[index++] = '0';
+            }
+            index += length;
+            writeDigits(f, bytes, index);
+            return index;
+        }
+
+        if (length == 1) {
+            bytes[index++] = (byte) ('0' + f);
+            bytes[index++] = '.';
+            bytes[index++] = '0';
+        } else {
+            index = writeDigitsWithPoint(f, length, 1, bytes, index);
+        }
+        bytes[index++] = 'E';
+        return writeLong(scientificExponent, bytes, index);
+    }
+
+    /**
+     * Writes the digits of a positive number backwards, ending just before the given position.
+     */
+    private static void writeDigits(final long value, final byte[] bytes, final int end) {
+
+        long number = value;
+        int index = end;
+        while (number >= 100) {
+            final int pair = (int) (number % 100);
+            number /= 100;
+            bytes[--index] = DIGIT_ONES[pair];
+            bytes[--index] = DIGIT_TENS[pair];
+        }
+        final int pair = (int) number;
+        bytes[--index] = DIGIT_ONES[pair];
+        if (pair >= 10) {
+            bytes[--index] = DIGIT_TENS[pair];
+        }
+    }
+
+    /**
+     * Writes the digits of a positive number placing a decimal point after the first integerDigits digits.
+     */
+    private static int writeDigitsWithPoint(final long value, final int length, final int integerDigits,
+        final byte[] bytes, final int position)
+    {
+        final int end = position + length + 1;
+        long number = value;
+        int index = end;
+        for (int i = length - 1; i >= integerDigits; i--) {
+            bytes[--index] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+        bytes[--index] = '.';
+        writeDigits(number, bytes, index);
+        return end;
+    }
+}
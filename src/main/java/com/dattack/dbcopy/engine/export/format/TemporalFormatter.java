@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.export.format;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes dates, times and timestamps as text straight into a byte array. Without a pattern, the values are written
+ * in the JDBC escape format used by their {@code toString()} methods (yyyy-mm-dd, hh:mm:ss and
+ * yyyy-mm-dd hh:mm:ss.fffffffff) computing the digits directly, without allocating objects. A pattern of
+ * {@link DateTimeFormatter} can be configured for each type; the compiled patterns are shared by all the formatters
+ * and the text of the last value is cached, so repeated values are copied instead of formatted again.
+ *
+ * <p>Instances are not thread-safe: each export worker must use its own formatter. The caller must ensure that the
+ * array has room for {@link #MAX_LENGTH} bytes from the given position.</p>
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public final class TemporalFormatter {
+
+    /**
+     * Maximum number of bytes written by the formatter.
+     */
+    public static final int MAX_LENGTH = 128;
+
+    private static final Map<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<>();
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int MILLIS_PER_SECOND = 1_000;
+    // 1583-01-01 and 9999-12-31 23:59:59.999 (UTC): outside this range the Julian calendar and years of more than
+    // four digits are delegated to toString()
+    private static final long MAX_MILLIS = 253_402_300_799_999L - MILLIS_PER_DAY;
+    private static final long MIN_MILLIS = -12_212_553_600_000L + MILLIS_PER_DAY;
+    private static final int NANOS_DIGITS = 9;
+
+    private final transient PatternCache dateCache;
+    private final transient PatternCache timeCache;
+    private final transient TimeZone timeZone;
+    private final transient PatternCache timestampCache;
+
+    /**
+     * Creates a formatter using the given patterns. A blank pattern selects the JDBC escape format.
+     *
+     * @param datePattern      the pattern of the dates
+     * @param timePattern      the pattern of the times
+     * @param timestampPattern the pattern of the timestamps
+     */
+    public TemporalFormatter(final String datePattern, final String timePattern, final String timestampPattern) {
+        this.dateCache = createCache(datePattern);
+        this.timeCache = createCache(timePattern);
+        this.timestampCache = createCache(timestampPattern);
+        this.timeZone = TimeZone.getDefault();
+    }
+
+    private static PatternCache createCache(final String pattern) {
+        if (StringUtils.isBlank(pattern)) {
+            return null;
+        }
+        return new PatternCache(FORMATTERS.computeIfAbsent(pattern, DateTimeFormatter::ofPattern));
+    }
+
+    private static int copyAscii(final String text, final byte[] bytes, final int position) {
+        int index = position;
+        for (int i = 0; i < text.length(); i++) {
+            bytes[index++] = (byte) text.charAt(i);
+        }
+        return index;
+    }
+
+    private static int write2(final int value, final byte[] bytes, final int position) {
+        bytes[position] = (byte) ('0' + value / 10);
+        bytes[position + 1] = (byte) ('0' + value % 10);
+        return position + 2;
+    }
+
+    /**
+     * Writes a date.
+     *
+     * @param value    the date to write
+     * @param bytes    the destination array
+     * @param position the position of the first byte to write
+     * @return the position after the last byte written
+     */
+    public int writeDate(final Date value, final byte[] bytes, final int position) {
+
+        if (dateCache != null) {
+            return dateCache.write(value.getTime(), 0, value.toLocalDate(), bytes, position);
+        }
+
+        final long millis = value.getTime();
+        if (millis < MIN_MILLIS || millis > MAX_MILLIS) {
+            return copyAscii(value.toString(), bytes, position);
+        }
+        return writeLocalDate(Math.floorDiv(toLocalMillis(millis), MILLIS_PER_DAY), bytes, position);
+    }
+
+    /**
+     * Writes a time.
+     *
+     * @param value    the time to write
+     * @param bytes    the destination array
+     * @param position the position of the first byte to write
+     * @return the position after the last byte written
+     */
+    public int writeTime(final Time value, final byte[] bytes, final int position) {
+
+        if (timeCache != null) {
+            return timeCache.write(value.getTime(), 0, value.toLocalTime(), bytes, position);
+        }
+
+        final long millis = value.getTime();
+        if (millis < MIN_MILLIS || millis > MAX_MILLIS) {
+            return copyAscii(value.toString(), bytes, position);
+        }
+        return writeLocalTime(Math.floorMod(toLocalMillis(millis), MILLIS_PER_DAY), bytes, position);
+    }
+
+    /**
+     * Writes a timestamp.
+     *
+     * @param value    the timestamp to write
+     * @param bytes    the destination array
+     * @param position the position of the first byte to write
+     * @return the position after the last byte written
+     */
+    public int writeTimestamp(final Timestamp value, final byte[] bytes, final int position) {
+
+        if (timestampCache != null) {
+            return timestampCache.write(value.getTime(), value.getNanos(), value.toLocalDateTime(), bytes,
+                position);
+        }
+
+        final long millis = value.getTime();
+        if (millis < MIN_MILLIS || millis > MAX_MILLIS) {
+            return copyAscii(value.toString(), bytes, position);
+        }
+
+        final long localMillis = toLocalMillis(millis);
+        int index = writeLocalDate(Math.floorDiv(localMillis, MILLIS_PER_DAY), bytes, position);
+        bytes[index++] = ' ';
+        index = writeLocalTime(Math.floorMod(localMillis, MILLIS_PER_DAY), bytes, index);
+        bytes[index++] = '.';
+
+        int nanos = value.getNanos();
+        if (nanos == 0) {
+            bytes[index++] = '0';
+            return index;
+        }
+        int digits = NANOS_DIGITS;
+        while (nanos % 10 == 0) {
+            nanos /= 10;
+            digits--;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            bytes[index + i] = (byte) ('0' + nanos % 10);
+            nanos /= 10;
+        }
+        return index + digits;
+    }
+
+    private long toLocalMillis(final long millis) {
+        return millis + timeZone.getOffset(millis);
+    }
+
+    /**
+     * Writes the date of the given day (counted from 1970-01-01) in yyyy-mm-dd format, converting it to the civil
+     * calendar with the algorithm of Howard Hinnant.
+     */
+    private static int writeLocalDate(final long epochDay, final byte[] bytes, final int position) {
+
+        final long z = epochDay + 719_468;
+        final long era = Math.floorDiv(z, 146_097);
+        final long doe = z - era * 146_097;
+        final long yoe = (doe - doe / 1460 + doe / 36_524 - doe / 146_096) / 365;
+        final long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        final long mp = (5 * doy + 2) / 153;
+        final int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        final int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        final int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+
+        int index = write2(year / 100, bytes, position);
+        index = write2(year % 100, bytes, index);
+        bytes[index++] = '-';
+        index = write2(month, bytes, index);
+        bytes[index++] = '-';
+        return write2(day, bytes, index);
+    }
+
+    private static int writeLocalTime(final long millisOfDay, final byte[] bytes, final int position) {
+
+        final int seconds = (int) (millisOfDay / MILLIS_PER_SECOND);
+        int index = write2(seconds / 3600, bytes, position);
+        bytes[index++] = ':';
+        index = write2(seconds / 60 % 60, bytes, index);
+        bytes[index++] = ':';
+        return write2(seconds % 60, bytes, index);
+    }
+
+    /**
+     * Formats the values with a pattern, keeping the UTF-8 bytes of the last value.
+     */
+    private static final class PatternCache {
+
+        private final transient StringBuilder builder;
+        private final transient DateTimeFormatter formatter;
+        private transient byte[] lastBytes;
+        private transient int lastLength;
+        private transient long lastMillis;
+        private transient int lastNanos;
+
+        /* default */ PatternCache(final DateTimeFormatter formatter) {
+            this.formatter = formatter;
+            this.builder = new StringBuilder(32);
+            this.lastBytes = new byte[MAX_LENGTH];
+            this.lastLength = -1;
+        }
+
+        /* default */ int write(final long millis, final int nanos, final TemporalAccessor value, final byte[] bytes,
+            final int position)
+        {
+            if (lastLength < 0 || millis != lastMillis || nanos != lastNanos) {
+                builder.setLength(0);
+                formatter.formatTo(value, builder);
+                lastLength = encode(builder, lastBytes);
+                lastMillis = millis;
+                lastNanos = nanos;
+            }
+            System.arraycopy(lastBytes, 0, bytes, position, lastLength);
+            return position + lastLength;
+        }
+
+        private static int encode(final CharSequence text, final byte[] bytes) {
+            int index = 0;
+            for (int i = 0; i < text.length(); i++) {
+                final char c = text.charAt(i);
+                final int size = c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+                if (index + size > bytes.length) {
+                    throw new IllegalArgumentException(String.format("The text '%s' is longer than %d bytes",
+                        text, MAX_LENGTH));
+                }
+                if (c < 0x80) {
+                    bytes[index++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[index++] = (byte) (0xC0 | c >> 6);
+                    bytes[index++] = (byte) (0x80 | c & 0x3F);
+                } else {
+                    bytes[index++] = (byte) (0xE0 | c >> 12);
+                    bytes[index++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    bytes[index++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            return index;
+        }
+    }
+}
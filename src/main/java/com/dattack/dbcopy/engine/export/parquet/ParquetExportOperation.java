@@ -41,18 +41,20 @@ import com.dattack.dbcopy.engine.datatype.TimeType;
 import com.dattack.dbcopy.engine.datatype.TimestampType;
 import com.dattack.dbcopy.engine.datatype.XmlType;
 import com.dattack.dbcopy.engine.export.ExportOperation;
+import com.dattack.dbcopy.engine.export.WriteBehindWriter;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.exception.NestableRuntimeException;
-import org.apache.parquet.hadoop.ParquetWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -64,15 +66,17 @@ import java.util.Objects;
 class ParquetExportOperation implements ExportOperation {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ParquetExportOperation.class);
+    private static final int RECORD_BATCH_SIZE = 1_000;
     private final transient ExportOperationBean bean;
     private final transient DataTransfer dataTransfer;
     private final transient Schema schema;
     private final transient DbCopyTaskResult taskResult;
     private final transient ThreadLocal<Visitor> visitorThreadLocal = new ThreadLocal<>();
-    private final transient ParquetWriter<Object> writer;
+    private final transient WriteBehindWriter<List<GenericRecord>> writer;
+    private transient List<GenericRecord> records;
 
     /* default */ ParquetExportOperation(final ExportOperationBean bean, final DataTransfer dataTransfer,
-        final DbCopyTaskResult taskResult, final ParquetWriter<Object> writer, final Schema schema)
+        final DbCopyTaskResult taskResult, final WriteBehindWriter<List<GenericRecord>> writer, final Schema schema)
     {
         this.bean = bean;
         this.dataTransfer = dataTransfer;
@@ -89,6 +93,7 @@ class ParquetExportOperation implements ExportOperation {
         try {
 
             visitorThreadLocal.set(new Visitor());
+            records = new ArrayList<>(RECORD_BATCH_SIZE);
 
             while (true) {
                 final AbstractDataType<?>[] row = dataTransfer.transfer();
@@ -102,6 +107,7 @@ class ParquetExportOperation implements ExportOperation {
                     LOGGER.debug("Exported rows: {}", totalExportedRows);
                 }
             }
+            flush();
 
         } catch (Exception e) {
             LOGGER.error("Error {}: {}", writer, e.getMessage());
@@ -297,8 +303,19 @@ class ParquetExportOperation implements ExportOperation {
             }
         }
 
-        synchronized (writer) {
-            writer.write(visitorThreadLocal.get().getGenericRecord());
+        records.add(visitorThreadLocal.get().getGenericRecord());
+        if (records.size() >= RECORD_BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Hands over the pending records to the write-behind stage of the file.
+     */
+    private void flush() throws IOException {
+        if (!records.isEmpty()) {
+            writer.write(records);
+            records = new ArrayList<>(RECORD_BATCH_SIZE);
         }
     }
 }
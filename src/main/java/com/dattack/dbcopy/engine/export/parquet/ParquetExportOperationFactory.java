@@ -22,6 +22,7 @@ import com.dattack.dbcopy.engine.DbCopyTaskResult;
 import com.dattack.dbcopy.engine.RowMetadata;
 import com.dattack.dbcopy.engine.export.ExportOperation;
 import com.dattack.dbcopy.engine.export.ExportOperationFactory;
+import com.dattack.dbcopy.engine.export.WriteBehindWriter;
 import com.dattack.dbcopy.engine.functions.BigDecimalFunction;
 import com.dattack.dbcopy.engine.functions.BlobFunction;
 import com.dattack.dbcopy.engine.functions.BooleanFunction;
@@ -44,10 +45,10 @@ import com.dattack.dbcopy.engine.functions.TimeFunction;
 import com.dattack.dbcopy.engine.functions.TimestampFunction;
 import com.dattack.dbcopy.engine.functions.XmlFunction;
 import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
-import com.dattack.jtoolbox.io.IOUtils;
 import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericRecord;
 import org.apache.commons.configuration.AbstractConfiguration;
 import org.apache.commons.lang.exception.NestableRuntimeException;
 import org.apache.hadoop.conf.Configuration;
@@ -79,23 +80,26 @@ public class ParquetExportOperationFactory implements ExportOperationFactory {
     private final transient ExportOperationBean bean;
     private final transient AbstractConfiguration configuration;
     private transient Schema schema;
-    private transient ParquetWriter<Object> writer;
+    private transient WriteBehindWriter<List<GenericRecord>> writer;
 
     public ParquetExportOperationFactory(final ExportOperationBean bean, final AbstractConfiguration configuration) {
         this.bean = bean;
         this.configuration = configuration;
     }
 
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
     @Override
     public ExportOperation createTask(final DataTransfer dataTransfer, final DbCopyTaskResult taskResult) {
 
         try {
-            final ParquetWriter<Object> outputWriter = getWriter(dataTransfer); //NOPMD: resource can't be closed here
-
-            taskResult.addOnEndCommand(() -> {
-                IOUtils.closeQuietly(outputWriter);
-                return null;
-            });
+            final WriteBehindWriter<List<GenericRecord>> outputWriter = getWriter(dataTransfer); //NOPMD: resource
+            // closed by the factory
 
             return new ParquetExportOperation(bean, dataTransfer, taskResult, outputWriter,
                                               getSchema(dataTransfer.getRowMetadata()));
@@ -232,6 +236,12 @@ public class ParquetExportOperationFactory implements ExportOperationFactory {
             case SNAPPY:
                 compression = CompressionCodecName.SNAPPY;
                 break;
+            case ZSTD:
+                compression = CompressionCodecName.ZSTD;
+                break;
+            case LZ4:
+                compression = CompressionCodecName.LZ4;
+                break;
             case UNCOMPRESSED:
             default:
                 compression = CompressionCodecName.UNCOMPRESSED;
@@ -259,7 +269,7 @@ public class ParquetExportOperationFactory implements ExportOperationFactory {
         return schema;
     }
 
-    private synchronized ParquetWriter<Object> getWriter(final DataTransfer dataTransfer) //
+    private synchronized WriteBehindWriter<List<GenericRecord>> getWriter(final DataTransfer dataTransfer) //
         throws IOException, FunctionException
     {
         if (Objects.isNull(writer)) {
@@ -270,12 +280,62 @@ public class ParquetExportOperationFactory implements ExportOperationFactory {
 
             final Configuration conf = new Configuration();
             final OutputFile outputFile = HadoopOutputFile.fromPath(hdfsPath, conf);
-            writer = AvroParquetWriter.builder(outputFile).withSchema(getSchema(dataTransfer.getRowMetadata())) //
+            final ParquetWriter<Object> parquetWriter = AvroParquetWriter.builder(outputFile) //
+                .withSchema(getSchema(dataTransfer.getRowMetadata())) //
                 .withCompressionCodec(getCompression()) //
                 .withPageSize(bean.getPageSize()) //
                 .withWriteMode(ParquetFileWriter.Mode.OVERWRITE) //
                 .build();
+            writer = new WriteBehindWriter<>("parquet-writer", bean.getWriteQueueSize(),
+                new ParquetSink(parquetWriter, hdfsPath, conf));
         }
         return writer;
     }
+
+    /**
+     * Sink of the write-behind stage, writing the records to the Parquet file. When a write fails, the file is
+     * deleted.
+     */
+    private static final class ParquetSink implements WriteBehindWriter.Sink<List<GenericRecord>> {
+
+        private final transient Configuration conf;
+        private final transient Path path;
+        private final transient ParquetWriter<Object> parquetWriter;
+
+        /* default */ ParquetSink(final ParquetWriter<Object> parquetWriter, final Path path,
+            final Configuration conf)
+        {
+            this.parquetWriter = parquetWriter;
+            this.path = path;
+            this.conf = conf;
+        }
+
+        @Override
+        public void abort(final List<List<GenericRecord>> pending) throws IOException {
+            LOGGER.warn("Deleting the unfinished file {}", path);
+            try {
+                parquetWriter.close();
+            } catch (final IOException | RuntimeException e) {
+                LOGGER.debug("Unable to close {}: {}", path, e.getMessage());
+            }
+            path.getFileSystem(conf).delete(path, false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            parquetWriter.close();
+        }
+
+        @Override
+        public String toString() {
+            return "ParquetSink{path=" + path + '}';
+        }
+
+        @Override
+        public void write(final List<GenericRecord> records) throws IOException {
+            for (final GenericRecord record : records) {
+                parquetWriter.write(record);
+            }
+        }
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.pool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.sql.DataSource;
+
+/**
+ * Process-wide registry of the connection pools. There is a single pool for each JNDI name, shared by all the jobs
+ * and tasks that read from or write to the same datasource.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public final class DataSourceRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataSourceRegistry.class);
+
+    private static final ConcurrentMap<String, PooledDataSource> POOL_MAP = new ConcurrentHashMap<>();
+
+    private DataSourceRegistry() {
+        // static class
+    }
+
+    /**
+     * Closes all the pools and their physical connections.
+     */
+    public static void closeAll() {
+        for (final String jndiName : POOL_MAP.keySet()) {
+            final PooledDataSource dataSource = POOL_MAP.remove(jndiName);
+            if (dataSource != null) {
+                LOGGER.info("Closing connection pool '{}'", jndiName);
+                dataSource.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the pooled datasource associated with the given JNDI name, creating it if it doesn't exist.
+     *
+     * @param jndiName the interpolated JNDI name of the datasource
+     * @return the pooled datasource
+     */
+    public static DataSource getDataSource(final String jndiName) {
+        return POOL_MAP.computeIfAbsent(jndiName, PooledDataSource::new);
+    }
+}
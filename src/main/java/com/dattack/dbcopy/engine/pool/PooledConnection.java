@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.pool;
+
+import com.dattack.jtoolbox.jdbc.JDBCUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Physical connection managed by a {@link PooledDataSource}. Each lease hands out a new proxy so that a borrower
+ * can't use the connection once it has been returned to the pool. Prepared statements created from a single SQL
+ * string are kept in a LRU cache and reused by the following leases.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ class PooledConnection {
+
+    private static final String CONNECTION_EXCEPTION_CLASS = "08";
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledConnection.class);
+
+    private final transient boolean defaultAutoCommit;
+    private final transient PooledDataSource pool;
+    private final transient Connection physicalConnection;
+    private final transient Map<String, PreparedStatement> statementCache;
+    private final transient int statementCacheSize;
+    private transient volatile boolean broken;
+    private transient volatile long lastReleaseTime;
+
+    /* default */ PooledConnection(final PooledDataSource pool, final Connection physicalConnection,
+        final int statementCacheSize) throws SQLException
+    {
+        this.pool = pool;
+        this.physicalConnection = physicalConnection;
+        this.statementCacheSize = statementCacheSize;
+        this.defaultAutoCommit = physicalConnection.getAutoCommit();
+        this.statementCache = new LinkedHashMap<>(16, 0.75f, true);
+        this.broken = false;
+        this.lastReleaseTime = System.currentTimeMillis();
+    }
+
+    private static Object invoke(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (final InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /* default */ synchronized void destroy() {
+        for (final PreparedStatement statement : statementCache.values()) {
+            JDBCUtils.closeQuietly(statement);
+        }
+        statementCache.clear();
+        JDBCUtils.closeQuietly(physicalConnection);
+    }
+
+    /* default */ long getIdleTime() {
+        return System.currentTimeMillis() - lastReleaseTime;
+    }
+
+    /* default */ Connection lease() {
+        return (Connection) Proxy.newProxyInstance(PooledConnection.class.getClassLoader(),
+                                                   new Class<?>[] {Connection.class}, new ConnectionHandler());
+    }
+
+    /**
+     * Restores the state of the physical connection so it can be handed out again.
+     *
+     * @return true if the connection can be reused, false if it must be discarded
+     */
+    /* default */ boolean reset() {
+
+        if (broken) {
+            return false;
+        }
+
+        try {
+            if (physicalConnection.isClosed()) {
+                return false;
+            }
+            // a transaction left open by the borrower must never be committed by the next one
+            if (!physicalConnection.getAutoCommit()) {
+                physicalConnection.rollback();
+            }
+            if (physicalConnection.getAutoCommit() != defaultAutoCommit) {
+                physicalConnection.setAutoCommit(defaultAutoCommit);
+            }
+            physicalConnection.clearWarnings();
+            lastReleaseTime = System.currentTimeMillis();
+            return true;
+        } catch (final SQLException e) {
+            LOGGER.warn("Unable to reset pooled connection: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /* default */ boolean validate(final int timeout) {
+        try {
+            return physicalConnection.isValid(timeout);
+        } catch (final SQLException e) {
+            LOGGER.debug("Connection validation failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void checkBroken(final Throwable throwable) {
+        if (throwable instanceof SQLException
+            && StringUtils.startsWith(((SQLException) throwable).getSQLState(), CONNECTION_EXCEPTION_CLASS))
+        {
+            broken = true;
+        }
+    }
+
+    private synchronized PreparedStatement checkoutStatement(final String sql) throws SQLException {
+
+        PreparedStatement statement = statementCache.remove(sql);
+        if (statement != null && statement.isClosed()) {
+            statement = null; //NOPMD
+        }
+        pool.recordStatementCacheAccess(statement != null);
+        if (statement == null) {
+            statement = physicalConnection.prepareStatement(sql);
+        }
+        return statement;
+    }
+
+    private synchronized void checkinStatement(final String sql, final PreparedStatement statement) {
+
+        if (broken || statementCache.containsKey(sql) || statementCacheSize <= 0) {
+            JDBCUtils.closeQuietly(statement);
+            return;
+        }
+
+        try {
+            statement.clearParameters();
+            statement.clearBatch();
+        } catch (final SQLException e) {
+            LOGGER.debug("Unable to reset cached statement: {}", e.getMessage());
+            JDBCUtils.closeQuietly(statement);
+            return;
+        }
+
+        statementCache.put(sql, statement);
+        if (statementCache.size() > statementCacheSize) {
+            final Iterator<PreparedStatement> iterator = statementCache.values().iterator();
+            JDBCUtils.closeQuietly(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Handles the calls to the connection proxy handed out by a lease.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private transient boolean closed;
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physicalConnection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection{" + physicalConnection + ", closed=" + closed + '}';
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Connection is closed");
+            }
+
+            try {
+                if ("prepareStatement".equals(method.getName()) && args.length == 1) {
+                    final String sql = (String) args[0];
+                    return Proxy.newProxyInstance(PooledConnection.class.getClassLoader(),
+                                                  new Class<?>[] {PreparedStatement.class},
+                                                  new StatementHandler((Connection) proxy, sql,
+                                                                       checkoutStatement(sql)));
+                }
+                return PooledConnection.invoke(physicalConnection, method, args);
+            } catch (final Throwable e) { //NOPMD
+                checkBroken(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Handles the calls to a cached prepared statement. Closing the proxy returns the statement to the cache.
+     */
+    private final class StatementHandler implements InvocationHandler {
+
+        private final transient Connection connection;
+        private final transient String sql;
+        private final transient PreparedStatement statement;
+        private transient boolean closed;
+
+        /* default */ StatementHandler(final Connection connection, final String sql,
+            final PreparedStatement statement)
+        {
+            this.connection = connection;
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        checkinStatement(sql, statement);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || statement.isClosed();
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return statement.toString();
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+
+            try {
+                return PooledConnection.invoke(statement, method, args);
+            } catch (final Throwable e) { //NOPMD
+                checkBroken(e);
+                throw e;
+            }
+        }
+    }
+}
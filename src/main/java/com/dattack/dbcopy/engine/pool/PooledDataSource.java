@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.pool;
+
+import com.dattack.dbcopy.engine.MBeanHelper;
+import com.dattack.jtoolbox.jdbc.JNDIDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ObjectInstance;
+import javax.sql.DataSource;
+
+/**
+ * Pool of connections obtained from a JNDI datasource. Idle connections are validated before being handed
+ * out again and each physical connection keeps its own cache of prepared statements. The pool can be tuned using the
+ * following system properties:
+ * <ul>
+ * <li><code>dbcopy_pool_max_size</code>: maximum number of connections in use at the same time (default: 0, no
+ * limit). A task keeps its select connection while its insert workers borrow theirs from the same pool, so the limit
+ * must be greater than threads * (parallel + 1) when the source and the target share the datasource.</li>
+ * <li><code>dbcopy_pool_max_wait</code>: maximum time, in milliseconds, to wait for a connection when the size of the
+ * pool is limited (default: 300000). A timeout is reported as a connection error (SQLState 08001), so the rows being
+ * written are retried or fail the task instead of being rejected.</li>
+ * <li><code>dbcopy_pool_statement_cache_size</code>: maximum number of cached statements per connection (default:
+ * 32, 0 disables the cache).</li>
+ * <li><code>dbcopy_pool_validation_interval</code>: idle time, in milliseconds, after which a connection is
+ * validated before being reused (default: 30000).</li>
+ * <li><code>dbcopy_pool_validation_timeout</code>: timeout, in seconds, of the validation (default: 5).</li>
+ * </ul>
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public class PooledDataSource implements DataSource, PooledDataSourceMBean, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledDataSource.class);
+
+    private static final String CONNECTION_POOL_TYPE = "ConnectionPool";
+    private static final String CONNECTION_TIMEOUT_STATE = "08001";
+    private static final int MAX_SIZE = Integer.getInteger("dbcopy_pool_max_size", 0);
+    private static final long MAX_WAIT = Long.getLong("dbcopy_pool_max_wait", 300_000L);
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("dbcopy_pool_statement_cache_size", 32);
+    private static final long VALIDATION_INTERVAL = Long.getLong("dbcopy_pool_validation_interval", 30_000L);
+    private static final int VALIDATION_TIMEOUT = Integer.getInteger("dbcopy_pool_validation_timeout", 5);
+
+    private final transient AtomicInteger activeConnections;
+    private final transient AtomicLong borrowedConnections;
+    private final transient AtomicLong createdConnections;
+    private final transient AtomicLong destroyedConnections;
+    private final transient BlockingDeque<PooledConnection> idleConnections;
+    private final transient String jndiName;
+    private final transient ObjectInstance objectInstance;
+    private final transient Semaphore permits;
+    private final transient AtomicLong statementCacheHits;
+    private final transient AtomicLong statementCacheMisses;
+    private final transient DataSource targetDataSource;
+    private final transient AtomicLong totalWaitTime;
+    private transient volatile boolean closed;
+
+    /* default */ PooledDataSource(final String jndiName) {
+        this.jndiName = jndiName;
+        this.targetDataSource = new JNDIDataSource(jndiName);
+        this.permits = MAX_SIZE > 0 ? new Semaphore(MAX_SIZE, true) : null; //NOPMD
+        this.idleConnections = new LinkedBlockingDeque<>();
+        this.activeConnections = new AtomicInteger();
+        this.borrowedConnections = new AtomicLong();
+        this.createdConnections = new AtomicLong();
+        this.destroyedConnections = new AtomicLong();
+        this.statementCacheHits = new AtomicLong();
+        this.statementCacheMisses = new AtomicLong();
+        this.totalWaitTime = new AtomicLong();
+        this.closed = false;
+        this.objectInstance = MBeanHelper.registerMBean(CONNECTION_POOL_TYPE, jndiName, this);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.pollFirst()) != null) {
+            destroy(pooledConnection);
+        }
+        if (objectInstance != null) {
+            MBeanHelper.unregisterMBean(objectInstance.getObjectName());
+        }
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    @Override
+    public float getAverageWaitTime() {
+        final long borrowed = borrowedConnections.get();
+        return borrowed == 0 ? 0 : totalWaitTime.get() / (float) borrowed / 1_000_000;
+    }
+
+    @Override
+    public long getBorrowedConnections() {
+        return borrowedConnections.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+
+        if (closed) {
+            throw new SQLException(String.format("Connection pool '%s' is closed", jndiName));
+        }
+
+        acquirePermit();
+
+        try {
+            PooledConnection pooledConnection = pollIdleConnection();
+            if (pooledConnection == null) {
+                pooledConnection = new PooledConnection(this, targetDataSource.getConnection(), STATEMENT_CACHE_SIZE);
+                createdConnections.incrementAndGet();
+            }
+            borrowedConnections.incrementAndGet();
+            activeConnections.incrementAndGet();
+            return pooledConnection.lease();
+        } catch (final SQLException | RuntimeException e) {
+            releasePermit();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The connection pool doesn't support custom credentials");
+    }
+
+    @Override
+    public long getCreatedConnections() {
+        return createdConnections.get();
+    }
+
+    @Override
+    public long getDestroyedConnections() {
+        return destroyedConnections.get();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return targetDataSource.getLoginTimeout();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return targetDataSource.getLogWriter();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return MAX_SIZE;
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return targetDataSource.getParentLogger();
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    @Override
+    public int getWaitingThreads() {
+        return permits == null ? 0 : permits.getQueueLength();
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || targetDataSource.isWrapperFor(iface);
+    }
+
+    @Override
+    public void setLoginTimeout(final int seconds) throws SQLException {
+        targetDataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public void setLogWriter(final PrintWriter out) throws SQLException {
+        targetDataSource.setLogWriter(out);
+    }
+
+    @Override
+    public String toString() {
+        return "PooledDataSource{jndiName=" + jndiName + ", active=" + activeConnections + ", idle="
+            + idleConnections.size() + '}';
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return targetDataSource.unwrap(iface);
+    }
+
+    /* default */ void recordStatementCacheAccess(final boolean hit) {
+        if (hit) {
+            statementCacheHits.incrementAndGet();
+        } else {
+            statementCacheMisses.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns a connection to the pool. Broken connections, and every connection returned after the pool has been
+     * closed, are physically closed.
+     */
+    /* default */ void release(final PooledConnection pooledConnection) {
+        activeConnections.decrementAndGet();
+        try {
+            if (closed || !pooledConnection.reset()) {
+                destroy(pooledConnection);
+            } else {
+                idleConnections.offerFirst(pooledConnection);
+            }
+        } finally {
+            releasePermit();
+        }
+    }
+
+    private void acquirePermit() throws SQLException {
+
+        if (permits == null) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(MAX_WAIT, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(String.format(
+                    "Timeout waiting for a connection from pool '%s' (%d ms)", jndiName, MAX_WAIT),
+                    CONNECTION_TIMEOUT_STATE);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException(String.format(
+                "Interrupted while waiting for a connection from pool '%s'", jndiName), CONNECTION_TIMEOUT_STATE, e);
+        }
+        totalWaitTime.addAndGet(System.nanoTime() - start);
+    }
+
+    private void releasePermit() {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    private void destroy(final PooledConnection pooledConnection) {
+        pooledConnection.destroy();
+        destroyedConnections.incrementAndGet();
+    }
+
+    private PooledConnection pollIdleConnection() {
+
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.pollFirst()) != null) {
+            if (pooledConnection.getIdleTime() < VALIDATION_INTERVAL
+                || pooledConnection.validate(VALIDATION_TIMEOUT))
+            {
+                return pooledConnection;
+            }
+            LOGGER.warn("Discarding invalid connection from pool '{}'", jndiName);
+            destroy(pooledConnection);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.pool;
+
+/**
+ * MBean to access the metrics of a connection pool.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+@SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+public interface PooledDataSourceMBean {
+
+    /**
+     * Returns the number of connections currently in use.
+     *
+     * @return the number of connections currently in use
+     */
+    int getActiveConnections();
+
+    /**
+     * Returns the average time, in milliseconds, that the threads have waited to get a connection.
+     *
+     * @return the average waiting time in milliseconds
+     */
+    float getAverageWaitTime();
+
+    /**
+     * Returns the number of connections handed out by the pool since it was created.
+     *
+     * @return the number of borrowed connections
+     */
+    long getBorrowedConnections();
+
+    /**
+     * Returns the number of physical connections opened by the pool.
+     *
+     * @return the number of physical connections opened by the pool
+     */
+    long getCreatedConnections();
+
+    /**
+     * Returns the number of physical connections closed by the pool, either because they were no longer valid or
+     * because the pool was closed.
+     *
+     * @return the number of physical connections closed by the pool
+     */
+    long getDestroyedConnections();
+
+    /**
+     * Returns the number of idle connections available in the pool.
+     *
+     * @return the number of idle connections
+     */
+    int getIdleConnections();
+
+    /**
+     * Returns the maximum number of connections that can be in use at the same time, or zero when there is no limit.
+     *
+     * @return the maximum size of the pool
+     */
+    int getMaxSize();
+
+    /**
+     * Returns the number of prepared statements reused from the statement caches.
+     *
+     * @return the number of statement cache hits
+     */
+    long getStatementCacheHits();
+
+    /**
+     * Returns the number of prepared statements created because they were not available in the statement caches.
+     *
+     * @return the number of statement cache misses
+     */
+    long getStatementCacheMisses();
+
+    /**
+     * Returns an estimate of the number of threads waiting to get a connection.
+     *
+     * @return the number of waiting threads
+     */
+    int getWaitingThreads();
+}
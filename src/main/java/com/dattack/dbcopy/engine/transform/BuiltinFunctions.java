@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.transform;
+
+import java.math.RoundingMode;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Library of the functions available in the expressions. Unless stated otherwise, a function returns null when any
+ * of its arguments is null. The positions of the string functions start at 1, as in SQL.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ final class BuiltinFunctions {
+
+    private static final Map<String, Definition> DEFINITION_MAP = new HashMap<>();
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int DEFAULT_VISIBLE_CHARS = 4;
+    private static final ThreadLocal<MessageDigest> MD5 = digestOf("MD5");
+    private static final ThreadLocal<MessageDigest> SHA1 = digestOf("SHA-1");
+    private static final ThreadLocal<MessageDigest> SHA256 = digestOf("SHA-256");
+
+    static {
+        // strings
+        register("upper", 1, 1, ExpressionType.STRING, a -> Operations.toText(a[0]).toUpperCase(Locale.ROOT));
+        register("lower", 1, 1, ExpressionType.STRING, a -> Operations.toText(a[0]).toLowerCase(Locale.ROOT));
+        register("trim", 1, 1, ExpressionType.STRING, a -> Operations.toText(a[0]).trim());
+        register("ltrim", 1, 1, ExpressionType.STRING, a -> Operations.toText(a[0]).replaceAll("^\\s+", ""));
+        register("rtrim", 1, 1, ExpressionType.STRING, a -> Operations.toText(a[0]).replaceAll("\\s+$", ""));
+        register("length", 1, 1, ExpressionType.INTEGER, a -> (long) Operations.toText(a[0]).length());
+        register("substr", 2, 3, ExpressionType.STRING, BuiltinFunctions::substr);
+        register("left", 2, 2, ExpressionType.STRING, a -> left(Operations.toText(a[0]), Operations.toLong(a[1])));
+        register("right", 2, 2, ExpressionType.STRING, a -> right(Operations.toText(a[0]), Operations.toLong(a[1])));
+        register("lpad", 2, 3, ExpressionType.STRING, a -> pad(a, true));
+        register("rpad", 2, 3, ExpressionType.STRING, a -> pad(a, false));
+        register("replace", 2, 3, ExpressionType.STRING, a -> Operations.toText(a[0])
+            .replace(Operations.toText(a[1]), a.length > 2 ? Operations.toText(a[2]) : ""));
+        registerNullable("concat", 1, Integer.MAX_VALUE, ExpressionType.STRING, BuiltinFunctions::concat);
+
+        // nulls
+        registerNullable("coalesce", 1, Integer.MAX_VALUE, null, BuiltinFunctions::coalesce);
+        registerNullable("nvl", 2, 2, null, BuiltinFunctions::coalesce);
+        registerNullable("nullif", 2, 2, null, a -> a[0] != null && a[1] != null
+            && Operations.compare(a[0], a[1]) == 0 ? null : a[0]);
+
+        // numbers
+        register("abs", 1, 1, null, a -> Operations.isIntegral(a[0]) && Operations.toLong(a[0]) != Long.MIN_VALUE
+            ? (Object) Math.abs(Operations.toLong(a[0])) : Operations.toDecimal(a[0]).abs());
+        register("round", 1, 2, ExpressionType.DECIMAL, a -> Operations.toDecimal(a[0])
+            .setScale(a.length > 1 ? (int) Operations.toLong(a[1]) : 0, RoundingMode.HALF_UP));
+        register("floor", 1, 1, ExpressionType.DECIMAL, a -> Operations.toDecimal(a[0])
+            .setScale(0, RoundingMode.FLOOR));
+        register("ceil", 1, 1, ExpressionType.DECIMAL, a -> Operations.toDecimal(a[0])
+            .setScale(0, RoundingMode.CEILING));
+        register("mod", 2, 2, null, a -> Operations.modulo(a[0], a[1]));
+
+        // conversions
+        register("to_char", 1, 1, ExpressionType.STRING, a -> Operations.toText(a[0]));
+        register("to_number", 1, 1, ExpressionType.DECIMAL, a -> Operations.toDecimal(a[0]));
+
+        // masking
+        register("md5", 1, 1, ExpressionType.STRING, a -> hex(MD5.get().digest(Operations.toBytes(a[0]))));
+        register("sha1", 1, 1, ExpressionType.STRING, a -> hex(SHA1.get().digest(Operations.toBytes(a[0]))));
+        register("sha256", 1, 1, ExpressionType.STRING, a -> hex(SHA256.get().digest(Operations.toBytes(a[0]))));
+        register("mask", 1, 3, ExpressionType.STRING, BuiltinFunctions::mask);
+    }
+
+    private BuiltinFunctions() {
+        // static class
+    }
+
+    private static Object coalesce(final Object[] args) {
+        for (final Object arg : args) {
+            if (arg != null) {
+                return arg;
+            }
+        }
+        return null;
+    }
+
+    private static Object concat(final Object[] args) {
+        final StringBuilder builder = new StringBuilder();
+        for (final Object arg : args) {
+            if (arg != null) {
+                builder.append(Operations.toText(arg));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static ThreadLocal<MessageDigest> digestOf(final String algorithm) {
+        return ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance(algorithm);
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Returns the definition of a function.
+     *
+     * @param name the name of the function, case-insensitive
+     * @return the definition or null if there is no function with that name
+     */
+    /* default */ static Definition get(final String name) {
+        return DEFINITION_MAP.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    private static String hex(final byte[] hash) {
+        final char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0x0F];
+            chars[2 * i + 1] = HEX_DIGITS[hash[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    private static String left(final String text, final long length) {
+        return text.substring(0, (int) Math.max(0, Math.min(length, text.length())));
+    }
+
+    /**
+     * Replaces all but the last characters of a string: <code>mask(text [, visible [, mask_char]])</code>.
+     */
+    private static Object mask(final Object[] args) {
+        final String text = Operations.toText(args[0]);
+        final long visible = args.length > 1 ? Operations.toLong(args[1]) : DEFAULT_VISIBLE_CHARS;
+        final char maskChar = args.length > 2 && !Operations.toText(args[2]).isEmpty() //
+            ? Operations.toText(args[2]).charAt(0) : '*';
+        final int masked = (int) Math.max(0, text.length() - Math.max(0, visible));
+        final StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < masked; i++) {
+            builder.append(maskChar);
+        }
+        return builder.append(text, masked, text.length()).toString();
+    }
+
+    private static Object pad(final Object[] args, final boolean leftSide) {
+        final String text = Operations.toText(args[0]);
+        final int length = (int) Math.max(0, Operations.toLong(args[1]));
+        final String padding = args.length > 2 ? Operations.toText(args[2]) : " ";
+        if (text.length() >= length || padding.isEmpty()) {
+            return left(text, length);
+        }
+        final StringBuilder fill = new StringBuilder(length);
+        while (fill.length() < length - text.length()) {
+            fill.append(padding);
+        }
+        fill.setLength(length - text.length());
+        return leftSide ? fill + text : text + fill;
+    }
+
+    private static void register(final String name, final int minArgs, final int maxArgs, final ExpressionType type,
+        final Function function)
+    {
+        DEFINITION_MAP.put(name, new Definition(minArgs, maxArgs, type, true, function));
+    }
+
+    private static void registerNullable(final String name, final int minArgs, final int maxArgs,
+        final ExpressionType type, final Function function)
+    {
+        DEFINITION_MAP.put(name, new Definition(minArgs, maxArgs, type, false, function));
+    }
+
+    private static String right(final String text, final long length) {
+        return text.substring((int) Math.max(0, text.length() - Math.max(0, length)));
+    }
+
+    /**
+     * <code>substr(text, start [, length])</code>, where a negative start counts from the end of the string.
+     */
+    private static Object substr(final Object[] args) {
+        final String text = Operations.toText(args[0]);
+        long start = Operations.toLong(args[1]);
+        if (start < 0) {
+            start = text.length() + start + 1;
+        } else if (start == 0) {
+            start = 1;
+        }
+        final int begin = (int) Math.min(Math.max(start - 1, 0), text.length());
+        int end = text.length();
+        if (args.length > 2) {
+            final long length = Operations.toLong(args[2]);
+            end = (int) Math.max(begin, Math.min(text.length(), begin + length));
+        }
+        return text.substring(begin, end);
+    }
+
+    /**
+     * Implementation of a function.
+     */
+    @FunctionalInterface
+    /* default */ interface Function {
+
+        Object apply(Object[] args);
+    }
+
+    /**
+     * Definition of a function: its number of arguments, the type of its result (null if it's the type of its first
+     * argument) and its implementation.
+     */
+    /* default */ static final class Definition {
+
+        private final transient Function function;
+        private final transient int maxArgs;
+        private final transient int minArgs;
+        private final transient boolean nullPropagating;
+        private final transient ExpressionType type;
+
+        private Definition(final int minArgs, final int maxArgs, final ExpressionType type,
+            final boolean nullPropagating, final Function function)
+        {
+            this.minArgs = minArgs;
+            this.maxArgs = maxArgs;
+            this.type = type;
+            this.nullPropagating = nullPropagating;
+            this.function = function;
+        }
+
+        /* default */ Object apply(final Object[] args) {
+            if (nullPropagating) {
+                for (final Object arg : args) {
+                    if (arg == null) {
+                        return null;
+                    }
+                }
+            }
+            return function.apply(args);
+        }
+
+        /* default */ int getMaxArgs() {
+            return maxArgs;
+        }
+
+        /* default */ int getMinArgs() {
+            return minArgs;
+        }
+
+        /* default */ ExpressionType getType() {
+            return type;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.transform;
+
+/**
+ * Result of compiling an expression: the expression itself and the static type of its values.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public final class CompiledExpression {
+
+    private final transient int columnIndex;
+    private final transient boolean constant;
+    private final transient Expression expression;
+    private final transient String source;
+    private final transient ExpressionType type;
+
+    /* default */ CompiledExpression(final String source, final Expression expression, final ExpressionType type,
+        final boolean constant, final int columnIndex)
+    {
+        this.source = source;
+        this.expression = expression;
+        this.type = type;
+        this.constant = constant;
+        this.columnIndex = columnIndex;
+    }
+
+    /**
+     * Returns the position in the row of the column referenced by the expression when the expression is just a
+     * column reference, so the value can be copied without being evaluated.
+     *
+     * @return the 0-based position of the column, or -1 if the expression isn't a column reference
+     */
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public ExpressionType getType() {
+        return type;
+    }
+
+    public boolean isColumnReference() {
+        return columnIndex >= 0;
+    }
+
+    public boolean isConstant() {
+        return constant;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
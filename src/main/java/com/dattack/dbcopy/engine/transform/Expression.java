@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.transform;
+
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+
+/**
+ * Compiled expression evaluated over a row. Implementations are stateless, so the same instance can be evaluated
+ * concurrently by several threads.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+@FunctionalInterface
+public interface Expression {
+
+    /**
+     * Evaluates the expression.
+     *
+     * @param row the values of the row
+     * @return the value of the expression, or null if it's an SQL null
+     */
+    Object evaluate(AbstractDataType<?>[] row);
+}
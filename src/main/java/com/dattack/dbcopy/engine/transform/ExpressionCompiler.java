@@ -0,0 +1,643 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.transform;
+
+import com.dattack.dbcopy.engine.ColumnMetadata;
+import com.dattack.dbcopy.engine.RowMetadata;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles the expressions used to transform and filter rows. The grammar is a small subset of SQL:
+ *
+ * <pre>
+ * expression     := and ( OR and )*
+ * and            := not ( AND not )*
+ * not            := NOT not | comparison
+ * comparison     := additive [ ( = | &lt;&gt; | != | &lt; | &lt;= | &gt; | &gt;= ) additive
+ *                            | IS [ NOT ] NULL
+ *                            | [ NOT ] LIKE additive
+ *                            | [ NOT ] IN ( expression ( , expression )* ) ]
+ * additive       := multiplicative ( ( + | - | || ) multiplicative )*
+ * multiplicative := unary ( ( * | / | % ) unary )*
+ * unary          := - unary | primary
+ * primary        := number | 'string' | TRUE | FALSE | NULL | column | "column" | function ( [ args ] )
+ *                 | ( expression )
+ *                 | CASE [ expression ] ( WHEN expression THEN expression )+ [ ELSE expression ] END
+ * </pre>
+ *
+ * <p>The expression is parsed once and translated into a tree of closures, with the column names resolved to their
+ * positions in the row and the constant sub-expressions folded, so nothing is interpreted when the rows are
+ * evaluated.</p>
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public final class ExpressionCompiler {
+
+    private final transient Map<String, ColumnMetadata> columnMap;
+    private transient int position;
+    private transient String source;
+    private transient List<Token> tokenList;
+
+    /**
+     * Creates a compiler of expressions over the rows described by the given metadata.
+     *
+     * @param rowMetadata the metadata of the rows the expressions are evaluated over
+     */
+    public ExpressionCompiler(final RowMetadata rowMetadata) {
+        this.columnMap = new HashMap<>();
+        for (final ColumnMetadata column : rowMetadata.getColumnsMetadata()) {
+            columnMap.putIfAbsent(column.getName().toLowerCase(Locale.ROOT), column);
+        }
+    }
+
+    private static Node binary(final Node left, final Node right, final ExpressionType type,
+        final BinaryOperator<Object> operator)
+    {
+        final Expression leftExpression = left.expression;
+        final Expression rightExpression = right.expression;
+        return new Node(row -> operator.apply(leftExpression.evaluate(row), rightExpression.evaluate(row)), type,
+                        left.constant && right.constant).fold();
+    }
+
+    private static BinaryOperator<Object> compareWith(final IntPredicate predicate) {
+        return (a, b) -> a == null || b == null ? null : predicate.test(Operations.compare(a, b));
+    }
+
+    private static ExpressionType numericType(final ExpressionType left, final ExpressionType right) {
+        return left == ExpressionType.INTEGER && right == ExpressionType.INTEGER ? ExpressionType.INTEGER
+            : ExpressionType.DECIMAL;
+    }
+
+    private static ExpressionType unify(final List<Node> nodeList) {
+        ExpressionType result = null;
+        for (final Node node : nodeList) {
+            if (node.constant && node.expression.evaluate(null) == null) {
+                continue; // a null literal is compatible with any type
+            }
+            if (result == null) {
+                result = node.type;
+            } else if (result != node.type) {
+                result = result.isNumeric() && node.type.isNumeric() ? ExpressionType.DECIMAL : ExpressionType.ANY;
+            }
+        }
+        return result == null ? ExpressionType.ANY : result;
+    }
+
+    /**
+     * Compiles an expression.
+     *
+     * @param expression the text of the expression
+     * @return the compiled expression
+     * @throws ExpressionException if the expression isn't valid
+     */
+    public synchronized CompiledExpression compile(final String expression) throws ExpressionException {
+        if (Objects.isNull(expression) || expression.trim().isEmpty()) {
+            throw new ExpressionException("Empty expression");
+        }
+        this.source = expression;
+        this.tokenList = new Tokenizer(expression).tokenize();
+        this.position = 0;
+
+        final Node node = parseOr();
+        if (peek().kind != TokenKind.END) {
+            throw unexpected(peek());
+        }
+        return new CompiledExpression(expression.trim(), node.expression, node.type, node.constant,
+                                      node.columnIndex);
+    }
+
+    private ExpressionException error(final String message, final Token token) {
+        return new ExpressionException(String.format("%s at position %d of expression '%s'", message,
+                                                     token.offset + 1, source));
+    }
+
+    private void expect(final String symbol) throws ExpressionException {
+        if (!match(symbol)) {
+            throw error(String.format("Expected '%s' but found '%s'", symbol, peek().text), peek());
+        }
+    }
+
+    private boolean match(final String symbol) {
+        if (peek().is(symbol)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private Token next() {
+        return tokenList.get(position++);
+    }
+
+    private Node parseAdditive() throws ExpressionException {
+        Node node = parseMultiplicative();
+        while (true) {
+            if (match("+")) {
+                final Node right = parseMultiplicative();
+                node = binary(node, right, numericType(node.type, right.type), Operations::add);
+            } else if (match("-")) {
+                final Node right = parseMultiplicative();
+                node = binary(node, right, numericType(node.type, right.type), Operations::subtract);
+            } else if (match("||")) {
+                node = binary(node, parseMultiplicative(), ExpressionType.STRING, Operations::concat);
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private Node parseAnd() throws ExpressionException {
+        Node node = parseNot();
+        while (match("AND")) {
+            node = binary(node, parseNot(), ExpressionType.BOOLEAN, Operations::and);
+        }
+        return node;
+    }
+
+    private Node parseCase() throws ExpressionException {
+
+        final Node operand = peek().is("WHEN") ? null : parseOr();
+        final List<Node> conditionList = new ArrayList<>();
+        final List<Node> resultList = new ArrayList<>();
+        do {
+            expect("WHEN");
+            final Node when = parseOr();
+            conditionList.add(operand == null ? when
+                : binary(operand, when, ExpressionType.BOOLEAN, Operations::equal));
+            expect("THEN");
+            resultList.add(parseOr());
+        } while (peek().is("WHEN"));
+        final Node otherwise = match("ELSE") ? parseOr() : Node.constant(null);
+        expect("END");
+
+        final Expression[] conditions = conditionList.stream().map(n -> n.expression).toArray(Expression[]::new);
+        final Expression[] results = resultList.stream().map(n -> n.expression).toArray(Expression[]::new);
+        final Expression otherwiseExpression = otherwise.expression;
+
+        resultList.add(otherwise);
+        final ExpressionType type = unify(resultList);
+        conditionList.addAll(resultList);
+        final boolean constant = conditionList.stream().allMatch(n -> n.constant);
+        return new Node(row -> {
+            for (int i = 0; i < conditions.length; i++) {
+                if (Boolean.TRUE.equals(conditions[i].evaluate(row))) {
+                    return results[i].evaluate(row);
+                }
+            }
+            return otherwiseExpression.evaluate(row);
+        }, type, constant).fold();
+    }
+
+    private Node parseColumn(final Token token) throws ExpressionException {
+        final ColumnMetadata column = columnMap.get(token.text.toLowerCase(Locale.ROOT));
+        if (column == null) {
+            throw error(String.format("Unknown column '%s'", token.text), token);
+        }
+        final int index = column.getIndex() - 1;
+        final Node node = new Node(row -> {
+            final AbstractDataType<?> value = row[index];
+            return value == null ? null : value.getValue();
+        }, ExpressionType.of(column.getType()), false);
+        node.columnIndex = index;
+        return node;
+    }
+
+    private Node parseComparison() throws ExpressionException {
+
+        final Node left = parseAdditive();
+        final Token token = peek();
+        Node node;
+        if (match("=")) {
+            node = binary(left, parseAdditive(), ExpressionType.BOOLEAN, Operations::equal);
+        } else if (match("<>") || match("!=")) {
+            node = binary(left, parseAdditive(), ExpressionType.BOOLEAN,
+                (a, b) -> Operations.not(Operations.equal(a, b)));
+        } else if (match("<")) {
+            node = binary(left, parseAdditive(), ExpressionType.BOOLEAN, compareWith(c -> c < 0));
+        } else if (match("<=")) {
+            node = binary(left, parseAdditive(), ExpressionType.BOOLEAN, compareWith(c -> c <= 0));
+        } else if (match(">")) {
+            node = binary(left, parseAdditive(), ExpressionType.BOOLEAN, compareWith(c -> c > 0));
+        } else if (match(">=")) {
+            node = binary(left, parseAdditive(), ExpressionType.BOOLEAN, compareWith(c -> c >= 0));
+        } else if (match("IS")) {
+            final boolean negated = match("NOT");
+            expect("NULL");
+            final Expression operand = left.expression;
+            node = new Node(row -> negated == (operand.evaluate(row) != null), ExpressionType.BOOLEAN,
+                            left.constant).fold();
+        } else if (token.is("NOT") || token.is("LIKE") || token.is("IN")) {
+            final boolean negated = match("NOT");
+            if (match("LIKE")) {
+                node = parseLike(left);
+            } else if (match("IN")) {
+                node = parseIn(left);
+            } else {
+                throw unexpected(peek());
+            }
+            if (negated) {
+                final Expression operand = node.expression;
+                node = new Node(row -> Operations.not(operand.evaluate(row)), ExpressionType.BOOLEAN,
+                                node.constant).fold();
+            }
+        } else {
+            node = left;
+        }
+        return node;
+    }
+
+    private Node parseFunction(final Token token) throws ExpressionException {
+
+        final BuiltinFunctions.Definition definition = BuiltinFunctions.get(token.text);
+        if (definition == null) {
+            throw error(String.format("Unknown function '%s'", token.text), token);
+        }
+
+        final List<Node> argList = new ArrayList<>();
+        if (!match(")")) {
+            do {
+                argList.add(parseOr());
+            } while (match(","));
+            expect(")");
+        }
+        if (argList.size() < definition.getMinArgs() || argList.size() > definition.getMaxArgs()) {
+            throw error(String.format("Wrong number of arguments (%d) for function '%s'", argList.size(),
+                                      token.text), token);
+        }
+
+        final Expression[] args = argList.stream().map(n -> n.expression).toArray(Expression[]::new);
+        final ExpressionType type = definition.getType() == null ? unify(argList) : definition.getType();
+        return new Node(row -> {
+            final Object[] values = new Object[args.length];
+            for (int i = 0; i < args.length; i++) {
+                values[i] = args[i].evaluate(row);
+            }
+            return definition.apply(values);
+        }, type, argList.stream().allMatch(n -> n.constant)).fold();
+    }
+
+    private Node parseIn(final Node left) throws ExpressionException {
+
+        expect("(");
+        final List<Node> itemList = new ArrayList<>();
+        do {
+            itemList.add(parseOr());
+        } while (match(","));
+        expect(")");
+
+        final Expression operand = left.expression;
+        final Expression[] items = itemList.stream().map(n -> n.expression).toArray(Expression[]::new);
+        return new Node(row -> {
+            final Object value = operand.evaluate(row);
+            if (value == null) {
+                return null;
+            }
+            boolean unknown = false;
+            for (final Expression item : items) {
+                final Boolean equal = Operations.equal(value, item.evaluate(row));
+                if (equal == null) {
+                    unknown = true;
+                } else if (equal) {
+                    return Boolean.TRUE;
+                }
+            }
+            return unknown ? null : Boolean.FALSE;
+        }, ExpressionType.BOOLEAN, left.constant && itemList.stream().allMatch(n -> n.constant)).fold();
+    }
+
+    private Node parseLike(final Node left) throws ExpressionException {
+
+        final Node pattern = parseAdditive();
+        final Expression operand = left.expression;
+        Node node;
+        if (pattern.constant) {
+            final Object like = pattern.expression.evaluate(null);
+            final Pattern regex = like == null ? null : Operations.likePattern(Operations.toText(like));
+            node = new Node(row -> {
+                final Object value = operand.evaluate(row);
+                return value == null || regex == null ? null : regex.matcher(Operations.toText(value)).matches();
+            }, ExpressionType.BOOLEAN, left.constant);
+        } else {
+            final Expression patternExpression = pattern.expression;
+            node = new Node(row -> {
+                final Object value = operand.evaluate(row);
+                final Object like = patternExpression.evaluate(row);
+                return value == null || like == null ? null
+                    : Operations.likePattern(Operations.toText(like)).matcher(Operations.toText(value)).matches();
+            }, ExpressionType.BOOLEAN, false);
+        }
+        return node.fold();
+    }
+
+    private Node parseMultiplicative() throws ExpressionException {
+        Node node = parseUnary();
+        while (true) {
+            if (match("*")) {
+                final Node right = parseUnary();
+                node = binary(node, right, numericType(node.type, right.type), Operations::multiply);
+            } else if (match("/")) {
+                node = binary(node, parseUnary(), ExpressionType.DECIMAL, Operations::divide);
+            } else if (match("%")) {
+                final Node right = parseUnary();
+                node = binary(node, right, numericType(node.type, right.type), Operations::modulo);
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private Node parseNot() throws ExpressionException {
+        if (match("NOT")) {
+            final Node operand = parseNot();
+            final Expression expression = operand.expression;
+            return new Node(row -> Operations.not(expression.evaluate(row)), ExpressionType.BOOLEAN,
+                            operand.constant).fold();
+        }
+        return parseComparison();
+    }
+
+    private Node parseOr() throws ExpressionException {
+        Node node = parseAnd();
+        while (match("OR")) {
+            node = binary(node, parseAnd(), ExpressionType.BOOLEAN, Operations::or);
+        }
+        return node;
+    }
+
+    private Node parsePrimary() throws ExpressionException { //NOPMD
+
+        final Token token = next();
+        Node node;
+        switch (token.kind) {
+            case NUMBER:
+                node = Node.constant(token.value);
+                break;
+            case STRING:
+                node = Node.constant(token.value);
+                break;
+            case QUOTED_IDENTIFIER:
+                node = parseColumn(token);
+                break;
+            case IDENTIFIER:
+                if (token.is("NULL")) {
+                    node = Node.constant(null);
+                } else if (token.is("TRUE") || token.is("FALSE")) {
+                    node = Node.constant(Boolean.valueOf(token.text));
+                } else if (token.is("CASE")) {
+                    node = parseCase();
+                } else if (match("(")) {
+                    node = parseFunction(token);
+                } else {
+                    node = parseColumn(token);
+                }
+                break;
+            default:
+                if (!token.is("(")) {
+                    throw unexpected(token);
+                }
+                node = parseOr();
+                expect(")");
+                break;
+        }
+        return node;
+    }
+
+    private Node parseUnary() throws ExpressionException {
+        if (match("-")) {
+            final Node operand = parseUnary();
+            final Expression expression = operand.expression;
+            return new Node(row -> Operations.negate(expression.evaluate(row)),
+                            operand.type.isNumeric() ? operand.type : ExpressionType.DECIMAL, operand.constant).fold();
+        }
+        return parsePrimary();
+    }
+
+    private Token peek() {
+        return tokenList.get(position);
+    }
+
+    private ExpressionException unexpected(final Token token) {
+        return error(token.kind == TokenKind.END ? "Unexpected end" : String.format("Unexpected '%s'", token.text),
+                     token);
+    }
+
+    private enum TokenKind {
+        END, IDENTIFIER, NUMBER, QUOTED_IDENTIFIER, STRING, SYMBOL
+    }
+
+    /**
+     * Node of the tree of closures built by the parser.
+     */
+    private static final class Node {
+
+        private final transient boolean constant;
+        private final transient Expression expression;
+        private final transient ExpressionType type;
+        private transient int columnIndex;
+
+        private Node(final Expression expression, final ExpressionType type, final boolean constant) {
+            this.expression = expression;
+            this.type = type;
+            this.constant = constant;
+            this.columnIndex = -1;
+        }
+
+        private static Node constant(final Object value) {
+            ExpressionType type;
+            if (value == null) {
+                type = ExpressionType.ANY;
+            } else if (value instanceof BigDecimal) {
+                type = ExpressionType.DECIMAL;
+            } else if (value instanceof Long) {
+                type = ExpressionType.INTEGER;
+            } else if (value instanceof Boolean) {
+                type = ExpressionType.BOOLEAN;
+            } else {
+                type = ExpressionType.STRING;
+            }
+            return new Node(row -> value, type, true);
+        }
+
+        /**
+         * Replaces a node whose operands are all constants by its value.
+         */
+        private Node fold() {
+            if (!constant) {
+                return this;
+            }
+            final Object value = expression.evaluate(null);
+            return new Node(row -> value, type, true);
+        }
+    }
+
+    /**
+     * Lexical unit of an expression.
+     */
+    private static final class Token {
+
+        private final transient TokenKind kind;
+        private final transient int offset;
+        private final transient String text;
+        private final transient Object value;
+
+        private Token(final TokenKind kind, final String text, final Object value, final int offset) {
+            this.kind = kind;
+            this.text = text;
+            this.value = value;
+            this.offset = offset;
+        }
+
+        /**
+         * Checks if this token is the given symbol or keyword. Keywords are case-insensitive.
+         */
+        private boolean is(final String symbol) {
+            return (kind == TokenKind.SYMBOL || kind == TokenKind.IDENTIFIER) && symbol.equalsIgnoreCase(text);
+        }
+    }
+
+    /**
+     * Splits an expression into tokens.
+     */
+    private static final class Tokenizer {
+
+        private static final String SYMBOLS = "+-*/%(),=<>!|";
+
+        private final transient String text;
+        private transient int index;
+
+        private Tokenizer(final String text) {
+            this.text = text;
+        }
+
+        private char charAt(final int offset) {
+            return offset < text.length() ? text.charAt(offset) : '\0';
+        }
+
+        private ExpressionException error(final String message, final int offset) {
+            return new ExpressionException(String.format("%s at position %d of expression '%s'", message,
+                                                         offset + 1, text));
+        }
+
+        private Token number(final int start) throws ExpressionException {
+            while (Character.isDigit(charAt(index))) {
+                index++;
+            }
+            boolean decimal = false;
+            if (charAt(index) == '.' && Character.isDigit(charAt(index + 1))) {
+                decimal = true;
+                index++;
+                while (Character.isDigit(charAt(index))) {
+                    index++;
+                }
+            }
+            if (Character.isLetter(charAt(index))) {
+                throw error("Malformed number", start);
+            }
+            final String literal = text.substring(start, index);
+            Object value;
+            if (decimal || literal.length() > 18) {
+                value = new BigDecimal(literal);
+            } else {
+                value = Long.parseLong(literal);
+            }
+            return new Token(TokenKind.NUMBER, literal, value, start);
+        }
+
+        private Token quoted(final int start, final char quote, final TokenKind kind) throws ExpressionException {
+            final StringBuilder builder = new StringBuilder();
+            index++;
+            while (true) {
+                if (index >= text.length()) {
+                    throw error("Unterminated literal", start);
+                }
+                final char c = text.charAt(index++);
+                if (c == quote) {
+                    if (charAt(index) != quote) {
+                        break;
+                    }
+                    index++; // escaped quote
+                }
+                builder.append(c);
+            }
+            final String literal = builder.toString();
+            return new Token(kind, literal, literal, start);
+        }
+
+        private Token symbol(final int start) throws ExpressionException {
+            final String pair = text.substring(start, Math.min(start + 2, text.length()));
+            if ("<=".equals(pair) || ">=".equals(pair) || "<>".equals(pair) || "!=".equals(pair)
+                || "||".equals(pair))
+            {
+                index += 2;
+                return new Token(TokenKind.SYMBOL, pair, null, start);
+            }
+            final char c = text.charAt(index);
+            if (c == '!' || c == '|') {
+                throw error(String.format("Unexpected '%s'", c), start);
+            }
+            index++;
+            return new Token(TokenKind.SYMBOL, String.valueOf(c), null, start);
+        }
+
+        private List<Token> tokenize() throws ExpressionException {
+
+            final List<Token> result = new ArrayList<>();
+            index = 0;
+            while (true) {
+                while (Character.isWhitespace(charAt(index))) {
+                    index++;
+                }
+                if (index >= text.length()) {
+                    result.add(new Token(TokenKind.END, "", null, index));
+                    return result;
+                }
+
+                final int start = index;
+                final char c = text.charAt(index);
+                if (Character.isDigit(c) || c == '.' && Character.isDigit(charAt(index + 1))) {
+                    result.add(number(start));
+                } else if (c == '\'') {
+                    result.add(quoted(start, '\'', TokenKind.STRING));
+                } else if (c == '"') {
+                    result.add(quoted(start, '"', TokenKind.QUOTED_IDENTIFIER));
+                } else if (Character.isLetter(c) || c == '_') {
+                    while (Character.isLetterOrDigit(charAt(index)) || charAt(index) == '_'
+                        || charAt(index) == '$')
+                    {
+                        index++;
+                    }
+                    result.add(new Token(TokenKind.IDENTIFIER, text.substring(start, index), null, start));
+                } else if (SYMBOLS.indexOf(c) >= 0) {
+                    result.add(symbol(start));
+                } else {
+                    throw error(String.format("Unexpected '%s'", c), start);
+                }
+            }
+        }
+    }
+}
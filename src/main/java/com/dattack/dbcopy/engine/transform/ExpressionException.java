@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.transform;
+
+/**
+ * Exception thrown if an expression can't be compiled.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public class ExpressionException extends Exception {
+
+    private static final long serialVersionUID = -2290736140598815497L;
+
+    public ExpressionException(final String message) {
+        super(message);
+    }
+
+    public ExpressionException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
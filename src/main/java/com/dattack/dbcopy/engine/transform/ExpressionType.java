@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.transform;
+
+import java.sql.Types;
+
+/**
+ * Static type of the value of an expression, inferred when it's compiled and used to describe the columns computed
+ * by a transform.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+public enum ExpressionType {
+
+    ANY(Types.VARCHAR), //
+    BINARY(Types.VARBINARY), //
+    BOOLEAN(Types.BOOLEAN), //
+    DATE(Types.DATE), //
+    DECIMAL(Types.DECIMAL), //
+    INTEGER(Types.BIGINT), //
+    STRING(Types.VARCHAR), //
+    TIME(Types.TIME), //
+    TIMESTAMP(Types.TIMESTAMP);
+
+    private final int sqlType;
+
+    ExpressionType(final int sqlType) {
+        this.sqlType = sqlType;
+    }
+
+    /**
+     * Returns the type of the values of a column.
+     *
+     * @param sqlType the SQL type of the column, as defined in {@link Types}
+     * @return the type of the values of the column
+     */
+    public static ExpressionType of(final int sqlType) { //NOPMD
+        ExpressionType result;
+        switch (sqlType) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+            case Types.NCLOB:
+                result = STRING;
+                break;
+            case Types.BIGINT:
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                result = INTEGER;
+                break;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.DOUBLE:
+            case Types.FLOAT:
+            case Types.REAL:
+                result = DECIMAL;
+                break;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                result = BOOLEAN;
+                break;
+            case Types.DATE:
+                result = DATE;
+                break;
+            case Types.TIME:
+            case Types.TIME_WITH_TIMEZONE:
+                result = TIME;
+                break;
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                result = TIMESTAMP;
+                break;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                result = BINARY;
+                break;
+            default:
+                result = ANY;
+                break;
+        }
+        return result;
+    }
+
+    public int getSqlType() {
+        return sqlType;
+    }
+
+    /* default */ boolean isNumeric() {
+        return this == INTEGER || this == DECIMAL;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.dbcopy.engine.transform;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.regex.Pattern;
+
+/**
+ * Runtime semantics of the operators of the expression language. The values follow the SQL rules: any operation
+ * with a null operand returns null, integers are promoted to decimals when mixed with them or when they overflow,
+ * and the logical operators use three-valued logic.
+ *
+ * @author cvarela
+ * @since 0.3
+ */
+/* default */ final class Operations {
+
+    private Operations() {
+        // static class
+    }
+
+    /* default */ static Object add(final Object left, final Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        if (isIntegral(left) && isIntegral(right)) {
+            try {
+                return Math.addExact(((Number) left).longValue(), ((Number) right).longValue());
+            } catch (final ArithmeticException e) { //NOPMD
+                // overflow: promoted to decimal
+            }
+        }
+        return toDecimal(left).add(toDecimal(right));
+    }
+
+    /* default */ static Boolean and(final Object left, final Object right) {
+        if (Boolean.FALSE.equals(left) || Boolean.FALSE.equals(right)) {
+            return Boolean.FALSE;
+        }
+        if (left == null || right == null) {
+            return null; //NOPMD: SQL unknown
+        }
+        return toBoolean(left) && toBoolean(right);
+    }
+
+    /**
+     * Compares two non-null values. Numbers are compared by value, and strings are converted to numbers when
+     * compared with them.
+     */
+    @SuppressWarnings("unchecked")
+    /* default */ static int compare(final Object left, final Object right) {
+        int result;
+        if (left instanceof Number || right instanceof Number) {
+            result = toDecimal(left).compareTo(toDecimal(right));
+        } else if (left instanceof Comparable && left.getClass().isInstance(right)) {
+            result = ((Comparable<Object>) left).compareTo(right);
+        } else if (left instanceof java.util.Date && right instanceof java.util.Date) {
+            result = Long.compare(((java.util.Date) left).getTime(), ((java.util.Date) right).getTime());
+        } else {
+            result = toText(left).compareTo(toText(right));
+        }
+        return result;
+    }
+
+    /* default */ static Object concat(final Object left, final Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        return toText(left) + toText(right);
+    }
+
+    /* default */ static Object divide(final Object left, final Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        return toDecimal(left).divide(toDecimal(right), MathContext.DECIMAL128).stripTrailingZeros();
+    }
+
+    /* default */ static Boolean equal(final Object left, final Object right) {
+        if (left == null || right == null) {
+            return null; //NOPMD: SQL unknown
+        }
+        return compare(left, right) == 0;
+    }
+
+    /* default */ static boolean isIntegral(final Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    /**
+     * Translates a SQL <code>LIKE</code> pattern into a regular expression.
+     */
+    /* default */ static Pattern likePattern(final String like) {
+        final StringBuilder regex = new StringBuilder(like.length() + 8);
+        for (int i = 0; i < like.length(); i++) {
+            final char c = like.charAt(i);
+            if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /* default */ static Object modulo(final Object left, final Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        if (isIntegral(left) && isIntegral(right)) {
+            return ((Number) left).longValue() % ((Number) right).longValue();
+        }
+        return toDecimal(left).remainder(toDecimal(right));
+    }
+
+    /* default */ static Object multiply(final Object left, final Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        if (isIntegral(left) && isIntegral(right)) {
+            try {
+                return Math.multiplyExact(((Number) left).longValue(), ((Number) right).longValue());
+            } catch (final ArithmeticException e) { //NOPMD
+                // overflow: promoted to decimal
+            }
+        }
+        return toDecimal(left).multiply(toDecimal(right));
+    }
+
+    /* default */ static Object negate(final Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (isIntegral(value) && ((Number) value).longValue() != Long.MIN_VALUE) {
+            return -((Number) value).longValue();
+        }
+        return toDecimal(value).negate();
+    }
+
+    /* default */ static Boolean not(final Object value) {
+        return value == null ? null : !toBoolean(value);
+    }
+
+    /* default */ static Boolean or(final Object left, final Object right) {
+        if (Boolean.TRUE.equals(left) || Boolean.TRUE.equals(right)) {
+            return Boolean.TRUE;
+        }
+        if (left == null || right == null) {
+            return null; //NOPMD: SQL unknown
+        }
+        return toBoolean(left) || toBoolean(right);
+    }
+
+    /* default */ static Object subtract(final Object left, final Object right) {
+        return add(left, negate(right));
+    }
+
+    /* default */ static boolean toBoolean(final Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            return toDecimal(value).signum() != 0;
+        }
+        return Boolean.parseBoolean(toText(value).trim());
+    }
+
+    /**
+     * Returns the bytes of a value: binary values as they are, BLOBs read from their locator and any other value as
+     * its UTF-8 text.
+     */
+    /* default */ static byte[] toBytes(final Object value) {
+        byte[] result;
+        if (value instanceof byte[]) {
+            result = (byte[]) value;
+        } else if (value instanceof Blob) {
+            try {
+                final Blob blob = (Blob) value;
+                result = blob.getBytes(1L, (int) blob.length());
+            } catch (final SQLException e) {
+                throw new IllegalStateException("Unable to read a BLOB value", e);
+            }
+        } else {
+            result = toText(value).getBytes(StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+
+    /* default */ static BigDecimal toDecimal(final Object value) {
+        BigDecimal result;
+        if (value instanceof BigDecimal) {
+            result = (BigDecimal) value;
+        } else if (isIntegral(value)) {
+            result = BigDecimal.valueOf(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            result = BigDecimal.valueOf(((Number) value).doubleValue());
+        } else {
+            result = new BigDecimal(toText(value).trim());
+        }
+        return result;
+    }
+
+    /* default */ static long toLong(final Object value) {
+        return isIntegral(value) ? ((Number) value).longValue() : toDecimal(value).longValueExact();
+    }
+
+    /**
+     * Returns the text of a value. CLOBs are read from their locator.
+     */
+    /* default */ static String toText(final Object value) {
+        String result;
+        if (value instanceof String) {
+            result = (String) value;
+        } else if (value instanceof BigDecimal) {
+            result = ((BigDecimal) value).toPlainString();
+        } else if (value instanceof Clob) {
+            try {
+                final Clob clob = (Clob) value;
+                result = clob.getSubString(1L, (int) clob.length());
+            } catch (final SQLException e) {
+                throw new IllegalStateException("Unable to read a CLOB value", e);
+            }
+        } else {
+            result = String.valueOf(value);
+        }
+        return result;
+    }
+}
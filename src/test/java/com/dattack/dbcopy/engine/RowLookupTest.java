@@ -0,0 +1,211 @@
+package com.dattack.dbcopy.engine;
+
+import com.dattack.dbcopy.beans.LookupBean;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.dbcopy.engine.datatype.LongType;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/* package */ final class RowLookupTest {
+
+    private static final Object[][] PAIRS = {{1L, 10L}, {2L, 20L}, {3L, 30L}};
+
+    private static boolean sameKey(final Object key, final Object parameter) {
+        return new BigDecimal(key.toString()).compareTo(new BigDecimal(parameter.toString())) == 0;
+    }
+
+    private static <T> T proxy(final Class<T> type, final Handler handler) {
+        return type.cast(Proxy.newProxyInstance(RowLookupTest.class.getClassLoader(), new Class<?>[] {type},
+            (instance, method, args) -> handler.invoke(method.getName(), args)));
+    }
+
+    /**
+     * Returns the rows of the lookup query, whose key and value columns have the given JDBC types.
+     */
+    private static ResultSet resultSet(final List<Object[]> rows, final int keyType, final int valueType) {
+
+        final int[] types = {keyType, valueType};
+        final ResultSetMetaData metaData = proxy(ResultSetMetaData.class, (name, args) -> {
+            final int column = (Integer) args[0] - 1;
+            switch (name) {
+                case "getColumnType":
+                    return types[column];
+                case "getColumnName":
+                    return column == 0 ? "K" : "V";
+                case "getPrecision":
+                    // an Oracle NUMBER without precision
+                    return types[column] == Types.NUMERIC ? 0 : 19;
+                case "getScale":
+                    return 0;
+                case "isNullable":
+                    return ResultSetMetaData.columnNullable;
+                default:
+                    throw new UnsupportedOperationException(name);
+            }
+        });
+
+        final Iterator<Object[]> iterator = rows.iterator();
+        final Object[][] current = new Object[1][];
+        final boolean[] wasNull = new boolean[1];
+        return proxy(ResultSet.class, (name, args) -> {
+            switch (name) {
+                case "next":
+                    current[0] = iterator.hasNext() ? iterator.next() : null;
+                    return current[0] != null;
+                case "getMetaData":
+                    return metaData;
+                case "wasNull":
+                    return wasNull[0];
+                case "close":
+                    return null;
+                default:
+                    break;
+            }
+            final Object value = current[0][(Integer) args[0] - 1];
+            wasNull[0] = value == null;
+            switch (name) {
+                case "getObject":
+                    return types[(Integer) args[0] - 1] == Types.NUMERIC ? new BigDecimal(value.toString()) : value;
+                case "getLong":
+                    return value == null ? 0L : ((Number) value).longValue();
+                case "getString":
+                    return value == null ? null : value.toString();
+                default:
+                    throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    private static Connection connection(final int keyType, final int valueType) {
+
+        return proxy(Connection.class, (name, args) -> {
+            switch (name) {
+                case "createStatement":
+                    return proxy(java.sql.Statement.class, (statementMethod, statementArgs) ->
+                        "executeQuery".equals(statementMethod) ? resultSet(Arrays.asList(PAIRS), keyType, valueType)
+                            : null);
+                case "prepareStatement":
+                    final List<Object> parameters = new ArrayList<>();
+                    return proxy(java.sql.PreparedStatement.class, (statementMethod, statementArgs) -> {
+                        if ("setObject".equals(statementMethod)) {
+                            parameters.add(statementArgs[1]);
+                        } else if ("executeQuery".equals(statementMethod)) {
+                            final List<Object[]> rows = new ArrayList<>();
+                            for (final Object[] pair : PAIRS) {
+                                if (parameters.stream().anyMatch(parameter -> sameKey(pair[0], parameter))) {
+                                    rows.add(pair);
+                                }
+                            }
+                            parameters.clear();
+                            return resultSet(rows, keyType, valueType);
+                        }
+                        return null;
+                    });
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    private static List<Object> translate(final LookupBean.Mode mode, final int keyType, final int valueType)
+        throws Exception
+    {
+        final RowMetadata rowMetadata = RowMetadata.custom() //
+            .add(ColumnMetadata.custom().withIndex(1).withName("ID").withType(Types.BIGINT).build()) //
+            .build();
+        final Iterator<Long> source = Arrays.asList(1L, 4L, 2L, 1L, 3L).iterator();
+        final RowStage upstream = new RowStage() {
+
+            @Override
+            public RowMetadata getRowMetadata() {
+                return rowMetadata;
+            }
+
+            @Override
+            public AbstractDataType<?>[] transfer() {
+                return source.hasNext() ? new AbstractDataType<?>[] {new LongType(source.next())} : null;
+            }
+        };
+
+        final LookupBean bean = new LookupBean();
+        bean.setColumn("id");
+        bean.setMode(mode);
+        bean.setBatchSize(2);
+        bean.setSql(mode == LookupBean.Mode.LAZY ? "SELECT k, v FROM t WHERE k IN (:keys)" : "SELECT k, v FROM t");
+
+        final List<Object> values = new ArrayList<>();
+        try (RowLookup lookup = new RowLookup(upstream, bean, new BaseConfiguration(), "test") {
+
+            @Override
+            /* default */ Connection getConnection() throws SQLException {
+                return connection(keyType, valueType);
+            }
+        }) {
+            AbstractDataType<?>[] row = lookup.transfer();
+            while (row != null) {
+                values.add(row[0] == null ? null : row[0].getValue());
+                row = lookup.transfer();
+            }
+        }
+        return values;
+    }
+
+    private static void assertTranslated(final List<Object> expected, final List<Object> values) {
+        assertEquals(expected.size(), values.size());
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.get(i) == null) {
+                assertNull(values.get(i));
+            } else {
+                assertEquals(expected.get(i), values.get(i));
+            }
+        }
+    }
+
+    @Test
+    void testIntegerKeys() throws Exception {
+        for (final LookupBean.Mode mode : LookupBean.Mode.values()) {
+            assertTranslated(Arrays.asList(10L, null, 20L, 10L, 30L), translate(mode, Types.BIGINT, Types.BIGINT));
+        }
+    }
+
+    @Test
+    void testIntegerColumnWithTextValues() throws Exception {
+        for (final LookupBean.Mode mode : LookupBean.Mode.values()) {
+            assertTranslated(Arrays.asList("10", null, "20", "10", "30"),
+                translate(mode, Types.BIGINT, Types.VARCHAR));
+        }
+    }
+
+    @Test
+    void testIntegerColumnWithNumericKeys() throws Exception {
+        for (final LookupBean.Mode mode : LookupBean.Mode.values()) {
+            assertTranslated(Arrays.asList("10", null, "20", "10", "30"),
+                translate(mode, Types.NUMERIC, Types.VARCHAR));
+        }
+    }
+
+    /**
+     * Method of a JDBC interface implemented by the tests.
+     */
+    private interface Handler {
+
+        Object invoke(String name, Object[] args) throws Exception;
+    }
+}
@@ -0,0 +1,177 @@
+package com.dattack.dbcopy.engine.export.csv;
+
+import com.dattack.dbcopy.engine.ColumnMetadata;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.dbcopy.engine.datatype.StringType;
+import com.dattack.dbcopy.engine.export.format.TemporalFormatter;
+import com.dattack.formats.csv.CSVConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/* package */ final class CsvRowEncoderTest {
+
+    // the prefixes shift the special character across the eight-byte words scanned by the encoder
+    private static final String[] PREFIXES = {"", "é", "€", "😀", "ab", "abcdefg"};
+    private static final int THRESHOLD = 64;
+
+    private final CSVConfiguration configuration = CSVConfiguration.custom(new Properties()).build();
+    private final String separator = defaultString(configuration.getSeparator(), ",");
+    private final String eol = defaultString(configuration.getEol(), System.lineSeparator());
+    private final char quoteChar = configuration.getQuoteChar();
+    private final char escapeChar = configuration.getEscapeChar();
+
+    private static List<ColumnMetadata> columns(final int count) {
+        final List<ColumnMetadata> columns = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            columns.add(ColumnMetadata.custom().withIndex(i).withName("C" + i).withType(Types.VARCHAR).build());
+        }
+        return columns;
+    }
+
+    private static String defaultString(final String value, final String defaultValue) {
+        return value == null ? defaultValue : value;
+    }
+
+    private static void drain(final CsvRowEncoder encoder, final ByteArrayOutputStream output) {
+        final ByteBuffer buffer = encoder.getBuffer();
+        output.write(buffer.array(), buffer.position(), buffer.remaining());
+        encoder.clear();
+    }
+
+    private CsvRowEncoder createEncoder() {
+        return new CsvRowEncoder(configuration, new TemporalFormatter(null, null, null), null, THRESHOLD);
+    }
+
+    /**
+     * Quotes the text character by character, the way the encoder did before the bytes were scanned in words.
+     */
+    private String quote(final String text) {
+
+        boolean quoted = text.contains(separator);
+        for (int i = 0; i < text.length() && !quoted; i++) {
+            final char c = text.charAt(i);
+            quoted = c == quoteChar || c == escapeChar || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            return text;
+        }
+
+        final StringBuilder builder = new StringBuilder().append(quoteChar);
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == quoteChar || c == escapeChar) {
+                builder.append(escapeChar);
+            }
+            builder.append(c);
+        }
+        return builder.append(quoteChar).toString();
+    }
+
+    private String toLine(final String[] values) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                builder.append(separator);
+            }
+            builder.append(quote(values[i]));
+        }
+        return builder.append(eol).toString();
+    }
+
+    private void assertEncoded(final List<String[]> rows) throws Exception {
+
+        final List<ColumnMetadata> columns = columns(rows.get(0).length);
+        final CsvRowEncoder encoder = createEncoder();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final StringBuilder expected = new StringBuilder();
+        for (final String[] values : rows) {
+            final AbstractDataType<?>[] row = new AbstractDataType<?>[values.length];
+            for (int i = 0; i < values.length; i++) {
+                row[i] = new StringType(values[i]);
+            }
+            encoder.encode(columns, row);
+            if (encoder.isFull()) {
+                drain(encoder, output);
+            }
+            expected.append(toLine(values));
+        }
+        drain(encoder, output);
+        assertEquals(expected.toString(), new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testSpecialCharacterAtEveryPosition() throws Exception {
+
+        final char[] specials = {separator.charAt(0), quoteChar, escapeChar, '\r', '\n'};
+        for (final String prefix : PREFIXES) {
+            for (int length = 1; length <= 24; length++) {
+                for (int position = 0; position < length; position++) {
+                    for (final char special : specials) {
+                        final StringBuilder text = new StringBuilder(prefix);
+                        for (int i = 0; i < length; i++) {
+                            text.append(i == position ? special : (char) ('a' + i % 26));
+                        }
+                        final List<String[]> rows = new ArrayList<>();
+                        rows.add(new String[] {text.toString(), prefix});
+                        rows.add(new String[] {prefix, text.toString()});
+                        assertEncoded(rows);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testTextWithoutSpecialCharacters() throws Exception {
+
+        for (final String prefix : PREFIXES) {
+            for (int length = 0; length <= 24; length++) {
+                final StringBuilder text = new StringBuilder(prefix);
+                for (int i = 0; i < length; i++) {
+                    text.append((char) ('a' + i % 26));
+                }
+                final List<String[]> rows = new ArrayList<>();
+                rows.add(new String[] {text.toString(), prefix});
+                assertEncoded(rows);
+            }
+        }
+    }
+
+    @Test
+    void testRandomRows() throws Exception {
+
+        final String alphabet = "abcXYZ 019,;|\t\"'\\\r\nñé€😀" + separator + quoteChar + escapeChar;
+        final Random random = new Random(42);
+        final List<String[]> rows = new ArrayList<>();
+        for (int n = 0; n < 10_000; n++) {
+            final String[] values = new String[3];
+            for (int k = 0; k < values.length; k++) {
+                final StringBuilder text = new StringBuilder();
+                final int length = random.nextInt(40);
+                while (text.length() < length) {
+                    if (random.nextInt(4) == 0) {
+                        final int index = random.nextInt(alphabet.length());
+                        // never split the surrogate pair of the alphabet
+                        final int start = Character.isLowSurrogate(alphabet.charAt(index)) ? index - 1 : index;
+                        text.appendCodePoint(alphabet.codePointAt(start));
+                    } else {
+                        text.append((char) ('a' + random.nextInt(26)));
+                    }
+                }
+                values[k] = text.toString();
+            }
+            rows.add(values);
+        }
+        assertEncoded(rows);
+    }
+}
@@ -0,0 +1,57 @@
+package com.dattack.dbcopy.engine.export.format;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/* package */ final class BinaryFormatterTest {
+
+    private static String hex(final byte[] value) {
+        final StringBuilder builder = new StringBuilder();
+        for (final byte b : value) {
+            builder.append(String.format("%02x", b & 0xFF));
+        }
+        return builder.toString();
+    }
+
+    private static String write(final BinaryFormatter formatter, final byte[] value, final int blocks) {
+        final byte[] bytes = new byte[formatter.getMaxLength(value.length)];
+        final int chunk = Math.max(1, value.length / blocks / formatter.getBlockSize()) * formatter.getBlockSize();
+        int position = 0;
+        int offset = 0;
+        while (value.length - offset > chunk) {
+            position = formatter.write(value, offset, chunk, bytes, position);
+            offset += chunk;
+        }
+        position = formatter.write(value, offset, value.length - offset, bytes, position);
+        return new String(bytes, 0, position, StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void testBase64() {
+        final Random random = new Random(42);
+        for (int length = 0; length < 200; length++) {
+            final byte[] value = new byte[length];
+            random.nextBytes(value);
+            final String expected = Base64.getEncoder().encodeToString(value);
+            assertEquals(expected, write(BinaryFormatter.BASE64, value, 1));
+            assertEquals(expected, write(BinaryFormatter.BASE64, value, 7));
+        }
+    }
+
+    @Test
+    void testHex() {
+        final Random random = new Random(42);
+        for (int length = 0; length < 200; length++) {
+            final byte[] value = new byte[length];
+            random.nextBytes(value);
+            final String expected = hex(value);
+            assertEquals(expected, write(BinaryFormatter.HEX, value, 1));
+            assertEquals(expected, write(BinaryFormatter.HEX, value, 7));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.dattack.dbcopy.engine.export.format;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* package */ final class NumberFormatterTest {
+
+    private final byte[] bytes = new byte[64];
+
+    private String formatDouble(double value) {
+        return new String(bytes, 0, NumberFormatter.writeDouble(value, bytes, 0), StandardCharsets.US_ASCII);
+    }
+
+    private String formatLong(long value) {
+        return new String(bytes, 0, NumberFormatter.writeLong(value, bytes, 0), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void testLong() {
+        for (long value : new long[] { 0, 7, -7, 10, 99, 100, -1_234_567_890_123L, Long.MAX_VALUE, Long.MIN_VALUE }) {
+            assertEquals(Long.toString(value), formatLong(value));
+        }
+    }
+
+    @Test
+    void testDoubleLayout() {
+        assertEquals("0.0", formatDouble(0.0));
+        assertEquals("-0.0", formatDouble(-0.0));
+        assertEquals("1.0", formatDouble(1.0));
+        assertEquals("123.456", formatDouble(123.456));
+        assertEquals("0.001", formatDouble(0.001));
+        assertEquals("1.0E-4", formatDouble(0.0001));
+        assertEquals("9999999.0", formatDouble(9_999_999.0));
+        assertEquals("1.0E7", formatDouble(1.0E7));
+        assertEquals("-1.5E-10", formatDouble(-1.5E-10));
+        assertEquals("4.9E-324", formatDouble(Double.MIN_VALUE));
+        assertEquals("1.7976931348623157E308", formatDouble(Double.MAX_VALUE));
+        assertEquals("NaN", formatDouble(Double.NaN));
+        assertEquals("-Infinity", formatDouble(Double.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    void testDoubleShortest() {
+        // Double.toString of Java 8 writes 9.999999999999999E22
+        assertEquals("1.0E23", formatDouble(1.0E23));
+        assertEquals("0.30000000000000004", formatDouble(0.1 + 0.2));
+    }
+
+    @Test
+    void testDoubleRoundTrip() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            final double value = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(value)) {
+                final String text = formatDouble(value);
+                assertEquals(value, Double.parseDouble(text), text);
+                assertTrue(text.length() <= Double.toString(value).length(), text);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.dattack.dbcopy.engine.export.format;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/* package */ final class TemporalFormatterTest {
+
+    private final byte[] bytes = new byte[TemporalFormatter.MAX_LENGTH];
+
+    private String toString(int length) {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testDefaultFormat() {
+        final TemporalFormatter formatter = new TemporalFormatter(null, null, null);
+        final Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            final Timestamp timestamp = new Timestamp(random.nextLong() % 100_000_000_000_000L);
+            timestamp.setNanos(i % 3 == 0 ? 0 : random.nextInt(1_000_000_000));
+            assertEquals(timestamp.toString(), toString(formatter.writeTimestamp(timestamp, bytes, 0)));
+
+            final Date date = new Date(timestamp.getTime());
+            assertEquals(date.toString(), toString(formatter.writeDate(date, bytes, 0)));
+
+            final Time time = new Time(timestamp.getTime());
+            assertEquals(time.toString(), toString(formatter.writeTime(time, bytes, 0)));
+        }
+    }
+
+    @Test
+    void testPattern() {
+        final TemporalFormatter formatter = new TemporalFormatter("dd/MM/yyyy", "HH.mm", "yyyyMMdd'T'HHmmss.SSS");
+        assertEquals("04/03/2022", toString(formatter.writeDate(Date.valueOf("2022-03-04"), bytes, 0)));
+        assertEquals("10.11", toString(formatter.writeTime(Time.valueOf("10:11:12"), bytes, 0)));
+        final Timestamp timestamp = Timestamp.valueOf("2022-03-04 05:06:07.891");
+        assertEquals("20220304T050607.891", toString(formatter.writeTimestamp(timestamp, bytes, 0)));
+        // cached value
+        assertEquals("20220304T050607.891", toString(formatter.writeTimestamp(timestamp, bytes, 0)));
+    }
+}
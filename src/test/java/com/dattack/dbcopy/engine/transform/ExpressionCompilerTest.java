@@ -0,0 +1,109 @@
+package com.dattack.dbcopy.engine.transform;
+
+import com.dattack.dbcopy.engine.ColumnMetadata;
+import com.dattack.dbcopy.engine.RowMetadata;
+import com.dattack.dbcopy.engine.datatype.AbstractDataType;
+import com.dattack.dbcopy.engine.datatype.BigDecimalType;
+import com.dattack.dbcopy.engine.datatype.LongType;
+import com.dattack.dbcopy.engine.datatype.StringType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* package */ final class ExpressionCompilerTest {
+
+    private static final AbstractDataType<?>[] ROW = { new LongType(42L), new StringType("Alice Smith"),
+        new BigDecimalType(new BigDecimal("10.50")), LongType.NULL };
+
+    private final ExpressionCompiler compiler = new ExpressionCompiler(RowMetadata.custom() //
+        .add(createColumn(1, "ID", Types.BIGINT)) //
+        .add(createColumn(2, "NAME", Types.VARCHAR)) //
+        .add(createColumn(3, "AMOUNT", Types.DECIMAL)) //
+        .add(createColumn(4, "PARENT_ID", Types.BIGINT)) //
+        .build());
+
+    private static ColumnMetadata createColumn(int index, String name, int type) {
+        return ColumnMetadata.custom().withIndex(index).withName(name).withType(type).build();
+    }
+
+    private Object evaluate(String expression) throws ExpressionException {
+        return compiler.compile(expression).getExpression().evaluate(ROW);
+    }
+
+    @Test
+    void testArithmetic() throws ExpressionException {
+        assertEquals(85L, evaluate("id * 2 + 1"));
+        assertEquals(new BigDecimal("2.625"), evaluate("amount / 4"));
+        assertEquals(-2L, evaluate("-id % 5"));
+        assertEquals(new BigDecimal("9223372036854775808"), evaluate("9223372036854775807 + 1"));
+        assertNull(evaluate("parent_id + 1"));
+    }
+
+    @Test
+    void testCase() throws ExpressionException {
+        assertEquals("big", evaluate("CASE WHEN id > 40 THEN 'big' ELSE 'small' END"));
+        assertEquals(1L, evaluate("case id when 1 then 2 when 42 then 1 end"));
+        assertNull(evaluate("case id when 1 then 2 end"));
+    }
+
+    @Test
+    void testColumnReference() throws ExpressionException {
+        final CompiledExpression expression = compiler.compile("\"NAME\"");
+        assertTrue(expression.isColumnReference());
+        assertEquals(1, expression.getColumnIndex());
+        assertEquals(ExpressionType.STRING, expression.getType());
+    }
+
+    @Test
+    void testConstantFolding() throws ExpressionException {
+        final CompiledExpression expression = compiler.compile("upper('a' || 'b') || (1 + 2 * 3)");
+        assertTrue(expression.isConstant());
+        assertEquals("AB7", expression.getExpression().evaluate(null));
+        assertFalse(compiler.compile("id + 1").isConstant());
+    }
+
+    @Test
+    void testInvalidExpressions() {
+        assertThrows(ExpressionException.class, () -> compiler.compile("id +"));
+        assertThrows(ExpressionException.class, () -> compiler.compile("unknown_column"));
+        assertThrows(ExpressionException.class, () -> compiler.compile("unknown_function(id)"));
+        assertThrows(ExpressionException.class, () -> compiler.compile("substr(name)"));
+        assertThrows(ExpressionException.class, () -> compiler.compile("'unterminated"));
+    }
+
+    @Test
+    void testMasking() throws ExpressionException {
+        assertEquals("*******mith", evaluate("mask(name)"));
+        assertEquals("#########th", evaluate("mask(name, 2, '#')"));
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", evaluate("md5('abc')"));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", evaluate("sha256('abc')"));
+    }
+
+    @Test
+    void testPredicates() throws ExpressionException {
+        assertEquals(Boolean.TRUE, evaluate("name LIKE 'Al%' AND id IN (1, 42)"));
+        assertEquals(Boolean.TRUE, evaluate("parent_id IS NULL AND amount IS NOT NULL"));
+        assertNull(evaluate("id NOT IN (1, NULL)"));
+        assertNull(evaluate("parent_id = 1"));
+        assertEquals(Boolean.FALSE, evaluate("parent_id = 1 AND false"));
+        assertEquals(Boolean.TRUE, evaluate("parent_id = 1 OR true"));
+    }
+
+    @Test
+    void testStringFunctions() throws ExpressionException {
+        assertEquals("Alice", evaluate("substr(name, 1, 5)"));
+        assertEquals("Smith", evaluate("substr(name, -5)"));
+        assertEquals("000042", evaluate("lpad(id, 6, '0')"));
+        assertEquals("abxyx", evaluate("rpad('ab', 5, 'xy')"));
+        assertEquals("Alice Smith", evaluate("coalesce(parent_id, name)"));
+        assertEquals("x-42", evaluate("concat('x', parent_id, '-', id)"));
+        assertEquals(1L, evaluate("length(trim('  x '))"));
+    }
+}